@@ -0,0 +1,127 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Installs an agent CLI at a pinned version once per node and reuses it for every later build on
+ * that node, instead of resolving the npm package again on each build as {@code npx -y} does.
+ * Installs live in {@code <node root>/tools/ai-agent-cli/<agent>/<version>}. A marker file written
+ * after a successful {@code npm install} tells later builds that the install is complete.
+ */
+final class AgentCliInstaller {
+    static final String TOOLS_DIR = "tools/ai-agent-cli";
+    static final String MARKER_FILE = ".installed";
+
+    private static final Pattern VERSION = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._+-]*");
+
+    // Every executor of a node installs through this controller, so one lock per install directory
+    // (a FilePath is equal per channel and path) keeps builds from running npm into it at once.
+    private static final ConcurrentMap<FilePath, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private AgentCliInstaller() {}
+
+    /** Whether {@code version} can be used as an npm version and as a cache directory name. */
+    static boolean isValidVersion(String version) {
+        return version != null && version.length() <= 64 && VERSION.matcher(version).matches();
+    }
+
+    static FilePath installDir(FilePath nodeRoot, AgentType agentType, String version) {
+        return nodeRoot.child(TOOLS_DIR)
+                .child(agentType.name().toLowerCase(Locale.ROOT))
+                .child(version);
+    }
+
+    static FilePath executable(FilePath installDir, AgentType agentType, boolean unix) {
+        String name = agentType.getExecutable() + (unix ? "" : ".cmd");
+        return installDir.child("node_modules").child(".bin").child(name);
+    }
+
+    /**
+     * Returns the cached CLI of {@code agentType} at {@code version} on the node, installing it
+     * first if this node does not have it yet.
+     *
+     * @throws IOException if the agent is not distributed through npm, the version is not valid,
+     *     or {@code npm install} fails
+     */
+    static Installation install(
+            FilePath nodeRoot,
+            AgentType agentType,
+            String version,
+            Launcher launcher,
+            EnvVars env,
+            TaskListener listener)
+            throws IOException, InterruptedException {
+        String npmPackage = agentType.getNpmPackage();
+        if (npmPackage == null) {
+            throw new IOException(agentType.getDisplayName() + " is not distributed through npm.");
+        }
+        if (!isValidVersion(version)) {
+            throw new IOException("Invalid CLI version '" + version + "'.");
+        }
+        long startedAt = System.nanoTime();
+        FilePath dir = installDir(nodeRoot, agentType, version);
+        FilePath binary = executable(dir, agentType, launcher.isUnix());
+        String spec = npmPackage + "@" + version;
+        boolean cached;
+        synchronized (LOCKS.computeIfAbsent(dir, k -> new Object())) {
+            cached = dir.child(MARKER_FILE).exists();
+            if (!cached) {
+                // A directory without the marker is left over from an interrupted install.
+                if (dir.exists()) {
+                    dir.deleteRecursive();
+                }
+                dir.mkdirs();
+                listener.getLogger()
+                        .println("[ai-agent] Installing " + spec + " into " + dir.getRemote());
+                int exitCode =
+                        launcher.launch()
+                                .cmds(
+                                        launcher.isUnix() ? "npm" : "npm.cmd",
+                                        "install",
+                                        "--prefix",
+                                        dir.getRemote(),
+                                        "--no-audit",
+                                        "--no-fund",
+                                        spec)
+                                .envs(env)
+                                .pwd(dir)
+                                .stdout(listener)
+                                .join();
+                if (exitCode != 0) {
+                    throw new IOException(
+                            "npm install " + spec + " failed with exit code " + exitCode + ".");
+                }
+                if (!binary.exists()) {
+                    throw new IOException(spec + " did not install " + binary.getRemote() + ".");
+                }
+                dir.child(MARKER_FILE).write(spec + "\n", "UTF-8");
+            }
+        }
+        long millis = (System.nanoTime() - startedAt) / 1_000_000;
+        return new Installation(binary.getRemote(), cached, millis);
+    }
+
+    /** A CLI ready to launch from the node tool cache. */
+    static final class Installation {
+        final String executable;
+        /** Whether the CLI was already installed, i.e. this build did not run npm. */
+        final boolean cached;
+        /** Time spent finding or installing the CLI. */
+        final long millis;
+
+        Installation(String executable, boolean cached, long millis) {
+            this.executable = executable;
+            this.cached = cached;
+            this.millis = millis;
+        }
+    }
+}
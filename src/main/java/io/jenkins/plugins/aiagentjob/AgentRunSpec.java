@@ -0,0 +1,277 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.FilePath;
+import hudson.Proc;
+import hudson.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What one agent run inside a build executes. A build's single run takes everything from the job;
+ * the runs of a multi-agent build each override some of it and are told apart by their variant.
+ */
+final class AgentRunSpec {
+    /** Variable that holds the item of a batch run, in the prompt and the agent's environment. */
+    static final String BATCH_ITEM_VAR = "AI_AGENT_BATCH_ITEM";
+
+    /** Variable that holds the workspace-relative directory of a map-reduce shard. */
+    static final String SHARD_VAR = "AI_AGENT_SHARD";
+
+    /** Variable that holds what the shards of a map-reduce build reported, for the reduce run. */
+    static final String SHARD_SUMMARIES_VAR = "AI_AGENT_SHARD_SUMMARIES";
+
+    static final String REDUCE_VARIANT = "reduce";
+
+    private static final int MAX_LABEL_LENGTH = 60;
+
+    /** Identifies the run among the runs of its build; {@code null} for the build's single run. */
+    String variant;
+
+    String label;
+    AgentType agentType;
+    String model;
+    String prompt;
+    String workingDirectory;
+    String credentialsId;
+    String apiKeyEnvVar;
+    String cliVersion;
+
+    /**
+     * Variables of this run only, such as the item of a batch run. They are expanded in the prompt
+     * and exported to the agent; their values themselves are not expanded.
+     */
+    final Map<String, String> variables = new LinkedHashMap<>();
+
+    /** Directory the working directory is resolved against; {@code null} for the workspace. */
+    FilePath root;
+
+    // Guarded by this.
+    private Proc proc;
+    private boolean cancelled;
+    private boolean finished;
+
+    private AgentRunSpec() {}
+
+    /** The build's single run, exactly as the job configures it. */
+    static AgentRunSpec of(AiAgentProject project) {
+        AgentRunSpec spec = new AgentRunSpec();
+        spec.label = project.getAgentType().getDisplayName();
+        spec.agentType = project.getAgentType();
+        spec.model = project.getModel();
+        spec.prompt = project.getPrompt();
+        spec.workingDirectory = project.getWorkingDirectory();
+        spec.credentialsId = project.getApiCredentialsId();
+        spec.apiKeyEnvVar = project.getEffectiveApiKeyEnvVar();
+        spec.cliVersion = project.getCliVersion();
+        return spec;
+    }
+
+    /** Whether this is one of several runs of its build. */
+    boolean isVariant() {
+        return variant != null;
+    }
+
+    /**
+     * Stops the run from another thread: kills its agent process if it is running, or as soon as
+     * it is started. The run then completes normally, so the output and usage up to that point
+     * are recorded. Does nothing once the process has exited.
+     */
+    void cancel() throws IOException, InterruptedException {
+        Proc running;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            cancelled = true;
+            running = proc;
+        }
+        if (running != null) {
+            running.kill();
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Called with the agent process once it is started. */
+    void attach(Proc proc) throws IOException, InterruptedException {
+        boolean kill;
+        synchronized (this) {
+            this.proc = proc;
+            kill = cancelled;
+        }
+        if (kill) {
+            proc.kill();
+        }
+    }
+
+    /** Called once the agent process has exited, or failed to start. */
+    synchronized void detach() {
+        proc = null;
+        finished = true;
+    }
+
+    /** A copy of this run as the given variant of a multi-agent build. */
+    AgentRunSpec asVariant(String variant, String label) {
+        AgentRunSpec copy = new AgentRunSpec();
+        copy.variant = variant;
+        copy.label = label;
+        copy.agentType = agentType;
+        copy.model = model;
+        copy.prompt = prompt;
+        copy.workingDirectory = workingDirectory;
+        copy.credentialsId = credentialsId;
+        copy.apiKeyEnvVar = apiKeyEnvVar;
+        copy.cliVersion = cliVersion;
+        copy.variables.putAll(variables);
+        copy.root = root;
+        return copy;
+    }
+
+    /**
+     * Parses the agent list of a fan-out job: one agent per line, as an agent type optionally
+     * followed by {@code model=<model>} and {@code credentials=<credential ID>}. Blank lines and
+     * lines starting with {@code #} are skipped. An agent of the job's own type inherits the job's
+     * model, credential and pinned CLI version; any other agent only gets what its line sets.
+     *
+     * @throws IllegalArgumentException naming the first line that cannot be parsed
+     */
+    static List<AgentRunSpec> parseAgents(AiAgentProject project, String text) {
+        List<AgentRunSpec> specs = new ArrayList<>();
+        String[] lines = Util.fixNull(text).split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            AgentType type = parseAgentType(tokens[0]);
+            if (type == null) {
+                throw new IllegalArgumentException(
+                        "Line " + (i + 1) + ": unknown agent type '" + tokens[0] + "'.");
+            }
+            AgentRunSpec base = of(project);
+            if (type != project.getAgentType()) {
+                base.agentType = type;
+                base.model = "";
+                base.credentialsId = "";
+                base.apiKeyEnvVar = type.getDefaultApiKeyEnvVar();
+                base.cliVersion = "";
+            }
+            for (int t = 1; t < tokens.length; t++) {
+                String token = tokens[t];
+                if (token.startsWith("model=")) {
+                    base.model = token.substring("model=".length());
+                } else if (token.startsWith("credentials=")) {
+                    base.credentialsId = token.substring("credentials=".length());
+                } else {
+                    throw new IllegalArgumentException(
+                            "Line " + (i + 1) + ": unexpected '" + token + "'.");
+                }
+            }
+            String label = type.getDisplayName();
+            if (!Util.fixNull(base.model).isEmpty()) {
+                label += " (" + base.model + ")";
+            }
+            specs.add(base.asVariant(String.valueOf(specs.size() + 1), label));
+        }
+        return specs;
+    }
+
+    /**
+     * Parses the items of a batch job, one per line; blank lines and lines starting with {@code #}
+     * are skipped. Every item runs the job's agent with the job's prompt as a template, in which
+     * {@code $AI_AGENT_BATCH_ITEM} stands for the item. A prompt that does not mention the item
+     * gets it appended; an empty prompt is just the item.
+     */
+    static List<AgentRunSpec> parseBatch(AiAgentProject project, String text) {
+        String template = Util.fixNull(project.getPrompt());
+        String prompt;
+        if (template.trim().isEmpty()) {
+            prompt = "${" + BATCH_ITEM_VAR + "}";
+        } else if (template.contains("$" + BATCH_ITEM_VAR)
+                || template.contains("${" + BATCH_ITEM_VAR + "}")) {
+            prompt = template;
+        } else {
+            prompt = template + "\n\n${" + BATCH_ITEM_VAR + "}";
+        }
+        List<AgentRunSpec> specs = new ArrayList<>();
+        for (String line : Util.fixNull(text).split("\\r?\\n")) {
+            String item = line.trim();
+            if (item.isEmpty() || item.startsWith("#")) {
+                continue;
+            }
+            AgentRunSpec base = of(project);
+            base.prompt = prompt;
+            base.variables.put(BATCH_ITEM_VAR, item);
+            String variant = String.valueOf(specs.size() + 1);
+            String label =
+                    item.length() > MAX_LABEL_LENGTH
+                            ? item.substring(0, MAX_LABEL_LENGTH - 3) + "..."
+                            : item;
+            specs.add(base.asVariant(variant, "#" + variant + ": " + label));
+        }
+        return specs;
+    }
+
+    /**
+     * One run of the job's agent on the job's prompt per shard directory, each with the shard as
+     * its working directory and in {@code $AI_AGENT_SHARD}.
+     */
+    static List<AgentRunSpec> forShards(AiAgentProject project, List<String> shards) {
+        List<AgentRunSpec> specs = new ArrayList<>();
+        for (String shard : shards) {
+            AgentRunSpec base = of(project);
+            base.workingDirectory = shard;
+            base.variables.put(SHARD_VAR, shard);
+            specs.add(base.asVariant(String.valueOf(specs.size() + 1), shard));
+        }
+        return specs;
+    }
+
+    /**
+     * The reduce run of a map-reduce job: the job's agent in the job's working directory, on the
+     * job's reduce prompt or, if that is empty, on instructions to finish the job's prompt from
+     * what the shards did. The shard summaries are appended unless the prompt mentions {@code
+     * $AI_AGENT_SHARD_SUMMARIES} itself.
+     */
+    static AgentRunSpec forReduce(AiAgentProject project, String summaries) {
+        AgentRunSpec base = of(project);
+        String reducePrompt = Util.fixNull(project.getReducePrompt());
+        String prompt;
+        if (reducePrompt.trim().isEmpty()) {
+            prompt =
+                    "Agents worked on the task below, one per directory of the workspace. Review"
+                            + " their combined changes, resolve inconsistencies between them and"
+                            + " finish whatever spans several directories.\n\nTask:\n"
+                            + Util.fixNull(project.getPrompt())
+                            + "\n\n${"
+                            + SHARD_SUMMARIES_VAR
+                            + "}";
+        } else if (reducePrompt.contains("$" + SHARD_SUMMARIES_VAR)
+                || reducePrompt.contains("${" + SHARD_SUMMARIES_VAR + "}")) {
+            prompt = reducePrompt;
+        } else {
+            prompt = reducePrompt + "\n\n${" + SHARD_SUMMARIES_VAR + "}";
+        }
+        base.prompt = prompt;
+        base.variables.put(SHARD_SUMMARIES_VAR, summaries);
+        return base.asVariant(REDUCE_VARIANT, "Reduce");
+    }
+
+    private static AgentType parseAgentType(String value) {
+        String normalized = value.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (AgentType type : AgentType.values()) {
+            if (type.name().equals(normalized)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
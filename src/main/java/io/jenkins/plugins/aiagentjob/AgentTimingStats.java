@@ -0,0 +1,258 @@
+package io.jenkins.plugins.aiagentjob;
+
+import net.sf.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency and throughput of one build, derived from the time each agent output line arrived: how
+ * long the agent took to print its first event and its first assistant text after the process
+ * started, how long each model turn took to respond, and output tokens per second of generation.
+ *
+ * <p>A turn starts when the model receives input (the process start, a user message or a tool
+ * result) and ends with the last model event (assistant text, thinking or a tool call) before the
+ * next input. Its latency is the time to the first model event; the generation time used for
+ * tokens per second is the whole turn, so time spent running tools is not counted.
+ *
+ * <p>When the job pins a CLI version, the time spent finding or installing it in the node tool
+ * cache is recorded too; it is spent before the process starts.
+ */
+public final class AgentTimingStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long processStartedAtMillis;
+    private long startupMillis = -1;
+    private long firstTextMillis = -1;
+    private long generationMillis;
+    private long outputTokens;
+    private long[] turnLatencyMillis = new long[0];
+    // Absent from builds recorded before CLI pinning, which then read as not pinned.
+    private boolean cliPinned;
+    private long cliSetupMillis;
+    private boolean cliCached;
+
+    public boolean hasData() {
+        return startupMillis >= 0;
+    }
+
+    /** Wall clock time the agent process was launched, or 0 if unknown. */
+    public long getProcessStartedAtMillis() {
+        return processStartedAtMillis;
+    }
+
+    /** Process start to the first structured event, or -1 if the agent printed none. */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /** Process start to the first assistant text, or -1 if the agent printed none. */
+    public long getFirstTextMillis() {
+        return firstTextMillis;
+    }
+
+    /** Time the model spent producing output, summed over all turns. */
+    public long getGenerationMillis() {
+        return generationMillis;
+    }
+
+    /** Time spent finding or installing the pinned CLI, or -1 if the job does not pin one. */
+    public long getCliSetupMillis() {
+        return cliPinned ? cliSetupMillis : -1;
+    }
+
+    /** Whether the pinned CLI was already in the node tool cache. */
+    public boolean isCliCached() {
+        return cliCached;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    /** Output tokens per second of generation time; 0 without tokens or timing. */
+    public double getOutputTokensPerSecond() {
+        if (outputTokens <= 0 || generationMillis <= 0) {
+            return 0;
+        }
+        return outputTokens * 1000.0 / generationMillis;
+    }
+
+    public int getTurns() {
+        return turnLatencyMillis.length;
+    }
+
+    /** Nearest-rank percentile of the per-turn latencies, e.g. {@code 0.95}; 0 without turns. */
+    public long getTurnLatencyPercentile(double percentile) {
+        return percentile(turnLatencyMillis, percentile);
+    }
+
+    long[] getTurnLatencies() {
+        return turnLatencyMillis.clone();
+    }
+
+    public long getMaxTurnLatencyMillis() {
+        long max = 0;
+        for (long latency : turnLatencyMillis) {
+            max = Math.max(max, latency);
+        }
+        return max;
+    }
+
+    public String getStartupDisplay() {
+        return startupMillis < 0 ? "" : Durations.format(startupMillis);
+    }
+
+    public String getFirstTextDisplay() {
+        return firstTextMillis < 0 ? "" : Durations.format(firstTextMillis);
+    }
+
+    public String getCliSetupDisplay() {
+        if (!cliPinned) {
+            return "";
+        }
+        String source = cliCached ? " (cached)" : " (installed)";
+        return Durations.format(cliSetupMillis) + source;
+    }
+
+    public String getOutputTokensPerSecondDisplay() {
+        double rate = getOutputTokensPerSecond();
+        return rate <= 0 ? "" : String.format(Locale.US, "%.1f tok/s", rate);
+    }
+
+    public String getTurnLatencyDisplay() {
+        if (turnLatencyMillis.length == 0) {
+            return "";
+        }
+        return Durations.format(getTurnLatencyPercentile(0.5))
+                + " / "
+                + Durations.format(getTurnLatencyPercentile(0.95));
+    }
+
+    /** Nearest-rank percentile of {@code values}; 0 when empty. */
+    static long percentile(long[] values, double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("startupMillis", startupMillis);
+        json.put("firstTextMillis", firstTextMillis);
+        json.put("generationMillis", generationMillis);
+        json.put("outputTokens", outputTokens);
+        json.put("outputTokensPerSecond", Math.round(getOutputTokensPerSecond() * 100) / 100.0);
+        json.put("turns", getTurns());
+        json.put("turnLatencyP50Millis", getTurnLatencyPercentile(0.5));
+        json.put("turnLatencyP95Millis", getTurnLatencyPercentile(0.95));
+        json.put("turnLatencyMaxMillis", getMaxTurnLatencyMillis());
+        json.put("cliSetupMillis", getCliSetupMillis());
+        json.put("cliCached", cliCached);
+        return json;
+    }
+
+    /**
+     * Collects arrival times while the build runs. Called from the output handler, which already
+     * serializes lines, and read by the executor at the end; both paths are synchronized.
+     */
+    static final class Recorder {
+        private long processStartedAt = -1;
+        private long firstEventAt = -1;
+        private long firstTextAt = -1;
+        // Latest input the model has not answered yet; -1 while the model is responding.
+        private long inputAt = -1;
+        private long turnStartedAt = -1;
+        private long lastModelEventAt = -1;
+        private long generationMillis;
+        private long[] turnLatencies = new long[16];
+        private int turns;
+        private long cliSetupMillis = -1;
+        private boolean cliCached;
+
+        /** Records the time spent getting the pinned CLI ready, before the process started. */
+        synchronized void cliReady(long millis, boolean cached) {
+            cliSetupMillis = millis;
+            cliCached = cached;
+        }
+
+        synchronized void processStarted(long atMillis) {
+            processStartedAt = atMillis;
+            inputAt = atMillis;
+        }
+
+        /** Records one parsed output line of {@code category} that arrived at {@code atMillis}. */
+        synchronized void eventArrived(String category, long atMillis) {
+            if (category == null || "raw".equals(category)) {
+                // Setup script output and stderr noise, not agent events.
+                return;
+            }
+            if (firstEventAt < 0) {
+                firstEventAt = atMillis;
+            }
+            if (isModelOutput(category)) {
+                if (firstTextAt < 0 && "assistant".equals(category)) {
+                    firstTextAt = atMillis;
+                }
+                if (inputAt >= 0) {
+                    if (turns == turnLatencies.length) {
+                        turnLatencies = Arrays.copyOf(turnLatencies, turns * 2);
+                    }
+                    turnLatencies[turns++] = Math.max(0, atMillis - inputAt);
+                    turnStartedAt = inputAt;
+                    inputAt = -1;
+                }
+                lastModelEventAt = atMillis;
+            } else if (isModelInput(category)) {
+                closeTurn();
+                inputAt = atMillis;
+            }
+        }
+
+        private void closeTurn() {
+            if (turnStartedAt >= 0) {
+                generationMillis += Math.max(0, lastModelEventAt - turnStartedAt);
+                turnStartedAt = -1;
+            }
+        }
+
+        private static boolean isModelOutput(String category) {
+            return "assistant".equals(category)
+                    || "thinking".equals(category)
+                    || "tool_call".equals(category);
+        }
+
+        private static boolean isModelInput(String category) {
+            return "user".equals(category) || "tool_result".equals(category);
+        }
+
+        /** Totals so far; {@code outputTokens} comes from the usage stats of the finished log. */
+        synchronized AgentTimingStats snapshot(long outputTokens) {
+            AgentTimingStats snapshot = new AgentTimingStats();
+            snapshot.processStartedAtMillis = Math.max(0, processStartedAt);
+            if (processStartedAt >= 0) {
+                if (firstEventAt >= 0) {
+                    snapshot.startupMillis = Math.max(0, firstEventAt - processStartedAt);
+                }
+                if (firstTextAt >= 0) {
+                    snapshot.firstTextMillis = Math.max(0, firstTextAt - processStartedAt);
+                }
+            }
+            snapshot.generationMillis = generationMillis;
+            if (turnStartedAt >= 0) {
+                snapshot.generationMillis += Math.max(0, lastModelEventAt - turnStartedAt);
+            }
+            snapshot.outputTokens = Math.max(0, outputTokens);
+            snapshot.turnLatencyMillis = Arrays.copyOf(turnLatencies, turns);
+            snapshot.cliPinned = cliSetupMillis >= 0;
+            snapshot.cliSetupMillis = Math.max(0, cliSetupMillis);
+            snapshot.cliCached = cliCached;
+            return snapshot;
+        }
+    }
+}
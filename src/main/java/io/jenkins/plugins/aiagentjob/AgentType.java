@@ -4,20 +4,25 @@ import java.util.Locale;
 
 /** Supported AI coding agent families, each with a default API key environment variable. */
 public enum AgentType {
-    CLAUDE_CODE("Claude Code", "ANTHROPIC_API_KEY"),
-    CODEX("Codex CLI", "OPENAI_API_KEY"),
-    CURSOR_AGENT("Cursor Agent", "CURSOR_API_KEY"),
-    OPENCODE("OpenCode", "OPENAI_API_KEY"),
-    GEMINI_CLI("Gemini CLI", "GEMINI_API_KEY");
+    CLAUDE_CODE("Claude Code", "ANTHROPIC_API_KEY", "@anthropic-ai/claude-code", "claude"),
+    CODEX("Codex CLI", "OPENAI_API_KEY", "@openai/codex", "codex"),
+    CURSOR_AGENT("Cursor Agent", "CURSOR_API_KEY", null, "agent"),
+    OPENCODE("OpenCode", "OPENAI_API_KEY", "opencode-ai", "opencode"),
+    GEMINI_CLI("Gemini CLI", "GEMINI_API_KEY", "@google/gemini-cli", "gemini");
 
     private final String displayName;
     // Stores the conventional environment variable name for the credential binding, not a secret.
     // lgtm[jenkins/plaintext-storage]
     private final String defaultApiKeyEnvVar;
+    private final String npmPackage;
+    private final String executable;
 
-    AgentType(String displayName, String defaultApiKeyEnvVar) {
+    AgentType(
+            String displayName, String defaultApiKeyEnvVar, String npmPackage, String executable) {
         this.displayName = displayName;
         this.defaultApiKeyEnvVar = defaultApiKeyEnvVar;
+        this.npmPackage = npmPackage;
+        this.executable = executable;
     }
 
     public String getDisplayName() {
@@ -32,6 +37,19 @@ public enum AgentType {
         return defaultApiKeyEnvVar;
     }
 
+    /**
+     * The npm package the CLI is published as, or {@code null} if it is not distributed through npm
+     * and cannot be installed into the node tool cache.
+     */
+    public String getNpmPackage() {
+        return npmPackage;
+    }
+
+    /** Name of the CLI binary, as found on PATH or in the installed package's bin directory. */
+    public String getExecutable() {
+        return executable;
+    }
+
     /** Parses persisted or form-submitted values; defaults to {@link #CLAUDE_CODE}. */
     public static AgentType fromString(String value) {
         if (value == null) {
@@ -73,11 +73,7 @@ public final class AgentUsageStats implements Serializable {
 
     /** Formatted duration like "4.5s" or "2m 15s". */
     public String getDurationDisplay() {
-        if (durationMs <= 0) return "";
-        if (durationMs < 1000) return durationMs + "ms";
-        long secs = durationMs / 1000;
-        if (secs < 60) return String.format(Locale.US, "%.1fs", durationMs / 1000.0);
-        return (secs / 60) + "m " + (secs % 60) + "s";
+        return durationMs <= 0 ? "" : Durations.format(durationMs);
     }
 
     public long getApiDurationMs() {
@@ -143,10 +139,15 @@ public final class AgentUsageStats implements Serializable {
         AgentUsageStats stats = new AgentUsageStats();
         if (logFile == null || !logFile.exists()) return stats;
 
+        AiAgentFlightRecorder.UsageStatsComputed event =
+                new AiAgentFlightRecorder.UsageStatsComputed();
+        event.begin();
+        long lines = 0;
         try (BufferedReader reader =
                 Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
+                lines++;
                 line = line.trim();
                 if (!line.startsWith("{") || !line.endsWith("}")) continue;
                 try {
@@ -156,9 +157,29 @@ public final class AgentUsageStats implements Serializable {
                 }
             }
         }
+        if (event.shouldCommit()) {
+            event.file = logFile.getPath();
+            event.lines = lines;
+            event.commit();
+        }
         return stats;
     }
 
+    /** Adds the totals of another session, for builds that run several agents. */
+    void add(AgentUsageStats other) {
+        totalTokens = getTotalTokens() + other.getTotalTokens();
+        inputTokens += other.inputTokens;
+        outputTokens += other.outputTokens;
+        cacheReadTokens += other.cacheReadTokens;
+        cacheWriteTokens += other.cacheWriteTokens;
+        reasoningTokens += other.reasoningTokens;
+        costUsd += other.costUsd;
+        durationMs += other.durationMs;
+        apiDurationMs += other.apiDurationMs;
+        numTurns += other.numTurns;
+        toolCalls += other.toolCalls;
+    }
+
     /** Extracts stats from a single JSON line. Called for every line in the log. */
     void extractFrom(JSONObject json) {
         String type = json.optString("type", "").toLowerCase(Locale.ROOT);
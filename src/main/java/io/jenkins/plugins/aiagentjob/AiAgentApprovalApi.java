@@ -0,0 +1,227 @@
+package io.jenkins.plugins.aiagentjob;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shared request handling for the JSON approval API exposed per build by {@link
+ * AiAgentRunAction} and across all live builds by {@link AiAgentApprovalsAction}.
+ */
+final class AiAgentApprovalApi {
+    /** Upper bound for the {@code wait} parameter of long-poll requests. */
+    static final long MAX_WAIT_MILLIS = 60_000;
+
+    /** Largest number of decisions accepted in one batch request. */
+    static final int MAX_BATCH_SIZE = 500;
+
+    private AiAgentApprovalApi() {}
+
+    /**
+     * Parses a wait duration such as {@code 30s}, {@code 500ms} or {@code 1m}; a bare number is
+     * read as seconds. Returns {@code 0} for missing or malformed values and caps the result at
+     * {@link #MAX_WAIT_MILLIS}.
+     */
+    static long parseWaitMillis(String value) {
+        if (value == null) {
+            return 0;
+        }
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        long unitMillis = 1000;
+        if (v.endsWith("ms")) {
+            unitMillis = 1;
+            v = v.substring(0, v.length() - 2);
+        } else if (v.endsWith("s")) {
+            v = v.substring(0, v.length() - 1);
+        } else if (v.endsWith("m")) {
+            unitMillis = 60_000;
+            v = v.substring(0, v.length() - 1);
+        }
+        try {
+            long amount = Long.parseLong(v.trim());
+            if (amount <= 0) {
+                return 0;
+            }
+            if (amount >= MAX_WAIT_MILLIS) {
+                return MAX_WAIT_MILLIS;
+            }
+            return Math.min(MAX_WAIT_MILLIS, amount * unitMillis);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static long parseVersion(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Blocks until {@code change} completes or {@code waitMillis} elapse. */
+    static void await(CompletableFuture<Long> change, long waitMillis) {
+        if (change == null || waitMillis <= 0) {
+            return;
+        }
+        try {
+            change.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+            // Answer with the unchanged state; the client simply polls again.
+        }
+    }
+
+    static JSONObject approvalJson(ExecutionRegistry.PendingApproval pa) {
+        JSONObject paObj = new JSONObject();
+        paObj.put("id", pa.getId());
+        paObj.put("toolName", pa.getToolName());
+        paObj.put("toolCallId", pa.getToolCallId());
+        paObj.put("inputSummary", pa.getInputSummary());
+        paObj.put("createdAt", pa.getCreatedAt().toEpochMilli());
+        return paObj;
+    }
+
+    static JSONArray approvalsJson(List<ExecutionRegistry.PendingApproval> approvals) {
+        JSONArray approvalsJson = new JSONArray();
+        for (ExecutionRegistry.PendingApproval pa : approvals) {
+            approvalsJson.add(approvalJson(pa));
+        }
+        return approvalsJson;
+    }
+
+    /**
+     * Reads the {@code decisions} array of a batch request body. Each entry carries {@code id},
+     * {@code decision} ({@code approve} or {@code deny}) and optionally {@code reason}, {@code
+     * scope} (see {@link ExecutionRegistry.ApprovalScope}) and {@code idempotencyKey}.
+     */
+    static JSONArray readDecisions(StaplerRequest2 request) throws IOException {
+        StringBuilder body = new StringBuilder();
+        try (BufferedReader reader = request.getReader()) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                body.append(buffer, 0, read);
+            }
+        }
+        try {
+            JSONObject json = JSONObject.fromObject(body.toString());
+            JSONArray decisions = json.optJSONArray("decisions");
+            return decisions == null ? new JSONArray() : decisions;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /** Resolves the live build for one entry of a batch, or returns {@code null} if unknown. */
+    interface ExecutionResolver {
+        ExecutionRegistry.LiveExecution resolve(String approvalId);
+    }
+
+    /** Decides whether the current user may answer approvals of the given live build. */
+    interface DecisionPermission {
+        boolean canDecide(ExecutionRegistry.LiveExecution liveExecution);
+    }
+
+    /**
+     * Applies every entry of a batch on behalf of {@code user} and returns one result object per
+     * entry, in order. Idempotency keys are remembered per user and approval.
+     */
+    static JSONArray applyDecisions(
+            JSONArray decisions,
+            String user,
+            ExecutionResolver resolver,
+            DecisionPermission permission) {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < decisions.size(); i++) {
+            Object entry = decisions.get(i);
+            JSONObject item = entry instanceof JSONObject ? (JSONObject) entry : new JSONObject();
+            String id = item.optString("id", "").trim();
+            String decision = item.optString("decision", "");
+            String key = item.optString("idempotencyKey", "").trim();
+
+            JSONObject result = new JSONObject();
+            result.put("id", id);
+            if (!key.isEmpty()) {
+                result.put("idempotencyKey", key);
+            }
+            boolean approve = "approve".equals(decision);
+            if (id.isEmpty() || (!approve && !"deny".equals(decision))) {
+                result.put("status", "invalid");
+                results.add(result);
+                continue;
+            }
+            ExecutionRegistry.ApprovalScope scope =
+                    ExecutionRegistry.ApprovalScope.fromString(item.optString("scope", null));
+            String reason = item.optString("reason", null);
+            ExecutionRegistry.LiveExecution liveExecution = resolver.resolve(id);
+            if (liveExecution != null && !permission.canDecide(liveExecution)) {
+                result.put("status", "forbidden");
+                results.add(result);
+                continue;
+            }
+            ExecutionRegistry.DecisionResult outcome;
+            ExecutionRegistry.DecisionResult remembered =
+                    key.isEmpty()
+                            ? null
+                            : ExecutionRegistry.rememberedDecision(
+                                    user, id, key, approve, scope, reason);
+            if (remembered != null) {
+                // A retry of a decision that already went through; the approval is gone by now.
+                outcome = remembered;
+            } else if (liveExecution == null) {
+                outcome = ExecutionRegistry.DecisionResult.NOT_FOUND;
+            } else {
+                outcome = liveExecution.decide(user, id, approve, scope, reason, key);
+            }
+            result.put("status", outcome.getStatus());
+            result.put("replayed", outcome.isReplayed());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Writes the results of a batch; the response status is 409 if an idempotency key was reused
+     * for a different decision, while the body still reports what happened to every entry.
+     */
+    static void writeResults(StaplerResponse2 response, JSONArray results) throws IOException {
+        for (int i = 0; i < results.size(); i++) {
+            if (ExecutionRegistry.DecisionResult.CONFLICT
+                    .getStatus()
+                    .equals(results.getJSONObject(i).optString("status"))) {
+                response.setStatus(409);
+                break;
+            }
+        }
+        JSONObject json = new JSONObject();
+        json.put("results", results);
+        writeJson(response, json);
+    }
+
+    /** Message for a batch request body that is not valid or too large. */
+    static String invalidBatchMessage() {
+        return "Expected at most " + MAX_BATCH_SIZE + " entries in a JSON 'decisions' array";
+    }
+
+    static void writeJson(StaplerResponse2 response, JSONObject json) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(json.toString());
+    }
+}
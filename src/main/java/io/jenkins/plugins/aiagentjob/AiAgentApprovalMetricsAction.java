@@ -0,0 +1,135 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+
+import jenkins.model.TransientActionFactory;
+
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Job-level approval metrics at {@code job/<name>/ai-agent-approval-metrics/}: wait percentiles,
+ * timeout rate and gated wall clock across the most recent builds, to size reviewer staffing and
+ * tune the approval timeout.
+ */
+public class AiAgentApprovalMetricsAction implements Action {
+    static final int DEFAULT_BUILDS = 50;
+    static final int MAX_BUILDS = 500;
+
+    private final AiAgentProject project;
+
+    AiAgentApprovalMetricsAction(AiAgentProject project) {
+        this.project = project;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Approval Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-approval-metrics";
+    }
+
+    /** JSON summary of the last {@code builds} builds (default 50, at most 500). */
+    @GET
+    public void doIndex(StaplerRequest2 request, StaplerResponse2 response) throws IOException {
+        project.checkPermission(Item.READ);
+        int builds = parseBuilds(request.getParameter("builds"));
+        AiAgentApprovalApi.writeJson(response, metrics(builds));
+    }
+
+    JSONObject metrics(int builds) {
+        ApprovalStats total = new ApprovalStats();
+        int scanned = 0;
+        int gatedBuilds = 0;
+        long gatedBuildMillis = 0;
+        for (Run<?, ?> run : project.getBuilds().limit(builds)) {
+            scanned++;
+            if (run.isBuilding()) {
+                continue;
+            }
+            boolean gated = false;
+            // Multi-agent builds have one action per agent run.
+            for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+                ApprovalStats stats = action.getApprovalStats();
+                if (stats != null && stats.hasData()) {
+                    gated = true;
+                    total.add(stats);
+                }
+            }
+            if (gated) {
+                gatedBuilds++;
+                gatedBuildMillis += run.getDuration();
+            }
+        }
+
+        JSONObject waits = new JSONObject();
+        waits.put("p50", total.getWaitPercentile(0.5));
+        waits.put("p95", total.getWaitPercentile(0.95));
+        waits.put("max", total.getMaxWaitMillis());
+        waits.put("total", total.getTotalWaitMillis());
+
+        JSONObject result = new JSONObject();
+        result.put("job", project.getFullName());
+        result.put("builds", scanned);
+        result.put("gatedBuilds", gatedBuilds);
+        result.put("requested", total.getRequested());
+        result.put("approved", total.getApproved());
+        result.put("denied", total.getDenied());
+        result.put("timedOut", total.getTimedOut());
+        result.put("aborted", total.getAborted());
+        result.put("byRule", total.getByRule());
+        result.put("reused", total.getReused());
+        result.put("timeoutRate", total.getTimeoutRate());
+        result.put("waitMillis", waits);
+        // Share of the gated builds' wall clock spent waiting for a reviewer.
+        result.put(
+                "gatedShare",
+                gatedBuildMillis <= 0
+                        ? 0
+                        : Math.min(1, (double) total.getTotalWaitMillis() / gatedBuildMillis));
+        return result;
+    }
+
+    static int parseBuilds(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_BUILDS;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_BUILDS, Integer.parseInt(value.trim())));
+        } catch (NumberFormatException e) {
+            return DEFAULT_BUILDS;
+        }
+    }
+
+    /** Adds the metrics endpoint to every AI agent job. */
+    @Extension
+    public static final class Factory extends TransientActionFactory<AiAgentProject> {
+        @Override
+        public Class<AiAgentProject> type() {
+            return AiAgentProject.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(AiAgentProject target) {
+            return Collections.singletonList(new AiAgentApprovalMetricsAction(target));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.RootAction;
+import hudson.model.Run;
+import hudson.security.Permission;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Jenkins-wide approval inbox at {@code /ai-agent-approvals}. The page lists the pending tool-call
+ * approvals of every live AI agent build the user can see, with bulk approve/deny; the JSON
+ * endpoints let an automated reviewer watch and answer them with a single long-poll instead of
+ * polling each build page.
+ */
+@Extension
+public class AiAgentApprovalsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-terminal";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Approvals";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-approvals";
+    }
+
+    /**
+     * Pending approvals of all live builds the user can read. With {@code wait} (e.g. {@code 30s})
+     * and nothing pending, the request is held until an approval appears; with {@code since}, it
+     * is held until the global approvals version moves past that value.
+     */
+    @GET
+    public void doPendingApprovals(StaplerRequest2 request, StaplerResponse2 response)
+            throws IOException {
+        Jenkins.get().checkPermission(Jenkins.READ);
+        long waitMillis = AiAgentApprovalApi.parseWaitMillis(request.getParameter("wait"));
+        long since = AiAgentApprovalApi.parseVersion(request.getParameter("since"));
+        long deadline = System.currentTimeMillis() + waitMillis;
+
+        long version = ExecutionRegistry.getGlobalApprovalsVersion();
+        JSONArray approvals = visibleApprovals();
+        if (since >= 0 && since == version) {
+            AiAgentApprovalApi.await(
+                    ExecutionRegistry.onGlobalApprovalsChangedSince(since), waitMillis);
+            version = ExecutionRegistry.getGlobalApprovalsVersion();
+            approvals = visibleApprovals();
+        } else if (since < 0) {
+            // Changes in builds this user cannot see wake us up too; keep waiting for one it can.
+            while (approvals.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                AiAgentApprovalApi.await(
+                        ExecutionRegistry.onGlobalApprovalsChangedSince(version), remaining);
+                version = ExecutionRegistry.getGlobalApprovalsVersion();
+                approvals = visibleApprovals();
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("version", version);
+        result.put("pendingApprovals", approvals);
+        AiAgentApprovalApi.writeJson(response, result);
+    }
+
+    /**
+     * Cheap change counter: clients compare {@code version} with the last value they saw and only
+     * fetch the inbox when it moved.
+     */
+    @GET
+    public void doVersion(StaplerResponse2 response) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.READ);
+        JSONObject result = new JSONObject();
+        result.put("version", ExecutionRegistry.getGlobalApprovalsVersion());
+        AiAgentApprovalApi.writeJson(response, result);
+    }
+
+    /**
+     * Batch approve/deny across builds, in the same format as {@link
+     * AiAgentRunAction#doDecisions}. Entries for builds the user may not build are answered with
+     * {@code forbidden}.
+     */
+    @RequirePOST
+    public void doDecisions(StaplerRequest2 request, StaplerResponse2 response)
+            throws IOException {
+        Jenkins.get().checkPermission(Jenkins.READ);
+        JSONArray decisions = AiAgentApprovalApi.readDecisions(request);
+        if (decisions == null || decisions.size() > AiAgentApprovalApi.MAX_BATCH_SIZE) {
+            response.sendError(400, AiAgentApprovalApi.invalidBatchMessage());
+            return;
+        }
+        AiAgentApprovalApi.writeResults(
+                response,
+                AiAgentApprovalApi.applyDecisions(
+                        decisions,
+                        Jenkins.getAuthentication2().getName(),
+                        ExecutionRegistry::findByApprovalId,
+                        live -> hasPermission(live, Item.BUILD)));
+    }
+
+    private static JSONArray visibleApprovals() {
+        JSONArray approvals = new JSONArray();
+        // The inbox is already in creation order; only the permission check is per build.
+        Map<ExecutionRegistry.LiveExecution, Optional<Run<?, ?>>> readable = new HashMap<>();
+        for (ExecutionRegistry.InboxEntry entry : ExecutionRegistry.inbox()) {
+            ExecutionRegistry.LiveExecution live = entry.getLiveExecution();
+            Optional<Run<?, ?>> visible =
+                    readable.computeIfAbsent(
+                            live,
+                            l ->
+                                    Optional.<Run<?, ?>>ofNullable(runOf(l))
+                                            .filter(r -> r.getParent().hasPermission(Item.READ)));
+            if (visible.isEmpty()) {
+                continue;
+            }
+            Run<?, ?> run = visible.get();
+            JSONObject approval = AiAgentApprovalApi.approvalJson(entry.getApproval());
+            approval.put("build", live.getRunId());
+            approval.put("job", run.getParent().getFullName());
+            approval.put("buildName", run.getFullDisplayName());
+            approval.put("buildUrl", run.getUrl());
+            approvals.add(approval);
+        }
+        return approvals;
+    }
+
+    private static boolean hasPermission(
+            ExecutionRegistry.LiveExecution live, Permission permission) {
+        Run<?, ?> run = runOf(live);
+        return run != null && run.getParent().hasPermission(permission);
+    }
+
+    private static Run<?, ?> runOf(ExecutionRegistry.LiveExecution live) {
+        if (live.getRunId() == null) {
+            return null;
+        }
+        try {
+            return Run.fromExternalizableId(live.getRunId());
+        } catch (RuntimeException e) {
+            // Unknown job, or the user may only discover it.
+            return null;
+        }
+    }
+}
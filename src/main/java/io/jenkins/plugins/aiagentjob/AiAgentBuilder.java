@@ -28,8 +28,19 @@ public class AiAgentBuilder extends Builder {
             return true;
         }
 
-        AiAgentRunAction action = AiAgentRunAction.getOrCreate(build);
-        int exitCode = AiAgentExecutor.execute(build, launcher, listener, project, action);
+        int exitCode;
+        if (project.getExecutionMode() == ExecutionMode.FAN_OUT) {
+            exitCode = MultiAgentRunner.fanOut(build, launcher, listener, project);
+        } else if (project.getExecutionMode() == ExecutionMode.RACE) {
+            exitCode = MultiAgentRunner.race(build, launcher, listener, project);
+        } else if (project.getExecutionMode() == ExecutionMode.BATCH) {
+            exitCode = MultiAgentRunner.batch(build, launcher, listener, project);
+        } else if (project.getExecutionMode() == ExecutionMode.MAP_REDUCE) {
+            exitCode = MultiAgentRunner.mapReduce(build, launcher, listener, project);
+        } else {
+            AiAgentRunAction action = AiAgentRunAction.getOrCreate(build);
+            exitCode = AiAgentExecutor.execute(build, launcher, listener, project, action);
+        }
 
         if (exitCode != 0 && project.isFailOnAgentError()) {
             listener.getLogger()
@@ -16,14 +16,28 @@ final class AiAgentCommandFactory {
     private AiAgentCommandFactory() {}
 
     static List<String> buildDefaultCommand(AiAgentProject project, String prompt) {
+        return buildDefaultCommand(project, prompt, new Options());
+    }
+
+    static List<String> buildDefaultCommand(
+            AiAgentProject project, String prompt, Options options) {
         List<String> command = new ArrayList<>();
-        String model = trimToNull(project.getModel());
+        String model = trimToNull(options.model != null ? options.model : project.getModel());
+        AgentType agentType =
+                options.agentType != null ? options.agentType : project.getAgentType();
+        String executable = options.executable;
+        String binary = executable != null ? executable : agentType.getExecutable();
+        String session = options.resumeSessionId;
 
-        switch (project.getAgentType()) {
+        switch (agentType) {
             case CLAUDE_CODE:
-                command.add("npx");
-                command.add("-y");
-                command.add("@anthropic-ai/claude-code");
+                if (executable != null) {
+                    command.add(executable);
+                } else {
+                    command.add("npx");
+                    command.add("-y");
+                    command.add(agentType.getNpmPackage());
+                }
                 command.add("-p");
                 command.add(prompt);
                 command.add("--output-format=stream-json");
@@ -37,10 +51,14 @@ final class AiAgentCommandFactory {
                     command.add("--model");
                     command.add(model);
                 }
+                if (session != null) {
+                    command.add("--resume");
+                    command.add(session);
+                }
                 break;
 
             case CODEX:
-                command.add("codex");
+                command.add(binary);
                 command.add("exec");
                 command.add("--json");
                 command.add("--skip-git-repo-check");
@@ -55,11 +73,15 @@ final class AiAgentCommandFactory {
                     command.add("--model");
                     command.add(model);
                 }
+                if (session != null) {
+                    command.add("resume");
+                    command.add(session);
+                }
                 command.add(prompt);
                 break;
 
             case CURSOR_AGENT:
-                command.add("agent");
+                command.add(binary);
                 command.add("-p");
                 command.add("--output-format=stream-json");
                 command.add("--trust");
@@ -71,23 +93,35 @@ final class AiAgentCommandFactory {
                     command.add("--model");
                     command.add(model);
                 }
+                if (session != null) {
+                    command.add("--resume");
+                    command.add(session);
+                }
                 command.add(prompt);
                 break;
 
             case OPENCODE:
-                command.add("opencode");
+                command.add(binary);
                 command.add("run");
+                if (options.attachUrl != null) {
+                    command.add("--attach");
+                    command.add(options.attachUrl);
+                }
                 command.add("--format");
                 command.add("json");
                 if (model != null) {
                     command.add("--model");
                     command.add(model);
                 }
+                if (session != null) {
+                    command.add("--session");
+                    command.add(session);
+                }
                 command.add(prompt);
                 break;
 
             case GEMINI_CLI:
-                command.add("gemini");
+                command.add(binary);
                 command.add("-p");
                 command.add(prompt);
                 command.add("--output-format");
@@ -102,11 +136,14 @@ final class AiAgentCommandFactory {
                     command.add("-m");
                     command.add(model);
                 }
+                if (session != null) {
+                    command.add("--resume");
+                    command.add(session);
+                }
                 break;
 
             default:
-                throw new IllegalStateException(
-                        "Unsupported agent type: " + project.getAgentType());
+                throw new IllegalStateException("Unsupported agent type: " + agentType);
         }
 
         String extraArgs = trimToNull(project.getExtraArgs());
@@ -116,6 +153,48 @@ final class AiAgentCommandFactory {
         return command;
     }
 
+    /** How a build launches the agent beyond the job configuration; every option may be unset. */
+    static final class Options {
+        private AgentType agentType;
+        private String model;
+        private String executable;
+        private String attachUrl;
+        private String resumeSessionId;
+
+        /** The agent to launch instead of the job's, for one run of a multi-agent build. */
+        Options agentType(AgentType agentType) {
+            this.agentType = agentType;
+            return this;
+        }
+
+        /** The model to use instead of the job's, for one run of a multi-agent build. */
+        Options model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * The CLI installed into the node tool cache by {@link AgentCliInstaller}, instead of the
+         * CLI on PATH.
+         */
+        Options executable(String executable) {
+            this.executable = executable;
+            return this;
+        }
+
+        /** The warm OpenCode server ({@link OpenCodeServerPool}) to run against. */
+        Options attachUrl(String attachUrl) {
+            this.attachUrl = attachUrl;
+            return this;
+        }
+
+        /** The agent session of an earlier build to continue instead of starting a new one. */
+        Options resumeSession(String sessionId) {
+            this.resumeSessionId = sessionId;
+            return this;
+        }
+    }
+
     static Map<String, String> parseEnvironmentVariables(String raw) {
         Map<String, String> values = new LinkedHashMap<>();
         if (raw == null || raw.trim().isEmpty()) {
@@ -11,24 +11,37 @@ import hudson.Util;
 import hudson.console.LineTransformationOutputStream;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.Node;
 import hudson.model.Run;
 
+import jenkins.util.SystemProperties;
+
+import net.sf.json.JSONObject;
+
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -45,30 +58,85 @@ final class AiAgentExecutor {
             AiAgentProject project,
             AiAgentRunAction action)
             throws IOException, InterruptedException {
-        FilePath workspace = build.getWorkspace();
+        return execute(build, launcher, listener, project, action, AgentRunSpec.of(project));
+    }
+
+    /**
+     * Runs one agent as {@code spec} describes. The result cache and session resume only apply to
+     * a build's single run, not to the variants of a multi-agent build.
+     */
+    static int execute(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project,
+            AiAgentRunAction action,
+            AgentRunSpec spec)
+            throws IOException, InterruptedException {
+        FilePath workspace = spec.root != null ? spec.root : build.getWorkspace();
         if (workspace == null) {
             throw new IOException("Workspace is not available for this build.");
         }
 
         EnvVars env = build.getEnvironment(listener);
         env.putAll(build.getBuildVariables());
+        env.putAll(spec.variables);
 
-        String prompt = Util.replaceMacro(Util.fixNull(project.getPrompt()), env);
-        String model = Util.replaceMacro(Util.fixNull(project.getModel()), env);
-        String workDirValue = Util.replaceMacro(Util.fixNull(project.getWorkingDirectory()), env);
+        AgentType agentType = spec.agentType;
+        String prompt = Util.replaceMacro(Util.fixNull(spec.prompt), env);
+        String model = Util.replaceMacro(Util.fixNull(spec.model), env);
+        String workDirValue = Util.replaceMacro(Util.fixNull(spec.workingDirectory), env);
         String commandOverride = Util.replaceMacro(Util.fixNull(project.getCommandOverride()), env);
         commandOverride = commandOverride.trim();
+        String setupScript = Util.replaceMacro(Util.fixNull(project.getSetupScript()), env).trim();
+        String cliVersion = Util.replaceMacro(Util.fixNull(spec.cliVersion), env).trim();
 
         FilePath runDirectory = resolveRunDirectory(workspace, workDirValue);
         runDirectory.mkdirs();
 
+        AiAgentResultCache.Checkout checkout = null;
+        String cacheKey = null;
+        if (project.isResultCacheEnabled() && !spec.isVariant()) {
+            checkout = AiAgentResultCache.Checkout.of(launcher, runDirectory, env, listener);
+            if (checkout != null) {
+                // Everything that changes how the agent is launched, so a hit reproduces this run.
+                cacheKey =
+                        AiAgentResultCache.key(
+                                build.getProject().getFullName(),
+                                checkout.commit,
+                                agentType.name(),
+                                model,
+                                prompt,
+                                project.getExtraArgs(),
+                                workDirValue,
+                                commandOverride,
+                                setupScript,
+                                project.getEnvironmentVariables(),
+                                spec.credentialsId,
+                                spec.apiKeyEnvVar,
+                                cliVersion,
+                                project.isCodexCustomConfigEnabled()
+                                        ? project.getCodexCustomConfigToml()
+                                        : "",
+                                "yolo=" + project.isYoloMode(),
+                                "approvals=" + project.isRequireApprovals(),
+                                "resume=" + project.isResumeSession());
+                AiAgentResultCache.Entry hit = AiAgentResultCache.get().lookup(cacheKey);
+                if (hit != null
+                        && replayCachedRun(
+                                launcher, listener, project, action, model, env, checkout, hit)) {
+                    return 0;
+                }
+            }
+        }
+
         Map<String, String> extraEnv =
                 new LinkedHashMap<>(
                         AiAgentCommandFactory.parseEnvironmentVariables(
                                 project.getEnvironmentVariables()));
 
         // Inject API key from Jenkins Credentials if configured
-        String credentialsId = Util.fixEmptyAndTrim(project.getApiCredentialsId());
+        String credentialsId = Util.fixEmptyAndTrim(spec.credentialsId);
         if (credentialsId != null) {
             StringCredentials cred =
                     CredentialsProvider.findCredentialById(
@@ -77,7 +145,7 @@ final class AiAgentExecutor {
                             (Run<?, ?>) build,
                             Collections.<DomainRequirement>emptyList());
             if (cred != null) {
-                String envVarName = project.getEffectiveApiKeyEnvVar();
+                String envVarName = spec.apiKeyEnvVar;
                 extraEnv.put(envVarName, cred.getSecret().getPlainText());
                 listener.getLogger()
                         .println(
@@ -95,7 +163,7 @@ final class AiAgentExecutor {
             }
         }
 
-        if (project.getAgentType() == AgentType.OPENCODE) {
+        if (agentType == AgentType.OPENCODE) {
             if (project.isYoloMode()) {
                 extraEnv.put(
                         "OPENCODE_PERMISSION",
@@ -110,11 +178,14 @@ final class AiAgentExecutor {
         extraEnv.put("AI_AGENT_MODEL", model);
         extraEnv.put("AI_AGENT_JOB", build.getProject().getFullName());
         extraEnv.put("AI_AGENT_BUILD_NUMBER", String.valueOf(build.getNumber()));
+        if (spec.isVariant()) {
+            extraEnv.put("AI_AGENT_VARIANT", spec.variant);
+        }
+        extraEnv.putAll(spec.variables);
 
-        String setupScript = Util.replaceMacro(Util.fixNull(project.getSetupScript()), env).trim();
         FilePath tempCodexHome = null;
 
-        if (project.getAgentType() == AgentType.CODEX && project.isCodexCustomConfigEnabled()) {
+        if (agentType == AgentType.CODEX && project.isCodexCustomConfigEnabled()) {
             tempCodexHome = prepareCodexHome(workspace, project.getCodexCustomConfigToml());
             String codexHome = tempCodexHome.getRemote();
             extraEnv.put("HOME", codexHome);
@@ -124,11 +195,42 @@ final class AiAgentExecutor {
                             "[ai-agent] Using job-scoped Codex config.toml from project configuration.");
         }
 
+        AgentCliInstaller.Installation cli = null;
+        if (commandOverride.isEmpty() && !cliVersion.isEmpty()) {
+            cli = installCli(build, launcher, listener, env, agentType, cliVersion);
+        }
+
+        String executable = cli == null ? null : cli.executable;
+        OpenCodeServerPool.Lease openCodeServer = null;
+        if (commandOverride.isEmpty()
+                && agentType == AgentType.OPENCODE
+                && project.isOpenCodeServerEnabled()) {
+            openCodeServer = attachOpenCodeServer(build, launcher, listener, extraEnv, executable);
+            if (openCodeServer != null) {
+                extraEnv.put(OpenCodeServerPool.PASSWORD_VARIABLE, openCodeServer.password);
+            }
+        }
+
+        AiAgentRunAction resumeFrom = null;
+        if (commandOverride.isEmpty() && project.isResumeSession() && !spec.isVariant()) {
+            resumeFrom = findResumableRun(build, project, tempCodexHome != null, listener);
+        }
+        String resumeSessionId = resumeFrom == null ? null : resumeFrom.getSessionId();
+
         List<String> agentCommand;
         if (!commandOverride.isEmpty()) {
             agentCommand = List.of(commandOverride);
         } else {
-            agentCommand = AiAgentCommandFactory.buildDefaultCommand(project, prompt);
+            agentCommand =
+                    AiAgentCommandFactory.buildDefaultCommand(
+                            project,
+                            prompt,
+                            new AiAgentCommandFactory.Options()
+                                    .agentType(agentType)
+                                    .model(spec.model)
+                                    .executable(executable)
+                                    .attachUrl(openCodeServer == null ? null : openCodeServer.url)
+                                    .resumeSession(resumeSessionId));
         }
 
         List<String> command;
@@ -157,23 +259,31 @@ final class AiAgentExecutor {
                         ? AiAgentCommandFactory.commandAsString(agentCommand)
                         : commandOverride;
         action.markStarted(
-                project.getAgentType(),
+                agentType,
                 model,
                 commandLine,
                 project.isYoloMode(),
                 project.isRequireApprovals());
+        if (resumeFrom != null) {
+            action.setResumedSession(resumeSessionId, resumeFrom.getRun().getNumber());
+        }
 
         File rawLogFile = action.getRawLogFile();
         Files.deleteIfExists(rawLogFile.toPath());
+        Files.deleteIfExists(AiAgentLogIndex.indexFileFor(rawLogFile).toPath());
 
-        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.register(build);
+        ExecutionRegistry.LiveExecution liveExecution =
+                ExecutionRegistry.register(build, spec.variant);
+        liveExecution.setMemoizeApprovals(project.isMemoizeApprovals());
         Duration approvalTimeout =
                 Duration.ofSeconds(Math.max(1, project.getApprovalTimeoutSeconds()));
 
         AgentOutputHandler outputHandler =
                 new AgentOutputHandler(
                         listener.getLogger(),
+                        spec.isVariant() ? "[" + spec.label + "] " : "",
                         rawLogFile,
+                        action,
                         liveExecution,
                         project.isRequireApprovals() && !project.isYoloMode(),
                         approvalTimeout);
@@ -181,7 +291,17 @@ final class AiAgentExecutor {
         OutputStream stderrSink = new NonClosingSynchronizedOutputStream(outputHandler);
 
         int exitCode;
+        AiAgentRateLimiter.Permit permit = null;
         try {
+            AiAgentRateLimiter limiter = AiAgentRateLimiter.get();
+            if (limiter.isEnabled()) {
+                permit = limiter.acquire(limiter.key(spec), build.getQueueId(), listener);
+                outputHandler.meter(permit);
+            }
+            if (cli != null) {
+                liveExecution.getTiming().cliReady(cli.millis, cli.cached);
+            }
+            liveExecution.getTiming().processStarted(System.currentTimeMillis());
             Proc proc =
                     launcher.launch()
                             .cmds(command)
@@ -192,10 +312,25 @@ final class AiAgentExecutor {
                             .quiet(true)
                             .start();
             outputHandler.attach(proc);
+            spec.attach(proc);
             exitCode = proc.join();
+            if (spec.isCancelled()) {
+                outputHandler.processKilled();
+            }
+        } catch (InterruptedException e) {
+            // join() killed the agent and took the interrupt with it.
+            outputHandler.processKilled();
+            throw e;
         } finally {
+            spec.detach();
             outputHandler.close();
-            ExecutionRegistry.unregister(build);
+            if (permit != null) {
+                permit.close();
+            }
+            ExecutionRegistry.unregister(build, spec.variant);
+            if (openCodeServer != null) {
+                openCodeServer.close();
+            }
             if (tempSetupScript != null) {
                 try {
                     tempSetupScript.delete();
@@ -221,10 +356,238 @@ final class AiAgentExecutor {
         if (outputHandler.wasDeniedByApproval()) {
             exitCode = 1;
         }
+        AgentUsageStats usageStats = action.getUsageStats();
+        action.setDiagnostics(liveExecution.getDiagnostics().snapshot());
+        action.setTimingStats(liveExecution.getTiming().snapshot(usageStats.getOutputTokens()));
+        action.setToolCallStats(liveExecution.getToolCalls().snapshot());
+        action.setUsageStats(usageStats);
+        action.setSessionId(outputHandler.getSessionId());
+        if (spec.isCancelled()) {
+            action.setCancelled();
+        }
         action.markCompleted(exitCode);
+        AiAgentSpendLedger.runCompleted(action);
+        AiAgentMetrics.buildCompleted(action.getAgentType(), action.getModel(), usageStats);
+        if (cacheKey != null && exitCode == 0) {
+            storeCachedRun(build, launcher, listener, action, env, checkout, cacheKey);
+        }
         return exitCode;
     }
 
+    /**
+     * Replays a cached run: applies its workspace changes, then copies its conversation into this
+     * build. Returns {@code false}, so the agent runs, if the changes do not apply.
+     */
+    private static boolean replayCachedRun(
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project,
+            AiAgentRunAction action,
+            String model,
+            Map<String, String> env,
+            AiAgentResultCache.Checkout checkout,
+            AiAgentResultCache.Entry hit)
+            throws IOException, InterruptedException {
+        if (!checkout.apply(launcher, env, hit.readPatch())) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Cached changes from "
+                                    + hit.source
+                                    + " do not apply; running the agent.");
+            return false;
+        }
+        action.markStarted(
+                project.getAgentType(),
+                model,
+                "(cached result of " + hit.source + ")",
+                project.isYoloMode(),
+                project.isRequireApprovals());
+        action.setCachedFrom(hit.source);
+        File rawLogFile = action.getRawLogFile();
+        AiAgentResultCache.copyLog(hit.getRawLogFile(), rawLogFile);
+        listener.getLogger()
+                .println("[ai-agent] Replaying cached result of " + hit.source + ":");
+        try (BufferedReader reader = Files.newBufferedReader(rawLogFile.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                listener.getLogger().println(line);
+            }
+        }
+        action.markCompleted(0);
+        AiAgentMetrics.buildCompleted(
+                action.getAgentType(), action.getModel(), action.getUsageStats());
+        return true;
+    }
+
+    /** Stores a successful run in the result cache; failures only cost the cache entry. */
+    private static void storeCachedRun(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentRunAction action,
+            Map<String, String> env,
+            AiAgentResultCache.Checkout checkout,
+            String cacheKey)
+            throws InterruptedException {
+        try {
+            byte[] patch = checkout.diff(launcher, env);
+            AiAgentResultCache.get()
+                    .store(cacheKey, action.getRawLogFile(), patch, build.getExternalizableId());
+            listener.getLogger().println("[ai-agent] Stored result in the result cache.");
+        } catch (IOException e) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Warning: could not store result in the result cache: "
+                                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the pinned CLI from the node tool cache, installing it on first use. Returns {@code
+     * null}, so the CLI on PATH is used, for agents that are not distributed through npm.
+     */
+    private static AgentCliInstaller.Installation installCli(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            EnvVars env,
+            AgentType agentType,
+            String version)
+            throws IOException, InterruptedException {
+        if (agentType.getNpmPackage() == null) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] "
+                                    + agentType.getDisplayName()
+                                    + " is not installed through npm; ignoring pinned CLI version "
+                                    + version
+                                    + " and using the CLI on PATH.");
+            return null;
+        }
+        Node node = build.getBuiltOn();
+        FilePath nodeRoot = node == null ? null : node.getRootPath();
+        if (nodeRoot == null) {
+            throw new IOException("Node root directory is not available for the CLI install.");
+        }
+        AgentCliInstaller.Installation cli =
+                AgentCliInstaller.install(nodeRoot, agentType, version, launcher, env, listener);
+        listener.getLogger()
+                .println(
+                        "[ai-agent] "
+                                + (cli.cached ? "Using cached " : "Installed ")
+                                + agentType.getDisplayName()
+                                + " "
+                                + version
+                                + " ("
+                                + Durations.format(cli.millis)
+                                + "): "
+                                + cli.executable);
+        return cli;
+    }
+
+    /** How many completed builds are searched for a session to resume. */
+    private static final int RESUME_SEARCH_DEPTH = 10;
+
+    /**
+     * Finds the single agent run of the latest successful build whose session this build can
+     * continue; the runs of multi-agent builds are skipped. Agents keep their sessions on the node
+     * they ran on, so the session is only resumed on the same node and with the same agent. Returns
+     * {@code null}, so a new session is started, otherwise.
+     */
+    private static AiAgentRunAction findResumableRun(
+            AbstractBuild<?, ?> build,
+            AiAgentProject project,
+            boolean temporaryHome,
+            BuildListener listener) {
+        if (temporaryHome) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Not resuming: the job-scoped Codex home, and the sessions"
+                                    + " in it, are deleted after each build.");
+            return null;
+        }
+        AbstractBuild<?, ?> previous = build.getPreviousCompletedBuild();
+        for (int i = 0; previous != null && i < RESUME_SEARCH_DEPTH; i++) {
+            AiAgentRunAction previousAction = AiAgentRunAction.getSingle(previous);
+            if (previousAction != null
+                    && Integer.valueOf(0).equals(previousAction.getExitCode())
+                    && !Util.fixNull(previousAction.getSessionId()).isEmpty()) {
+                String agentName = project.getAgentType().getDisplayName();
+                if (!agentName.equals(previousAction.getAgentType())) {
+                    listener.getLogger()
+                            .println(
+                                    "[ai-agent] Not resuming: build #"
+                                            + previous.getNumber()
+                                            + " ran a different agent.");
+                    return null;
+                }
+                if (!Util.fixNull(previous.getBuiltOnStr())
+                        .equals(Util.fixNull(build.getBuiltOnStr()))) {
+                    listener.getLogger()
+                            .println(
+                                    "[ai-agent] Not resuming: build #"
+                                            + previous.getNumber()
+                                            + " ran on a different node.");
+                    return null;
+                }
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] Resuming session "
+                                        + previousAction.getSessionId()
+                                        + " from build #"
+                                        + previous.getNumber());
+                return previousAction;
+            }
+            previous = previous.getPreviousCompletedBuild();
+        }
+        listener.getLogger()
+                .println("[ai-agent] No previous session to resume; starting a new one.");
+        return null;
+    }
+
+    /**
+     * Attaches the build to the node's warm OpenCode server, starting it if needed. The server
+     * gets the job's credentials and settings but not the per-build variables. Returns {@code
+     * null}, so the build runs a standalone {@code opencode run}, if the server cannot be started.
+     */
+    private static OpenCodeServerPool.Lease attachOpenCodeServer(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            Map<String, String> extraEnv,
+            String executable)
+            throws InterruptedException {
+        Map<String, String> serverEnv = new LinkedHashMap<>(extraEnv);
+        serverEnv.keySet().removeIf(name -> name.startsWith("AI_AGENT_"));
+        Node node = build.getBuiltOn();
+        String nodeName = node == null ? "" : node.getNodeName();
+        try {
+            OpenCodeServerPool.Lease lease =
+                    OpenCodeServerPool.acquire(
+                            nodeName,
+                            launcher,
+                            executable == null ? AgentType.OPENCODE.getExecutable() : executable,
+                            serverEnv,
+                            listener);
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] "
+                                    + (lease.started ? "Started" : "Reusing warm")
+                                    + " OpenCode server at "
+                                    + lease.url
+                                    + " ("
+                                    + Durations.format(lease.millis)
+                                    + ")");
+            return lease;
+        } catch (IOException e) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] WARNING: OpenCode server unavailable, running standalone: "
+                                    + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Builds the combined script that sources the setup preamble and then execs the agent command
      * in the same shell session, so exported variables flow through.
@@ -355,29 +718,96 @@ final class AiAgentExecutor {
         public void close() {}
     }
 
+    /**
+     * Tees agent output to the build log and the raw log, and gates tool calls on approval. The
+     * gate does not stop the agent: it keeps running while its approval is pending, and the lines
+     * it prints meanwhile are queued and replayed by a continuation once the decision arrives. Only
+     * once {@link #MAX_GATED_CHARS} are queued does the thread pumping the process output (on a
+     * remote agent, a controller channel thread) wait for the decision, which fills the agent's
+     * output pipe and so pauses the agent on its next write.
+     */
     private static final class AgentOutputHandler extends LineTransformationOutputStream {
+        private static final byte[] LINE_SEPARATOR =
+                System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+        /**
+         * Output queued behind a pending approval before the agent is paused; about the size of a
+         * pipe buffer, so a gated agent gets little further than it would writing to a full pipe.
+         */
+        private static final long MAX_GATED_CHARS =
+                SystemProperties.getLong(
+                        AiAgentExecutor.class.getName() + ".maxGatedChars", 64L * 1024);
+
+        /**
+         * Runs the continuations of decided approvals, which write and parse the queued output, off
+         * the shared Jenkins timer. At most {@code maxDecisionThreads} run at once; later decisions
+         * wait in the queue, and idle threads exit after a minute.
+         */
+        private static final ExecutorService DECISIONS = decisionExecutor();
+
+        private static ExecutorService decisionExecutor() {
+            int threads =
+                    Math.max(
+                            1,
+                            SystemProperties.getInteger(
+                                    AiAgentExecutor.class.getName() + ".maxDecisionThreads", 4));
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            1,
+                            TimeUnit.MINUTES,
+                            new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread thread =
+                                        new Thread(
+                                                r,
+                                                "AI agent approval continuation "
+                                                        + count.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
         private final OutputStream logger;
-        private final BufferedWriter rawWriter;
+        private final byte[] consolePrefix;
+        private final OutputStream rawOut;
+        private final AiAgentLogIndex.Writer rawIndex;
+        private long rawBytes;
+        private final AiAgentRunAction action;
         private final ExecutionRegistry.LiveExecution liveExecution;
         private final boolean approvalsEnabled;
         private final Duration approvalTimeout;
         private final AtomicLong lineCounter = new AtomicLong();
         private volatile Proc proc;
+        private volatile AiAgentRateLimiter.Permit permit;
         private volatile boolean deniedByApproval;
+        private volatile String sessionId;
+
+        // Guarded by this.
+        private CompletableFuture<ExecutionRegistry.ApprovalDecision> gate;
+        private final ArrayDeque<QueuedLine> gatedLines = new ArrayDeque<>();
+        private long gatedChars;
+        private boolean closed;
+        private IOException asyncFailure;
 
         AgentOutputHandler(
                 OutputStream logger,
+                String consolePrefix,
                 File rawLogFile,
+                AiAgentRunAction action,
                 ExecutionRegistry.LiveExecution liveExecution,
                 boolean approvalsEnabled,
                 Duration approvalTimeout)
                 throws IOException {
             this.logger = logger;
-            this.rawWriter =
-                    new BufferedWriter(
-                            new OutputStreamWriter(
-                                    Files.newOutputStream(rawLogFile.toPath()),
-                                    StandardCharsets.UTF_8));
+            this.consolePrefix = consolePrefix.getBytes(StandardCharsets.UTF_8);
+            this.rawOut = new BufferedOutputStream(Files.newOutputStream(rawLogFile.toPath()));
+            this.rawIndex = new AiAgentLogIndex.Writer(AiAgentLogIndex.indexFileFor(rawLogFile));
+            this.action = action;
             this.liveExecution = liveExecution;
             this.approvalsEnabled = approvalsEnabled;
             this.approvalTimeout = approvalTimeout;
@@ -387,32 +817,118 @@ final class AiAgentExecutor {
             this.proc = proc;
         }
 
+        /** Reports the tokens of every line to the rate limiter. */
+        void meter(AiAgentRateLimiter.Permit permit) {
+            this.permit = permit;
+        }
+
         boolean wasDeniedByApproval() {
             return deniedByApproval;
         }
 
+        /** The first session ID the agent printed, or {@code null}. */
+        String getSessionId() {
+            return sessionId;
+        }
+
         @Override
         protected synchronized void eol(byte[] b, int len) throws IOException {
+            // The line arrives with its EOL; strip it so the raw log holds exactly one physical
+            // line per agent line and the sidecar index lines up with parser line numbers.
+            while (len > 0 && (b[len - 1] == '\n' || b[len - 1] == '\r')) {
+                len--;
+            }
             String line = new String(b, 0, len, StandardCharsets.UTF_8);
-            if (line.endsWith("\r")) {
-                line = line.substring(0, line.length() - 1);
+            // Taken before any gating, so queued lines keep the time the agent printed them.
+            long arrivedAt = System.currentTimeMillis();
+            if (gate == null) {
+                processLine(line, arrivedAt);
+                return;
+            }
+            gatedLines.add(new QueuedLine(line, arrivedAt));
+            gatedChars += line.length();
+            liveExecution.getDiagnostics().queueDepth(gatedLines.size());
+            while (gate != null && gatedChars > MAX_GATED_CHARS) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while output was gated");
+                }
+            }
+        }
+
+        /** Writes a whole line to the build console, which other runs of the build share. */
+        private void console(byte[] line) throws IOException {
+            synchronized (logger) {
+                logger.write(line);
+                logger.flush();
             }
+        }
 
-            logger.write(line.getBytes(StandardCharsets.UTF_8));
-            logger.write('\n');
-            logger.flush();
+        private void processLine(String line, long arrivedAt) throws IOException {
+            AiAgentFlightRecorder.LineIngested event = new AiAgentFlightRecorder.LineIngested();
+            event.begin();
+            byte[] rawLine = line.getBytes(StandardCharsets.UTF_8);
+            // Runs of a multi-agent build share the console, so each line names its run and is
+            // written in one piece.
+            byte[] consoleLine = new byte[consolePrefix.length + rawLine.length + 1];
+            System.arraycopy(consolePrefix, 0, consoleLine, 0, consolePrefix.length);
+            System.arraycopy(rawLine, 0, consoleLine, consolePrefix.length, rawLine.length);
+            consoleLine[consoleLine.length - 1] = '\n';
+            long flushStart = System.nanoTime();
+            console(consoleLine);
 
-            rawWriter.write(line);
-            rawWriter.newLine();
-            rawWriter.flush();
+            // The index record is flushed first so every line visible in the raw log can be
+            // located by readers.
+            rawIndex.lineStarted(rawBytes, arrivedAt);
+            rawIndex.flush();
+            rawOut.write(rawLine);
+            rawOut.write(LINE_SEPARATOR);
+            rawOut.flush();
+            rawBytes += rawLine.length + LINE_SEPARATOR.length;
+            AiAgentMetrics.lineIngested(rawLine.length);
+            long parseStart = System.nanoTime();
+            // Parsed once here for the classifier, the session ID and the usage meter; the raw
+            // details are only pretty-printed when a viewer renders the event.
+            JSONObject json = AiAgentLogParser.parseJson(line);
+            AiAgentLogParser.ParsedLine parsedLine =
+                    AiAgentLogParser.parseLine(lineCounter.incrementAndGet(), line, json);
+            long parseEnd = System.nanoTime();
+            AiAgentMetrics.PARSE_SECONDS.observeNanos(parseEnd - parseStart);
+            liveExecution
+                    .getDiagnostics()
+                    .lineIngested(
+                            rawLine.length,
+                            parsedLine.getCategory(),
+                            parseStart - flushStart,
+                            parseEnd - parseStart);
+            liveExecution.getTiming().eventArrived(parsedLine.getCategory(), arrivedAt);
+            liveExecution.getToolCalls().record(parsedLine, arrivedAt);
+            if (sessionId == null) {
+                sessionId = AiAgentLogParser.extractSessionId(json);
+            }
+            AiAgentRateLimiter.Permit meteredBy = permit;
+            if (meteredBy != null) {
+                meteredBy.record(json);
+            }
 
-            if (!approvalsEnabled) {
+            if (event.shouldCommit()) {
+                event.build = liveExecution.getRunId();
+                event.bytes = rawLine.length;
+                event.flushNanos = parseStart - flushStart;
+                event.parseNanos = parseEnd - parseStart;
+                event.commit();
+            }
+            // After a denial the process is being killed; whatever it still printed is only logged.
+            if (!approvalsEnabled || deniedByApproval || closed || !parsedLine.isToolCall()) {
                 return;
             }
-
-            long id = lineCounter.incrementAndGet();
-            AiAgentLogParser.ParsedLine parsedLine = AiAgentLogParser.parseLine(id, line);
-            if (!parsedLine.isToolCall()) {
+            if (liveExecution.isPreApproved(parsedLine.getToolName(), parsedLine.getToolInput())) {
+                action.recordReusedApproval();
+                console(
+                        ("[ai-agent] Approval reused: " + parsedLine.getToolName() + "\n")
+                                .getBytes(StandardCharsets.UTF_8));
                 return;
             }
 
@@ -420,44 +936,164 @@ final class AiAgentExecutor {
                     liveExecution.createPendingApproval(
                             parsedLine.getToolCallIdOrGenerated(),
                             parsedLine.getToolName(),
+                            parsedLine.getToolInput(),
                             parsedLine.getSummary());
-            logger.write(
+            console(
                     ("[ai-agent] Approval required: "
                                     + pending.getToolName()
                                     + " ("
                                     + pending.getToolCallId()
                                     + ")\n")
                             .getBytes(StandardCharsets.UTF_8));
-            logger.flush();
-
-            ExecutionRegistry.ApprovalDecision decision =
-                    liveExecution.awaitDecision(pending, approvalTimeout);
-            if (!decision.isApproved()) {
-                deniedByApproval = true;
-                logger.write(
-                        ("[ai-agent] Approval denied: " + decision.getReason() + "\n")
-                                .getBytes(StandardCharsets.UTF_8));
-                logger.flush();
-                Proc currentProc = this.proc;
-                if (currentProc != null) {
-                    try {
-                        currentProc.kill();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+
+            gate = liveExecution.decisionFor(pending, approvalTimeout);
+            // Runs on the deciding thread, so approvals discarded when the build ends still count
+            // before the action is saved.
+            gate.thenAccept(
+                    decision -> {
+                        action.recordApproval(pending, decision);
+                        AiAgentMetrics.approvalDecided(pending.getWaitMillis());
+                        liveExecution.getDiagnostics().approvalWaited(pending.getWaitMillis());
+                        recordApprovalWait(pending, decision);
+                    });
+            gate.whenCompleteAsync(
+                    (decision, failure) -> onDecision(pending, decision, failure), DECISIONS);
+        }
+
+        private void recordApprovalWait(
+                ExecutionRegistry.PendingApproval pending,
+                ExecutionRegistry.ApprovalDecision decision) {
+            AiAgentFlightRecorder.ApprovalWait event = new AiAgentFlightRecorder.ApprovalWait();
+            if (event.shouldCommit()) {
+                event.build = liveExecution.getRunId();
+                event.tool = pending.getToolName();
+                event.source = decision.getSource().name();
+                event.approved = decision.isApproved();
+                event.waitMillis = pending.getWaitMillis();
+                event.commit();
+            }
+        }
+
+        /** Continuation of a gated tool call: reports the decision and replays queued output. */
+        private synchronized void onDecision(
+                ExecutionRegistry.PendingApproval pending,
+                ExecutionRegistry.ApprovalDecision decision,
+                Throwable failure) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (failure != null) {
+                    decision =
+                            ExecutionRegistry.ApprovalDecision.denied(
+                                    "approval failed: " + failure.getMessage(),
+                                    ExecutionRegistry.DecisionSource.ABORTED);
+                }
+                if (!decision.isApproved()) {
+                    deniedByApproval = true;
+                    console(
+                            ("[ai-agent] Approval denied: " + decision.getReason() + "\n")
+                                    .getBytes(StandardCharsets.UTF_8));
+                    Proc currentProc = this.proc;
+                    if (currentProc != null) {
+                        try {
+                            currentProc.kill();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
                     }
+                } else {
+                    console(
+                            ("[ai-agent] Approval granted: " + pending.getToolName() + "\n")
+                                    .getBytes(StandardCharsets.UTF_8));
                 }
-            } else {
-                logger.write(
-                        ("[ai-agent] Approval granted: " + pending.getToolName() + "\n")
-                                .getBytes(StandardCharsets.UTF_8));
-                logger.flush();
+                gate = null;
+                // A replayed line may open the next gate; the rest then waits for that one.
+                while (gate == null && !gatedLines.isEmpty()) {
+                    QueuedLine queued = gatedLines.poll();
+                    gatedChars -= queued.text.length();
+                    processLine(queued.text, queued.arrivedAt);
+                }
+            } catch (IOException e) {
+                if (asyncFailure == null) {
+                    asyncFailure = e;
+                }
+                gate = null;
+                gatedLines.clear();
+                gatedChars = 0;
+            } finally {
+                notifyAll();
             }
         }
 
         @Override
         public synchronized void close() throws IOException {
-            super.close();
-            rawWriter.close();
+            try {
+                // Flushes a trailing partial line, which may itself open a gate.
+                super.close();
+                awaitGate();
+            } finally {
+                closed = true;
+                try {
+                    rawOut.close();
+                } finally {
+                    rawIndex.close();
+                }
+            }
+            if (asyncFailure != null) {
+                throw asyncFailure;
+            }
+        }
+
+        /**
+         * The process can exit while an approval is still pending. The build then waits for the
+         * decision (or its timeout) so the queued output is logged and gated like the rest.
+         */
+        private void awaitGate() throws IOException {
+            while (gate != null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    releaseGate();
+                }
+            }
+        }
+
+        /**
+         * The agent was killed because the build was aborted or its run cancelled, so nobody is
+         * left to wait for a pending approval; closing the handler must not wait for it either.
+         */
+        synchronized void processKilled() throws IOException {
+            if (gate != null) {
+                releaseGate();
+            }
+        }
+
+        /** Logs what is left ungated; unregister() denies the open approval. */
+        private void releaseGate() throws IOException {
+            closed = true;
+            gate = null;
+            try {
+                for (QueuedLine queued : gatedLines) {
+                    processLine(queued.text, queued.arrivedAt);
+                }
+            } finally {
+                gatedLines.clear();
+                gatedChars = 0;
+                notifyAll();
+            }
+        }
+
+        /** A line held back behind a pending approval, with the time it arrived. */
+        private static final class QueuedLine {
+            final String text;
+            final long arrivedAt;
+
+            QueuedLine(String text, long arrivedAt) {
+                this.text = text;
+                this.arrivedAt = arrivedAt;
+            }
         }
     }
 }
@@ -0,0 +1,125 @@
+package io.jenkins.plugins.aiagentjob;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for the agent output pipeline, so a controller profile taken with JMC
+ * can attribute CPU and I/O to AI agent builds. Every event is disabled by default; enable the
+ * "Jenkins / AI Agent" category in a recording's settings to collect them. While disabled, creating
+ * and committing an event costs a flag check.
+ */
+final class AiAgentFlightRecorder {
+    private static final String PREFIX = "io.jenkins.plugins.aiagentjob.";
+
+    private AiAgentFlightRecorder() {}
+
+    @Name(PREFIX + "LineIngested")
+    @Label("AI Agent Line Ingested")
+    @Description("One agent output line written to the build log and the raw stream log")
+    @Category({"Jenkins", "AI Agent"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class LineIngested extends Event {
+        @Label("Build")
+        String build;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Flush Time")
+        @Timespan
+        long flushNanos;
+
+        @Label("Parse Time")
+        @Description("Time spent parsing and classifying the line")
+        @Timespan
+        long parseNanos;
+    }
+
+    @Name(PREFIX + "LogParsed")
+    @Label("AI Agent Log Parsed")
+    @Description("A full pass of the conversation parser over a raw stream log")
+    @Category({"Jenkins", "AI Agent"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class LogParsed extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Lines")
+        long lines;
+
+        @Label("Events")
+        long events;
+    }
+
+    @Name(PREFIX + "UsageStatsComputed")
+    @Label("AI Agent Usage Stats Computed")
+    @Description("A scan of a raw stream log for token usage and cost")
+    @Category({"Jenkins", "AI Agent"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class UsageStatsComputed extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Lines")
+        long lines;
+    }
+
+    @Name(PREFIX + "ProgressiveEvents")
+    @Label("AI Agent Progressive Events Request")
+    @Category({"Jenkins", "AI Agent"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ProgressiveEvents extends Event {
+        @Label("Build")
+        String build;
+
+        @Label("Start Cursor")
+        long start;
+
+        @Label("Next Cursor")
+        long nextStart;
+
+        @Label("Events Returned")
+        long events;
+
+        @Label("Response Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name(PREFIX + "ApprovalWait")
+    @Label("AI Agent Approval Wait")
+    @Description("Time a gated tool call waited for its decision")
+    @Category({"Jenkins", "AI Agent"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ApprovalWait extends Event {
+        @Label("Build")
+        String build;
+
+        @Label("Tool")
+        String tool;
+
+        @Label("Decision Source")
+        String source;
+
+        @Label("Approved")
+        boolean approved;
+
+        @Label("Wait")
+        @Timespan(Timespan.MILLISECONDS)
+        long waitMillis;
+    }
+}
@@ -0,0 +1,37 @@
+package io.jenkins.plugins.aiagentjob;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderProperty;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderPropertyDescriptor;
+
+import hudson.Extension;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Daily spend budget of a folder, covering the AI agent jobs at any depth below it; see {@link
+ * AiAgentSpendLedger}.
+ */
+public class AiAgentFolderProperty extends AbstractFolderProperty<AbstractFolder<?>> {
+    private final double dailyBudgetUsd;
+
+    @DataBoundConstructor
+    public AiAgentFolderProperty(double dailyBudgetUsd) {
+        this.dailyBudgetUsd = Math.max(0, dailyBudgetUsd);
+    }
+
+    /** Most the jobs below the folder may spend together per day, in USD; 0 for no limit. */
+    public double getDailyBudgetUsd() {
+        return dailyBudgetUsd;
+    }
+
+    @Extension
+    @Symbol("aiAgentBudget")
+    public static final class DescriptorImpl extends AbstractFolderPropertyDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "AI agent daily budget";
+        }
+    }
+}
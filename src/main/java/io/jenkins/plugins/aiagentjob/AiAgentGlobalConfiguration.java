@@ -0,0 +1,94 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+
+import jenkins.model.GlobalConfiguration;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Controller-wide settings of AI agent jobs, under <em>Manage Jenkins » System</em>. Changes apply
+ * to builds already in the queue and to runs waiting for a slot.
+ */
+@Extension
+@Symbol("aiAgent")
+public class AiAgentGlobalConfiguration extends GlobalConfiguration {
+    private int maxConcurrentRuns;
+    private long tokensPerMinute;
+    private boolean perModelQuotas = true;
+    private double dailyBudgetUsd;
+
+    /** Shared by all builds, so it outlives configuration changes. */
+    private final transient AiAgentRateLimiter rateLimiter = new AiAgentRateLimiter(0, 0, true);
+
+    public AiAgentGlobalConfiguration() {
+        load();
+        applyRateLimits();
+    }
+
+    public static AiAgentGlobalConfiguration get() {
+        return ExtensionList.lookupSingleton(AiAgentGlobalConfiguration.class);
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Jobs";
+    }
+
+    /** Most agent runs per provider quota at the same time; 0 for no limit. */
+    public int getMaxConcurrentRuns() {
+        return maxConcurrentRuns;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentRuns(int maxConcurrentRuns) {
+        this.maxConcurrentRuns = Math.max(0, maxConcurrentRuns);
+        save();
+        applyRateLimits();
+    }
+
+    /** Tokens per minute the runs of one provider quota may use together; 0 for no limit. */
+    public long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    @DataBoundSetter
+    public void setTokensPerMinute(long tokensPerMinute) {
+        this.tokensPerMinute = Math.max(0, tokensPerMinute);
+        save();
+        applyRateLimits();
+    }
+
+    /** Whether runs of different models on the same credential have separate quotas. */
+    public boolean isPerModelQuotas() {
+        return perModelQuotas;
+    }
+
+    @DataBoundSetter
+    public void setPerModelQuotas(boolean perModelQuotas) {
+        this.perModelQuotas = perModelQuotas;
+        save();
+        applyRateLimits();
+    }
+
+    /** Most all AI agent jobs together may spend per day, in USD; 0 for no limit. */
+    public double getDailyBudgetUsd() {
+        return dailyBudgetUsd;
+    }
+
+    @DataBoundSetter
+    public void setDailyBudgetUsd(double dailyBudgetUsd) {
+        this.dailyBudgetUsd = Math.max(0, dailyBudgetUsd);
+        save();
+    }
+
+    AiAgentRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    private void applyRateLimits() {
+        rateLimiter.setLimits(maxConcurrentRuns, tokensPerMinute, perModelQuotas);
+    }
+}
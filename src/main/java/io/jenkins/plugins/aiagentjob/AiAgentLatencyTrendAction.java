@@ -0,0 +1,155 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+
+import jenkins.model.TransientActionFactory;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Job-level latency trend at {@code job/<name>/ai-agent-latency/}: time to first event, time to
+ * first assistant text, per-turn latency and output tokens per second for each recent build, newest
+ * first, with percentiles across them, to spot a slower model, CLI or agent host.
+ */
+public class AiAgentLatencyTrendAction implements Action {
+    private final AiAgentProject project;
+
+    AiAgentLatencyTrendAction(AiAgentProject project) {
+        this.project = project;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Latency Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-latency";
+    }
+
+    /** JSON trend of the last {@code builds} builds (default 50, at most 500). */
+    @GET
+    public void doIndex(StaplerRequest2 request, StaplerResponse2 response) throws IOException {
+        project.checkPermission(Item.READ);
+        int builds = AiAgentApprovalMetricsAction.parseBuilds(request.getParameter("builds"));
+        AiAgentApprovalApi.writeJson(response, trend(builds));
+    }
+
+    JSONObject trend(int builds) {
+        JSONArray rows = new JSONArray();
+        Samples startup = new Samples();
+        Samples firstText = new Samples();
+        Samples turnLatencies = new Samples();
+        long outputTokens = 0;
+        long generationMillis = 0;
+        int scanned = 0;
+        int timedBuilds = 0;
+        for (Run<?, ?> run : project.getBuilds().limit(builds)) {
+            scanned++;
+            boolean timed = false;
+            // Multi-agent builds have one action, and one row, per agent run.
+            for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+                AgentTimingStats timing = action.getTimingStats();
+                if (timing == null || !timing.hasData()) {
+                    continue;
+                }
+                timed = true;
+                JSONObject row = timing.toJson();
+                row.put("number", run.getNumber());
+                row.put("timestamp", run.getTimeInMillis());
+                if (action.getVariant() != null) {
+                    row.put("variant", action.getVariant());
+                }
+                rows.add(row);
+
+                startup.add(timing.getStartupMillis());
+                if (timing.getFirstTextMillis() >= 0) {
+                    firstText.add(timing.getFirstTextMillis());
+                }
+                for (long latency : timing.getTurnLatencies()) {
+                    turnLatencies.add(latency);
+                }
+                if (timing.getOutputTokens() > 0 && timing.getGenerationMillis() > 0) {
+                    outputTokens += timing.getOutputTokens();
+                    generationMillis += timing.getGenerationMillis();
+                }
+            }
+            if (timed) {
+                timedBuilds++;
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("job", project.getFullName());
+        result.put("builds", scanned);
+        result.put("timedBuilds", timedBuilds);
+        result.put("startupMillis", percentiles(startup.toArray()));
+        result.put("firstTextMillis", percentiles(firstText.toArray()));
+        result.put("turnLatencyMillis", percentiles(turnLatencies.toArray()));
+        result.put(
+                "outputTokensPerSecond",
+                generationMillis <= 0
+                        ? 0
+                        : Math.round(outputTokens * 100_000.0 / generationMillis) / 100.0);
+        result.put("trend", rows);
+        return result;
+    }
+
+    private static JSONObject percentiles(long[] values) {
+        JSONObject json = new JSONObject();
+        json.put("p50", AgentTimingStats.percentile(values, 0.5));
+        json.put("p95", AgentTimingStats.percentile(values, 0.95));
+        json.put("count", values.length);
+        return json;
+    }
+
+    /** Latency samples collected across builds; grows by doubling. */
+    private static final class Samples {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /** Adds the latency trend endpoint to every AI agent job. */
+    @Extension
+    public static final class Factory extends TransientActionFactory<AiAgentProject> {
+        @Override
+        public Class<AiAgentProject> type() {
+            return AiAgentProject.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(AiAgentProject target) {
+            return Collections.singletonList(new AiAgentLatencyTrendAction(target));
+        }
+    }
+}
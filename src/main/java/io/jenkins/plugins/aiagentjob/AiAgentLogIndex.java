@@ -0,0 +1,215 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Sidecar index for the raw JSONL log that maps line numbers to byte offsets, so a single event
+ * can be re-read without scanning the log from the start. The file starts with a small header
+ * (magic number and record size) followed by one fixed-size record per log line: the byte offset
+ * and the wall clock time the line arrived from the agent.
+ */
+final class AiAgentLogIndex {
+    /** Index of the build's single run; a variant's index is named after its own raw log. */
+    static final String INDEX_FILE = "ai-agent-stream.idx";
+
+    private static final int MAGIC = 0x41494458; // "AIDX"
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 16;
+
+    private AiAgentLogIndex() {}
+
+    /**
+     * Location of the index that belongs to {@code rawLogFile}: next to it, with {@code .idx} in
+     * place of {@code .jsonl}, so the raw logs of a multi-agent build each have their own index.
+     */
+    static File indexFileFor(File rawLogFile) {
+        String name = rawLogFile.getName();
+        if (name.endsWith(".jsonl")) {
+            name = name.substring(0, name.length() - ".jsonl".length());
+        }
+        return new File(rawLogFile.getParentFile(), name + ".idx");
+    }
+
+    /**
+     * Returns the byte offset of the given 1-based line, or {@code -1} when the index is missing,
+     * unreadable or does not cover that line yet.
+     */
+    static long offsetOf(File indexFile, long lineNumber) {
+        try (Reader reader = Reader.open(indexFile)) {
+            return reader == null ? -1 : reader.offsetOf(lineNumber);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the epoch millisecond at which the given 1-based line arrived, or {@code -1} when the
+     * index is missing, unreadable or does not cover that line yet.
+     */
+    static long arrivalOf(File indexFile, long lineNumber) {
+        try (Reader reader = Reader.open(indexFile)) {
+            return reader == null ? -1 : reader.arrivalOf(lineNumber);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads one line of the raw log. Uses the sidecar index when available and falls back to a
+     * sequential scan for logs captured before the index existed. Returns {@code null} if the line
+     * does not exist.
+     */
+    static String readLine(File rawLogFile, long lineNumber) throws IOException {
+        if (lineNumber < 1 || !rawLogFile.isFile()) {
+            return null;
+        }
+        long offset = offsetOf(indexFileFor(rawLogFile), lineNumber);
+        if (offset >= 0) {
+            return readLineAt(rawLogFile, offset);
+        }
+        try (BufferedReader reader =
+                Files.newBufferedReader(rawLogFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            long current = 0;
+            while ((line = reader.readLine()) != null) {
+                if (++current == lineNumber) {
+                    return line;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String readLineAt(File rawLogFile, long offset) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(rawLogFile, "r")) {
+            if (offset >= in.length()) {
+                return null;
+            }
+            in.seek(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                int end = -1;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        end = i;
+                        break;
+                    }
+                }
+                if (end >= 0) {
+                    line.write(buffer, 0, end);
+                    break;
+                }
+                line.write(buffer, 0, read);
+            }
+            byte[] bytes = line.toByteArray();
+            int len = bytes.length;
+            if (len > 0 && bytes[len - 1] == '\r') {
+                len--;
+            }
+            return new String(bytes, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Random access to an index for several lookups without reopening it. */
+    static final class Reader implements Closeable {
+        private final RandomAccessFile in;
+
+        private Reader(RandomAccessFile in) {
+            this.in = in;
+        }
+
+        /** Opens {@code indexFile}, or returns {@code null} if it is missing or not an index. */
+        static Reader open(File indexFile) throws IOException {
+            if (indexFile == null || !indexFile.isFile()) {
+                return null;
+            }
+            RandomAccessFile in = new RandomAccessFile(indexFile, "r");
+            try {
+                if (in.length() < HEADER_BYTES
+                        || in.readInt() != MAGIC
+                        || in.readInt() != RECORD_BYTES) {
+                    in.close();
+                    return null;
+                }
+                return new Reader(in);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /** Byte offset of the 1-based line, or {@code -1} if the index does not cover it. */
+        long offsetOf(long lineNumber) {
+            return readField(lineNumber, 0);
+        }
+
+        /** Arrival time of the 1-based line, or {@code -1} if the index does not cover it. */
+        long arrivalOf(long lineNumber) {
+            return readField(lineNumber, 8);
+        }
+
+        private long readField(long lineNumber, int fieldOffset) {
+            if (lineNumber < 1) {
+                return -1;
+            }
+            try {
+                // The length is re-read on every lookup because the writer may still be appending.
+                long position = HEADER_BYTES + (lineNumber - 1) * RECORD_BYTES;
+                if (position + RECORD_BYTES > in.length()) {
+                    return -1;
+                }
+                in.seek(position + fieldOffset);
+                return in.readLong();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** Appends one record per raw log line while the agent is running. */
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        Writer(File indexFile) throws IOException {
+            this.out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(indexFile.toPath())));
+            out.writeInt(MAGIC);
+            out.writeInt(RECORD_BYTES);
+        }
+
+        /**
+         * Records that the next raw log line starts at {@code byteOffset} and arrived from the
+         * agent at {@code arrivedAtMillis}.
+         */
+        void lineStarted(long byteOffset, long arrivedAtMillis) throws IOException {
+            out.writeLong(byteOffset);
+            out.writeLong(arrivedAtMillis);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -26,12 +26,14 @@ final class AiAgentLogParser {
         if (rawLogFile == null || !rawLogFile.exists()) {
             return Collections.emptyList();
         }
+        AiAgentFlightRecorder.LogParsed event = new AiAgentFlightRecorder.LogParsed();
+        event.begin();
         List<EventView> events = new ArrayList<>();
         String lastAssistantContent = "";
+        long idx = 0;
         try (BufferedReader reader =
                 Files.newBufferedReader(rawLogFile.toPath(), StandardCharsets.UTF_8)) {
             String line;
-            long idx = 0;
             while ((line = reader.readLine()) != null) {
                 idx++;
                 EventView ev = parseLine(idx, line).toEventView();
@@ -41,44 +43,116 @@ final class AiAgentLogParser {
                     lastAssistantContent = ev.getContent();
                 }
 
-                if ("result".equals(ev.getCategory())
-                        && !ev.getContent().isEmpty()
-                        && !lastAssistantContent.isEmpty()
-                        && ev.getContent().contains(lastAssistantContent)) {
-                    ev =
-                            new EventView(
-                                    ev.getId(),
-                                    ev.getCategory(),
-                                    ev.getLabel(),
-                                    "",
-                                    "",
-                                    "",
-                                    ev.getRawDetails(),
-                                    ev.getTimestamp());
-                }
-
+                ev = withoutRepeatedResult(ev, lastAssistantContent);
                 if (!ev.isEmpty()) {
                     events.add(ev);
                 }
             }
         }
+        if (event.shouldCommit()) {
+            event.file = rawLogFile.getPath();
+            event.lines = idx;
+            event.events = events.size();
+            event.commit();
+        }
         return events;
     }
 
+    /**
+     * The agent's last message: the text of the last assistant or result line with any, or an
+     * empty string. Serves as the summary of a run that another agent builds on.
+     */
+    static String finalMessage(File rawLogFile) throws IOException {
+        if (rawLogFile == null || !rawLogFile.exists()) {
+            return "";
+        }
+        String last = "";
+        long idx = 0;
+        try (BufferedReader reader =
+                Files.newBufferedReader(rawLogFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ParsedLine parsed = parseLine(++idx, line);
+                String category = parsed.getCategory();
+                if ("assistant".equals(category) || "result".equals(category)) {
+                    String content = parsed.toEventView().getContent();
+                    if (!content.isEmpty()) {
+                        last = content;
+                    }
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Agents such as Claude Code repeat the final assistant message verbatim in their result line.
+     * Returns the result event with its content cleared in that case so the text is shown once.
+     */
+    static EventView withoutRepeatedResult(EventView ev, String lastAssistantContent) {
+        if ("result".equals(ev.getCategory())
+                && !ev.getContent().isEmpty()
+                && !lastAssistantContent.isEmpty()
+                && ev.getContent().contains(lastAssistantContent)) {
+            return new EventView(
+                    ev.getId(),
+                    ev.getCategory(),
+                    ev.getLabel(),
+                    "",
+                    "",
+                    "",
+                    ev.getRawDetails(),
+                    ev.getTimestamp());
+        }
+        return ev;
+    }
+
     static ParsedLine parseLine(long lineNumber, String line) {
-        if (line == null) {
-            return ParsedLine.raw(lineNumber, "");
+        return parseLine(lineNumber, line, parseJson(line));
+    }
+
+    /**
+     * Classifies a line whose JSON the caller already parsed with {@link #parseJson}, so live
+     * ingestion parses each line once for the parser, the session ID and the usage meter.
+     */
+    static ParsedLine parseLine(long lineNumber, String line, JSONObject json) {
+        if (json != null) {
+            return classifyJson(lineNumber, json);
         }
-        String trimmed = line.trim();
-        if (trimmed.isEmpty()) {
-            return ParsedLine.raw(lineNumber, "");
+        return ParsedLine.raw(lineNumber, line == null ? "" : line.trim());
+    }
+
+    /** The JSON object a line holds, or {@code null} for plain text and other JSON values. */
+    static JSONObject parseJson(String line) {
+        return line == null ? null : tryParseJson(line.trim());
+    }
+
+    /**
+     * The agent session a line announces, or {@code null}. Claude Code, Cursor Agent and Gemini CLI
+     * print {@code session_id}, OpenCode prints {@code sessionID} on every event, and Codex prints
+     * a {@code thread.started} event with {@code thread_id}. Lines without one of those keys are
+     * rejected before parsing.
+     */
+    static String extractSessionId(String line) {
+        if (line == null
+                || !(line.contains("session_id")
+                        || line.contains("sessionID")
+                        || line.contains("thread_id"))) {
+            return null;
         }
+        return extractSessionId(tryParseJson(line.trim()));
+    }
 
-        JSONObject json = tryParseJson(trimmed);
+    /** The agent session a parsed line announces, or {@code null}. */
+    static String extractSessionId(JSONObject json) {
         if (json == null) {
-            return ParsedLine.raw(lineNumber, trimmed);
+            return null;
+        }
+        String id = firstNonEmpty(json, "session_id", "sessionID");
+        if (id.isEmpty() && "thread.started".equals(normalize(firstNonEmpty(json, "type")))) {
+            id = firstNonEmpty(json, "thread_id");
         }
-        return classifyJson(lineNumber, json);
+        return id.isEmpty() ? null : id;
     }
 
     private static ParsedLine classifyJson(long lineNumber, JSONObject json) {
@@ -86,7 +160,6 @@ final class AiAgentLogParser {
         String role = firstNonEmpty(json, "role");
         String typeLower = normalize(type);
         String roleLower = normalize(role);
-        String rawDetails = json.toString(2);
 
         // --- Claude Code stream-json ---
 
@@ -95,7 +168,7 @@ final class AiAgentLogParser {
             String modelField = firstNonEmpty(json, "model");
             String label = "System" + (!subtype.isEmpty() ? " " + subtype : "");
             String content = !modelField.isEmpty() ? "Model: " + modelField : extractText(json);
-            return ParsedLine.system(lineNumber, label, content, rawDetails);
+            return ParsedLine.system(lineNumber, label, content, json);
         }
 
         if (typeLower.equals("result")) {
@@ -119,19 +192,19 @@ final class AiAgentLogParser {
                     isError ? "error" : "result",
                     label + suffix,
                     resultText,
-                    rawDetails);
+                    json);
         }
 
         if (typeLower.equals("init")) {
             String modelField = firstNonEmpty(json, "model");
             if (!modelField.isEmpty()) {
-                return ParsedLine.system(lineNumber, "System", "Model: " + modelField, rawDetails);
+                return ParsedLine.system(lineNumber, "System", "Model: " + modelField, json);
             }
             String initText = extractText(json);
             if (initText.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.system(lineNumber, "System", initText, rawDetails);
+            return ParsedLine.system(lineNumber, "System", initText, json);
         }
 
         if (typeLower.equals("step_start")
@@ -140,7 +213,7 @@ final class AiAgentLogParser {
                 || typeLower.equals("text")) {
             JSONObject part = json.optJSONObject("part");
             if (part != null) {
-                return classifyOpenCodePartEvent(lineNumber, typeLower, part, rawDetails);
+                return classifyOpenCodePartEvent(lineNumber, typeLower, part, json);
             }
         }
 
@@ -151,11 +224,11 @@ final class AiAgentLogParser {
                 JSONArray contentArr = message.optJSONArray("content");
                 if (contentArr != null && contentArr.size() > 0) {
                     return classifyClaudeContentArray(
-                            lineNumber, typeLower, contentArr, rawDetails);
+                            lineNumber, typeLower, contentArr, json);
                 }
                 String msgText = extractText(message);
                 String cat = typeLower.equals("assistant") ? "assistant" : "user";
-                return ParsedLine.message(lineNumber, cat, capitalize(cat), msgText, rawDetails);
+                return ParsedLine.message(lineNumber, cat, capitalize(cat), msgText, json);
             }
         }
 
@@ -163,9 +236,9 @@ final class AiAgentLogParser {
         if (typeLower.equals("stream_event")) {
             JSONObject event = json.optJSONObject("event");
             if (event != null) {
-                return classifyClaudeStreamEvent(lineNumber, event, rawDetails);
+                return classifyClaudeStreamEvent(lineNumber, event, json);
             }
-            return ParsedLine.system(lineNumber, "Stream event", extractText(json), rawDetails);
+            return ParsedLine.system(lineNumber, "Stream event", extractText(json), json);
         }
 
         // Claude: standalone tool_use
@@ -183,7 +256,7 @@ final class AiAgentLogParser {
             if (toolInput.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.toolCall(lineNumber, toolName, toolInput, rawDetails, toolCallId);
+            return ParsedLine.toolCall(lineNumber, toolName, toolInput, json, toolCallId);
         }
 
         // Claude: standalone tool_result
@@ -194,13 +267,13 @@ final class AiAgentLogParser {
             if (output.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.toolResult(lineNumber, toolName, output, rawDetails, toolCallId);
+            return ParsedLine.toolResult(lineNumber, toolName, output, json, toolCallId);
         }
 
         // --- Codex JSONL ---
         JSONObject item = json.optJSONObject("item");
         if (item != null) {
-            return classifyCodexItem(lineNumber, typeLower, item, rawDetails);
+            return classifyCodexItem(lineNumber, typeLower, item, json);
         }
 
         if (typeLower.startsWith("thread.") || typeLower.startsWith("turn.")) {
@@ -208,25 +281,25 @@ final class AiAgentLogParser {
             if (text.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.system(lineNumber, "System", text, rawDetails);
+            return ParsedLine.system(lineNumber, "System", text, json);
         }
 
         // --- Cursor Agent ---
         if (typeLower.equals("thinking")) {
             String thinkText = firstNonEmpty(json, "text");
-            return ParsedLine.thinking(lineNumber, thinkText, rawDetails);
+            return ParsedLine.thinking(lineNumber, thinkText, json);
         }
 
         if (typeLower.equals("tool_call")) {
-            return classifyCursorToolCall(lineNumber, json, rawDetails);
+            return classifyCursorToolCall(lineNumber, json, json);
         }
 
         // --- Generic fallback ---
-        return classifyFallback(lineNumber, typeLower, roleLower, json, rawDetails);
+        return classifyFallback(lineNumber, typeLower, roleLower, json, json);
     }
 
     private static ParsedLine classifyClaudeContentArray(
-            long lineNumber, String parentType, JSONArray contentArr, String rawDetails) {
+            long lineNumber, String parentType, JSONArray contentArr, JSONObject raw) {
         // Scan for tool_use first
         for (int i = 0; i < contentArr.size(); i++) {
             Object obj = contentArr.get(i);
@@ -238,7 +311,7 @@ final class AiAgentLogParser {
                 String toolName = firstNonEmpty(ci, "name");
                 String toolCallId = firstNonEmpty(ci, "id");
                 String toolInput = extractToolInput(ci.optJSONObject("input"), toolName);
-                return ParsedLine.toolCall(lineNumber, toolName, toolInput, rawDetails, toolCallId);
+                return ParsedLine.toolCall(lineNumber, toolName, toolInput, raw, toolCallId);
             }
         }
         // Then tool_result blocks wrapped in Claude "user" turns
@@ -254,7 +327,7 @@ final class AiAgentLogParser {
                     return ParsedLine.raw(lineNumber, "");
                 }
                 return ParsedLine.toolResult(
-                        lineNumber, toolName, toolOutput, rawDetails, toolCallId);
+                        lineNumber, toolName, toolOutput, raw, toolCallId);
             }
         }
         // Then thinking
@@ -264,7 +337,7 @@ final class AiAgentLogParser {
             JSONObject ci = (JSONObject) obj;
             if ("thinking".equals(normalize(ci.optString("type")))) {
                 String thinking = firstNonEmpty(ci, "thinking");
-                return ParsedLine.thinking(lineNumber, thinking, rawDetails);
+                return ParsedLine.thinking(lineNumber, thinking, raw);
             }
         }
         // Default: extract all text content
@@ -286,11 +359,11 @@ final class AiAgentLogParser {
             return ParsedLine.raw(lineNumber, "");
         }
         return ParsedLine.message(
-                lineNumber, cat, capitalize(cat), textBuilder.toString(), rawDetails);
+                lineNumber, cat, capitalize(cat), textBuilder.toString(), raw);
     }
 
     private static ParsedLine classifyClaudeStreamEvent(
-            long lineNumber, JSONObject event, String rawDetails) {
+            long lineNumber, JSONObject event, JSONObject raw) {
         String eventType = normalize(event.optString("type"));
 
         if (eventType.equals("content_block_start") || eventType.equals("content_block_delta")) {
@@ -301,7 +374,7 @@ final class AiAgentLogParser {
                 String blockType = normalize(source.optString("type"));
                 if (blockType.contains("thinking")) {
                     return ParsedLine.thinking(
-                            lineNumber, firstNonEmpty(source, "thinking", "text"), rawDetails);
+                            lineNumber, firstNonEmpty(source, "thinking", "text"), raw);
                 }
                 if (blockType.contains("text")) {
                     return ParsedLine.message(
@@ -309,7 +382,7 @@ final class AiAgentLogParser {
                             "assistant",
                             "Assistant",
                             firstNonEmpty(source, "text"),
-                            rawDetails);
+                            raw);
                 }
             }
         }
@@ -318,15 +391,15 @@ final class AiAgentLogParser {
             if (message != null) {
                 String model = firstNonEmpty(message, "model");
                 if (!model.isEmpty()) {
-                    return ParsedLine.system(lineNumber, "System", "Model: " + model, rawDetails);
+                    return ParsedLine.system(lineNumber, "System", "Model: " + model, raw);
                 }
             }
         }
-        return ParsedLine.system(lineNumber, "Stream event", eventType, rawDetails);
+        return ParsedLine.system(lineNumber, "Stream event", eventType, raw);
     }
 
     private static ParsedLine classifyCodexItem(
-            long lineNumber, String typeLower, JSONObject item, String rawDetails) {
+            long lineNumber, String typeLower, JSONObject item, JSONObject raw) {
         String itemType = normalize(item.optString("type"));
         String status = normalize(item.optString("status"));
 
@@ -335,14 +408,14 @@ final class AiAgentLogParser {
             if (itemText.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.thinking(lineNumber, itemText, rawDetails);
+            return ParsedLine.thinking(lineNumber, itemText, raw);
         }
         if (itemType.contains("agent_message") || itemType.contains("message")) {
             String itemText = extractText(item);
             if (itemText.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.message(lineNumber, "assistant", "Assistant", itemText, rawDetails);
+            return ParsedLine.message(lineNumber, "assistant", "Assistant", itemText, raw);
         }
         if (itemType.contains("command_execution")
                 || itemType.contains("mcp_tool_call")
@@ -358,23 +431,23 @@ final class AiAgentLogParser {
                 if (toolInput.isEmpty()) {
                     return ParsedLine.raw(lineNumber, "");
                 }
-                return ParsedLine.toolCall(lineNumber, toolName, toolInput, rawDetails, toolCallId);
+                return ParsedLine.toolCall(lineNumber, toolName, toolInput, raw, toolCallId);
             }
             String toolOutput = extractCodexToolOutput(item);
             if (toolOutput.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.toolResult(lineNumber, toolName, toolOutput, rawDetails, toolCallId);
+            return ParsedLine.toolResult(lineNumber, toolName, toolOutput, raw, toolCallId);
         }
         String itemText = extractText(item);
         if (itemText.isEmpty()) {
             return ParsedLine.raw(lineNumber, "");
         }
-        return ParsedLine.system(lineNumber, "System", itemText, rawDetails);
+        return ParsedLine.system(lineNumber, "System", itemText, raw);
     }
 
     private static ParsedLine classifyOpenCodePartEvent(
-            long lineNumber, String typeLower, JSONObject part, String rawDetails) {
+            long lineNumber, String typeLower, JSONObject part, JSONObject raw) {
         String partType = normalize(part.optString("type"));
 
         if (typeLower.equals("text") || partType.equals("text")) {
@@ -382,11 +455,11 @@ final class AiAgentLogParser {
             if (text.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.message(lineNumber, "assistant", "Assistant", text, rawDetails);
+            return ParsedLine.message(lineNumber, "assistant", "Assistant", text, raw);
         }
 
         if (typeLower.equals("tool_use") || partType.equals("tool")) {
-            return classifyOpenCodeToolPart(lineNumber, part, rawDetails);
+            return classifyOpenCodeToolPart(lineNumber, part, raw);
         }
 
         if (typeLower.equals("step_start")
@@ -400,11 +473,11 @@ final class AiAgentLogParser {
         if (partText.isEmpty()) {
             return ParsedLine.raw(lineNumber, "");
         }
-        return ParsedLine.system(lineNumber, "System", partText, rawDetails);
+        return ParsedLine.system(lineNumber, "System", partText, raw);
     }
 
     private static ParsedLine classifyOpenCodeToolPart(
-            long lineNumber, JSONObject part, String rawDetails) {
+            long lineNumber, JSONObject part, JSONObject raw) {
         String toolName = firstNonEmpty(part, "tool", "tool_name", "name");
         String toolCallId =
                 firstNonEmpty(part, "callID", "callId", "call_id", "tool_call_id", "id");
@@ -418,7 +491,7 @@ final class AiAgentLogParser {
         String status = normalize(firstNonEmpty(state, "status"));
 
         if (!toolOutput.isEmpty()) {
-            return ParsedLine.toolResult(lineNumber, toolName, toolOutput, rawDetails, toolCallId);
+            return ParsedLine.toolResult(lineNumber, toolName, toolOutput, raw, toolCallId);
         }
         if ("completed".equals(status)) {
             return ParsedLine.raw(lineNumber, "");
@@ -426,11 +499,11 @@ final class AiAgentLogParser {
         if (toolInput.isEmpty()) {
             return ParsedLine.raw(lineNumber, "");
         }
-        return ParsedLine.toolCall(lineNumber, toolName, toolInput, rawDetails, toolCallId);
+        return ParsedLine.toolCall(lineNumber, toolName, toolInput, raw, toolCallId);
     }
 
     private static ParsedLine classifyCursorToolCall(
-            long lineNumber, JSONObject json, String rawDetails) {
+            long lineNumber, JSONObject json, JSONObject raw) {
         String subtype = normalize(firstNonEmpty(json, "subtype"));
         String callId = firstNonEmpty(json, "call_id", "tool_call_id", "tool_id");
         String toolName = extractCursorToolName(json);
@@ -448,15 +521,15 @@ final class AiAgentLogParser {
             if (input.isEmpty()) {
                 return ParsedLine.raw(lineNumber, "");
             }
-            return ParsedLine.toolCall(lineNumber, toolName, input, rawDetails, callId);
+            return ParsedLine.toolCall(lineNumber, toolName, input, raw, callId);
         }
 
         if (subtype.equals("completed")) {
             String output = extractCursorToolOutput(tc, toolName);
-            return ParsedLine.toolResult(lineNumber, toolName, output, rawDetails, callId);
+            return ParsedLine.toolResult(lineNumber, toolName, output, raw, callId);
         }
         String input = extractCursorToolInput(tc, toolName);
-        return ParsedLine.toolCall(lineNumber, toolName, input, rawDetails, callId);
+        return ParsedLine.toolCall(lineNumber, toolName, input, raw, callId);
     }
 
     private static ParsedLine classifyFallback(
@@ -464,34 +537,34 @@ final class AiAgentLogParser {
             String typeLower,
             String roleLower,
             JSONObject json,
-            String rawDetails) {
+            JSONObject raw) {
         String text = extractText(json);
 
         if (typeLower.contains("thinking") || typeLower.contains("reasoning")) {
-            return ParsedLine.thinking(lineNumber, text, rawDetails);
+            return ParsedLine.thinking(lineNumber, text, raw);
         }
         if (isToolCall(typeLower, json)) {
             String toolCallId = firstNonEmpty(json, "tool_call_id", "call_id", "id");
             String toolName = firstNonEmpty(json, "tool_name", "toolName", "name");
-            return ParsedLine.toolCall(lineNumber, toolName, text, rawDetails, toolCallId);
+            return ParsedLine.toolCall(lineNumber, toolName, text, raw, toolCallId);
         }
         if (isToolResult(typeLower, json)) {
             String toolCallId = firstNonEmpty(json, "tool_call_id", "call_id", "id");
             String toolName = firstNonEmpty(json, "tool_name", "toolName", "name");
-            return ParsedLine.toolResult(lineNumber, toolName, text, rawDetails, toolCallId);
+            return ParsedLine.toolResult(lineNumber, toolName, text, raw, toolCallId);
         }
         if (roleLower.equals("assistant")
                 || typeLower.contains("assistant")
                 || typeLower.contains("agent_message")) {
-            return ParsedLine.message(lineNumber, "assistant", "Assistant", text, rawDetails);
+            return ParsedLine.message(lineNumber, "assistant", "Assistant", text, raw);
         }
         if (roleLower.equals("user") || typeLower.contains("user")) {
-            return ParsedLine.message(lineNumber, "user", "User", text, rawDetails);
+            return ParsedLine.message(lineNumber, "user", "User", text, raw);
         }
         if (typeLower.contains("error") || json.has("error")) {
-            return ParsedLine.message(lineNumber, "error", "Error", text, rawDetails);
+            return ParsedLine.message(lineNumber, "error", "Error", text, raw);
         }
-        return ParsedLine.system(lineNumber, "System", text, rawDetails);
+        return ParsedLine.system(lineNumber, "System", text, raw);
     }
 
     // --- Tool input/output extraction ---
@@ -783,7 +856,8 @@ final class AiAgentLogParser {
         private final String toolInput;
         private final String toolOutput;
         private final String toolName;
-        private final String rawDetails;
+        // The line's JSON, pretty-printed only when the event is rendered, or its plain text.
+        private final Object raw;
         private final String toolCallId;
         private final Instant timestamp;
 
@@ -795,7 +869,7 @@ final class AiAgentLogParser {
                 String toolInput,
                 String toolOutput,
                 String toolName,
-                String rawDetails,
+                Object raw,
                 String toolCallId) {
             this.id = id;
             this.category = category;
@@ -804,7 +878,7 @@ final class AiAgentLogParser {
             this.toolInput = toolInput;
             this.toolOutput = toolOutput;
             this.toolName = toolName;
-            this.rawDetails = rawDetails;
+            this.raw = raw;
             this.toolCallId = toolCallId;
             this.timestamp = Instant.now();
         }
@@ -813,27 +887,26 @@ final class AiAgentLogParser {
             return new ParsedLine(id, "raw", "", line, "", "", "", line, null);
         }
 
-        static ParsedLine system(long id, String label, String content, String rawDetails) {
-            return new ParsedLine(id, "system", label, content, "", "", "", rawDetails, null);
+        static ParsedLine system(long id, String label, String content, JSONObject raw) {
+            return new ParsedLine(id, "system", label, content, "", "", "", raw, null);
         }
 
         static ParsedLine message(
-                long id, String category, String label, String content, String rawDetails) {
-            return new ParsedLine(id, category, label, content, "", "", "", rawDetails, null);
+                long id, String category, String label, String content, JSONObject raw) {
+            return new ParsedLine(id, category, label, content, "", "", "", raw, null);
         }
 
         static ParsedLine result(
-                long id, String category, String label, String content, String rawDetails) {
-            return new ParsedLine(id, category, label, content, "", "", "", rawDetails, null);
+                long id, String category, String label, String content, JSONObject raw) {
+            return new ParsedLine(id, category, label, content, "", "", "", raw, null);
         }
 
-        static ParsedLine thinking(long id, String content, String rawDetails) {
-            return new ParsedLine(
-                    id, "thinking", "Thinking", content, "", "", "", rawDetails, null);
+        static ParsedLine thinking(long id, String content, JSONObject raw) {
+            return new ParsedLine(id, "thinking", "Thinking", content, "", "", "", raw, null);
         }
 
         static ParsedLine toolCall(
-                long id, String toolName, String toolInput, String rawDetails, String toolCallId) {
+                long id, String toolName, String toolInput, JSONObject raw, String toolCallId) {
             String displayName = toolName.isEmpty() ? "Tool" : toolName;
             return new ParsedLine(
                     id,
@@ -843,12 +916,12 @@ final class AiAgentLogParser {
                     toolInput,
                     "",
                     toolName,
-                    rawDetails,
+                    raw,
                     toolCallId);
         }
 
         static ParsedLine toolResult(
-                long id, String toolName, String toolOutput, String rawDetails, String toolCallId) {
+                long id, String toolName, String toolOutput, JSONObject raw, String toolCallId) {
             String displayName = toolName.isEmpty() ? "Tool" : toolName;
             return new ParsedLine(
                     id,
@@ -858,7 +931,7 @@ final class AiAgentLogParser {
                     "",
                     toolOutput,
                     toolName,
-                    rawDetails,
+                    raw,
                     toolCallId);
         }
 
@@ -866,15 +939,32 @@ final class AiAgentLogParser {
             return "tool_call".equals(category);
         }
 
+        String getCategory() {
+            return category;
+        }
+
         String getToolCallIdOrGenerated() {
             if (toolCallId != null && !toolCallId.trim().isEmpty()) return toolCallId.trim();
             return "tool-call-" + id;
         }
 
+        /** The agent's own ID for a tool call or result, or {@code null} if it sent none. */
+        String getToolCallId() {
+            return toolCallId;
+        }
+
         String getToolName() {
             return toolName == null ? "" : toolName;
         }
 
+        String getToolInput() {
+            return toolInput;
+        }
+
+        String getToolOutput() {
+            return toolOutput;
+        }
+
         String getSummary() {
             if (!content.isEmpty()) {
                 return label + ": " + excerpt(oneLine(content), 180);
@@ -890,7 +980,17 @@ final class AiAgentLogParser {
 
         EventView toEventView() {
             return new EventView(
-                    id, category, label, content, toolInput, toolOutput, rawDetails, timestamp);
+                    id,
+                    category,
+                    label,
+                    content,
+                    toolInput,
+                    toolOutput,
+                    raw instanceof JSONObject ? ((JSONObject) raw).toString(2) : (String) raw,
+                    timestamp,
+                    toolCallId,
+                    -1,
+                    -1);
         }
     }
 
@@ -904,6 +1004,9 @@ final class AiAgentLogParser {
         private final String toolOutput;
         private final String rawDetails;
         private final Instant timestamp;
+        private final String toolCallId;
+        private final long resultId;
+        private final long durationMillis;
 
         EventView(
                 long id,
@@ -914,6 +1017,32 @@ final class AiAgentLogParser {
                 String toolOutput,
                 String rawDetails,
                 Instant timestamp) {
+            this(
+                    id,
+                    category,
+                    label,
+                    content,
+                    toolInput,
+                    toolOutput,
+                    rawDetails,
+                    timestamp,
+                    null,
+                    -1,
+                    -1);
+        }
+
+        EventView(
+                long id,
+                String category,
+                String label,
+                String content,
+                String toolInput,
+                String toolOutput,
+                String rawDetails,
+                Instant timestamp,
+                String toolCallId,
+                long resultId,
+                long durationMillis) {
             this.id = id;
             this.category = category;
             this.label = label;
@@ -922,6 +1051,28 @@ final class AiAgentLogParser {
             this.toolOutput = toolOutput;
             this.rawDetails = rawDetails;
             this.timestamp = timestamp;
+            this.toolCallId = toolCallId == null ? "" : toolCallId.trim();
+            this.resultId = resultId;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * This tool call with {@code result}'s output folded in, so the call and its result render
+         * as one card. {@code durationMillis} is -1 when the arrival times are unknown.
+         */
+        EventView withResult(EventView result, long durationMillis) {
+            return new EventView(
+                    id,
+                    category,
+                    label,
+                    content,
+                    toolInput,
+                    result.toolOutput,
+                    rawDetails,
+                    timestamp,
+                    toolCallId,
+                    result.id,
+                    durationMillis);
         }
 
         public long getId() {
@@ -961,6 +1112,25 @@ final class AiAgentLogParser {
             return timestamp;
         }
 
+        /** The agent's ID for a tool call or result; empty if it sent none. */
+        public String getToolCallId() {
+            return toolCallId;
+        }
+
+        /** Line of the result merged into this tool call, or -1 if none has been merged. */
+        public long getResultId() {
+            return resultId;
+        }
+
+        /** Call to result time of a merged tool call, or -1 if unknown. */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isMerged() {
+            return resultId >= 0;
+        }
+
         public String getCategoryLabel() {
             return category.replace('_', ' ').toUpperCase(Locale.ROOT);
         }
@@ -0,0 +1,285 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters for AI agent builds, rendered in the Prometheus text format by {@link
+ * AiAgentMetricsAction}. Everything recorded on the output path is a {@link LongAdder}, so
+ * instrumentation adds no lock or shared-cache-line contention between concurrent builds. Values
+ * reset when Jenkins restarts, as Prometheus counters may.
+ */
+final class AiAgentMetrics {
+    static final LongAdder LINES_INGESTED = new LongAdder();
+    static final LongAdder BYTES_INGESTED = new LongAdder();
+    static final LongAdder BUILDS_COMPLETED = new LongAdder();
+
+    /**
+     * Time spent parsing one line of agent output as it arrives; viewers re-reading the log are not
+     * counted.
+     */
+    static final Histogram PARSE_SECONDS =
+            new Histogram(0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05);
+
+    /** Time builds waited for each approval decision. */
+    static final Histogram APPROVAL_WAIT_SECONDS =
+            new Histogram(1, 5, 15, 30, 60, 120, 300, 600, 1800, 3600);
+
+    private static final Map<UsageKey, UsageCounters> USAGE = new ConcurrentHashMap<>();
+
+    private AiAgentMetrics() {}
+
+    static void lineIngested(int bytes) {
+        LINES_INGESTED.increment();
+        BYTES_INGESTED.add(bytes);
+    }
+
+    static void approvalDecided(long waitMillis) {
+        APPROVAL_WAIT_SECONDS.observe(waitMillis / 1000.0);
+    }
+
+    /** Adds a finished build's token and cost totals to its agent type and model. */
+    static void buildCompleted(String agentType, String model, AgentUsageStats stats) {
+        BUILDS_COMPLETED.increment();
+        UsageCounters counters =
+                USAGE.computeIfAbsent(new UsageKey(agentType, model), key -> new UsageCounters());
+        counters.builds.increment();
+        counters.inputTokens.add(stats.getInputTokens());
+        counters.outputTokens.add(stats.getOutputTokens());
+        counters.cacheReadTokens.add(stats.getCacheReadTokens());
+        counters.cacheWriteTokens.add(stats.getCacheWriteTokens());
+        counters.costUsd.add(stats.getCostUsd());
+    }
+
+    /** Renders all metrics in the Prometheus text exposition format (version 0.0.4). */
+    static String render() {
+        StringBuilder out = new StringBuilder(4096);
+        gauge(
+                out,
+                "jenkins_ai_agent_live_builds",
+                "AI agent builds currently running",
+                ExecutionRegistry.liveExecutions().size());
+        gauge(
+                out,
+                "jenkins_ai_agent_pending_approvals",
+                "Tool calls waiting for an approval decision",
+                ExecutionRegistry.inbox().size());
+        counter(
+                out,
+                "jenkins_ai_agent_builds_completed_total",
+                "AI agent builds that finished since startup",
+                BUILDS_COMPLETED.sum());
+        counter(
+                out,
+                "jenkins_ai_agent_output_lines_total",
+                "Agent output lines ingested",
+                LINES_INGESTED.sum());
+        counter(
+                out,
+                "jenkins_ai_agent_output_bytes_total",
+                "Agent output bytes ingested",
+                BYTES_INGESTED.sum());
+        PARSE_SECONDS.render(
+                out,
+                "jenkins_ai_agent_parse_seconds",
+                "Time to parse one agent output line as it arrives");
+        APPROVAL_WAIT_SECONDS.render(
+                out,
+                "jenkins_ai_agent_approval_wait_seconds",
+                "Time builds waited for an approval decision");
+
+        // Sorted so the output is stable between scrapes.
+        Map<UsageKey, UsageCounters> usage = new TreeMap<>(USAGE);
+        usageFamily(out, usage, "builds_total", "Completed builds", c -> c.builds.sum());
+        usageFamily(
+                out,
+                usage,
+                "input_tokens_total",
+                "Input tokens reported by the agent",
+                c -> c.inputTokens.sum());
+        usageFamily(
+                out,
+                usage,
+                "output_tokens_total",
+                "Output tokens reported by the agent",
+                c -> c.outputTokens.sum());
+        usageFamily(
+                out,
+                usage,
+                "cache_read_tokens_total",
+                "Cache read tokens reported by the agent",
+                c -> c.cacheReadTokens.sum());
+        usageFamily(
+                out,
+                usage,
+                "cache_write_tokens_total",
+                "Cache write tokens reported by the agent",
+                c -> c.cacheWriteTokens.sum());
+        usageFamily(
+                out,
+                usage,
+                "cost_usd_total",
+                "Cost in USD reported by the agent",
+                c -> c.costUsd.sum());
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private interface UsageValue {
+        Number of(UsageCounters counters);
+    }
+
+    private static void usageFamily(
+            StringBuilder out,
+            Map<UsageKey, UsageCounters> usage,
+            String suffix,
+            String help,
+            UsageValue value) {
+        String name = "jenkins_ai_agent_" + suffix;
+        header(out, name, "counter", help);
+        for (Map.Entry<UsageKey, UsageCounters> entry : usage.entrySet()) {
+            out.append(name)
+                    .append("{agent_type=\"")
+                    .append(escapeLabel(entry.getKey().agentType))
+                    .append("\",model=\"")
+                    .append(escapeLabel(entry.getKey().model))
+                    .append("\"} ")
+                    .append(formatValue(value.of(entry.getValue())))
+                    .append('\n');
+        }
+    }
+
+    static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(Number value) {
+        if (value instanceof Double) {
+            return String.format(Locale.ROOT, "%.6f", value.doubleValue());
+        }
+        return String.valueOf(value.longValue());
+    }
+
+    /** Cumulative-bucket histogram with fixed upper bounds, as Prometheus expects. */
+    static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+
+        Histogram(double... bounds) {
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void observe(double value) {
+            // Only the first matching bucket is counted; render() accumulates.
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            sum.add(value);
+            count.increment();
+        }
+
+        void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        void render(StringBuilder out, String name, String help) {
+            header(out, name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name)
+                        .append("_bucket{le=\"")
+                        .append(formatBound(bounds[i]))
+                        .append("\"} ")
+                        .append(cumulative)
+                        .append('\n');
+            }
+            long total = count.sum();
+            // Read after the buckets, so +Inf is never below the last finite bucket.
+            out.append(name)
+                    .append("_bucket{le=\"+Inf\"} ")
+                    .append(Math.max(total, cumulative))
+                    .append('\n');
+            out.append(name)
+                    .append("_sum ")
+                    .append(String.format(Locale.ROOT, "%.6f", sum.sum()))
+                    .append('\n');
+            out.append(name).append("_count ").append(Math.max(total, cumulative)).append('\n');
+        }
+
+        private static String formatBound(double bound) {
+            return BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final class UsageKey implements Comparable<UsageKey> {
+        private final String agentType;
+        private final String model;
+
+        UsageKey(String agentType, String model) {
+            this.agentType = agentType == null ? "" : agentType;
+            this.model = model == null ? "" : model;
+        }
+
+        @Override
+        public int compareTo(UsageKey other) {
+            int byType = agentType.compareTo(other.agentType);
+            return byType != 0 ? byType : model.compareTo(other.model);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof UsageKey)) {
+                return false;
+            }
+            UsageKey other = (UsageKey) o;
+            return agentType.equals(other.agentType) && model.equals(other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return agentType.hashCode() * 31 + model.hashCode();
+        }
+    }
+
+    private static final class UsageCounters {
+        final LongAdder builds = new LongAdder();
+        final LongAdder inputTokens = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        final LongAdder cacheReadTokens = new LongAdder();
+        final LongAdder cacheWriteTokens = new LongAdder();
+        final DoubleAdder costUsd = new DoubleAdder();
+    }
+}
@@ -0,0 +1,42 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+
+/**
+ * Prometheus scrape target at {@code /ai-agent-metrics/}: live builds, output throughput, parse
+ * and approval-wait histograms, and token/cost counters per agent type and model. Scrapers
+ * authenticate like any other API client (user and API token with Overall/Read).
+ */
+@Extension
+public class AiAgentMetricsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-metrics";
+    }
+
+    @GET
+    public void doIndex(StaplerResponse2 response) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.READ);
+        response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        response.getWriter().write(AiAgentMetrics.render());
+    }
+}
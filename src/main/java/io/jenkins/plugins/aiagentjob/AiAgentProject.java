@@ -40,11 +40,13 @@ import java.util.Collections;
 public class AiAgentProject extends FreeStyleProject {
     private AgentType agentType = AgentType.CLAUDE_CODE;
     private String model = "";
+    private String cliVersion = "";
     private String prompt = "";
     private String workingDirectory = "";
     private boolean yoloMode;
     private boolean requireApprovals;
     private int approvalTimeoutSeconds = 600;
+    private boolean memoizeApprovals;
     private String commandOverride = "";
     private String extraArgs = "";
     private String environmentVariables = "";
@@ -52,6 +54,19 @@ public class AiAgentProject extends FreeStyleProject {
     private String setupScript = "";
     private boolean codexCustomConfigEnabled;
     private String codexCustomConfigToml = "";
+    private boolean openCodeServerEnabled;
+    private boolean resumeSession;
+    private boolean resultCacheEnabled;
+    private double dailyBudgetUsd;
+    private boolean checkProjectedCost;
+    private ExecutionMode executionMode = ExecutionMode.SINGLE;
+    private String fanOutAgents = "";
+    private int maxParallelAgents = 4;
+    private String raceVerifyCommand = "";
+    private String batchPrompts = "";
+    private String batchPromptsFile = "";
+    private String shardGlobs = "";
+    private String reducePrompt = "";
     private String apiCredentialsId = "";
     // Stores only the environment variable name used for injecting the credential value.
     // lgtm[jenkins/plaintext-storage]
@@ -88,6 +103,7 @@ public class AiAgentProject extends FreeStyleProject {
 
         this.agentType = AgentType.fromString(json.optString("agentType", agentType.name()));
         this.model = Util.fixNull(json.optString("model", ""));
+        this.cliVersion = Util.fixNull(json.optString("cliVersion", "")).trim();
         this.prompt = Util.fixNull(json.optString("prompt", ""));
         this.workingDirectory = Util.fixNull(json.optString("workingDirectory", ""));
         this.yoloMode = json.optBoolean("yoloMode", false);
@@ -96,6 +112,20 @@ public class AiAgentProject extends FreeStyleProject {
             this.requireApprovals = false;
         }
         this.approvalTimeoutSeconds = Math.max(1, json.optInt("approvalTimeoutSeconds", 600));
+        this.memoizeApprovals = json.optBoolean("memoizeApprovals", false);
+        this.resumeSession = json.optBoolean("resumeSession", false);
+        this.resultCacheEnabled = json.optBoolean("resultCacheEnabled", false);
+        this.dailyBudgetUsd = Math.max(0, json.optDouble("dailyBudgetUsd", 0));
+        this.checkProjectedCost = json.optBoolean("checkProjectedCost", false);
+        this.executionMode =
+                ExecutionMode.fromString(json.optString("executionMode", executionMode.name()));
+        this.fanOutAgents = Util.fixNull(json.optString("fanOutAgents", ""));
+        this.maxParallelAgents = Math.max(1, json.optInt("maxParallelAgents", 4));
+        this.raceVerifyCommand = Util.fixNull(json.optString("raceVerifyCommand", ""));
+        this.batchPrompts = Util.fixNull(json.optString("batchPrompts", ""));
+        this.batchPromptsFile = Util.fixNull(json.optString("batchPromptsFile", "")).trim();
+        this.shardGlobs = Util.fixNull(json.optString("shardGlobs", ""));
+        this.reducePrompt = Util.fixNull(json.optString("reducePrompt", ""));
         this.commandOverride = Util.fixNull(json.optString("commandOverride", ""));
         this.extraArgs = Util.fixNull(json.optString("extraArgs", ""));
         this.environmentVariables = Util.fixNull(json.optString("environmentVariables", ""));
@@ -103,6 +133,7 @@ public class AiAgentProject extends FreeStyleProject {
         this.codexCustomConfigEnabled =
                 parseBooleanFormValue(json, "codexCustomConfigEnabled", false);
         this.codexCustomConfigToml = Util.fixNull(json.optString("codexCustomConfigToml", ""));
+        this.openCodeServerEnabled = json.optBoolean("openCodeServerEnabled", false);
         this.failOnAgentError = json.optBoolean("failOnAgentError", true);
         this.apiCredentialsId = Util.fixNull(json.optString("apiCredentialsId", ""));
         this.apiKeyEnvVar = Util.fixNull(json.optString("apiKeyEnvVar", ""));
@@ -131,6 +162,19 @@ public class AiAgentProject extends FreeStyleProject {
         this.model = Util.fixNull(model);
     }
 
+    /**
+     * Pinned version of the agent CLI. When set, the CLI is installed once per node into the tool
+     * cache and launched from there; when empty, the CLI on PATH (or {@code npx -y} for Claude
+     * Code) is used.
+     */
+    public String getCliVersion() {
+        return cliVersion;
+    }
+
+    public void setCliVersion(String cliVersion) {
+        this.cliVersion = Util.fixNull(cliVersion).trim();
+    }
+
     public String getPrompt() {
         return prompt;
     }
@@ -171,6 +215,157 @@ public class AiAgentProject extends FreeStyleProject {
         this.approvalTimeoutSeconds = Math.max(1, approvalTimeoutSeconds);
     }
 
+    /**
+     * Whether reviewers may approve an exact tool call or a whole tool for the rest of a build, so
+     * repeats are approved without waiting again.
+     */
+    public boolean isMemoizeApprovals() {
+        return memoizeApprovals;
+    }
+
+    public void setMemoizeApprovals(boolean memoizeApprovals) {
+        this.memoizeApprovals = memoizeApprovals;
+    }
+
+    /**
+     * Whether each build continues the agent session of the last successful build on the same
+     * node, so the model keeps its context and the provider's prompt cache is reused.
+     */
+    public boolean isResumeSession() {
+        return resumeSession;
+    }
+
+    public void setResumeSession(boolean resumeSession) {
+        this.resumeSession = resumeSession;
+    }
+
+    /**
+     * Whether a build whose agent, model, expanded prompt, arguments and workspace commit match an
+     * earlier successful build replays that build's result instead of running the agent again.
+     */
+    public boolean isResultCacheEnabled() {
+        return resultCacheEnabled;
+    }
+
+    public void setResultCacheEnabled(boolean resultCacheEnabled) {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+
+    /**
+     * Most this job may spend on agents per day, in USD; once reached, its builds wait in the
+     * queue until the next day. 0 for no limit.
+     */
+    public double getDailyBudgetUsd() {
+        return dailyBudgetUsd;
+    }
+
+    public void setDailyBudgetUsd(double dailyBudgetUsd) {
+        this.dailyBudgetUsd = Math.max(0, dailyBudgetUsd);
+    }
+
+    /**
+     * Whether builds also wait while the job's average build cost would take today's spend past a
+     * job, folder or global budget.
+     */
+    public boolean isCheckProjectedCost() {
+        return checkProjectedCost;
+    }
+
+    public void setCheckProjectedCost(boolean checkProjectedCost) {
+        this.checkProjectedCost = checkProjectedCost;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public ExecutionMode[] getExecutionModes() {
+        return ExecutionMode.values();
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode == null ? ExecutionMode.SINGLE : executionMode;
+    }
+
+    /**
+     * Agents a {@link ExecutionMode#FAN_OUT} or {@link ExecutionMode#RACE} build runs, one per
+     * line: an agent type optionally followed by {@code model=} and {@code credentials=}. See
+     * {@link AgentRunSpec#parseAgents}.
+     */
+    public String getFanOutAgents() {
+        return fanOutAgents;
+    }
+
+    public void setFanOutAgents(String fanOutAgents) {
+        this.fanOutAgents = Util.fixNull(fanOutAgents);
+    }
+
+    /** Most agents one multi-agent build runs at the same time. */
+    public int getMaxParallelAgents() {
+        return maxParallelAgents;
+    }
+
+    public void setMaxParallelAgents(int maxParallelAgents) {
+        this.maxParallelAgents = Math.max(1, maxParallelAgents);
+    }
+
+    /**
+     * Shell command that must exit 0 in an agent's worktree for a {@link ExecutionMode#RACE}
+     * agent that exited 0 to win; empty to accept the first agent that exits 0.
+     */
+    public String getRaceVerifyCommand() {
+        return raceVerifyCommand;
+    }
+
+    public void setRaceVerifyCommand(String raceVerifyCommand) {
+        this.raceVerifyCommand = Util.fixNull(raceVerifyCommand);
+    }
+
+    /**
+     * Items of a {@link ExecutionMode#BATCH} build, one per line, used when {@link
+     * #getBatchPromptsFile()} is empty.
+     */
+    public String getBatchPrompts() {
+        return batchPrompts;
+    }
+
+    public void setBatchPrompts(String batchPrompts) {
+        this.batchPrompts = Util.fixNull(batchPrompts);
+    }
+
+    /** Workspace-relative file with the items of a {@link ExecutionMode#BATCH} build. */
+    public String getBatchPromptsFile() {
+        return batchPromptsFile;
+    }
+
+    public void setBatchPromptsFile(String batchPromptsFile) {
+        this.batchPromptsFile = Util.fixNull(batchPromptsFile).trim();
+    }
+
+    /**
+     * Workspace-relative directory globs of a {@link ExecutionMode#MAP_REDUCE} build, one per line;
+     * every matching directory is one shard.
+     */
+    public String getShardGlobs() {
+        return shardGlobs;
+    }
+
+    public void setShardGlobs(String shardGlobs) {
+        this.shardGlobs = Util.fixNull(shardGlobs);
+    }
+
+    /**
+     * Instructions of the reduce agent of a {@link ExecutionMode#MAP_REDUCE} build; empty for the
+     * built-in ones. The shard summaries are appended.
+     */
+    public String getReducePrompt() {
+        return reducePrompt;
+    }
+
+    public void setReducePrompt(String reducePrompt) {
+        this.reducePrompt = Util.fixNull(reducePrompt);
+    }
+
     public String getCommandOverride() {
         return commandOverride;
     }
@@ -228,6 +423,19 @@ public class AiAgentProject extends FreeStyleProject {
         this.codexCustomConfigToml = Util.fixNull(codexCustomConfigToml);
     }
 
+    /**
+     * When enabled for OpenCode jobs, builds attach to a warm {@code opencode serve} daemon on the
+     * node instead of starting a fresh {@code opencode run} each time. See {@link
+     * OpenCodeServerPool}.
+     */
+    public boolean isOpenCodeServerEnabled() {
+        return openCodeServerEnabled;
+    }
+
+    public void setOpenCodeServerEnabled(boolean openCodeServerEnabled) {
+        this.openCodeServerEnabled = openCodeServerEnabled;
+    }
+
     public boolean isFailOnAgentError() {
         return failOnAgentError;
     }
@@ -272,9 +480,36 @@ public class AiAgentProject extends FreeStyleProject {
         if (approvalTimeoutSeconds <= 0) {
             approvalTimeoutSeconds = 600;
         }
+        if (executionMode == null) {
+            executionMode = ExecutionMode.SINGLE;
+        }
+        if (fanOutAgents == null) {
+            fanOutAgents = "";
+        }
+        if (maxParallelAgents <= 0) {
+            maxParallelAgents = 4;
+        }
+        if (raceVerifyCommand == null) {
+            raceVerifyCommand = "";
+        }
+        if (batchPrompts == null) {
+            batchPrompts = "";
+        }
+        if (batchPromptsFile == null) {
+            batchPromptsFile = "";
+        }
+        if (shardGlobs == null) {
+            shardGlobs = "";
+        }
+        if (reducePrompt == null) {
+            reducePrompt = "";
+        }
         if (model == null) {
             model = "";
         }
+        if (cliVersion == null) {
+            cliVersion = "";
+        }
         if (prompt == null) {
             prompt = "";
         }
@@ -402,6 +637,48 @@ public class AiAgentProject extends FreeStyleProject {
             }
         }
 
+        @POST
+        public FormValidation doCheckFanOutAgents(
+                @AncestorInPath Item item, @QueryParameter String value) {
+            checkConfigurationPermission(item);
+            if (!(item instanceof AiAgentProject project)) {
+                return FormValidation.ok();
+            }
+            try {
+                AgentRunSpec.parseAgents(project, value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        @POST
+        public FormValidation doCheckCliVersion(
+                @AncestorInPath Item item,
+                @QueryParameter String value,
+                @QueryParameter String agentType) {
+            checkConfigurationPermission(item);
+            String version = Util.fixNull(value).trim();
+            if (version.isEmpty()) {
+                return FormValidation.ok();
+            }
+            if (AgentType.fromString(agentType).getNpmPackage() == null) {
+                return FormValidation.warning(
+                        "This agent is not installed through npm; the CLI on PATH will be used.");
+            }
+            if (!AgentCliInstaller.isValidVersion(version)) {
+                return FormValidation.error("Not a valid version.");
+            }
+            if (!Character.isDigit(version.charAt(0))) {
+                return FormValidation.warning(
+                        "A tag such as '"
+                                + version
+                                + "' is installed once per node and then never updated. Pin an"
+                                + " exact version instead.");
+            }
+            return FormValidation.ok();
+        }
+
         private static void checkConfigurationPermission(Item item) {
             if (item != null) {
                 item.checkPermission(Item.CONFIGURE);
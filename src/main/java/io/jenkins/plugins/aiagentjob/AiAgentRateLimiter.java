@@ -0,0 +1,356 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+
+import net.sf.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Limits the agent runs of all builds that share a provider quota, identified by API credential
+ * and, unless disabled, model. At most {@code maxConcurrentRuns} runs per quota are active at a
+ * time, and with {@code tokensPerMinute} set, the tokens runs report as they go are drawn from a
+ * bucket that refills at that rate. A build whose quota is exhausted waits in the queue instead of
+ * starting; a run that finds it exhausted anyway, such as one item of a batch, waits before
+ * launching its agent. A build the queue lets start holds a slot of each of its quotas, first as a
+ * pending item of the queue, then from when it leaves the queue until its run of that quota starts
+ * or the build ends, so a burst of queued builds cannot all start at once. Both limits are off by
+ * default and set in {@link AiAgentGlobalConfiguration}.
+ */
+public final class AiAgentRateLimiter {
+    private volatile int maxConcurrentRuns;
+    private volatile long tokensPerMinute;
+    private volatile boolean perModel;
+    private final Map<String, Quota> quotas = new HashMap<>(); // guarded by this
+
+    /** Quotas of builds that left the queue whose runs have not started, by queue ID. */
+    private final Map<Long, Set<String>> reserved = new HashMap<>(); // guarded by this
+
+    AiAgentRateLimiter(int maxConcurrentRuns, long tokensPerMinute, boolean perModel) {
+        setLimits(maxConcurrentRuns, tokensPerMinute, perModel);
+    }
+
+    /** The limiter all builds share, with the limits of the global configuration. */
+    static AiAgentRateLimiter get() {
+        return AiAgentGlobalConfiguration.get().getRateLimiter();
+    }
+
+    /** Changes the limits; runs waiting for a slot check them again. */
+    synchronized void setLimits(int maxConcurrentRuns, long tokensPerMinute, boolean perModel) {
+        this.maxConcurrentRuns = maxConcurrentRuns;
+        this.tokensPerMinute = tokensPerMinute;
+        this.perModel = perModel;
+        notifyAll();
+    }
+
+    boolean isEnabled() {
+        return maxConcurrentRuns > 0 || tokensPerMinute > 0;
+    }
+
+    /**
+     * The quota a run draws from: its credential, or its agent type if it uses the node's own
+     * login, and its model as configured. Credential IDs are not secret.
+     */
+    String key(AgentRunSpec spec) {
+        String credentialsId = Util.fixNull(spec.credentialsId).trim();
+        String key =
+                credentialsId.isEmpty()
+                        ? "agent " + spec.agentType.name()
+                        : "credential " + credentialsId;
+        String model = Util.fixNull(spec.model).trim();
+        return perModel && !model.isEmpty() ? key + " / " + model : key;
+    }
+
+    /** The quotas a build of {@code project} draws from. */
+    Set<String> keys(AiAgentProject project) {
+        List<AgentRunSpec> specs = new ArrayList<>();
+        ExecutionMode mode = project.getExecutionMode();
+        if (mode == ExecutionMode.FAN_OUT || mode == ExecutionMode.RACE) {
+            try {
+                specs.addAll(AgentRunSpec.parseAgents(project, project.getFanOutAgents()));
+            } catch (IllegalArgumentException e) {
+                // The build fails on the agent list anyway; no need to hold it back.
+            }
+        } else {
+            specs.add(AgentRunSpec.of(project));
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (AgentRunSpec spec : specs) {
+            keys.add(key(spec));
+        }
+        return keys;
+    }
+
+    /** Why a run drawing from {@code keys} has to wait now, or {@code null} if it can start. */
+    String blockedReason(Set<String> keys, long now) {
+        return blockedReason(keys, now, Run.QUEUE_ID_UNKNOWN);
+    }
+
+    /**
+     * Why a run of the build with {@code queueId} drawing from {@code keys} has to wait now, or
+     * {@code null} if it can start. The build's own reserved slots do not hold it back.
+     */
+    String blockedReason(Set<String> keys, long now, long queueId) {
+        return blockedReason(keys, now, queueId, Map.of());
+    }
+
+    /**
+     * Why the build with {@code queueId} drawing from {@code keys} has to wait now, or {@code null}
+     * if it can start. Besides the reserved slots, each of the {@code dispatched} builds, by queue
+     * ID, holds a slot of its quotas: the queue let them start, but they have not left it yet.
+     * Reserves nothing; see {@link #reserve}.
+     */
+    synchronized String blockedReason(
+            Set<String> keys, long now, long queueId, Map<Long, Set<String>> dispatched) {
+        Map<Long, Set<String>> held = new HashMap<>(dispatched);
+        held.putAll(reserved);
+        held.remove(queueId);
+        for (String key : keys) {
+            Quota quota = quotas.get(key);
+            int running = (quota == null ? 0 : quota.running) + holding(held, key);
+            if (maxConcurrentRuns > 0 && running >= maxConcurrentRuns) {
+                return "Waiting for a free slot: "
+                        + running
+                        + " agent runs are using "
+                        + key
+                        + ".";
+            }
+            if (tokensPerMinute > 0 && quota != null && quota.refill(now, tokensPerMinute) <= 0) {
+                return "Waiting for the token budget of " + key + " to refill.";
+            }
+        }
+        return null;
+    }
+
+    private static int holding(Map<Long, Set<String>> held, String key) {
+        int count = 0;
+        for (Set<String> keys : held.values()) {
+            if (keys.contains(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Holds a slot of each of {@code keys} for the build with {@code queueId}, which just left the
+     * queue, until {@link #acquire} or {@link #release(long)}.
+     */
+    synchronized void reserve(long queueId, Set<String> keys) {
+        if (maxConcurrentRuns > 0 && !keys.isEmpty()) {
+            reserved.put(queueId, new HashSet<>(keys));
+        }
+    }
+
+    /** Frees the slots still reserved for the build with {@code queueId}. */
+    synchronized void release(long queueId) {
+        if (reserved.remove(queueId) != null) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Starts a run drawing from {@code key}, first waiting while its quota is exhausted. Close the
+     * permit when the agent has exited.
+     */
+    Permit acquire(String key, TaskListener listener) throws InterruptedException {
+        return acquire(key, Run.QUEUE_ID_UNKNOWN, listener);
+    }
+
+    /**
+     * Starts a run of the build with {@code queueId} drawing from {@code key}, first waiting while
+     * its quota is exhausted; the run takes over the slot the build reserved. Close the permit
+     * when the agent has exited.
+     */
+    Permit acquire(String key, long queueId, TaskListener listener) throws InterruptedException {
+        Set<String> keys = Set.of(key);
+        synchronized (this) {
+            String reason = blockedReason(keys, System.currentTimeMillis(), queueId);
+            if (reason != null) {
+                listener.getLogger().println("[ai-agent] " + reason);
+                do {
+                    // Woken by finished runs; token refills are polled.
+                    wait(1000);
+                } while (blockedReason(keys, System.currentTimeMillis(), queueId) != null);
+            }
+            Set<String> reservedKeys = reserved.get(queueId);
+            if (reservedKeys != null && reservedKeys.remove(key) && reservedKeys.isEmpty()) {
+                reserved.remove(queueId);
+            }
+            Quota quota = quotas.computeIfAbsent(key, k -> new Quota(tokensPerMinute));
+            quota.running++;
+            return new Permit(key, quota);
+        }
+    }
+
+    /** Active runs of a quota, for tests and diagnostics. */
+    synchronized int running(String key) {
+        Quota quota = quotas.get(key);
+        return quota == null ? 0 : quota.running;
+    }
+
+    private synchronized void charge(Quota quota, long tokens) {
+        quota.refill(System.currentTimeMillis(), tokensPerMinute);
+        // May go negative, so one large run holds back the next runs until it is paid off.
+        quota.tokens -= tokens;
+    }
+
+    private synchronized void release(String key, Quota quota) {
+        quota.running--;
+        // An idle quota with a full bucket is the same as none at all.
+        if (quota.running == 0
+                && quota.refill(System.currentTimeMillis(), tokensPerMinute) >= tokensPerMinute) {
+            quotas.remove(key);
+        }
+        notifyAll();
+    }
+
+    /** Runs and token bucket of one quota. Guarded by the limiter. */
+    private static final class Quota {
+        int running;
+        double tokens;
+        long refilledAt;
+
+        Quota(long tokensPerMinute) {
+            this.tokens = tokensPerMinute;
+            this.refilledAt = System.currentTimeMillis();
+        }
+
+        double refill(long now, long tokensPerMinute) {
+            if (now > refilledAt) {
+                tokens =
+                        Math.min(
+                                tokensPerMinute,
+                                tokens + (now - refilledAt) * tokensPerMinute / 60_000.0);
+                refilledAt = now;
+            }
+            return tokens;
+        }
+    }
+
+    /** One active run. Its agent's output is metered against the token budget as it arrives. */
+    final class Permit implements Closeable {
+        private final String key;
+        private final Quota quota;
+        private final AgentUsageStats usage = new AgentUsageStats();
+        private long charged; // guarded by this
+        private boolean closed; // guarded by this
+
+        private Permit(String key, Quota quota) {
+            this.key = key;
+            this.quota = quota;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        /**
+         * Charges the tokens an agent output line reports beyond what was already charged. Takes
+         * the line as parsed for the log, or {@code null} if it is not JSON.
+         */
+        synchronized void record(JSONObject json) {
+            if (tokensPerMinute <= 0 || closed || json == null) {
+                return;
+            }
+            usage.extractFrom(json);
+            // Cache reads are cheap and do not count against most providers' limits.
+            long total = usage.getTotalTokens() - usage.getCacheReadTokens();
+            if (total > charged) {
+                charge(quota, total - charged);
+                charged = total;
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(key, quota);
+            }
+        }
+    }
+
+    /** Keeps builds whose quota is exhausted in the queue. */
+    @Extension
+    public static final class Dispatcher extends QueueTaskDispatcher {
+        @Override
+        public CauseOfBlockage canRun(Queue.Item item) {
+            AiAgentRateLimiter limiter = get();
+            if (!limiter.isEnabled() || !(item.task instanceof AiAgentProject)) {
+                return null;
+            }
+            String reason =
+                    limiter.blockedReason(
+                            limiter.keys((AiAgentProject) item.task),
+                            System.currentTimeMillis(),
+                            item.getId(),
+                            dispatched(limiter));
+            return reason == null ? null : new Blocked(reason);
+        }
+
+        /** Quotas of the builds the queue let start that are waiting for their executor. */
+        private static Map<Long, Set<String>> dispatched(AiAgentRateLimiter limiter) {
+            Map<Long, Set<String>> dispatched = new HashMap<>();
+            for (Queue.BuildableItem pending : Queue.getInstance().getPendingItems()) {
+                if (pending.task instanceof AiAgentProject) {
+                    dispatched.put(pending.getId(), limiter.keys((AiAgentProject) pending.task));
+                }
+            }
+            return dispatched;
+        }
+    }
+
+    /** Holds the slots of builds from when they leave the queue until their runs start. */
+    @Extension
+    public static final class StartingBuilds extends QueueListener {
+        @Override
+        public void onLeft(Queue.LeftItem item) {
+            if (!item.isCancelled() && item.task instanceof AiAgentProject) {
+                AiAgentRateLimiter limiter = get();
+                if (limiter.isEnabled()) {
+                    limiter.reserve(item.getId(), limiter.keys((AiAgentProject) item.task));
+                }
+            }
+        }
+    }
+
+    /** Frees the slots of builds that ended before all their runs started. */
+    @Extension
+    public static final class CompletedBuilds extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, TaskListener listener) {
+            if (run.getParent() instanceof AiAgentProject) {
+                get().release(run.getQueueId());
+            }
+        }
+    }
+
+    private static final class Blocked extends CauseOfBlockage {
+        private final String reason;
+
+        Blocked(String reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return reason;
+        }
+    }
+}
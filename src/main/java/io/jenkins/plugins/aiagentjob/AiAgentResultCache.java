@@ -0,0 +1,298 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.TaskListener;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller-side cache of successful agent runs, keyed by everything that determines what the
+ * agent does: agent, model, expanded prompt, arguments and the workspace commit. A build that finds
+ * an entry replays the stored conversation and applies the stored workspace changes instead of
+ * launching the agent. Entries expire after {@link #TTL_HOURS}, and the oldest entries are evicted
+ * once the cache holds more than {@link #MAX_SIZE_MB}.
+ */
+final class AiAgentResultCache {
+    private static final Logger LOGGER = Logger.getLogger(AiAgentResultCache.class.getName());
+
+    static final long TTL_HOURS =
+            SystemProperties.getLong(AiAgentResultCache.class.getName() + ".ttlHours", 24L);
+
+    static final long MAX_SIZE_MB =
+            SystemProperties.getLong(AiAgentResultCache.class.getName() + ".maxSizeMb", 512L);
+
+    static final String CACHE_DIR = "ai-agent-result-cache";
+    static final String PATCH_FILE = "changes.patch";
+    static final String ENTRY_FILE = "entry.properties";
+
+    private static AiAgentResultCache instance; // guarded by AiAgentResultCache.class
+
+    private final File dir;
+    private final long ttlMillis;
+    private final long maxBytes;
+
+    AiAgentResultCache(File dir, long ttlMillis, long maxBytes) {
+        this.dir = dir;
+        this.ttlMillis = ttlMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    /** The cache in the Jenkins home directory. */
+    static synchronized AiAgentResultCache get() {
+        if (instance == null) {
+            instance =
+                    new AiAgentResultCache(
+                            new File(Jenkins.get().getRootDir(), CACHE_DIR),
+                            TimeUnit.HOURS.toMillis(TTL_HOURS),
+                            MAX_SIZE_MB * 1024 * 1024);
+        }
+        return instance;
+    }
+
+    /**
+     * Hashes the inputs of a run of {@code job} at {@code commit}: everything that affects how its
+     * agent is launched, in a fixed order. Jobs never share entries. The values themselves may
+     * hold secrets and are not kept.
+     */
+    static String key(String job, String commit, String... launchInputs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Util.fixNull(job)).append('\0').append(Util.fixNull(commit)).append('\0');
+        for (String part : launchInputs) {
+            sb.append(Util.fixNull(part)).append('\0');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Util.toHexString(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns the live entry for {@code key}, or {@code null}. Expired entries are removed. */
+    synchronized Entry lookup(String key) {
+        File entryDir = new File(dir, key);
+        Properties props = readEntry(entryDir);
+        if (props == null) {
+            return null;
+        }
+        long storedAt = Long.parseLong(props.getProperty("storedAt", "0"));
+        if (System.currentTimeMillis() - storedAt > ttlMillis) {
+            deleteEntry(entryDir);
+            return null;
+        }
+        return new Entry(entryDir, props.getProperty("source", ""), storedAt);
+    }
+
+    /**
+     * Stores the conversation of a successful run together with the workspace changes it made, then
+     * evicts expired and, beyond the size bound, oldest entries.
+     */
+    synchronized void store(String key, File rawLogFile, byte[] patch, String source)
+            throws IOException {
+        File staging = Files.createTempDirectory(ensureDir().toPath(), ".staging-").toFile();
+        try {
+            copyLog(rawLogFile, new File(staging, AiAgentRunAction.RAW_LOG_FILE));
+            Files.write(new File(staging, PATCH_FILE).toPath(), patch);
+            Properties props = new Properties();
+            props.setProperty("source", Util.fixNull(source));
+            props.setProperty("storedAt", String.valueOf(System.currentTimeMillis()));
+            try (OutputStream out = Files.newOutputStream(new File(staging, ENTRY_FILE).toPath())) {
+                props.store(out, null);
+            }
+            File entryDir = new File(dir, key);
+            deleteEntry(entryDir);
+            Files.move(staging.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (staging.exists()) {
+                deleteEntry(staging);
+            }
+        }
+        evict();
+    }
+
+    /** Removes expired entries, then the oldest ones until the cache fits its size bound. */
+    synchronized void evict() {
+        File[] dirs = dir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Entry> live = new ArrayList<>();
+        long total = 0;
+        for (File entryDir : dirs) {
+            Properties props = readEntry(entryDir);
+            long storedAt =
+                    props == null ? 0 : Long.parseLong(props.getProperty("storedAt", "0"));
+            if (props == null || now - storedAt > ttlMillis) {
+                // Also removes staging directories left behind by a controller crash.
+                deleteEntry(entryDir);
+                continue;
+            }
+            total += sizeOf(entryDir);
+            live.add(new Entry(entryDir, "", storedAt));
+        }
+        live.sort(Comparator.comparingLong(e -> e.storedAt));
+        for (Entry entry : live) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= sizeOf(entry.dir);
+            deleteEntry(entry.dir);
+        }
+    }
+
+    /** Number of entries, for tests and diagnostics. */
+    synchronized int size() {
+        File[] dirs = dir.listFiles(f -> f.isDirectory() && new File(f, ENTRY_FILE).isFile());
+        return dirs == null ? 0 : dirs.length;
+    }
+
+    private File ensureDir() throws IOException {
+        Files.createDirectories(dir.toPath());
+        return dir;
+    }
+
+    private static Properties readEntry(File entryDir) {
+        File file = new File(entryDir, ENTRY_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            props.load(in);
+            return props;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "Unreadable result cache entry " + entryDir, e);
+            return null;
+        }
+    }
+
+    private static long sizeOf(File entryDir) {
+        long size = 0;
+        File[] files = entryDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static void deleteEntry(File entryDir) {
+        try {
+            Util.deleteRecursive(entryDir);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete result cache entry " + entryDir, e);
+        }
+    }
+
+    /** Copies a raw log together with its arrival-time index, if it has one. */
+    static void copyLog(File from, File to) throws IOException {
+        Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File index = AiAgentLogIndex.indexFileFor(from);
+        File toIndex = AiAgentLogIndex.indexFileFor(to);
+        if (index.isFile()) {
+            Files.copy(index.toPath(), toIndex.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(toIndex.toPath());
+        }
+    }
+
+    /** A stored run. */
+    static final class Entry {
+        private final File dir;
+        /** The build that produced the entry, as an externalizable run ID. */
+        final String source;
+
+        final long storedAt;
+
+        Entry(File dir, String source, long storedAt) {
+            this.dir = dir;
+            this.source = source;
+            this.storedAt = storedAt;
+        }
+
+        File getRawLogFile() {
+            return new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        }
+
+        byte[] readPatch() throws IOException {
+            return Files.readAllBytes(new File(dir, PATCH_FILE).toPath());
+        }
+    }
+
+    /**
+     * A git work tree with no local changes, so its commit identifies its content. Runs git on the
+     * build's node.
+     */
+    static final class Checkout {
+        final FilePath root;
+        final String commit;
+
+        private Checkout(FilePath root, String commit) {
+            this.root = root;
+            this.commit = commit;
+        }
+
+        /**
+         * Returns the clean checkout {@code dir} belongs to, or {@code null} (after logging why) if
+         * it is not in a git work tree or has uncommitted changes.
+         */
+        static Checkout of(
+                Launcher launcher, FilePath dir, Map<String, String> env, TaskListener listener)
+                throws InterruptedException {
+            String top = GitCli.output(launcher, dir, env, "rev-parse", "--show-toplevel");
+            String commit = GitCli.output(launcher, dir, env, "rev-parse", "HEAD");
+            if (top == null || commit == null) {
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] Result cache skipped: workspace is not a git"
+                                        + " checkout.");
+                return null;
+            }
+            FilePath root = new FilePath(dir.getChannel(), top);
+            String status = GitCli.output(launcher, root, env, "status", "--porcelain");
+            if (status == null || !status.isEmpty()) {
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] Result cache skipped: workspace has uncommitted"
+                                        + " changes.");
+                return null;
+            }
+            return new Checkout(root, commit);
+        }
+
+        /** Everything the agent changed since the commit, as made by {@link GitCli#diff}. */
+        byte[] diff(Launcher launcher, Map<String, String> env)
+                throws IOException, InterruptedException {
+            return GitCli.diff(launcher, root, env);
+        }
+
+        /** Applies a patch made by {@link #diff}; returns whether it applied cleanly. */
+        boolean apply(Launcher launcher, Map<String, String> env, byte[] patch)
+                throws InterruptedException {
+            return GitCli.apply(launcher, root, env, patch);
+        }
+    }
+}
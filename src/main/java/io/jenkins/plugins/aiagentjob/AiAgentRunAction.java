@@ -5,7 +5,9 @@ import hudson.model.Item;
 import hudson.model.Run;
 import hudson.util.HttpResponses;
 
+import jenkins.model.Jenkins;
 import jenkins.model.RunAction2;
+import jenkins.util.Timer;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -19,12 +21,22 @@ import org.kohsuke.stapler.verb.GET;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Per-build action that stores agent execution metadata and provides the inline conversation view
@@ -32,7 +44,39 @@ import java.util.List;
  * handling, and raw log access.
  */
 public class AiAgentRunAction implements Action, RunAction2 {
-    private static final String RAW_LOG_FILE = "ai-agent-stream.jsonl";
+    private static final Logger LOGGER = Logger.getLogger(AiAgentRunAction.class.getName());
+
+    static final String RAW_LOG_FILE = "ai-agent-stream.jsonl";
+
+    /**
+     * Characters of tool input/output included in the progressive event list. Longer bodies are
+     * fetched on demand through {@link #doEventBody}.
+     */
+    static final int TOOL_BODY_PREVIEW_CHARS = 240;
+
+    /**
+     * Raw log lines one {@link #doProgressiveEvents} response covers for a completed build; the
+     * page asks for the next ones right away.
+     */
+    static final int EVENT_PAGE_LINES = 500;
+
+    /**
+     * Lines before a page that are read to find the assistant message its result may repeat; see
+     * {@link AiAgentLogParser#withoutRepeatedResult}.
+     */
+    private static final int REPEATED_RESULT_LOOKBACK_LINES = 64;
+
+    /** Longest time {@link #doApprovalEvents} holds a request open waiting for a change. */
+    static final long APPROVAL_WAIT_MILLIS = 25_000;
+
+    /**
+     * How long the runs of a multi-agent build wait before their start or completion is saved, so
+     * that runs starting or completing together share one save of the build.
+     */
+    static final long VARIANT_SAVE_DELAY_MILLIS = 1_000;
+
+    /** Multi-agent builds with a save pending; see {@link #VARIANT_SAVE_DELAY_MILLIS}. */
+    private static final Set<Run<?, ?>> PENDING_SAVES = ConcurrentHashMap.newKeySet();
 
     private transient Run<?, ?> run;
     private String agentType = "";
@@ -43,9 +87,22 @@ public class AiAgentRunAction implements Action, RunAction2 {
     private long startedAtMillis;
     private long completedAtMillis;
     private Integer exitCode;
-
+    private ApprovalStats approvalStats;
+    private IngestionDiagnostics diagnostics;
+    private AgentTimingStats timingStats;
+    private AgentUsageStats usageStats;
+    private ToolCallStats toolCallStats;
+    private String sessionId;
+    private String resumedSessionId;
+    private int resumedFromBuild;
+    private String cachedFrom;
+    private boolean cancelled;
+    private String variant;
+    private String label;
+
+    /** The action of the build's single agent run. */
     public static AiAgentRunAction getOrCreate(Run<?, ?> run) {
-        AiAgentRunAction existing = run.getAction(AiAgentRunAction.class);
+        AiAgentRunAction existing = getSingle(run);
         if (existing != null) {
             return existing;
         }
@@ -55,6 +112,67 @@ public class AiAgentRunAction implements Action, RunAction2 {
         return created;
     }
 
+    /**
+     * The action of the build's single agent run, or {@code null} if it has none, such as a
+     * multi-agent build whose runs all have a variant.
+     */
+    static AiAgentRunAction getSingle(Run<?, ?> run) {
+        for (AiAgentRunAction existing : run.getActions(AiAgentRunAction.class)) {
+            if (existing.variant == null) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The action of one of several agent runs in a multi-agent build. Each has its own raw log and
+     * URL, {@code ai-agent-<variant>}.
+     */
+    static AiAgentRunAction getOrCreateVariant(Run<?, ?> run, String variant, String label) {
+        AiAgentRunAction existing = variants(run).get(variant);
+        return existing != null ? existing : createVariant(run, variant, label);
+    }
+
+    /** The runs of a multi-agent build by variant, in the order they were created. */
+    static Map<String, AiAgentRunAction> variants(Run<?, ?> run) {
+        Map<String, AiAgentRunAction> variants = new LinkedHashMap<>();
+        for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+            if (action.variant != null) {
+                variants.putIfAbsent(action.variant, action);
+            }
+        }
+        return variants;
+    }
+
+    /** Adds a run to a multi-agent build that has none of {@code variant} yet. */
+    static AiAgentRunAction createVariant(Run<?, ?> run, String variant, String label) {
+        AiAgentRunAction created = new AiAgentRunAction();
+        created.variant = variant;
+        created.label = label;
+        run.addAction(created);
+        created.onAttached(run);
+        return created;
+    }
+
+    /** Raw log of the build's single run, or of one variant of a multi-agent build. */
+    static File rawLogFile(File buildDir, String variant) {
+        if (variant == null) {
+            return new File(buildDir, RAW_LOG_FILE);
+        }
+        return new File(buildDir, "ai-agent-stream-" + variant + ".jsonl");
+    }
+
+    /** Which run of a multi-agent build this is, or {@code null} for a build's single run. */
+    public String getVariant() {
+        return variant;
+    }
+
+    /** What distinguishes this run from the other runs of its build, e.g. agent and model. */
+    public String getLabel() {
+        return label == null ? agentType : label;
+    }
+
     @Override
     public String getIconFileName() {
         return null;
@@ -62,12 +180,24 @@ public class AiAgentRunAction implements Action, RunAction2 {
 
     @Override
     public String getDisplayName() {
-        return "AI Agent Conversation";
+        return variant == null ? "AI Agent Conversation" : "AI Agent Conversation: " + label;
     }
 
     @Override
     public String getUrlName() {
-        return "ai-agent";
+        return variant == null ? "ai-agent" : "ai-agent-" + variant;
+    }
+
+    /**
+     * Whether the build page shows this run's conversation. The runs of a {@link
+     * ExecutionMode#BATCH} build can be many, so only their own pages do.
+     */
+    public boolean isShownOnBuildPage() {
+        if (variant == null || run == null) {
+            return true;
+        }
+        AiAgentRunGroupAction group = run.getAction(AiAgentRunGroupAction.class);
+        return group == null || group.getMode() != ExecutionMode.BATCH;
     }
 
     @Override
@@ -95,13 +225,55 @@ public class AiAgentRunAction implements Action, RunAction2 {
         this.startedAtMillis = System.currentTimeMillis();
         this.completedAtMillis = 0L;
         this.exitCode = null;
-        run.save();
+        this.approvalStats = null;
+        this.diagnostics = null;
+        this.timingStats = null;
+        this.usageStats = null;
+        this.toolCallStats = null;
+        this.sessionId = null;
+        this.resumedSessionId = null;
+        this.resumedFromBuild = 0;
+        this.cachedFrom = null;
+        this.cancelled = false;
+        save();
     }
 
     public synchronized void markCompleted(int exitCode) throws IOException {
         this.exitCode = exitCode;
         this.completedAtMillis = System.currentTimeMillis();
-        run.save();
+        save();
+    }
+
+    /**
+     * Saves the build. A build's single run saves it right away; the runs of a multi-agent build,
+     * which can be hundreds, each have all of them written, so they only schedule a save that
+     * every run changing in the meantime shares. {@link #flushSave} writes it sooner.
+     */
+    private void save() throws IOException {
+        if (variant == null) {
+            run.save();
+            return;
+        }
+        Run<?, ?> build = run;
+        if (PENDING_SAVES.add(build)) {
+            Timer.get()
+                    .schedule(
+                            () -> flushSave(build),
+                            VARIANT_SAVE_DELAY_MILLIS,
+                            TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Saves the build now if a save scheduled by its runs is still pending. */
+    static void flushSave(Run<?, ?> run) {
+        if (!PENDING_SAVES.remove(run)) {
+            return;
+        }
+        try {
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save the agent runs of " + run, e);
+        }
     }
 
     public Run<?, ?> getRun() {
@@ -148,10 +320,160 @@ public class AiAgentRunAction implements Action, RunAction2 {
         return new Date(completedAtMillis).toString();
     }
 
+    /** When the agent exited, or 0 while it runs. */
+    synchronized long getCompletedAtMillis() {
+        return completedAtMillis;
+    }
+
     public synchronized Integer getExitCode() {
         return exitCode;
     }
 
+    /** Time from agent start to exit, or -1 while the agent is running. */
+    public synchronized long getWallClockMillis() {
+        if (startedAtMillis <= 0L || completedAtMillis <= 0L) {
+            return -1;
+        }
+        return completedAtMillis - startedAtMillis;
+    }
+
+    public String getWallClockDisplay() {
+        long millis = getWallClockMillis();
+        return millis < 0 ? "" : Durations.format(millis);
+    }
+
+    /**
+     * The agent session (Codex: thread) this build ran in, as printed by the agent, or {@code
+     * null} if it printed none. A later build of a job that resumes sessions continues it.
+     */
+    public synchronized String getSessionId() {
+        return sessionId;
+    }
+
+    synchronized void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /** The session this build continued, or {@code null} if it started a new one. */
+    public synchronized String getResumedSessionId() {
+        return resumedSessionId;
+    }
+
+    /** Number of the build whose session this build continued, or 0. */
+    public synchronized int getResumedFromBuild() {
+        return resumedFromBuild;
+    }
+
+    synchronized void setResumedSession(String sessionId, int fromBuild) {
+        this.resumedSessionId = sessionId;
+        this.resumedFromBuild = fromBuild;
+    }
+
+    /**
+     * The build whose cached result this build replayed, as an externalizable run ID, or {@code
+     * null} if the agent ran.
+     */
+    public synchronized String getCachedFrom() {
+        return cachedFrom;
+    }
+
+    public synchronized boolean isCached() {
+        return cachedFrom != null;
+    }
+
+    synchronized void setCachedFrom(String cachedFrom) {
+        this.cachedFrom = cachedFrom;
+    }
+
+    /**
+     * Whether the agent was stopped because another agent of the build made it unnecessary, as
+     * the losers of a {@link ExecutionMode#RACE} are. Its output and usage up to then are kept.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    synchronized void setCancelled() {
+        this.cancelled = true;
+    }
+
+    /** Approval gate totals of this build, or {@code null} if nothing was gated. */
+    public synchronized ApprovalStats getApprovalStats() {
+        return approvalStats;
+    }
+
+    /** Counts a resolved approval; persisted with the build on completion. */
+    synchronized void recordApproval(
+            ExecutionRegistry.PendingApproval pending,
+            ExecutionRegistry.ApprovalDecision decision) {
+        if (approvalStats == null) {
+            approvalStats = new ApprovalStats();
+        }
+        approvalStats.record(decision, pending.getCreatedAt().toEpochMilli());
+    }
+
+    synchronized void recordReusedApproval() {
+        if (approvalStats == null) {
+            approvalStats = new ApprovalStats();
+        }
+        approvalStats.recordReused();
+    }
+
+    /**
+     * Ingestion and viewer counters: live while the build runs, then the snapshot stored at the
+     * end. {@code null} for builds that predate them.
+     */
+    public IngestionDiagnostics getDiagnostics() {
+        ExecutionRegistry.LiveExecution liveExecution =
+                run == null ? null : ExecutionRegistry.get(run, variant);
+        if (liveExecution != null) {
+            return liveExecution.getDiagnostics().snapshot();
+        }
+        synchronized (this) {
+            return diagnostics;
+        }
+    }
+
+    synchronized void setDiagnostics(IngestionDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Startup latency, per-turn latency and output throughput, stored when the build completes.
+     * {@code null} while running and for builds that predate them.
+     */
+    public synchronized AgentTimingStats getTimingStats() {
+        return timingStats;
+    }
+
+    synchronized void setTimingStats(AgentTimingStats timingStats) {
+        this.timingStats = timingStats;
+    }
+
+    /** Stores the usage of a completed run, so readers need not parse its log again. */
+    synchronized void setUsageStats(AgentUsageStats usageStats) {
+        this.usageStats = usageStats;
+    }
+
+    /**
+     * Per-tool call counts, durations and output sizes: live while the build runs, then the
+     * snapshot stored at the end. {@code null} for builds that predate them.
+     */
+    public ToolCallStats getToolCallStats() {
+        ExecutionRegistry.LiveExecution liveExecution =
+                run == null ? null : ExecutionRegistry.get(run, variant);
+        if (liveExecution != null) {
+            return liveExecution.getToolCalls().snapshot();
+        }
+        synchronized (this) {
+            return toolCallStats;
+        }
+    }
+
+    synchronized void setToolCallStats(ToolCallStats toolCallStats) {
+        this.toolCallStats = toolCallStats;
+    }
+
     public boolean isLive() {
         return run != null && run.isBuilding();
     }
@@ -160,16 +482,18 @@ public class AiAgentRunAction implements Action, RunAction2 {
         if (run == null) {
             return Collections.emptyList();
         }
-        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run);
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
         if (liveExecution == null) {
             return Collections.emptyList();
         }
         return liveExecution.getPendingApprovals();
     }
 
+    /** Conversation events with each tool result merged into its tool call. */
     public List<AiAgentLogParser.EventView> getEvents() {
-        try {
-            return AiAgentLogParser.parse(getRawLogFile());
+        File raw = getRawLogFile();
+        try (ToolEventMerger merger = new ToolEventMerger(raw)) {
+            return merger.merge(AiAgentLogParser.parse(raw));
         } catch (IOException e) {
             return Collections.singletonList(
                     new AiAgentLogParser.EventView(
@@ -184,8 +508,20 @@ public class AiAgentRunAction implements Action, RunAction2 {
         }
     }
 
-    /** Returns aggregated token usage and cost stats from the JSONL log. */
+    /**
+     * Returns aggregated token usage and cost stats: the snapshot stored when the run completed,
+     * or, while it runs and for builds that predate snapshots, parsed from the JSONL log. A run
+     * that replayed a cached result used nothing; its log is the original run's.
+     */
     public AgentUsageStats getUsageStats() {
+        synchronized (this) {
+            if (cachedFrom != null) {
+                return new AgentUsageStats();
+            }
+            if (usageStats != null) {
+                return usageStats;
+            }
+        }
         try {
             return AgentUsageStats.fromLogFile(getRawLogFile());
         } catch (IOException e) {
@@ -195,7 +531,7 @@ public class AiAgentRunAction implements Action, RunAction2 {
 
     /** Location of the persisted JSONL stream for this build. */
     public File getRawLogFile() {
-        return new File(run.getRootDir(), RAW_LOG_FILE);
+        return rawLogFile(run.getRootDir(), variant);
     }
 
     /** Approves one pending tool call by approval id. */
@@ -205,7 +541,7 @@ public class AiAgentRunAction implements Action, RunAction2 {
         if (id == null || id.trim().isEmpty()) {
             return HttpResponses.errorWithoutStack(400, "Missing approval id");
         }
-        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run);
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
         if (liveExecution == null || !liveExecution.approve(id)) {
             return HttpResponses.errorWithoutStack(404, "Approval request not found");
         }
@@ -219,79 +555,236 @@ public class AiAgentRunAction implements Action, RunAction2 {
         if (id == null || id.trim().isEmpty()) {
             return HttpResponses.errorWithoutStack(400, "Missing approval id");
         }
-        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run);
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
         if (liveExecution == null || !liveExecution.deny(id, reason)) {
             return HttpResponses.errorWithoutStack(404, "Approval request not found");
         }
         return HttpResponses.redirectToDot();
     }
 
+    /**
+     * Approves or denies one pending tool call and answers with JSON instead of a redirect, so the
+     * build page can resolve approvals without reloading. An approval's {@code scope} ({@code
+     * once}, {@code call} or {@code tool}) only goes beyond this call when the job remembers
+     * approvals.
+     */
+    @RequirePOST
+    public Object doDecide(
+            @QueryParameter String id,
+            @QueryParameter String decision,
+            @QueryParameter String scope,
+            @QueryParameter String reason) {
+        checkBuildPermission();
+        if (id == null || id.trim().isEmpty()) {
+            return HttpResponses.errorWithoutStack(400, "Missing approval id");
+        }
+        boolean approve = "approve".equals(decision);
+        if (!approve && !"deny".equals(decision)) {
+            return HttpResponses.errorWithoutStack(400, "Decision must be 'approve' or 'deny'");
+        }
+        ExecutionRegistry.ApprovalScope approvalScope =
+                ExecutionRegistry.ApprovalScope.fromString(scope);
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
+        if (liveExecution == null
+                || !(approve
+                        ? liveExecution.approve(id, approvalScope)
+                        : liveExecution.deny(id, reason))) {
+            return HttpResponses.errorWithoutStack(404, "Approval request not found");
+        }
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("decision", decision);
+        result.put("version", liveExecution.getApprovalsVersion());
+        return HttpResponses.okJSON(result);
+    }
+
+    /**
+     * Long-poll endpoint for pending approvals. When {@code since} matches the current approvals
+     * version the request is held until an approval is created or resolved (or the build ends),
+     * for at most {@link #APPROVAL_WAIT_MILLIS}; otherwise it answers immediately.
+     */
+    @GET
+    public void doApprovalEvents(StaplerRequest2 request, StaplerResponse2 response)
+            throws IOException {
+        checkReadPermission();
+        long since = AiAgentApprovalApi.parseVersion(request.getParameter("since"));
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
+        if (liveExecution != null) {
+            liveExecution.getDiagnostics().approvalsPolled();
+        }
+        if (liveExecution != null && since >= 0) {
+            AiAgentApprovalApi.await(
+                    liveExecution.onApprovalsChangedSince(since), APPROVAL_WAIT_MILLIS);
+        }
+        writeApprovals(response, liveExecution);
+    }
+
+    /**
+     * JSON API for automated reviewers. Returns the pending approvals of this build; with {@code
+     * wait} (e.g. {@code 30s}) and no approval pending, the request is held until one is created
+     * or the build ends. With {@code since}, it is instead held until the approvals version moves
+     * past that value.
+     */
+    @GET
+    public void doPendingApprovals(StaplerRequest2 request, StaplerResponse2 response)
+            throws IOException {
+        checkReadPermission();
+        long waitMillis = AiAgentApprovalApi.parseWaitMillis(request.getParameter("wait"));
+        long since = AiAgentApprovalApi.parseVersion(request.getParameter("since"));
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
+        if (liveExecution != null) {
+            liveExecution.getDiagnostics().approvalsPolled();
+        }
+        if (liveExecution != null && waitMillis > 0) {
+            if (since >= 0) {
+                AiAgentApprovalApi.await(liveExecution.onApprovalsChangedSince(since), waitMillis);
+            } else {
+                long version = liveExecution.getApprovalsVersion();
+                if (liveExecution.getPendingApprovals().isEmpty()) {
+                    AiAgentApprovalApi.await(
+                            liveExecution.onApprovalsChangedSince(version), waitMillis);
+                }
+            }
+        }
+        writeApprovals(response, liveExecution);
+    }
+
+    /**
+     * Batch approve/deny for automated reviewers. The body is JSON of the form {@code
+     * {"decisions":[{"id":..., "decision":"approve"|"deny", "reason":..., "idempotencyKey":...}]}};
+     * the response lists one {@code status} per entry ({@code approved}, {@code denied}, {@code
+     * not_found}, {@code conflict} or {@code invalid}). Repeating a request with the same
+     * idempotency keys returns the original results; reusing a key for a different decision is
+     * answered with 409.
+     */
+    @RequirePOST
+    public void doDecisions(StaplerRequest2 request, StaplerResponse2 response)
+            throws IOException {
+        checkBuildPermission();
+        JSONArray decisions = AiAgentApprovalApi.readDecisions(request);
+        if (decisions == null || decisions.size() > AiAgentApprovalApi.MAX_BATCH_SIZE) {
+            response.sendError(400, AiAgentApprovalApi.invalidBatchMessage());
+            return;
+        }
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
+        AiAgentApprovalApi.writeResults(
+                response,
+                AiAgentApprovalApi.applyDecisions(
+                        decisions,
+                        Jenkins.getAuthentication2().getName(),
+                        id ->
+                                liveExecution != null && liveExecution.hasPendingApproval(id)
+                                        ? liveExecution
+                                        : null,
+                        live -> true));
+    }
+
+    private void writeApprovals(
+            StaplerResponse2 response, ExecutionRegistry.LiveExecution liveExecution)
+            throws IOException {
+        JSONObject result = new JSONObject();
+        boolean live =
+                liveExecution != null && ExecutionRegistry.get(run, variant) == liveExecution;
+        // Read the version before the list: a change in between only causes one extra round trip.
+        result.put("version", liveExecution == null ? 0 : liveExecution.getApprovalsVersion());
+        result.put("live", live);
+        result.put("memoization", live && liveExecution.isMemoizeApprovals());
+        result.put(
+                "pendingApprovals",
+                AiAgentApprovalApi.approvalsJson(
+                        live ? liveExecution.getPendingApprovals() : Collections.emptyList()));
+        AiAgentApprovalApi.writeJson(response, result);
+    }
+
+    /** Ingestion diagnostics of this build as JSON; see {@link #getDiagnostics()}. */
+    @GET
+    public void doDiagnostics(StaplerResponse2 response) throws IOException {
+        checkReadPermission();
+        IngestionDiagnostics current = getDiagnostics();
+        JSONObject result = current == null ? new JSONObject() : current.toJson();
+        result.put("live", isLive());
+        AiAgentApprovalApi.writeJson(response, result);
+    }
+
+    /** Per-tool breakdown of this build as JSON; see {@link #getToolCallStats()}. */
+    @GET
+    public void doToolStats(StaplerResponse2 response) throws IOException {
+        checkReadPermission();
+        ToolCallStats current = getToolCallStats();
+        JSONObject result = current == null ? new JSONObject() : current.toJson();
+        result.put("live", isLive());
+        AiAgentApprovalApi.writeJson(response, result);
+    }
+
     /** Progressive JSON endpoint consumed by the conversation UI for incremental event polling. */
     @GET
-    public void doProgressiveEvents(StaplerRequest2 request, StaplerResponse2 response)
+    public void doProgressiveEvents(@QueryParameter String start, StaplerResponse2 response)
             throws IOException {
         checkReadPermission();
+        AiAgentFlightRecorder.ProgressiveEvents event =
+                new AiAgentFlightRecorder.ProgressiveEvents();
+        event.begin();
         long startLine = 0;
-        String startParam = request.getParameter("start");
-        if (startParam != null) {
+        if (start != null) {
             try {
-                startLine = Long.parseLong(startParam);
+                startLine = Long.parseLong(start);
             } catch (NumberFormatException ignored) {
             }
         }
 
-        File raw = getRawLogFile();
-        List<AiAgentLogParser.EventView> newEvents = new ArrayList<>();
-        long lineCount = 0;
-
-        if (raw.exists()) {
-            try (BufferedReader reader =
-                    Files.newBufferedReader(raw.toPath(), StandardCharsets.UTF_8)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    lineCount++;
-                    if (lineCount <= startLine) {
-                        continue;
-                    }
-                    AiAgentLogParser.EventView ev =
-                            AiAgentLogParser.parseLine(lineCount, line).toEventView();
-                    if (!ev.isEmpty()) {
-                        newEvents.add(ev);
-                    }
-                }
-            }
+        List<AiAgentLogParser.EventView> newEvents;
+        long lineCount;
+        boolean more = false;
+        ExecutionRegistry.LiveExecution liveExecution = ExecutionRegistry.get(run, variant);
+        if (liveExecution != null) {
+            liveExecution.getDiagnostics().eventPolled();
+        }
+        LiveEventTail tail = liveExecution == null ? null : liveExecution.getEventTail();
+        if (tail != null) {
+            LiveEventTail.Snapshot snapshot = tail.refresh();
+            newEvents = snapshot.eventsAfter(startLine);
+            lineCount = snapshot.getLineCount();
+        } else {
+            EventPage page = readEventsAfter(startLine);
+            newEvents = page.events;
+            lineCount = page.lineCount;
+            more = page.more;
         }
 
         JSONArray eventsJson = new JSONArray();
-        for (AiAgentLogParser.EventView ev : newEvents) {
-            JSONObject obj = new JSONObject();
-            obj.put("id", ev.getId());
-            obj.put("category", ev.getCategory());
-            obj.put("categoryLabel", ev.getCategoryLabel());
-            obj.put("label", ev.getLabel());
-            obj.put("content", ev.getContent());
-            obj.put("toolInput", ev.getToolInput());
-            obj.put("toolOutput", ev.getToolOutput());
-            obj.put("summary", ev.getSummary());
-            eventsJson.add(obj);
+        try (ToolEventMerger merger = new ToolEventMerger(getRawLogFile())) {
+            for (AiAgentLogParser.EventView ev : merger.merge(newEvents)) {
+                JSONObject obj = new JSONObject();
+                obj.put("id", ev.getId());
+                obj.put("category", ev.getCategory());
+                obj.put("categoryLabel", ev.getCategoryLabel());
+                obj.put("label", ev.getLabel());
+                obj.put("content", ev.getContent());
+                putToolBodyPreview(obj, "toolInput", ev.getToolInput());
+                putToolBodyPreview(obj, "toolOutput", ev.getToolOutput());
+                obj.put("summary", ev.getSummary());
+                if (!ev.getToolCallId().isEmpty()) {
+                    obj.put("toolCallId", ev.getToolCallId());
+                }
+                if (ev.isMerged()) {
+                    obj.put("resultId", ev.getResultId());
+                    obj.put("durationMillis", ev.getDurationMillis());
+                } else if (ev.isToolEvent() && !ev.getToolCallId().isEmpty()) {
+                    // Lets the page merge a result into a call it received in an earlier poll.
+                    obj.put("arrivedAt", merger.arrivalOf(ev.getId()));
+                }
+                eventsJson.add(obj);
+            }
         }
 
         JSONObject result = new JSONObject();
         result.put("events", eventsJson);
         result.put("nextStart", lineCount);
+        result.put("more", more);
         result.put("live", isLive());
         result.put("exitCode", getExitCode());
 
-        JSONArray approvalsJson = new JSONArray();
-        for (ExecutionRegistry.PendingApproval pa : getPendingApprovals()) {
-            JSONObject paObj = new JSONObject();
-            paObj.put("id", pa.getId());
-            paObj.put("toolName", pa.getToolName());
-            paObj.put("toolCallId", pa.getToolCallId());
-            paObj.put("inputSummary", pa.getInputSummary());
-            approvalsJson.add(paObj);
-        }
-        result.put("pendingApprovals", approvalsJson);
+        result.put("pendingApprovals", AiAgentApprovalApi.approvalsJson(getPendingApprovals()));
 
         if (!isLive()) {
             AgentUsageStats stats = getUsageStats();
@@ -309,12 +802,176 @@ public class AiAgentRunAction implements Action, RunAction2 {
                 statsJson.put("toolCalls", stats.getToolCalls());
                 result.put("usageStats", statsJson);
             }
+            AgentTimingStats timing = getTimingStats();
+            if (timing != null && timing.hasData()) {
+                JSONObject timingJson = timing.toJson();
+                timingJson.put("startupDisplay", timing.getStartupDisplay());
+                timingJson.put("firstTextDisplay", timing.getFirstTextDisplay());
+                timingJson.put(
+                        "outputTokensPerSecondDisplay", timing.getOutputTokensPerSecondDisplay());
+                timingJson.put("turnLatencyDisplay", timing.getTurnLatencyDisplay());
+                timingJson.put("cliSetupDisplay", timing.getCliSetupDisplay());
+                result.put("timingStats", timingJson);
+            }
         }
 
+        String body = result.toString();
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(body);
+        if (event.shouldCommit()) {
+            event.build = run.getExternalizableId();
+            event.start = startLine;
+            event.nextStart = lineCount;
+            event.events = newEvents.size();
+            event.bytes = body.getBytes(StandardCharsets.UTF_8).length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds {@code <field>Preview}, {@code <field>Bytes} and {@code <field>Truncated} for one tool
+     * body; the complete text is only sent by {@link #doEventBody}.
+     */
+    static void putToolBodyPreview(JSONObject obj, String field, String body) {
+        boolean truncated = body.length() > TOOL_BODY_PREVIEW_CHARS;
+        String preview = body;
+        if (truncated) {
+            int end = TOOL_BODY_PREVIEW_CHARS;
+            if (Character.isHighSurrogate(body.charAt(end - 1))) {
+                end--;
+            }
+            preview = body.substring(0, end);
+        }
+        obj.put(field + "Preview", preview);
+        obj.put(field + "Bytes", body.getBytes(StandardCharsets.UTF_8).length);
+        obj.put(field + "Truncated", truncated);
+    }
+
+    /**
+     * Returns the full tool input and output of one event, identified by its raw log line number.
+     * For a tool call merged with its result, {@code resultId} names the result's line, which
+     * supplies the output. Lines are located through the byte-offset index written while the agent
+     * runs.
+     */
+    @GET
+    public void doEventBody(
+            @QueryParameter String id, @QueryParameter String resultId, StaplerResponse2 response)
+            throws IOException {
+        checkReadPermission();
+        long line = parseLineNumber(id);
+        if (line < 1) {
+            response.sendError(400, "Missing or invalid event id");
+            return;
+        }
+        String text = AiAgentLogIndex.readLine(getRawLogFile(), line);
+        if (text == null) {
+            response.sendError(404, "Event not found");
+            return;
+        }
+        AiAgentLogParser.EventView ev = AiAgentLogParser.parseLine(line, text).toEventView();
+        String toolOutput = ev.getToolOutput();
+        if (resultId != null && !resultId.isEmpty()) {
+            long resultLine = parseLineNumber(resultId);
+            if (resultLine < 1) {
+                response.sendError(400, "Invalid result id");
+                return;
+            }
+            String resultText = AiAgentLogIndex.readLine(getRawLogFile(), resultLine);
+            if (resultText == null) {
+                response.sendError(404, "Event not found");
+                return;
+            }
+            toolOutput = AiAgentLogParser.parseLine(resultLine, resultText).getToolOutput();
+        }
+        JSONObject result = new JSONObject();
+        result.put("id", line);
+        result.put("toolInput", ev.getToolInput());
+        result.put("toolOutput", toolOutput);
         response.setContentType("application/json;charset=UTF-8");
         response.getWriter().write(result.toString());
     }
 
+    /** A raw log line number from a query parameter, or {@code -1} if missing or invalid. */
+    private static long parseLineNumber(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the events of the up to {@link #EVENT_PAGE_LINES} raw log lines after {@code
+     * startLine}. The log index is used to seek to the page instead of reading the lines before it.
+     */
+    private EventPage readEventsAfter(long startLine) throws IOException {
+        EventPage page = new EventPage(startLine);
+        File raw = getRawLogFile();
+        if (!raw.exists()) {
+            return page;
+        }
+        long lineCount = Math.max(0, startLine - REPEATED_RESULT_LOOKBACK_LINES);
+        long offset =
+                lineCount == 0
+                        ? 0
+                        : AiAgentLogIndex.offsetOf(
+                                AiAgentLogIndex.indexFileFor(raw), lineCount + 1);
+        if (offset < 0) {
+            // Builds from before the index was written are read from the start.
+            lineCount = 0;
+            offset = 0;
+        }
+        String lastAssistantContent = "";
+        try (FileChannel channel = FileChannel.open(raw.toPath(), StandardOpenOption.READ);
+                BufferedReader reader =
+                        new BufferedReader(
+                                Channels.newReader(
+                                        channel.position(offset), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (lineCount == startLine + EVENT_PAGE_LINES) {
+                    page.more = true;
+                    break;
+                }
+                lineCount++;
+                if (lineCount < startLine - REPEATED_RESULT_LOOKBACK_LINES) {
+                    continue;
+                }
+                AiAgentLogParser.EventView ev =
+                        AiAgentLogParser.parseLine(lineCount, line).toEventView();
+                if (ev.isEmpty()) {
+                    continue;
+                }
+                if ("assistant".equals(ev.getCategory()) && !ev.getContent().isEmpty()) {
+                    lastAssistantContent = ev.getContent();
+                }
+                if (lineCount <= startLine) {
+                    continue;
+                }
+                ev = AiAgentLogParser.withoutRepeatedResult(ev, lastAssistantContent);
+                if (!ev.isEmpty()) {
+                    page.events.add(ev);
+                }
+            }
+        }
+        page.lineCount = lineCount;
+        return page;
+    }
+
+    /** Events of one page of a completed build's log. */
+    private static final class EventPage {
+        final List<AiAgentLogParser.EventView> events = new ArrayList<>();
+        long lineCount;
+        boolean more;
+
+        EventPage(long startLine) {
+            this.lineCount = startLine;
+        }
+    }
+
     /** Streams the raw JSONL capture for this build. */
     @GET
     public void doRaw(StaplerRequest2 request, StaplerResponse2 response) throws IOException {
@@ -0,0 +1,207 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+
+import jenkins.model.RunAction2;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The agent runs of a multi-agent build, at {@code <build>/ai-agent-runs/}. The build page shows
+ * them as tabs above their conversations, with their stats side by side; the URL serves the same
+ * comparison as JSON.
+ */
+public class AiAgentRunGroupAction implements Action, RunAction2 {
+    private transient Run<?, ?> run;
+    private final ExecutionMode mode;
+    private volatile String winner;
+
+    AiAgentRunGroupAction(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    static AiAgentRunGroupAction getOrCreate(Run<?, ?> run, ExecutionMode mode) {
+        AiAgentRunGroupAction existing = run.getAction(AiAgentRunGroupAction.class);
+        if (existing != null) {
+            return existing;
+        }
+        AiAgentRunGroupAction created = new AiAgentRunGroupAction(mode);
+        run.addAction(created);
+        created.onAttached(run);
+        return created;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Runs";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-runs";
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /** Variant of the agent that won a {@link ExecutionMode#RACE}, or {@code null}. */
+    public String getWinner() {
+        return winner;
+    }
+
+    void setWinner(String winner) {
+        this.winner = winner;
+    }
+
+    /** The agent runs of the build, in the order they were configured. */
+    public List<AiAgentRunAction> getRuns() {
+        List<AiAgentRunAction> runs = new ArrayList<>();
+        for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+            if (action.getVariant() != null) {
+                runs.add(action);
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Per-run stats with their totals. Every call reads the raw logs, so pages read it once: a
+     * batch build can have hundreds of runs.
+     */
+    public Summary getSummary() {
+        Summary summary = new Summary();
+        for (AiAgentRunAction action : getRuns()) {
+            summary.add(action);
+        }
+        return summary;
+    }
+
+    /** Per-run stats as JSON, in the order of {@link #getRuns()}. */
+    @GET
+    public void doIndex(StaplerResponse2 response) throws IOException {
+        run.getParent().checkPermission(Item.READ);
+        AiAgentApprovalApi.writeJson(response, toJson());
+    }
+
+    JSONObject toJson() {
+        Summary summary = getSummary();
+        JSONArray rows = new JSONArray();
+        for (Row summaryRow : summary.getRows()) {
+            AiAgentRunAction action = summaryRow.getRun();
+            AgentUsageStats usage = summaryRow.getStats();
+            JSONObject row = new JSONObject();
+            row.put("variant", action.getVariant());
+            row.put("label", action.getLabel());
+            row.put("agentType", action.getAgentType());
+            row.put("model", action.getModel());
+            row.put("url", action.getUrlName());
+            row.put("live", action.isLive() && action.getExitCode() == null);
+            row.put("exitCode", action.getExitCode());
+            row.put("cancelled", action.isCancelled());
+            row.put("wallClockMillis", action.getWallClockMillis());
+            row.put("costUsd", usage.getCostUsd());
+            row.put("inputTokens", usage.getInputTokens());
+            row.put("outputTokens", usage.getOutputTokens());
+            row.put("numTurns", usage.getNumTurns());
+            row.put("toolCalls", usage.getToolCalls());
+            rows.add(row);
+        }
+        AgentUsageStats totals = summary.getTotals();
+        JSONObject totalsJson = new JSONObject();
+        totalsJson.put("succeeded", summary.getSucceeded());
+        totalsJson.put("failed", summary.getFailed());
+        totalsJson.put("costUsd", totals.getCostUsd());
+        totalsJson.put("inputTokens", totals.getInputTokens());
+        totalsJson.put("outputTokens", totals.getOutputTokens());
+        totalsJson.put("numTurns", totals.getNumTurns());
+        totalsJson.put("toolCalls", totals.getToolCalls());
+        JSONObject result = new JSONObject();
+        result.put("mode", mode.name());
+        result.put("winner", winner);
+        result.put("runs", rows);
+        result.put("totals", totalsJson);
+        return result;
+    }
+
+    /** The runs of a build with their stats. */
+    public static final class Summary {
+        private final List<Row> rows = new ArrayList<>();
+        private final AgentUsageStats totals = new AgentUsageStats();
+        private int succeeded;
+        private int failed;
+
+        void add(AiAgentRunAction action) {
+            AgentUsageStats stats = action.getUsageStats();
+            rows.add(new Row(action, stats));
+            totals.add(stats);
+            Integer exitCode = action.getExitCode();
+            if (exitCode != null && exitCode == 0) {
+                succeeded++;
+            } else if (exitCode != null && !action.isCancelled()) {
+                failed++;
+            }
+        }
+
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        public AgentUsageStats getTotals() {
+            return totals;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        /** Runs that exited non-zero, not counting the ones stopped because another agent won. */
+        public int getFailed() {
+            return failed;
+        }
+    }
+
+    /** One run of a build with its stats. */
+    public static final class Row {
+        private final AiAgentRunAction run;
+        private final AgentUsageStats stats;
+
+        Row(AiAgentRunAction run, AgentUsageStats stats) {
+            this.run = run;
+            this.stats = stats;
+        }
+
+        public AiAgentRunAction getRun() {
+            return run;
+        }
+
+        public AgentUsageStats getStats() {
+            return stats;
+        }
+    }
+}
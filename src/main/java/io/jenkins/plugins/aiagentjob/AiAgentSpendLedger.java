@@ -0,0 +1,517 @@
+package io.jenkins.plugins.aiagentjob;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.ItemGroup;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * What AI agent jobs spent today, by job, from the usage every agent run records when it completes;
+ * replayed cached runs cost nothing. Builds wait in the queue once their job's, a folder's or the
+ * global daily budget is used up, and, for jobs that ask for it, while their average build cost
+ * would exceed one; see {@link Budgets}. A build the queue lets start counts with its job's average
+ * cost, first as a pending item of the queue, then from when it leaves the queue until its runs
+ * have recorded what they spent, so a burst of queued builds cannot overrun a budget together.
+ * Today's spend and the average costs are read from the stored builds in the background, never
+ * while the queue decides, then kept up to date as runs and builds complete.
+ */
+public final class AiAgentSpendLedger {
+    private static final Logger LOGGER = Logger.getLogger(AiAgentSpendLedger.class.getName());
+
+    /** Builds a job's average cost is taken over. */
+    static final int AVERAGE_OF_BUILDS = 10;
+
+    private static AiAgentSpendLedger instance; // guarded by AiAgentSpendLedger.class
+
+    private final ZoneId zone;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile boolean loaded;
+
+    // Guarded by this.
+    private LocalDate day;
+    private final Map<String, Double> spentByJob = new HashMap<>();
+    private final Set<String> recordedRuns = new HashSet<>();
+    private final Map<Long, Reservation> reservations = new HashMap<>();
+    private final Map<String, Double> averages = new HashMap<>();
+
+    AiAgentSpendLedger(ZoneId zone) {
+        this.zone = zone;
+        this.day = LocalDate.now(zone);
+    }
+
+    /**
+     * The controller's ledger. It is only loaded with the runs that completed today once a build
+     * falls under a budget, so instances without budgets never read old builds; see {@link
+     * #loadInBackground}.
+     */
+    static synchronized AiAgentSpendLedger get() {
+        if (instance == null) {
+            instance = new AiAgentSpendLedger(ZoneId.systemDefault());
+        }
+        return instance;
+    }
+
+    /** Starts reading today's spend at startup if any job falls under a budget. */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void preload() {
+        for (AiAgentProject project : Jenkins.get().getAllItems(AiAgentProject.class)) {
+            if (hasBudget(project)) {
+                get().loadInBackground();
+                return;
+            }
+        }
+    }
+
+    /** Whether any budget applies to builds of {@code project}. */
+    static boolean hasBudget(AiAgentProject project) {
+        return Budgets.of(project).any();
+    }
+
+    /**
+     * Records an agent run that just completed, and takes what it cost off the cost reserved for
+     * its build. Before the ledger exists, loading it will find the run.
+     */
+    static void runCompleted(AiAgentRunAction action) {
+        AiAgentSpendLedger ledger;
+        synchronized (AiAgentSpendLedger.class) {
+            ledger = instance;
+        }
+        if (ledger != null && ledger.record(action, System.currentTimeMillis())) {
+            ledger.settle(action.getRun().getQueueId(), action.getUsageStats().getCostUsd());
+        }
+    }
+
+    /** Whether today's spend has been read from the stored builds. */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Starts reading today's spend and the jobs' average costs, unless that already started. */
+    void loadInBackground() {
+        if (loading.compareAndSet(false, true)) {
+            Timer.get().submit(this::load);
+        }
+    }
+
+    /**
+     * Adds the runs of every job that completed today, including those of running builds, and
+     * computes the average cost of every job under a budget. Runs that complete meanwhile are
+     * recorded as usual and not counted twice.
+     */
+    private void load() {
+        try {
+            long startOfDay;
+            synchronized (this) {
+                startOfDay = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            for (AiAgentProject project : Jenkins.get().getAllItems(AiAgentProject.class)) {
+                // A build that started yesterday may have runs that completed today.
+                for (Run<?, ?> run :
+                        project.getBuilds().byTimestamp(startOfDay - 86_400_000L, Long.MAX_VALUE)) {
+                    for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+                        if (action.getCompletedAtMillis() >= startOfDay) {
+                            record(action, action.getCompletedAtMillis());
+                        }
+                    }
+                }
+                if (hasBudget(project)) {
+                    updateAverageCost(project);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not read today's AI agent spend", e);
+        } finally {
+            loaded = true;
+        }
+    }
+
+    /** Records a completed run; returns whether it cost anything that was not recorded yet. */
+    private boolean record(AiAgentRunAction action, long at) {
+        Run<?, ?> run = action.getRun();
+        if (action.getExitCode() == null || action.isCached()) {
+            return false;
+        }
+        return record(
+                run.getParent().getFullName(),
+                run.getExternalizableId() + "/" + Util.fixNull(action.getVariant()),
+                action.getUsageStats().getCostUsd(),
+                at);
+    }
+
+    /** Cost of a build's agent runs; those that replayed a cached result cost nothing. */
+    static double costOf(Run<?, ?> run) {
+        double cost = 0;
+        for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+            cost += action.getUsageStats().getCostUsd();
+        }
+        return cost;
+    }
+
+    /**
+     * Adds the cost of a completed agent run of {@code job}, unless the run, identified by {@code
+     * runKey}, was already recorded or completed before today. Returns whether it was added.
+     */
+    synchronized boolean record(String job, String runKey, double costUsd, long at) {
+        rollOver(at);
+        if (!Instant.ofEpochMilli(at).atZone(zone).toLocalDate().equals(day)
+                || !recordedRuns.add(runKey)) {
+            return false;
+        }
+        if (costUsd > 0) {
+            spentByJob.merge(job, costUsd, Double::sum);
+        }
+        return true;
+    }
+
+    /** What the jobs at or below {@code path} spent today; the empty path covers all jobs. */
+    synchronized double spent(String path, long now) {
+        rollOver(now);
+        double spent = 0;
+        for (Map.Entry<String, Double> entry : spentByJob.entrySet()) {
+            if (covers(path, entry.getKey())) {
+                spent += entry.getValue();
+            }
+        }
+        return spent;
+    }
+
+    /** What {@code expected} builds of the jobs at or below {@code path} are expected to spend. */
+    private static double expected(String path, Map<Long, Reservation> expected) {
+        double total = 0;
+        for (Reservation reservation : expected.values()) {
+            if (covers(path, reservation.job)) {
+                total += reservation.cost;
+            }
+        }
+        return total;
+    }
+
+    private static boolean covers(String path, String job) {
+        return path.isEmpty() || job.equals(path) || job.startsWith(path + "/");
+    }
+
+    /**
+     * Why a build under {@code budgets} has to wait now, or {@code null} if it can start: a budget
+     * it falls under is used up, or {@code projectedCost} would take it past the budget.
+     */
+    String blockedReason(Budgets budgets, double projectedCost, long now) {
+        return blockedReason(budgets, projectedCost, now, Run.QUEUE_ID_UNKNOWN, Map.of());
+    }
+
+    /**
+     * Why the build with {@code queueId} has to wait now; see {@link #blockedReason(Budgets,
+     * double, long)}. Besides builds that left the queue, the {@code dispatched} builds, by queue
+     * ID, count with what they are expected to spend: the queue let them start, but they have not
+     * left it yet. Reserves nothing; see {@link #reserve}.
+     */
+    synchronized String blockedReason(
+            Budgets budgets,
+            double projectedCost,
+            long now,
+            long queueId,
+            Map<Long, Reservation> dispatched) {
+        Map<Long, Reservation> others = new HashMap<>(dispatched);
+        others.putAll(reservations);
+        others.remove(queueId);
+        String reason =
+                check(
+                        "job " + budgets.job,
+                        budgets.jobBudget,
+                        spent(budgets.job, now),
+                        expected(budgets.job, others),
+                        projectedCost);
+        for (Map.Entry<String, Double> folder : budgets.folderBudgets.entrySet()) {
+            if (reason == null) {
+                reason =
+                        check(
+                                "folder " + folder.getKey(),
+                                folder.getValue(),
+                                spent(folder.getKey(), now),
+                                expected(folder.getKey(), others),
+                                projectedCost);
+            }
+        }
+        if (reason == null) {
+            reason =
+                    check(
+                            "all jobs",
+                            budgets.globalBudget,
+                            spent("", now),
+                            expected("", others),
+                            projectedCost);
+        }
+        return reason;
+    }
+
+    /**
+     * Counts {@code averageCost} against the budgets of the build with {@code queueId}, a build of
+     * {@code job} that just left the queue, until its runs complete or it ends.
+     */
+    synchronized void reserve(long queueId, String job, double averageCost) {
+        if (averageCost > 0) {
+            reservations.put(queueId, new Reservation(job, averageCost));
+        }
+    }
+
+    /** Takes what a run of the build with {@code queueId} cost off the cost reserved for it. */
+    synchronized void settle(long queueId, double costUsd) {
+        Reservation reservation = reservations.get(queueId);
+        if (reservation != null) {
+            reservation.cost -= costUsd;
+            if (reservation.cost <= 0) {
+                reservations.remove(queueId);
+            }
+        }
+    }
+
+    /** Drops what is still reserved for the build with {@code queueId}. */
+    synchronized void release(long queueId) {
+        reservations.remove(queueId);
+    }
+
+    private static String check(
+            String scope, double budget, double spent, double reserved, double projected) {
+        if (budget <= 0) {
+            return null;
+        }
+        String state =
+                usd(spent)
+                        + " of "
+                        + usd(budget)
+                        + " spent today"
+                        + (reserved > 0
+                                ? ", and " + usd(reserved) + " expected from running builds"
+                                : "");
+        if (spent + reserved >= budget) {
+            return "Daily AI agent budget of " + scope + " is used up: " + state + ".";
+        }
+        if (spent + reserved + projected > budget) {
+            return "A build would exceed the daily AI agent budget of "
+                    + scope
+                    + ": "
+                    + state
+                    + ", and builds of this job cost "
+                    + usd(projected)
+                    + " on average.";
+        }
+        return null;
+    }
+
+    /**
+     * Average cost of the job's last {@link #AVERAGE_OF_BUILDS} completed builds as last computed,
+     * never read from disk here. A job not computed yet counts as 0 while it is computed in the
+     * background.
+     */
+    synchronized double averageCost(AiAgentProject project) {
+        Double average = averages.get(project.getFullName());
+        if (average != null) {
+            return average;
+        }
+        averages.put(project.getFullName(), 0.0);
+        Timer.get().submit(() -> updateAverageCost(project));
+        return 0;
+    }
+
+    /** Recomputes the average cost of a job from its stored builds, which may be read from disk. */
+    void updateAverageCost(AiAgentProject project) {
+        double total = 0;
+        int builds = 0;
+        for (Run<?, ?> run : project.getBuilds().completedOnly().limit(AVERAGE_OF_BUILDS)) {
+            total += costOf(run);
+            builds++;
+        }
+        double average = builds == 0 ? 0 : total / builds;
+        synchronized (this) {
+            averages.put(project.getFullName(), average);
+        }
+    }
+
+    private void rollOver(long now) {
+        LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        if (today.isAfter(day)) {
+            day = today;
+            spentByJob.clear();
+            recordedRuns.clear();
+        }
+    }
+
+    private static String usd(double amount) {
+        return String.format(Locale.US, "$%.2f", amount);
+    }
+
+    /**
+     * The daily budgets in USD that builds of one job fall under, 0 for none: the job's own, those
+     * of the folders it is in, innermost first, and the global one.
+     */
+    static final class Budgets {
+        final String job;
+        final double jobBudget;
+        final Map<String, Double> folderBudgets;
+        final double globalBudget;
+
+        Budgets(
+                String job,
+                double jobBudget,
+                Map<String, Double> folderBudgets,
+                double globalBudget) {
+            this.job = job;
+            this.jobBudget = jobBudget;
+            this.folderBudgets = folderBudgets;
+            this.globalBudget = globalBudget;
+        }
+
+        /** The budgets of {@code project} as currently configured. */
+        static Budgets of(AiAgentProject project) {
+            Map<String, Double> folders = new LinkedHashMap<>();
+            ItemGroup<?> parent = project.getParent();
+            while (parent instanceof AbstractFolder) {
+                AbstractFolder<?> folder = (AbstractFolder<?>) parent;
+                AiAgentFolderProperty property =
+                        folder.getProperties().get(AiAgentFolderProperty.class);
+                if (property != null && property.getDailyBudgetUsd() > 0) {
+                    folders.put(folder.getFullName(), property.getDailyBudgetUsd());
+                }
+                parent = folder.getParent();
+            }
+            return new Budgets(
+                    project.getFullName(),
+                    project.getDailyBudgetUsd(),
+                    folders,
+                    AiAgentGlobalConfiguration.get().getDailyBudgetUsd());
+        }
+
+        boolean any() {
+            return jobBudget > 0 || !folderBudgets.isEmpty() || globalBudget > 0;
+        }
+    }
+
+    /** Cost expected from a build that was let start. Guarded by the ledger. */
+    static final class Reservation {
+        final String job;
+        double cost;
+
+        Reservation(String job, double cost) {
+            this.job = job;
+            this.cost = cost;
+        }
+    }
+
+    /** Keeps builds of AI agent jobs in the queue while a budget they fall under is used up. */
+    @Extension
+    public static final class Dispatcher extends QueueTaskDispatcher {
+        @Override
+        public CauseOfBlockage canRun(Queue.Item item) {
+            if (!(item.task instanceof AiAgentProject)) {
+                return null;
+            }
+            AiAgentProject project = (AiAgentProject) item.task;
+            Budgets budgets = Budgets.of(project);
+            if (!budgets.any()) {
+                return null;
+            }
+            AiAgentSpendLedger ledger = get();
+            if (!ledger.isLoaded()) {
+                ledger.loadInBackground();
+                return new OverBudget("Reading today's AI agent spend from the stored builds.");
+            }
+            String reason =
+                    ledger.blockedReason(
+                            budgets,
+                            project.isCheckProjectedCost() ? ledger.averageCost(project) : 0,
+                            System.currentTimeMillis(),
+                            item.getId(),
+                            dispatched(ledger));
+            return reason == null ? null : new OverBudget(reason);
+        }
+
+        /** Expected cost of the builds the queue let start that wait for their executor. */
+        private static Map<Long, Reservation> dispatched(AiAgentSpendLedger ledger) {
+            Map<Long, Reservation> dispatched = new HashMap<>();
+            for (Queue.BuildableItem pending : Queue.getInstance().getPendingItems()) {
+                if (pending.task instanceof AiAgentProject
+                        && hasBudget((AiAgentProject) pending.task)) {
+                    AiAgentProject project = (AiAgentProject) pending.task;
+                    double averageCost = ledger.averageCost(project);
+                    if (averageCost > 0) {
+                        dispatched.put(
+                                pending.getId(),
+                                new Reservation(project.getFullName(), averageCost));
+                    }
+                }
+            }
+            return dispatched;
+        }
+    }
+
+    /** Counts the average cost of builds from when they leave the queue until their runs end. */
+    @Extension
+    public static final class StartingBuilds extends QueueListener {
+        @Override
+        public void onLeft(Queue.LeftItem item) {
+            if (!item.isCancelled()
+                    && item.task instanceof AiAgentProject
+                    && hasBudget((AiAgentProject) item.task)) {
+                AiAgentProject project = (AiAgentProject) item.task;
+                AiAgentSpendLedger ledger = get();
+                ledger.reserve(item.getId(), project.getFullName(), ledger.averageCost(project));
+            }
+        }
+    }
+
+    /**
+     * Drops what is still reserved for a build once it is over, and updates its job's average
+     * cost off the queue's lock.
+     */
+    @Extension
+    public static final class CompletedBuilds extends RunListener<Run<?, ?>> {
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            if (run.getParent() instanceof AiAgentProject) {
+                AiAgentSpendLedger ledger = get();
+                ledger.release(run.getQueueId());
+                if (hasBudget((AiAgentProject) run.getParent())) {
+                    ledger.updateAverageCost((AiAgentProject) run.getParent());
+                }
+            }
+        }
+    }
+
+    private static final class OverBudget extends CauseOfBlockage {
+        private final String reason;
+
+        OverBudget(String reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return reason;
+        }
+    }
+}
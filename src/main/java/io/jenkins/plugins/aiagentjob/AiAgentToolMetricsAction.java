@@ -0,0 +1,105 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.Run;
+
+import jenkins.model.TransientActionFactory;
+
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.verb.GET;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Job-level tool rollup at {@code job/<name>/ai-agent-tool-metrics/}: per-tool calls, durations
+ * and output across the most recent builds, slowest first, to show which tools eat most agent time.
+ */
+public class AiAgentToolMetricsAction implements Action {
+    private final AiAgentProject project;
+
+    AiAgentToolMetricsAction(AiAgentProject project) {
+        this.project = project;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "AI Agent Tool Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ai-agent-tool-metrics";
+    }
+
+    /** JSON rollup of the last {@code builds} builds (default 50, at most 500). */
+    @GET
+    public void doIndex(StaplerRequest2 request, StaplerResponse2 response) throws IOException {
+        project.checkPermission(Item.READ);
+        int builds = AiAgentApprovalMetricsAction.parseBuilds(request.getParameter("builds"));
+        AiAgentApprovalApi.writeJson(response, metrics(builds));
+    }
+
+    JSONObject metrics(int builds) {
+        ToolCallStats total = new ToolCallStats();
+        int scanned = 0;
+        int toolBuilds = 0;
+        long toolBuildMillis = 0;
+        for (Run<?, ?> run : project.getBuilds().limit(builds)) {
+            scanned++;
+            if (run.isBuilding()) {
+                continue;
+            }
+            boolean usedTools = false;
+            // Multi-agent builds have one action per agent run.
+            for (AiAgentRunAction action : run.getActions(AiAgentRunAction.class)) {
+                ToolCallStats stats = action.getToolCallStats();
+                if (stats != null && stats.hasData()) {
+                    usedTools = true;
+                    total.add(stats);
+                }
+            }
+            if (usedTools) {
+                toolBuilds++;
+                toolBuildMillis += run.getDuration();
+            }
+        }
+
+        JSONObject result = total.toJson();
+        result.put("job", project.getFullName());
+        result.put("builds", scanned);
+        result.put("toolBuilds", toolBuilds);
+        // Share of those builds' wall clock spent inside tool calls.
+        result.put(
+                "toolShare",
+                toolBuildMillis <= 0
+                        ? 0
+                        : Math.min(1, (double) total.getTotalMillis() / toolBuildMillis));
+        return result;
+    }
+
+    /** Adds the tool metrics endpoint to every AI agent job. */
+    @Extension
+    public static final class Factory extends TransientActionFactory<AiAgentProject> {
+        @Override
+        public Class<AiAgentProject> type() {
+            return AiAgentProject.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(AiAgentProject target) {
+            return Collections.singletonList(new AiAgentToolMetricsAction(target));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Approval gate totals for one build, or merged across builds of a job: how many tool calls were
+ * gated, how they were resolved and how long the build waited for each. Stored on {@link
+ * AiAgentRunAction} so the numbers survive the build.
+ */
+public final class ApprovalStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int requested;
+    private int approved;
+    private int denied;
+    private int timedOut;
+    private int aborted;
+    private int byRule;
+    private int reused;
+    private long totalWaitMillis;
+
+    /** Wait times; only the first {@link #waits} slots are used while the build records them. */
+    private long[] waitMillis = new long[0];
+
+    private transient int waits;
+
+    /** Adds one resolved approval that was created at {@code createdAtMillis}. */
+    synchronized void record(ExecutionRegistry.ApprovalDecision decision, long createdAtMillis) {
+        requested++;
+        ExecutionRegistry.DecisionSource source = decision.getSource();
+        if (source == ExecutionRegistry.DecisionSource.TIMEOUT) {
+            timedOut++;
+        } else if (source == ExecutionRegistry.DecisionSource.ABORTED) {
+            aborted++;
+        } else if (decision.isApproved()) {
+            approved++;
+        } else {
+            denied++;
+        }
+        if (source == ExecutionRegistry.DecisionSource.RULE) {
+            byRule++;
+        }
+        long wait = Math.max(0, decision.getDecidedAt().toEpochMilli() - createdAtMillis);
+        totalWaitMillis += wait;
+        ensureCapacity(waits + 1);
+        waitMillis[waits++] = wait;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > waitMillis.length) {
+            waitMillis = Arrays.copyOf(waitMillis, Math.max(needed, waitMillis.length * 2));
+        }
+    }
+
+    /** Counts a tool call that an earlier "approve for the build" decision let through. */
+    synchronized void recordReused() {
+        reused++;
+    }
+
+    /** Adds another build's totals, for job-level figures. */
+    synchronized void add(ApprovalStats other) {
+        synchronized (other) {
+            requested += other.requested;
+            approved += other.approved;
+            denied += other.denied;
+            timedOut += other.timedOut;
+            aborted += other.aborted;
+            byRule += other.byRule;
+            reused += other.reused;
+            totalWaitMillis += other.totalWaitMillis;
+            ensureCapacity(waits + other.waits);
+            System.arraycopy(other.waitMillis, 0, waitMillis, waits, other.waits);
+            waits += other.waits;
+        }
+    }
+
+    /** Stores the wait times without the unused slots. */
+    private synchronized Object writeReplace() {
+        if (waitMillis.length != waits) {
+            waitMillis = Arrays.copyOf(waitMillis, waits);
+        }
+        return this;
+    }
+
+    private Object readResolve() {
+        if (waitMillis == null) {
+            waitMillis = new long[0];
+        }
+        waits = waitMillis.length;
+        return this;
+    }
+
+    public synchronized boolean hasData() {
+        return requested > 0 || reused > 0;
+    }
+
+    public synchronized int getRequested() {
+        return requested;
+    }
+
+    public synchronized int getApproved() {
+        return approved;
+    }
+
+    public synchronized int getDenied() {
+        return denied;
+    }
+
+    public synchronized int getTimedOut() {
+        return timedOut;
+    }
+
+    /** Approvals left open when the build ended or was aborted. */
+    public synchronized int getAborted() {
+        return aborted;
+    }
+
+    /** Approvals resolved by an earlier "approve for the build" decision while waiting. */
+    public synchronized int getByRule() {
+        return byRule;
+    }
+
+    /** Tool calls that never waited because an earlier decision already covered them. */
+    public synchronized int getReused() {
+        return reused;
+    }
+
+    /** Wall clock the build spent waiting on approvals. */
+    public synchronized long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /** Share of approvals that timed out, between 0 and 1. */
+    public synchronized double getTimeoutRate() {
+        return requested == 0 ? 0 : (double) timedOut / requested;
+    }
+
+    /** Nearest-rank percentile of the wait times, e.g. {@code 0.95}; 0 without data. */
+    public synchronized long getWaitPercentile(double percentile) {
+        if (waits == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(waitMillis, waits);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+
+    public synchronized long getMaxWaitMillis() {
+        long max = 0;
+        for (int i = 0; i < waits; i++) {
+            max = Math.max(max, waitMillis[i]);
+        }
+        return max;
+    }
+
+    public String getWaitP50Display() {
+        return Durations.format(getWaitPercentile(0.5));
+    }
+
+    public String getWaitP95Display() {
+        return Durations.format(getWaitPercentile(0.95));
+    }
+
+    public String getTotalWaitDisplay() {
+        return Durations.format(getTotalWaitMillis());
+    }
+}
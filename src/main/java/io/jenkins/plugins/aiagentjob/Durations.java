@@ -0,0 +1,16 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.util.Locale;
+
+/** Formatting of durations shown on build pages and in the build log. */
+final class Durations {
+    private Durations() {}
+
+    /** Formats a duration like "850ms", "4.5s" or "2m 15s". */
+    static String format(long millis) {
+        if (millis < 1000) return millis + "ms";
+        long secs = millis / 1000;
+        if (secs < 60) return String.format(Locale.US, "%.1fs", millis / 1000.0);
+        return (secs / 60) + "m " + (secs % 60) + "s";
+    }
+}
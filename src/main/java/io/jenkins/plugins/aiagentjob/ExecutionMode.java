@@ -0,0 +1,50 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.util.Locale;
+
+/** How a build of an {@link AiAgentProject} runs its agents. */
+public enum ExecutionMode {
+    /** One agent, configured by the job. */
+    SINGLE("Single agent"),
+    /** Several agent configurations on the same task in parallel, each in its own git worktree. */
+    FAN_OUT("Fan-out: several agents in parallel"),
+    /**
+     * Several agent configurations on the same task in parallel; the first to succeed wins, and
+     * the others are stopped.
+     */
+    RACE("Race: first successful agent wins"),
+    /**
+     * The job's agent once per prompt of a list: one at a time in the build's workspace, or in
+     * parallel, each in its own git worktree whose changes are applied to the workspace.
+     */
+    BATCH("Batch: one run per prompt"),
+    /**
+     * The job's agent once per directory matched by the shard globs, all in the build's workspace,
+     * then a reduce agent that merges their results.
+     */
+    MAP_REDUCE("Map-reduce: one agent per shard, then a reduce agent");
+
+    private final String displayName;
+
+    ExecutionMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Parses persisted or form-submitted values; defaults to {@link #SINGLE}. */
+    public static ExecutionMode fromString(String value) {
+        if (value == null) {
+            return SINGLE;
+        }
+        String normalized = value.trim().toUpperCase(Locale.ROOT);
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equals(normalized)) {
+                return mode;
+            }
+        }
+        return SINGLE;
+    }
+}
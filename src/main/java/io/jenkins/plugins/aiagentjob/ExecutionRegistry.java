@@ -2,18 +2,30 @@ package io.jenkins.plugins.aiagentjob;
 
 import hudson.model.Run;
 
+import jenkins.util.Timer;
+
+import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 /**
  * In-memory registry of live AI agent builds, used to coordinate tool-call approval gates between
@@ -22,111 +34,622 @@ import java.util.concurrent.TimeoutException;
 public final class ExecutionRegistry {
     private static final Map<String, LiveExecution> LIVE_RUNS = new ConcurrentHashMap<>();
 
+    /** Bounded memory of idempotency keys that already produced a decision. */
+    private static final int MAX_REMEMBERED_DECISIONS = 10_000;
+
+    /**
+     * Decisions by user, approval id and idempotency key, so one client's keys can neither replay
+     * nor block another's.
+     */
+    private static final Map<String, RememberedDecision> DECISIONS_BY_KEY =
+            new LinkedHashMap<String, RememberedDecision>() {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, RememberedDecision> eldest) {
+                    return size() > MAX_REMEMBERED_DECISIONS;
+                }
+            };
+
+    /** Gives every approval of every build a place in one global creation order. */
+    private static final AtomicLong APPROVAL_SEQUENCE = new AtomicLong();
+
+    /**
+     * Jenkins-wide inbox: every pending approval of every live build keyed by sequence, so
+     * iteration is already in creation order. Maintained on create and on every way an approval
+     * ends (decision, timeout, build end).
+     */
+    private static final ConcurrentSkipListMap<Long, InboxEntry> INBOX =
+            new ConcurrentSkipListMap<>();
+
+    private static final Map<String, InboxEntry> INBOX_BY_ID = new ConcurrentHashMap<>();
+
+    private static final Object GLOBAL_LOCK = new Object();
+    private static volatile long globalApprovalsVersion;
+    private static volatile InboxSnapshot inboxSnapshot =
+            new InboxSnapshot(0, Collections.emptyList());
+    private static CompletableFuture<Long> nextGlobalApprovalsChange = new CompletableFuture<>();
+
     private ExecutionRegistry() {}
 
     public static LiveExecution register(Run<?, ?> run) {
-        LiveExecution liveExecution = new LiveExecution();
-        LIVE_RUNS.put(run.getExternalizableId(), liveExecution);
+        return register(run, null);
+    }
+
+    /** Registers one agent run of a build; {@code variant} is {@code null} for the single run. */
+    static LiveExecution register(Run<?, ?> run, String variant) {
+        LiveExecution liveExecution =
+                new LiveExecution(
+                        run.getExternalizableId(),
+                        AiAgentRunAction.rawLogFile(run.getRootDir(), variant));
+        LIVE_RUNS.put(key(run, variant), liveExecution);
         return liveExecution;
     }
 
     public static LiveExecution get(Run<?, ?> run) {
-        return LIVE_RUNS.get(run.getExternalizableId());
+        return get(run, null);
+    }
+
+    static LiveExecution get(Run<?, ?> run, String variant) {
+        return LIVE_RUNS.get(key(run, variant));
     }
 
     public static void unregister(Run<?, ?> run) {
-        LIVE_RUNS.remove(run.getExternalizableId());
+        unregister(run, null);
+    }
+
+    static void unregister(Run<?, ?> run, String variant) {
+        LiveExecution removed = LIVE_RUNS.remove(key(run, variant));
+        if (removed != null) {
+            removed.discardPendingApprovals();
+            // Wake long-polling viewers so they learn the build is no longer live.
+            removed.approvalsChanged();
+        }
+    }
+
+    private static String key(Run<?, ?> run, String variant) {
+        String id = run.getExternalizableId();
+        return variant == null ? id : id + '/' + variant;
+    }
+
+    /** All agent runs that are currently live, several per build for multi-agent builds. */
+    static Collection<LiveExecution> liveExecutions() {
+        return Collections.unmodifiableCollection(LIVE_RUNS.values());
+    }
+
+    /** The live build that owns the given pending approval, or {@code null}. */
+    static LiveExecution findByApprovalId(String approvalId) {
+        InboxEntry entry = approvalId == null ? null : INBOX_BY_ID.get(approvalId);
+        return entry == null ? null : entry.getLiveExecution();
+    }
+
+    /**
+     * Pending approvals of all live builds in creation order. The list is rebuilt by the first call
+     * after a change rather than on every change or call, so neither polling it nor a burst of
+     * approvals copies the inbox more than needed.
+     */
+    static List<InboxEntry> inbox() {
+        InboxSnapshot snapshot = inboxSnapshot;
+        long version = globalApprovalsVersion;
+        if (snapshot.version == version) {
+            return snapshot.entries;
+        }
+        // Read after the version, so the copy holds at least every change counted in it; changes
+        // racing with the copy bump the version again and are picked up by the next call.
+        InboxSnapshot fresh = new InboxSnapshot(version, List.copyOf(INBOX.values()));
+        synchronized (GLOBAL_LOCK) {
+            if (inboxSnapshot.version < version) {
+                inboxSnapshot = fresh;
+            }
+        }
+        return fresh.entries;
+    }
+
+    /** The inbox as of one global approvals version. */
+    private static final class InboxSnapshot {
+        final long version;
+        final List<InboxEntry> entries;
+
+        InboxSnapshot(long version, List<InboxEntry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Decision {@code user} previously made on approval {@code id} with {@code idempotencyKey},
+     * {@link DecisionResult#CONFLICT} if that decision differs from the one given, or {@code null}.
+     */
+    static DecisionResult rememberedDecision(
+            String user,
+            String id,
+            String idempotencyKey,
+            boolean approve,
+            ApprovalScope scope,
+            String reason) {
+        synchronized (DECISIONS_BY_KEY) {
+            RememberedDecision previous =
+                    DECISIONS_BY_KEY.get(decisionKey(user, id, idempotencyKey));
+            return previous == null ? null : previous.replay(approve, scope, reason);
+        }
+    }
+
+    private static String decisionKey(String user, String id, String idempotencyKey) {
+        return user + '\n' + id + '\n' + idempotencyKey;
+    }
+
+    /** Incremented whenever an approval of any live build is created or resolved. */
+    static long getGlobalApprovalsVersion() {
+        return globalApprovalsVersion;
+    }
+
+    /** Global counterpart of {@link LiveExecution#onApprovalsChangedSince(long)}. */
+    static CompletableFuture<Long> onGlobalApprovalsChangedSince(long version) {
+        synchronized (GLOBAL_LOCK) {
+            if (globalApprovalsVersion != version) {
+                return CompletableFuture.completedFuture(globalApprovalsVersion);
+            }
+            return nextGlobalApprovalsChange;
+        }
+    }
+
+    private static void globalApprovalsChanged() {
+        CompletableFuture<Long> waiting;
+        long version;
+        synchronized (GLOBAL_LOCK) {
+            version = ++globalApprovalsVersion;
+            waiting = nextGlobalApprovalsChange;
+            nextGlobalApprovalsChange = new CompletableFuture<>();
+        }
+        waiting.complete(version);
     }
 
     /** Live mutable state for one running build. */
     public static final class LiveExecution {
         private final Map<String, PendingApproval> pendingApprovals = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, PendingApproval> pendingBySequence =
+                new ConcurrentSkipListMap<>();
+        private volatile List<PendingApproval> pendingSnapshot = Collections.emptyList();
         private final Map<String, CompletableFuture<ApprovalDecision>> decisions =
                 new ConcurrentHashMap<>();
+        private final Set<String> approvedCalls = ConcurrentHashMap.newKeySet();
+        private final Set<String> approvedTools = ConcurrentHashMap.newKeySet();
+        private volatile boolean memoizeApprovals;
+        private final String runId;
+        private final LiveEventTail eventTail;
+        private final IngestionDiagnostics.Recorder diagnostics =
+                new IngestionDiagnostics.Recorder();
+        private final AgentTimingStats.Recorder timing = new AgentTimingStats.Recorder();
+        private final ToolCallStats.Recorder toolCalls = new ToolCallStats.Recorder();
+        private volatile long approvalsVersion;
+        private CompletableFuture<Long> nextApprovalsChange = new CompletableFuture<>();
+
+        LiveExecution() {
+            this(null, null);
+        }
+
+        LiveExecution(String runId, File rawLogFile) {
+            this.runId = runId;
+            this.eventTail = rawLogFile == null ? null : new LiveEventTail(rawLogFile);
+        }
+
+        /** {@link Run#getExternalizableId()} of the build, or {@code null} for detached use. */
+        String getRunId() {
+            return runId;
+        }
+
+        /**
+         * Shared follower of this build's raw log, or {@code null} when the execution was created
+         * without one. All viewers of the live build page are served from it.
+         */
+        LiveEventTail getEventTail() {
+            return eventTail;
+        }
+
+        /** Incremented whenever an approval request is created or resolved. */
+        long getApprovalsVersion() {
+            return approvalsVersion;
+        }
+
+        /**
+         * Returns a future that completes with the new version as soon as the set of pending
+         * approvals differs from {@code version}; already completed if it differs now.
+         */
+        synchronized CompletableFuture<Long> onApprovalsChangedSince(long version) {
+            if (approvalsVersion != version) {
+                return CompletableFuture.completedFuture(approvalsVersion);
+            }
+            return nextApprovalsChange;
+        }
+
+        void approvalsChanged() {
+            CompletableFuture<Long> waiting;
+            long version;
+            synchronized (this) {
+                version = ++approvalsVersion;
+                pendingSnapshot = List.copyOf(pendingBySequence.values());
+                waiting = nextApprovalsChange;
+                nextApprovalsChange = new CompletableFuture<>();
+            }
+            waiting.complete(version);
+            globalApprovalsChanged();
+        }
+
+        /** Enables "approve for the rest of the build" for this execution. */
+        void setMemoizeApprovals(boolean memoizeApprovals) {
+            this.memoizeApprovals = memoizeApprovals;
+        }
+
+        boolean isMemoizeApprovals() {
+            return memoizeApprovals;
+        }
+
+        /**
+         * Whether an earlier approval with {@link ApprovalScope#CALL} or {@link
+         * ApprovalScope#TOOL} already covers this tool call, so it can proceed without a new
+         * request.
+         */
+        boolean isPreApproved(String toolName, String toolInput) {
+            if (!memoizeApprovals) {
+                return false;
+            }
+            String tool = normalizeToolName(toolName);
+            return approvedTools.contains(tool) || approvedCalls.contains(callKey(tool, toolInput));
+        }
+
+        private boolean isPreApproved(PendingApproval pending) {
+            return isPreApproved(pending.getToolName(), pending.getToolInput());
+        }
+
+        /** Ingestion and viewer counters of this build. */
+        IngestionDiagnostics.Recorder getDiagnostics() {
+            return diagnostics;
+        }
+
+        /** Arrival times of this build's agent events. */
+        AgentTimingStats.Recorder getTiming() {
+            return timing;
+        }
+
+        /** Tool calls of this build paired with their results. */
+        ToolCallStats.Recorder getToolCalls() {
+            return toolCalls;
+        }
+
+        boolean hasPendingApproval(String id) {
+            return id != null && pendingApprovals.containsKey(id);
+        }
+
+        /**
+         * Approves or denies one pending tool call on behalf of {@code user}, an API client. When
+         * the same user already decided this approval with the same non-empty {@code
+         * idempotencyKey}, that earlier result is returned again (marked as replayed) and nothing
+         * else happens, so clients can safely retry; a different decision under that key is
+         * answered with {@link DecisionResult#CONFLICT}.
+         */
+        DecisionResult decide(
+                String user,
+                String id,
+                boolean approve,
+                ApprovalScope scope,
+                String reason,
+                String idempotencyKey) {
+            List<Runnable> completions = new ArrayList<>();
+            DecisionResult result;
+            if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+                result = apply(id, approve, scope, reason, completions);
+            } else {
+                synchronized (DECISIONS_BY_KEY) {
+                    String key = decisionKey(user, id, idempotencyKey);
+                    RememberedDecision previous = DECISIONS_BY_KEY.get(key);
+                    if (previous != null) {
+                        return previous.replay(approve, scope, reason);
+                    }
+                    result = apply(id, approve, scope, reason, completions);
+                    // Only applied decisions are remembered; a wrong id must not burn the key.
+                    if (result.isApplied()) {
+                        DECISIONS_BY_KEY.put(
+                                key, new RememberedDecision(approve, scope, reason, result));
+                    }
+                }
+            }
+            // Outside the lock every build shares, as they resume whatever waits on the decision.
+            runAll(completions);
+            return result;
+        }
+
+        private DecisionResult apply(
+                String id,
+                boolean approve,
+                ApprovalScope scope,
+                String reason,
+                List<Runnable> completions) {
+            boolean applied =
+                    approve
+                            ? approve(id, scope, completions)
+                            : complete(id, ApprovalDecision.denied(reason), () -> {}, completions);
+            if (!applied) {
+                return DecisionResult.NOT_FOUND;
+            }
+            return approve ? DecisionResult.APPROVED : DecisionResult.DENIED;
+        }
 
         PendingApproval createPendingApproval(
                 String toolCallId, String toolName, String inputSummary) {
+            return createPendingApproval(toolCallId, toolName, inputSummary, inputSummary);
+        }
+
+        PendingApproval createPendingApproval(
+                String toolCallId, String toolName, String toolInput, String inputSummary) {
             String id = UUID.randomUUID().toString();
             PendingApproval pending =
-                    new PendingApproval(id, toolCallId, toolName, inputSummary, Instant.now());
-            pendingApprovals.put(id, pending);
+                    new PendingApproval(
+                            id,
+                            APPROVAL_SEQUENCE.incrementAndGet(),
+                            toolCallId,
+                            toolName,
+                            toolInput,
+                            inputSummary,
+                            Instant.now());
             decisions.put(id, new CompletableFuture<>());
+            pendingApprovals.put(id, pending);
+            pendingBySequence.put(pending.getSequence(), pending);
+            InboxEntry entry = new InboxEntry(this, pending);
+            INBOX_BY_ID.put(id, entry);
+            INBOX.put(pending.getSequence(), entry);
+            approvalsChanged();
             return pending;
         }
 
-        ApprovalDecision awaitDecision(PendingApproval pendingApproval, Duration timeout) {
-            CompletableFuture<ApprovalDecision> future = decisions.get(pendingApproval.getId());
+        /**
+         * The decision for {@code pendingApproval} as a future, completed with a denial once
+         * {@code timeout} passes. Nothing blocks while waiting, so callers can continue on
+         * whichever thread resolves the approval instead of parking their own.
+         */
+        CompletableFuture<ApprovalDecision> decisionFor(
+                PendingApproval pendingApproval, Duration timeout) {
+            String id = pendingApproval.getId();
+            CompletableFuture<ApprovalDecision> future = decisions.get(id);
             if (future == null) {
-                return ApprovalDecision.denied("approval request disappeared");
+                return CompletableFuture.completedFuture(
+                        ApprovalDecision.denied(
+                                "approval request disappeared", DecisionSource.ABORTED));
             }
+            // Built when the timer fires, so the decision carries the actual time it was made.
+            ScheduledFuture<?> timer =
+                    Timer.get()
+                            .schedule(
+                                    () ->
+                                            complete(
+                                                    id,
+                                                    ApprovalDecision.denied(
+                                                            "approval timed out after "
+                                                                    + timeout.toSeconds()
+                                                                    + "s",
+                                                            DecisionSource.TIMEOUT)),
+                                    timeout.toMillis(),
+                                    TimeUnit.MILLISECONDS);
+            // Returning the dependent stage means callers only see the decision once it is no
+            // longer listed as pending. An earlier decision drops the timer with it.
+            return future.whenComplete(
+                    (decision, failure) -> {
+                        timer.cancel(false);
+                        removePending(id);
+                    });
+        }
+
+        ApprovalDecision awaitDecision(PendingApproval pendingApproval, Duration timeout) {
+            CompletableFuture<ApprovalDecision> future = decisionFor(pendingApproval, timeout);
             try {
-                ApprovalDecision decision = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
-                pendingApprovals.remove(pendingApproval.getId());
-                decisions.remove(pendingApproval.getId());
-                return decision;
+                return future.get();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                return ApprovalDecision.denied("interrupted while waiting for approval");
+                ApprovalDecision interrupted =
+                        ApprovalDecision.denied(
+                                "interrupted while waiting for approval", DecisionSource.ABORTED);
+                complete(pendingApproval.getId(), interrupted);
+                return interrupted;
             } catch (ExecutionException e) {
-                return ApprovalDecision.denied("approval failed: " + e.getMessage());
-            } catch (TimeoutException e) {
-                pendingApprovals.remove(pendingApproval.getId());
-                decisions.remove(pendingApproval.getId());
                 return ApprovalDecision.denied(
-                        "approval timed out after " + timeout.toSeconds() + "s");
+                        "approval failed: " + e.getMessage(), DecisionSource.ABORTED);
             }
         }
 
+        /** Pending approvals in creation order; a snapshot maintained on every change. */
         public List<PendingApproval> getPendingApprovals() {
-            List<PendingApproval> list = new ArrayList<>(pendingApprovals.values());
-            list.sort((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()));
-            return Collections.unmodifiableList(list);
+            return pendingSnapshot;
         }
 
         public boolean approve(String id) {
-            CompletableFuture<ApprovalDecision> future = decisions.get(id);
-            if (future == null) {
+            return approve(id, ApprovalScope.ONCE);
+        }
+
+        /**
+         * Approves one pending tool call. With memoization enabled, a {@link ApprovalScope#CALL}
+         * or {@link ApprovalScope#TOOL} scope also approves matching requests that are already
+         * waiting and lets later repeats through without asking.
+         */
+        public boolean approve(String id, ApprovalScope scope) {
+            List<Runnable> completions = new ArrayList<>();
+            boolean approved = approve(id, scope, completions);
+            runAll(completions);
+            return approved;
+        }
+
+        private boolean approve(String id, ApprovalScope scope, List<Runnable> completions) {
+            PendingApproval pending = id == null ? null : pendingApprovals.get(id);
+            if (pending == null) {
                 return false;
             }
-            boolean completed = future.complete(ApprovalDecision.approved());
-            if (completed) {
-                pendingApprovals.remove(id);
-                decisions.remove(id);
+            boolean remembered = memoizeApprovals && scope != null && scope != ApprovalScope.ONCE;
+            Runnable remember = () -> {};
+            if (remembered) {
+                String tool = normalizeToolName(pending.getToolName());
+                remember =
+                        scope == ApprovalScope.TOOL
+                                ? () -> approvedTools.add(tool)
+                                : () -> approvedCalls.add(callKey(tool, pending.getToolInput()));
             }
-            return completed;
+            // Only remembered if this approval wins over a concurrent denial or the timeout, and
+            // before the agent resumes, so its next identical call already matches.
+            if (!complete(id, ApprovalDecision.approved(), remember, completions)) {
+                return false;
+            }
+            if (remembered) {
+                for (PendingApproval other : pendingSnapshot) {
+                    if (isPreApproved(other)) {
+                        complete(
+                                other.getId(),
+                                ApprovalDecision.approved(DecisionSource.RULE),
+                                () -> {},
+                                completions);
+                    }
+                }
+            }
+            return true;
         }
 
         public boolean deny(String id, String reason) {
-            CompletableFuture<ApprovalDecision> future = decisions.get(id);
-            if (future == null) {
+            return complete(id, ApprovalDecision.denied(reason));
+        }
+
+        private boolean complete(String id, ApprovalDecision decision) {
+            List<Runnable> completions = new ArrayList<>();
+            boolean completed = complete(id, decision, () -> {}, completions);
+            runAll(completions);
+            return completed;
+        }
+
+        /**
+         * Runs {@code onDecided} only if {@code decision} is the one that ends the approval. The
+         * future is completed by a task added to {@code completions}, which the caller runs once
+         * it holds no locks, since the agent's output handler continues on that thread.
+         */
+        private boolean complete(
+                String id,
+                ApprovalDecision decision,
+                Runnable onDecided,
+                List<Runnable> completions) {
+            PendingApproval pending = id == null ? null : pendingApprovals.get(id);
+            CompletableFuture<ApprovalDecision> future = id == null ? null : decisions.get(id);
+            // The approval itself arbitrates between a reviewer, a rule and the timeout.
+            if (pending == null || future == null || !pending.recordDecision(decision)) {
                 return false;
             }
-            boolean completed = future.complete(ApprovalDecision.denied(reason));
-            if (completed) {
-                pendingApprovals.remove(id);
-                decisions.remove(id);
+            onDecided.run();
+            completions.add(
+                    () -> {
+                        future.complete(decision);
+                        removePending(id);
+                    });
+            return true;
+        }
+
+        private static void runAll(List<Runnable> completions) {
+            for (Runnable completion : completions) {
+                completion.run();
+            }
+        }
+
+        /** Denies and drops whatever is still pending once the build is no longer live. */
+        void discardPendingApprovals() {
+            for (String id : new ArrayList<>(pendingApprovals.keySet())) {
+                if (!complete(
+                        id, ApprovalDecision.denied("build finished", DecisionSource.ABORTED))) {
+                    removePending(id);
+                }
             }
-            return completed;
+        }
+
+        private void removePending(String id) {
+            decisions.remove(id);
+            PendingApproval removed = pendingApprovals.remove(id);
+            if (removed == null) {
+                return;
+            }
+            pendingBySequence.remove(removed.getSequence());
+            INBOX.remove(removed.getSequence());
+            INBOX_BY_ID.remove(id);
+            approvalsChanged();
+        }
+    }
+
+    /** How far an approval extends beyond the tool call it was requested for. */
+    public enum ApprovalScope {
+        /** Only this tool call. */
+        ONCE,
+        /** Identical calls (same tool and input) for the rest of the build. */
+        CALL,
+        /** Every call of this tool for the rest of the build. */
+        TOOL;
+
+        static ApprovalScope fromString(String value) {
+            if (value != null) {
+                for (ApprovalScope scope : values()) {
+                    if (scope.name().equalsIgnoreCase(value.trim())) {
+                        return scope;
+                    }
+                }
+            }
+            return ONCE;
+        }
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    static String normalizeToolName(String toolName) {
+        return toolName == null ? "" : toolName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Memoization key: tool name and input, ignoring case of the name and whitespace runs. */
+    static String callKey(String normalizedToolName, String toolInput) {
+        String input =
+                toolInput == null ? "" : WHITESPACE.matcher(toolInput.trim()).replaceAll(" ");
+        return normalizedToolName + '\n' + input;
+    }
+
+    /** One entry of the Jenkins-wide approval inbox: a pending approval and its live build. */
+    static final class InboxEntry {
+        private final LiveExecution liveExecution;
+        private final PendingApproval approval;
+
+        InboxEntry(LiveExecution liveExecution, PendingApproval approval) {
+            this.liveExecution = liveExecution;
+            this.approval = approval;
+        }
+
+        LiveExecution getLiveExecution() {
+            return liveExecution;
+        }
+
+        PendingApproval getApproval() {
+            return approval;
         }
     }
 
     /** Immutable view model for one outstanding approval request. */
     public static final class PendingApproval {
         private final String id;
+        private final long sequence;
         private final String toolCallId;
         private final String toolName;
+        private final String toolInput;
         private final String inputSummary;
         private final Instant createdAt;
+        private final AtomicReference<ApprovalDecision> decision = new AtomicReference<>();
 
         PendingApproval(
                 String id,
+                long sequence,
                 String toolCallId,
                 String toolName,
+                String toolInput,
                 String inputSummary,
                 Instant createdAt) {
             this.id = id;
+            this.sequence = sequence;
             this.toolCallId = toolCallId;
             this.toolName = toolName;
+            this.toolInput = toolInput;
             this.inputSummary = inputSummary;
             this.createdAt = createdAt;
         }
@@ -135,6 +658,11 @@ public final class ExecutionRegistry {
             return id;
         }
 
+        /** Position in the global creation order of approvals. */
+        public long getSequence() {
+            return sequence;
+        }
+
         public String getToolCallId() {
             return toolCallId;
         }
@@ -143,6 +671,11 @@ public final class ExecutionRegistry {
             return toolName;
         }
 
+        /** Full tool input, used to match repeats of this call. */
+        String getToolInput() {
+            return toolInput;
+        }
+
         public String getInputSummary() {
             return inputSummary;
         }
@@ -150,26 +683,125 @@ public final class ExecutionRegistry {
         public Instant getCreatedAt() {
             return createdAt;
         }
+
+        /** The decision once one was made, otherwise {@code null}. */
+        public ApprovalDecision getDecision() {
+            return decision.get();
+        }
+
+        /** Time the build was held waiting for this approval; up to now while still pending. */
+        public long getWaitMillis() {
+            ApprovalDecision made = decision.get();
+            Instant end = made == null ? Instant.now() : made.getDecidedAt();
+            return Math.max(0, end.toEpochMilli() - createdAt.toEpochMilli());
+        }
+
+        boolean recordDecision(ApprovalDecision made) {
+            return decision.compareAndSet(null, made);
+        }
+    }
+
+    /** Who or what resolved an approval. */
+    public enum DecisionSource {
+        /** A reviewer, through the build page, the inbox or the API. */
+        USER,
+        /** An earlier "approve for the build" decision that covered this call. */
+        RULE,
+        /** Nobody decided within the job's approval timeout. */
+        TIMEOUT,
+        /** The build ended or was interrupted while waiting. */
+        ABORTED
+    }
+
+    /** Outcome of {@link LiveExecution#decide}, as reported to API clients. */
+    static final class DecisionResult {
+        static final DecisionResult APPROVED = new DecisionResult("approved", false);
+        static final DecisionResult DENIED = new DecisionResult("denied", false);
+        static final DecisionResult NOT_FOUND = new DecisionResult("not_found", false);
+
+        /** The idempotency key was already used for a different decision on this approval. */
+        static final DecisionResult CONFLICT = new DecisionResult("conflict", false);
+
+        private final String status;
+        private final boolean replayed;
+
+        private DecisionResult(String status, boolean replayed) {
+            this.status = status;
+            this.replayed = replayed;
+        }
+
+        String getStatus() {
+            return status;
+        }
+
+        /** Whether this result was served from an earlier request with the same key. */
+        boolean isReplayed() {
+            return replayed;
+        }
+
+        boolean isApplied() {
+            return !NOT_FOUND.status.equals(status) && !CONFLICT.status.equals(status);
+        }
+
+        DecisionResult asReplay() {
+            return new DecisionResult(status, true);
+        }
+    }
+
+    /** A decision made with an idempotency key, with what was asked for so retries can be told. */
+    private static final class RememberedDecision {
+        private final boolean approve;
+        private final ApprovalScope scope;
+        private final String reason;
+        private final DecisionResult result;
+
+        RememberedDecision(
+                boolean approve, ApprovalScope scope, String reason, DecisionResult result) {
+            this.approve = approve;
+            this.scope = scope;
+            this.reason = reason;
+            this.result = result;
+        }
+
+        /** The original result if the request repeats this decision, otherwise a conflict. */
+        DecisionResult replay(boolean approve, ApprovalScope scope, String reason) {
+            boolean same =
+                    this.approve == approve
+                            && (!approve || this.scope == scope)
+                            && (approve || Objects.equals(this.reason, reason));
+            return same ? result.asReplay() : DecisionResult.CONFLICT;
+        }
     }
 
     /** Result of a user approval decision. */
     public static final class ApprovalDecision {
         private final boolean approved;
         private final String reason;
+        private final DecisionSource source;
+        private final Instant decidedAt = Instant.now();
 
-        private ApprovalDecision(boolean approved, String reason) {
+        private ApprovalDecision(boolean approved, String reason, DecisionSource source) {
             this.approved = approved;
             this.reason = reason;
+            this.source = source;
         }
 
         public static ApprovalDecision approved() {
-            return new ApprovalDecision(true, null);
+            return approved(DecisionSource.USER);
+        }
+
+        public static ApprovalDecision approved(DecisionSource source) {
+            return new ApprovalDecision(true, null, source);
         }
 
         public static ApprovalDecision denied(String reason) {
+            return denied(reason, DecisionSource.USER);
+        }
+
+        public static ApprovalDecision denied(String reason, DecisionSource source) {
             String safeReason =
                     (reason == null || reason.trim().isEmpty()) ? "denied by user" : reason.trim();
-            return new ApprovalDecision(false, safeReason);
+            return new ApprovalDecision(false, safeReason, source);
         }
 
         public boolean isApproved() {
@@ -179,5 +811,13 @@ public final class ExecutionRegistry {
         public String getReason() {
             return reason;
         }
+
+        public DecisionSource getSource() {
+            return source;
+        }
+
+        public Instant getDecidedAt() {
+            return decidedAt;
+        }
     }
 }
@@ -0,0 +1,104 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.FilePath;
+import hudson.Launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Runs the {@code git} command line on the build's node, for workspace bookkeeping. */
+final class GitCli {
+    private static final Logger LOGGER = Logger.getLogger(GitCli.class.getName());
+
+    private GitCli() {}
+
+    /** Runs git and returns its trimmed standard output, or {@code null} if it failed. */
+    static String output(Launcher launcher, FilePath dir, Map<String, String> env, String... args)
+            throws InterruptedException {
+        byte[] out = run(launcher, dir, env, null, args);
+        return out == null ? null : new String(out, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Everything changed in the work tree at {@code root} since its {@code HEAD}, untracked files
+     * included, as a binary patch. A throwaway index is used so the work tree's own index is left
+     * alone.
+     */
+    static byte[] diff(Launcher launcher, FilePath root, Map<String, String> env)
+            throws IOException, InterruptedException {
+        String indexPath = output(launcher, root, env, "rev-parse", "--git-path", "ai-agent-index");
+        if (indexPath == null) {
+            throw new IOException("Could not locate the git directory.");
+        }
+        FilePath index = root.child(indexPath);
+        Map<String, String> indexEnv = new HashMap<>(env);
+        indexEnv.put("GIT_INDEX_FILE", index.getRemote());
+        try {
+            if (run(launcher, root, indexEnv, null, "read-tree", "HEAD") == null
+                    || run(launcher, root, indexEnv, null, "add", "-A") == null) {
+                throw new IOException("Could not stage the workspace changes.");
+            }
+            byte[] patch =
+                    run(launcher, root, indexEnv, null, "diff", "--cached", "--binary", "HEAD");
+            if (patch == null) {
+                throw new IOException("Could not diff the workspace changes.");
+            }
+            return patch;
+        } finally {
+            if (index.exists()) {
+                index.delete();
+            }
+        }
+    }
+
+    /**
+     * Applies a patch made by {@link #diff} to the work tree at {@code root}; returns whether it
+     * applied cleanly.
+     */
+    static boolean apply(Launcher launcher, FilePath root, Map<String, String> env, byte[] patch)
+            throws InterruptedException {
+        if (patch.length == 0) {
+            return true;
+        }
+        return run(launcher, root, env, patch, "apply", "--binary", "--whitespace=nowarn", "-")
+                != null;
+    }
+
+    /**
+     * Runs git with {@code stdin} (if not {@code null}) as its input and returns its standard
+     * output, or {@code null} if it failed.
+     */
+    static byte[] run(
+            Launcher launcher, FilePath dir, Map<String, String> env, byte[] stdin, String... args)
+            throws InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("git");
+        cmd.addAll(List.of(args));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            Launcher.ProcStarter starter =
+                    launcher.launch()
+                            .cmds(cmd)
+                            .pwd(dir)
+                            .envs(env)
+                            .stdout(out)
+                            .stderr(new ByteArrayOutputStream())
+                            .quiet(true);
+            if (stdin != null) {
+                starter.stdin(new ByteArrayInputStream(stdin));
+            }
+            return starter.join() == 0 ? out.toByteArray() : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "git " + String.join(" ", args) + " failed", e);
+            return null;
+        }
+    }
+}
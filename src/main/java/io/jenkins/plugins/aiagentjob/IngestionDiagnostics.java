@@ -0,0 +1,160 @@
+package io.jenkins.plugins.aiagentjob;
+
+import net.sf.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How a build's agent output was ingested and viewed: line and byte totals, the longest line,
+ * lines per event category, time spent parsing, flushing and waiting for approvals, the deepest
+ * approval queue and how often viewers polled. A {@link Recorder} collects the numbers while the
+ * build runs; the snapshot taken at the end is stored on {@link AiAgentRunAction}.
+ */
+public final class IngestionDiagnostics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long lines;
+    private long bytes;
+    private long longestLine;
+    private long parseNanos;
+    private long flushNanos;
+    private long approvalWaitMillis;
+    private long maxQueuedLines;
+    private long eventPolls;
+    private long approvalPolls;
+    private Map<String, Long> linesByCategory = new TreeMap<>();
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Longest single line in bytes. */
+    public long getLongestLine() {
+        return longestLine;
+    }
+
+    public long getParseMillis() {
+        return parseNanos / 1_000_000;
+    }
+
+    public long getFlushMillis() {
+        return flushNanos / 1_000_000;
+    }
+
+    public long getApprovalWaitMillis() {
+        return approvalWaitMillis;
+    }
+
+    /** Most output lines held back behind a pending approval at one time. */
+    public long getMaxQueuedLines() {
+        return maxQueuedLines;
+    }
+
+    /** Requests for new conversation events from build page viewers. */
+    public long getEventPolls() {
+        return eventPolls;
+    }
+
+    /** Approval long-poll requests from build page viewers and API clients. */
+    public long getApprovalPolls() {
+        return approvalPolls;
+    }
+
+    public Map<String, Long> getLinesByCategory() {
+        return linesByCategory == null
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(linesByCategory);
+    }
+
+    public String getBytesDisplay() {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.US, "%.1f KiB", bytes / 1024.0);
+        return String.format(Locale.US, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("lines", lines);
+        json.put("bytes", bytes);
+        json.put("longestLine", longestLine);
+        json.put("parseMillis", getParseMillis());
+        json.put("flushMillis", getFlushMillis());
+        json.put("approvalWaitMillis", approvalWaitMillis);
+        json.put("maxQueuedLines", maxQueuedLines);
+        json.put("eventPolls", eventPolls);
+        json.put("approvalPolls", approvalPolls);
+        JSONObject categories = new JSONObject();
+        for (Map.Entry<String, Long> entry : getLinesByCategory().entrySet()) {
+            categories.put(entry.getKey(), entry.getValue());
+        }
+        json.put("linesByCategory", categories);
+        return json;
+    }
+
+    /** Lock-free counters for a running build; updated from the output path and viewers. */
+    static final class Recorder {
+        private final LongAdder lines = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator longestLine = new LongAccumulator(Math::max, 0);
+        private final LongAdder parseNanos = new LongAdder();
+        private final LongAdder flushNanos = new LongAdder();
+        private final LongAdder approvalWaitMillis = new LongAdder();
+        private final LongAccumulator maxQueuedLines = new LongAccumulator(Math::max, 0);
+        private final LongAdder eventPolls = new LongAdder();
+        private final LongAdder approvalPolls = new LongAdder();
+        private final Map<String, LongAdder> linesByCategory = new ConcurrentHashMap<>();
+
+        void lineIngested(int lineBytes, String category, long flushNanos, long parseNanos) {
+            lines.increment();
+            bytes.add(lineBytes);
+            longestLine.accumulate(lineBytes);
+            this.flushNanos.add(flushNanos);
+            this.parseNanos.add(parseNanos);
+            linesByCategory.computeIfAbsent(category, c -> new LongAdder()).increment();
+        }
+
+        void approvalWaited(long waitMillis) {
+            approvalWaitMillis.add(waitMillis);
+        }
+
+        void queueDepth(long queuedLines) {
+            maxQueuedLines.accumulate(queuedLines);
+        }
+
+        void eventPolled() {
+            eventPolls.increment();
+        }
+
+        void approvalsPolled() {
+            approvalPolls.increment();
+        }
+
+        IngestionDiagnostics snapshot() {
+            IngestionDiagnostics snapshot = new IngestionDiagnostics();
+            snapshot.lines = lines.sum();
+            snapshot.bytes = bytes.sum();
+            snapshot.longestLine = longestLine.get();
+            snapshot.parseNanos = parseNanos.sum();
+            snapshot.flushNanos = flushNanos.sum();
+            snapshot.approvalWaitMillis = approvalWaitMillis.sum();
+            snapshot.maxQueuedLines = maxQueuedLines.get();
+            snapshot.eventPolls = eventPolls.sum();
+            snapshot.approvalPolls = approvalPolls.sum();
+            for (Map.Entry<String, LongAdder> entry : linesByCategory.entrySet()) {
+                snapshot.linesByCategory.put(entry.getKey(), entry.getValue().sum());
+            }
+            return snapshot;
+        }
+    }
+}
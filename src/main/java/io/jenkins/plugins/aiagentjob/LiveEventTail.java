@@ -0,0 +1,194 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Follows the raw JSONL log of one live build so that every viewer of the build page is served
+ * from a single parse. New complete lines are read from the last byte offset, parsed exactly once
+ * and appended to a shared event list; readers get immutable {@link Snapshot}s of it. Concurrent
+ * refreshes are coalesced: while one thread reads the file, other callers wait for and share its
+ * result instead of starting their own read.
+ */
+final class LiveEventTail {
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+
+    private final File rawLogFile;
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Reader state; only touched by the thread that owns the in-flight refresh.
+    private long byteOffset;
+    private long lineCount;
+    private String lastAssistantContent = "";
+    private AiAgentLogParser.EventView[] buffer = new AiAgentLogParser.EventView[64];
+    private int size;
+
+    LiveEventTail(File rawLogFile) {
+        this.rawLogFile = rawLogFile;
+    }
+
+    /** Latest published snapshot without touching the file. */
+    Snapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Reads any lines appended since the previous refresh and returns the resulting snapshot. If
+     * another thread is already refreshing, waits for that refresh and returns its snapshot.
+     */
+    Snapshot refresh() throws IOException {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Snapshot next = readNewLines();
+            snapshot = next;
+            mine.complete(next);
+            return next;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.set(null);
+        }
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Snapshot readNewLines() throws IOException {
+        if (!rawLogFile.exists() || rawLogFile.length() <= byteOffset) {
+            return snapshot;
+        }
+        int sizeBefore = size;
+        long linesBefore = lineCount;
+        try (FileChannel channel = FileChannel.open(rawLogFile.toPath(), StandardOpenOption.READ)) {
+            channel.position(byteOffset);
+            ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_BYTES);
+            ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            long consumed = byteOffset;
+            while (channel.read(chunk) > 0) {
+                chunk.flip();
+                byte[] bytes = chunk.array();
+                int limit = chunk.limit();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    pending.write(bytes, lineStart, i - lineStart);
+                    consumed += pending.size() + 1;
+                    acceptLine(pending.toByteArray());
+                    pending.reset();
+                    lineStart = i + 1;
+                }
+                // Keep the trailing partial line for the next chunk; it is only consumed once its
+                // newline has been written.
+                pending.write(bytes, lineStart, limit - lineStart);
+                chunk.clear();
+            }
+            byteOffset = consumed;
+        }
+        if (size == sizeBefore && lineCount == linesBefore) {
+            return snapshot;
+        }
+        return new Snapshot(buffer, size, lineCount);
+    }
+
+    private void acceptLine(byte[] bytes) {
+        lineCount++;
+        int len = bytes.length;
+        if (len > 0 && bytes[len - 1] == '\r') {
+            len--;
+        }
+        String line = new String(bytes, 0, len, StandardCharsets.UTF_8);
+        AiAgentLogParser.EventView ev = AiAgentLogParser.parseLine(lineCount, line).toEventView();
+        if (ev.isEmpty()) {
+            return;
+        }
+        if ("assistant".equals(ev.getCategory()) && !ev.getContent().isEmpty()) {
+            lastAssistantContent = ev.getContent();
+        }
+        ev = AiAgentLogParser.withoutRepeatedResult(ev, lastAssistantContent);
+        if (ev.isEmpty()) {
+            return;
+        }
+        if (size == buffer.length) {
+            // Older snapshots keep referencing the previous array, so growing never disturbs them.
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[size++] = ev;
+    }
+
+    /**
+     * Immutable view of the events parsed so far. Slots past {@code size} may be filled by later
+     * refreshes, but a snapshot never exposes them, and the volatile publication of newer
+     * snapshots orders those writes after any read of this one.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new AiAgentLogParser.EventView[0], 0, 0);
+
+        private final AiAgentLogParser.EventView[] events;
+        private final int size;
+        private final long lineCount;
+
+        private Snapshot(AiAgentLogParser.EventView[] events, int size, long lineCount) {
+            this.events = events;
+            this.size = size;
+            this.lineCount = lineCount;
+        }
+
+        /** Number of complete lines read from the raw log. */
+        long getLineCount() {
+            return lineCount;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Events whose source line number is greater than {@code line}. */
+        List<AiAgentLogParser.EventView> eventsAfter(long line) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (events[mid].getId() <= line) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo >= size) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(Arrays.asList(events).subList(lo, size));
+        }
+    }
+}
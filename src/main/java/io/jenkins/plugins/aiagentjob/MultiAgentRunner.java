@@ -0,0 +1,833 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.remoting.VirtualChannel;
+
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs several agents inside one build, each as its own {@link AiAgentRunAction} variant with its
+ * own raw log and stats. At most {@link AiAgentProject#getMaxParallelAgents()} agents of a build,
+ * and {@link #MAX_AGENTS_PER_NODE} agents of all builds on a node, run at the same time.
+ */
+final class MultiAgentRunner {
+    /** Most agents of all multi-agent builds that run on one node at the same time. */
+    static final int MAX_AGENTS_PER_NODE =
+            SystemProperties.getInteger(MultiAgentRunner.class.getName() + ".maxAgentsPerNode", 8);
+
+    static final String WORKTREES_SUFFIX = "@ai-agent";
+
+    /**
+     * Most characters of all shard summaries handed to a reduce agent together; they travel in its
+     * environment and prompt, which operating systems limit in size.
+     */
+    static final int MAX_SUMMARIES_LENGTH = 60_000;
+
+    static final int MAX_SUMMARY_LENGTH = 4_000;
+
+    private static final ConcurrentMap<String, Semaphore> NODE_SLOTS = new ConcurrentHashMap<>();
+
+    private MultiAgentRunner() {}
+
+    /**
+     * Runs every agent of a {@link ExecutionMode#FAN_OUT} job on the job's prompt, each in its own
+     * git worktree. What each agent changed is archived as {@code ai-agent/<variant>.patch}, and
+     * the worktrees are removed when the agents are done. Returns 0 if all agents succeeded, else
+     * the first non-zero exit code.
+     */
+    static int fanOut(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project)
+            throws IOException, InterruptedException {
+        List<AgentRunSpec> specs = prepare(build, launcher, listener, project);
+        EnvVars env = build.getEnvironment(listener);
+        try {
+            AiAgentRunGroupAction.getOrCreate(build, ExecutionMode.FAN_OUT);
+            List<Integer> exitCodes =
+                    runAll(
+                            build,
+                            launcher,
+                            listener,
+                            project,
+                            specs,
+                            project.getMaxParallelAgents(),
+                            (index, exitCode) -> false);
+            archiveChanges(build, launcher, listener, env, specs);
+            return logExitCodes(listener, specs, exitCodes);
+        } finally {
+            removeWorktrees(launcher, listener, env, build.getWorkspace(), specs);
+        }
+    }
+
+    /**
+     * Runs the agents of a {@link ExecutionMode#RACE} job like {@link #fanOut}, but the first agent
+     * that exits 0, and passes the job's verification command if it has one, wins: the other agents
+     * are killed, and the winner's changes are applied to the workspace. The worktrees are removed
+     * afterwards. Returns 0 if an agent won, else the first non-zero exit code.
+     *
+     * @throws IOException if the winner's changes do not apply to the workspace
+     */
+    static int race(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project)
+            throws IOException, InterruptedException {
+        List<AgentRunSpec> specs = prepare(build, launcher, listener, project);
+        EnvVars env = build.getEnvironment(listener);
+        try {
+            AiAgentRunGroupAction group =
+                    AiAgentRunGroupAction.getOrCreate(build, ExecutionMode.RACE);
+            String verifyCommand = Util.replaceMacro(project.getRaceVerifyCommand(), env).trim();
+            AtomicReference<AgentRunSpec> winner = new AtomicReference<>();
+            List<Integer> exitCodes =
+                    runAll(
+                            build,
+                            launcher,
+                            listener,
+                            project,
+                            specs,
+                            project.getMaxParallelAgents(),
+                            (index, exitCode) -> {
+                                AgentRunSpec spec = specs.get(index);
+                                if (exitCode != 0
+                                        || !verify(launcher, listener, env, spec, verifyCommand)) {
+                                    return false;
+                                }
+                                listener.getLogger()
+                                        .println(
+                                                "[ai-agent] "
+                                                        + spec.label
+                                                        + " won; stopping the other agents.");
+                                winner.set(spec);
+                                return true;
+                            });
+            int result = logExitCodes(listener, specs, exitCodes);
+            AgentRunSpec won = winner.get();
+            if (won == null) {
+                listener.getLogger().println("[ai-agent] No agent won the race.");
+                return result == 0 ? 1 : result;
+            }
+            group.setWinner(won.variant);
+            FilePath workspace = build.getWorkspace();
+            if (!applyChanges(launcher, env, won.root, workspace)) {
+                throw new IOException(
+                        "The changes of " + won.label + " do not apply to the workspace.");
+            }
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Applied the changes of "
+                                    + won.label
+                                    + " to the workspace.");
+            return 0;
+        } finally {
+            removeWorktrees(launcher, listener, env, build.getWorkspace(), specs);
+        }
+    }
+
+    /**
+     * Runs the job's agent once per item of a {@link ExecutionMode#BATCH} job, so checkout happens
+     * once. With one item at a time, the items run one after another in the build's workspace and
+     * each sees the changes of the ones before. Items that run in parallel each get a git worktree
+     * at the workspace commit instead, created as the item starts; the changes of an item that
+     * succeeds are applied to the workspace, and its worktree is removed. Returns 0 if all items
+     * succeeded and their changes applied, else the first non-zero exit code.
+     */
+    static int batch(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project)
+            throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            throw new IOException("Workspace is not available for this build.");
+        }
+        EnvVars env = build.getEnvironment(listener);
+        String file = Util.replaceMacro(project.getBatchPromptsFile(), env).trim();
+        String text = project.getBatchPrompts();
+        if (!file.isEmpty()) {
+            FilePath prompts = workspace.child(file);
+            if (!prompts.exists()) {
+                throw new IOException("Batch prompts file not found: " + prompts.getRemote());
+            }
+            text = prompts.readToString();
+        }
+        List<AgentRunSpec> specs = AgentRunSpec.parseBatch(project, text);
+        if (specs.isEmpty()) {
+            throw new IOException("Batch mode needs at least one item in 'Batch prompts'.");
+        }
+        int parallelism = project.getMaxParallelAgents();
+        boolean worktrees = parallelism > 1 && specs.size() > 1;
+        listener.getLogger()
+                .println(
+                        "[ai-agent] Running "
+                                + specs.size()
+                                + (worktrees
+                                        ? " batch items, at most "
+                                                + parallelism
+                                                + " at a time, each in its own worktree."
+                                        : " batch items one at a time in the workspace."));
+        if (worktrees
+                && GitCli.output(launcher, workspace, env, "rev-parse", "--show-toplevel")
+                        == null) {
+            throw new IOException(
+                    "Batch items that run in parallel need a git checkout in the workspace, so"
+                            + " that each gets its own worktree. Set 'Max parallel agents' to 1"
+                            + " to run them one at a time in the workspace.");
+        }
+        AiAgentRunGroupAction.getOrCreate(build, ExecutionMode.BATCH);
+        // Concurrent git commands on one repository trip over its lock files.
+        Object gitLock = new Object();
+        Set<Integer> notApplied = new HashSet<>();
+        List<Integer> exitCodes =
+                runAll(
+                        build,
+                        launcher,
+                        listener,
+                        project,
+                        specs,
+                        parallelism,
+                        index -> {
+                            if (worktrees) {
+                                AgentRunSpec spec = specs.get(index);
+                                synchronized (gitLock) {
+                                    spec.root =
+                                            createWorktree(launcher, env, workspace, spec.variant);
+                                }
+                            }
+                        },
+                        (index, exitCode) -> {
+                            AgentRunSpec spec = specs.get(index);
+                            if (!worktrees || spec.root == null) {
+                                return false;
+                            }
+                            synchronized (gitLock) {
+                                if (exitCode == 0
+                                        && !applyChanges(launcher, env, spec.root, workspace)) {
+                                    notApplied.add(index);
+                                }
+                                removeWorktree(launcher, env, workspace, spec.variant);
+                            }
+                            return false;
+                        });
+        int result = 0;
+        int failed = 0;
+        for (int i = 0; i < specs.size(); i++) {
+            int exitCode = exitCodes.get(i);
+            if (notApplied.contains(i)) {
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] The changes of "
+                                        + specs.get(i).label
+                                        + " do not apply to the workspace.");
+                exitCode = 1;
+            } else if (exitCode != 0) {
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] "
+                                        + specs.get(i).label
+                                        + " exited with code "
+                                        + exitCode);
+            }
+            if (exitCode != 0) {
+                failed++;
+                if (result == 0) {
+                    result = exitCode;
+                }
+            }
+        }
+        listener.getLogger()
+                .println(
+                        "[ai-agent] Batch finished: "
+                                + (specs.size() - failed)
+                                + " of "
+                                + specs.size()
+                                + " items succeeded.");
+        return result;
+    }
+
+    /**
+     * Runs the job's agent once per shard of a {@link ExecutionMode#MAP_REDUCE} job, all in the
+     * build's workspace with the shard as working directory, then a reduce agent that gets the
+     * final message of every shard. Returns 0 if all shards and the reduce agent succeeded, else
+     * the first non-zero exit code.
+     */
+    static int mapReduce(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project)
+            throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            throw new IOException("Workspace is not available for this build.");
+        }
+        List<String> shards = workspace.act(new ShardGlobs(project.getShardGlobs()));
+        if (shards.isEmpty()) {
+            throw new IOException("Map-reduce mode found no directory matching 'Shard globs'.");
+        }
+        List<AgentRunSpec> specs = AgentRunSpec.forShards(project, shards);
+        int parallelism = project.getMaxParallelAgents();
+        listener.getLogger()
+                .println(
+                        "[ai-agent] Running "
+                                + specs.size()
+                                + " shards, at most "
+                                + parallelism
+                                + " at a time.");
+        AiAgentRunGroupAction.getOrCreate(build, ExecutionMode.MAP_REDUCE);
+        // Listed from the start, so the build page shows that a reduce step follows.
+        AiAgentRunAction.getOrCreateVariant(build, AgentRunSpec.REDUCE_VARIANT, "Reduce");
+        List<Integer> exitCodes =
+                runAll(
+                        build,
+                        launcher,
+                        listener,
+                        project,
+                        specs,
+                        parallelism,
+                        (index, exitCode) -> false);
+        int result = logExitCodes(listener, specs, exitCodes);
+
+        // With very many shards each still gets a few characters, even past the overall limit.
+        int maxLength =
+                Math.max(4, Math.min(MAX_SUMMARY_LENGTH, MAX_SUMMARIES_LENGTH / specs.size()));
+        StringBuilder summaries = new StringBuilder();
+        Map<String, AiAgentRunAction> variants = AiAgentRunAction.variants(build);
+        for (int i = 0; i < specs.size(); i++) {
+            AgentRunSpec spec = specs.get(i);
+            AiAgentRunAction action = variants.get(spec.variant);
+            String message = AiAgentLogParser.finalMessage(action.getRawLogFile()).trim();
+            message = truncate(message, maxLength);
+            summaries
+                    .append("## Shard ")
+                    .append(spec.label)
+                    .append(" (exit code ")
+                    .append(exitCodes.get(i))
+                    .append(")\n")
+                    .append(message.isEmpty() ? "(no final message)" : message)
+                    .append("\n\n");
+        }
+        List<AgentRunSpec> reduce =
+                List.of(AgentRunSpec.forReduce(project, summaries.toString().trim()));
+        listener.getLogger().println("[ai-agent] All shards finished; running the reduce agent.");
+        List<Integer> reduceExitCodes =
+                runAll(build, launcher, listener, project, reduce, 1, (index, exitCode) -> false);
+        int reduceResult = logExitCodes(listener, reduce, reduceExitCodes);
+        return result != 0 ? result : reduceResult;
+    }
+
+    /** Cuts {@code text} to {@code maxLength} characters, ending in "..." if there is room. */
+    static String truncate(String text, int maxLength) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        return maxLength > 3
+                ? text.substring(0, maxLength - 3) + "..."
+                : text.substring(0, Math.max(0, maxLength));
+    }
+
+    /**
+     * Expands shard globs, one per line, to the directories below {@code base} they match, in
+     * order and without duplicates; blank lines and lines starting with {@code #} are skipped.
+     * Wildcards match within one path segment, and only match hidden directories if the segment
+     * starts with a dot.
+     *
+     * @throws IllegalArgumentException naming the first line that is not a relative glob
+     */
+    static List<String> expandShards(File base, String globs) {
+        Set<String> shards = new LinkedHashSet<>();
+        String[] lines = Util.fixNull(globs).split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String glob = line.replace('\\', '/');
+            if (glob.startsWith("/") || glob.matches("[A-Za-z]:.*")) {
+                throw new IllegalArgumentException(
+                        "Line " + (i + 1) + ": '" + line + "' is not relative to the workspace.");
+            }
+            List<String> matches = new ArrayList<>();
+            matches.add("");
+            for (String segment : glob.split("/+")) {
+                if (segment.isEmpty() || segment.equals(".")) {
+                    continue;
+                }
+                if (segment.equals("..")) {
+                    throw new IllegalArgumentException(
+                            "Line " + (i + 1) + ": '" + line + "' leaves the workspace.");
+                }
+                if (segment.contains("**")) {
+                    throw new IllegalArgumentException(
+                            "Line " + (i + 1) + ": '**' is not supported; use one '*' per level.");
+                }
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + segment);
+                List<String> next = new ArrayList<>();
+                for (String parent : matches) {
+                    File[] children = new File(base, parent).listFiles(File::isDirectory);
+                    if (children == null) {
+                        continue;
+                    }
+                    Arrays.sort(children);
+                    for (File child : children) {
+                        String name = child.getName();
+                        if (name.startsWith(".") && !segment.startsWith(".")) {
+                            continue;
+                        }
+                        if (matcher.matches(Paths.get(name))) {
+                            next.add(parent.isEmpty() ? name : parent + "/" + name);
+                        }
+                    }
+                }
+                matches = next;
+            }
+            for (String match : matches) {
+                if (!match.isEmpty()) {
+                    shards.add(match);
+                }
+            }
+        }
+        return new ArrayList<>(shards);
+    }
+
+    /** Expands the shard globs of a job in its workspace. Runs on the node. */
+    private static final class ShardGlobs extends MasterToSlaveFileCallable<List<String>> {
+        private static final long serialVersionUID = 1L;
+        private final String globs;
+
+        ShardGlobs(String globs) {
+            this.globs = globs;
+        }
+
+        @Override
+        public List<String> invoke(File workspace, VirtualChannel channel) throws IOException {
+            try {
+                return expandShards(workspace, globs);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid shard globs: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Parses the job's agents and gives each its own worktree. */
+    private static List<AgentRunSpec> prepare(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project)
+            throws IOException, InterruptedException {
+        List<AgentRunSpec> specs;
+        try {
+            specs = AgentRunSpec.parseAgents(project, project.getFanOutAgents());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid agents: " + e.getMessage(), e);
+        }
+        if (specs.isEmpty()) {
+            throw new IOException(
+                    project.getExecutionMode().getDisplayName()
+                            + " needs at least one agent in 'Agents'.");
+        }
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            throw new IOException("Workspace is not available for this build.");
+        }
+        EnvVars env = build.getEnvironment(listener);
+        try {
+            for (AgentRunSpec spec : specs) {
+                spec.root = createWorktree(launcher, env, workspace, spec.variant);
+                listener.getLogger()
+                        .println(
+                                "[ai-agent] " + spec.label + " works in " + spec.root.getRemote());
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            removeWorktrees(launcher, listener, env, workspace, specs);
+            throw e;
+        }
+        return specs;
+    }
+
+    /**
+     * Archives what each agent changed in its worktree as {@code ai-agent/<variant>.patch}, so the
+     * changes outlive the worktrees. Agents that changed nothing get no patch.
+     */
+    private static void archiveChanges(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            EnvVars env,
+            List<AgentRunSpec> specs)
+            throws IOException, InterruptedException {
+        FilePath dir = null;
+        Map<String, String> artifacts = new LinkedHashMap<>();
+        for (AgentRunSpec spec : specs) {
+            if (spec.root == null) {
+                continue;
+            }
+            String top = GitCli.output(launcher, spec.root, env, "rev-parse", "--show-toplevel");
+            if (top == null) {
+                continue;
+            }
+            FilePath worktree = new FilePath(spec.root.getChannel(), top);
+            byte[] patch = GitCli.diff(launcher, worktree, env);
+            if (patch.length == 0) {
+                continue;
+            }
+            // Next to the worktrees, which all share one parent directory.
+            dir = worktree.getParent();
+            dir.child(spec.variant + ".patch").copyFrom(new ByteArrayInputStream(patch));
+            artifacts.put("ai-agent/" + spec.variant + ".patch", spec.variant + ".patch");
+        }
+        if (dir == null) {
+            return;
+        }
+        try {
+            build.pickArtifactManager().archive(dir, launcher, listener, artifacts);
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Archived the changes of "
+                                    + artifacts.size()
+                                    + " agents as ai-agent/<n>.patch.");
+        } finally {
+            for (String patch : artifacts.values()) {
+                dir.child(patch).delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the worktrees {@link #prepare} made, and what git recorded about them. Failures are
+     * only logged, so they do not hide the outcome of the build.
+     */
+    private static void removeWorktrees(
+            Launcher launcher,
+            BuildListener listener,
+            EnvVars env,
+            FilePath workspace,
+            List<AgentRunSpec> specs)
+            throws InterruptedException {
+        try {
+            for (AgentRunSpec spec : specs) {
+                if (spec.root != null) {
+                    removeWorktree(launcher, env, workspace, spec.variant);
+                }
+            }
+            GitCli.output(launcher, workspace, env, "worktree", "prune");
+        } catch (IOException e) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] Could not remove the agents' worktrees: " + e.getMessage());
+        }
+    }
+
+    private static int logExitCodes(
+            BuildListener listener, List<AgentRunSpec> specs, List<Integer> exitCodes) {
+        int result = 0;
+        for (int i = 0; i < specs.size(); i++) {
+            int exitCode = exitCodes.get(i);
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] "
+                                    + specs.get(i).label
+                                    + " exited with code "
+                                    + exitCode
+                                    + (specs.get(i).isCancelled() ? " (stopped)" : ""));
+            if (result == 0 && exitCode != 0) {
+                result = exitCode;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code specs} with bounded parallelism and returns their exit codes in order; an agent
+     * that could not be run at all, or was stopped before it started, counts as exit code -1. The
+     * variant actions are created up front, so the build page lists every agent from the start.
+     * {@code onFinished} is called on the calling thread as each agent finishes; once it returns
+     * {@code true}, the agents still running are stopped. Agents are only handed to the pool as
+     * earlier ones finish, so an agent still waiting then never starts.
+     */
+    static List<Integer> runAll(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project,
+            List<AgentRunSpec> specs,
+            int parallelism,
+            RunFinished onFinished)
+            throws IOException, InterruptedException {
+        return runAll(
+                build, launcher, listener, project, specs, parallelism, index -> {}, onFinished);
+    }
+
+    /**
+     * Like {@link #runAll(AbstractBuild, Launcher, BuildListener, AiAgentProject, List, int,
+     * RunFinished)}, with {@code onStarting} called on the pool thread right before each agent is
+     * launched; if it fails, the agent counts as not run.
+     */
+    static List<Integer> runAll(
+            AbstractBuild<?, ?> build,
+            Launcher launcher,
+            BuildListener listener,
+            AiAgentProject project,
+            List<AgentRunSpec> specs,
+            int parallelism,
+            RunStarting onStarting,
+            RunFinished onFinished)
+            throws IOException, InterruptedException {
+        Map<String, AiAgentRunAction> variants = AiAgentRunAction.variants(build);
+        List<AiAgentRunAction> actions = new ArrayList<>();
+        for (AgentRunSpec spec : specs) {
+            AiAgentRunAction action = variants.get(spec.variant);
+            actions.add(
+                    action != null
+                            ? action
+                            : AiAgentRunAction.createVariant(build, spec.variant, spec.label));
+        }
+        Semaphore nodeSlots =
+                NODE_SLOTS.computeIfAbsent(
+                        Util.fixNull(build.getBuiltOnStr()),
+                        k -> new Semaphore(MAX_AGENTS_PER_NODE, true));
+        String threadName = "AI agent runner for " + build.getFullDisplayName();
+        int poolSize = Math.max(1, Math.min(parallelism, specs.size()));
+        ExecutorService pool =
+                Executors.newFixedThreadPool(
+                        poolSize,
+                        r -> {
+                            Thread thread = new Thread(r, threadName);
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        try {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(pool);
+            List<Callable<Integer>> runs = new ArrayList<>();
+            for (int i = 0; i < specs.size(); i++) {
+                int index = i;
+                AgentRunSpec spec = specs.get(i);
+                AiAgentRunAction action = actions.get(i);
+                runs.add(
+                        () -> {
+                            nodeSlots.acquire();
+                            try {
+                                if (spec.isCancelled()) {
+                                    action.setCancelled();
+                                    return -1;
+                                }
+                                onStarting.starting(index);
+                                return AiAgentExecutor.execute(
+                                        build, launcher, listener, project, action, spec);
+                            } finally {
+                                nodeSlots.release();
+                            }
+                        });
+            }
+            Map<Future<Integer>, Integer> indexes = new HashMap<>();
+            int submitted = 0;
+            while (submitted < poolSize) {
+                indexes.put(completion.submit(runs.get(submitted)), submitted++);
+            }
+            Integer[] exitCodes = new Integer[specs.size()];
+            boolean stopped = false;
+            for (int n = 0; n < specs.size(); n++) {
+                Future<Integer> done = completion.take();
+                int i = indexes.get(done);
+                try {
+                    exitCodes[i] = done.get();
+                } catch (ExecutionException e) {
+                    listener.getLogger()
+                            .println(
+                                    "[ai-agent] "
+                                            + specs.get(i).label
+                                            + " could not be run: "
+                                            + e.getCause().getMessage());
+                    exitCodes[i] = -1;
+                }
+                if (!stopped && onFinished.stopOthers(i, exitCodes[i])) {
+                    stopped = true;
+                    for (int j = 0; j < specs.size(); j++) {
+                        if (exitCodes[j] == null) {
+                            specs.get(j).cancel();
+                        }
+                    }
+                }
+                if (submitted < specs.size()) {
+                    indexes.put(completion.submit(runs.get(submitted)), submitted++);
+                }
+            }
+            return Arrays.asList(exitCodes);
+        } finally {
+            // On abort this interrupts the runners, which kills their agent processes; wait for
+            // them so every run is unregistered before the build ends.
+            pool.shutdownNow();
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+            AiAgentRunAction.flushSave(build);
+        }
+    }
+
+    /** Called as each agent of {@link #runAll} is about to start. */
+    interface RunStarting {
+        void starting(int index) throws IOException, InterruptedException;
+    }
+
+    /** Called as each agent of {@link #runAll} finishes. */
+    interface RunFinished {
+        /** Returns whether the agents still running should be stopped. */
+        boolean stopOthers(int index, int exitCode) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Runs {@code command} in the worktree of an agent that exited 0; returns whether it exited 0
+     * too. An empty command accepts every agent.
+     */
+    private static boolean verify(
+            Launcher launcher,
+            BuildListener listener,
+            EnvVars env,
+            AgentRunSpec spec,
+            String command)
+            throws IOException, InterruptedException {
+        if (command.isEmpty()) {
+            return true;
+        }
+        listener.getLogger().println("[ai-agent] Verifying " + spec.label + ": " + command);
+        Map<String, String> verifyEnv = new HashMap<>(env);
+        verifyEnv.put("AI_AGENT_VARIANT", spec.variant);
+        List<String> cmd =
+                launcher.isUnix()
+                        ? List.of("/bin/sh", "-c", command)
+                        : List.of("cmd", "/c", command);
+        int exitCode =
+                launcher.launch()
+                        .cmds(cmd)
+                        .pwd(spec.root)
+                        .envs(verifyEnv)
+                        .stdout(listener)
+                        .join();
+        if (exitCode != 0) {
+            listener.getLogger()
+                    .println(
+                            "[ai-agent] "
+                                    + spec.label
+                                    + " failed verification with exit code "
+                                    + exitCode
+                                    + ".");
+        }
+        return exitCode == 0;
+    }
+
+    /** Applies everything an agent changed in its worktree to the workspace. */
+    private static boolean applyChanges(
+            Launcher launcher, EnvVars env, FilePath worktree, FilePath workspace)
+            throws IOException, InterruptedException {
+        String worktreeTop = GitCli.output(launcher, worktree, env, "rev-parse", "--show-toplevel");
+        String workspaceTop =
+                GitCli.output(launcher, workspace, env, "rev-parse", "--show-toplevel");
+        if (worktreeTop == null || workspaceTop == null) {
+            return false;
+        }
+        byte[] patch = GitCli.diff(launcher, new FilePath(worktree.getChannel(), worktreeTop), env);
+        return GitCli.apply(
+                launcher, new FilePath(workspace.getChannel(), workspaceTop), env, patch);
+    }
+
+    /**
+     * Creates a fresh detached worktree at the workspace commit for one agent, in {@code
+     * <repository>@ai-agent/<variant>} next to the workspace. A worktree left by an earlier build
+     * is replaced. Returns the directory matching the workspace inside the new worktree.
+     *
+     * @throws IOException if the workspace is not a git checkout or git fails
+     */
+    static FilePath createWorktree(
+            Launcher launcher, EnvVars env, FilePath workspace, String variant)
+            throws IOException, InterruptedException {
+        String top = GitCli.output(launcher, workspace, env, "rev-parse", "--show-toplevel");
+        String prefix = GitCli.output(launcher, workspace, env, "rev-parse", "--show-prefix");
+        if (top == null || prefix == null) {
+            throw new IOException(
+                    "Multi-agent builds need a git checkout in the workspace, so that each agent"
+                            + " gets its own worktree.");
+        }
+        FilePath repository = new FilePath(workspace.getChannel(), top);
+        FilePath dir = worktreesDir(repository).child(variant);
+        removeWorktree(launcher, env, repository, dir);
+        GitCli.output(launcher, repository, env, "worktree", "prune");
+        String added =
+                GitCli.output(
+                        launcher,
+                        repository,
+                        env,
+                        "worktree",
+                        "add",
+                        "--detach",
+                        dir.getRemote(),
+                        "HEAD");
+        if (added == null) {
+            throw new IOException("Could not create a git worktree at " + dir.getRemote() + ".");
+        }
+        return prefix.isEmpty() ? dir : dir.child(prefix);
+    }
+
+    /** Removes the worktree {@link #createWorktree} made for {@code variant}, if any. */
+    static void removeWorktree(Launcher launcher, EnvVars env, FilePath workspace, String variant)
+            throws IOException, InterruptedException {
+        String top = GitCli.output(launcher, workspace, env, "rev-parse", "--show-toplevel");
+        if (top == null) {
+            return;
+        }
+        FilePath repository = new FilePath(workspace.getChannel(), top);
+        removeWorktree(launcher, env, repository, worktreesDir(repository).child(variant));
+    }
+
+    private static void removeWorktree(
+            Launcher launcher, EnvVars env, FilePath repository, FilePath dir)
+            throws IOException, InterruptedException {
+        if (dir.exists()) {
+            GitCli.output(
+                    launcher, repository, env, "worktree", "remove", "--force", dir.getRemote());
+            if (dir.exists()) {
+                dir.deleteRecursive();
+            }
+        }
+    }
+
+    static FilePath worktreesDir(FilePath repository) {
+        return repository.getParent().child(repository.getName() + WORKTREES_SUFFIX);
+    }
+}
@@ -0,0 +1,395 @@
+package io.jenkins.plugins.aiagentjob;
+
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.Util;
+import hudson.console.LineTransformationOutputStream;
+import hudson.init.Terminator;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warm {@code opencode serve} daemons that OpenCode builds attach to with {@code opencode run
+ * --attach}, so short builds skip provider and session initialization. There is one server per node
+ * and server environment (API key, permissions, extra variables), so builds with different
+ * credentials never share a server. A server is started on first use, health-checked every time a
+ * build attaches, and stopped once it has been idle for {@link #IDLE_TIMEOUT_MINUTES}.
+ *
+ * <p>Each server listens on loopback only and requires a random password, set in {@link
+ * #PASSWORD_VARIABLE}, which only the builds attached to it are given. Other processes on the node
+ * cannot use the server's credentials without it.
+ */
+public final class OpenCodeServerPool {
+    private static final Logger LOGGER = Logger.getLogger(OpenCodeServerPool.class.getName());
+
+    /** Minutes a server without attached builds is kept running. */
+    static final long IDLE_TIMEOUT_MINUTES =
+            SystemProperties.getLong(
+                    OpenCodeServerPool.class.getName() + ".idleTimeoutMinutes", 15L);
+
+    static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+
+    /** Variable {@code opencode serve} takes its password from, and {@code opencode run} sends. */
+    static final String PASSWORD_VARIABLE = "OPENCODE_SERVER_PASSWORD";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Map<String, Server> SERVERS = new ConcurrentHashMap<>();
+    private static ScheduledFuture<?> reaper; // guarded by OpenCodeServerPool.class
+
+    private OpenCodeServerPool() {}
+
+    /**
+     * Attaches a build to the node's server for {@code serverEnv}, starting one if none is running
+     * or the running one stopped answering. Close the lease when the build is done with it. Builds
+     * attaching to the same server wait for one another's startup, but the server's state is not
+     * locked meanwhile, so the idle reaper and other servers are never held up.
+     *
+     * @throws IOException if the server does not start answering within the startup timeout
+     */
+    static Lease acquire(
+            String nodeName,
+            Launcher launcher,
+            String executable,
+            Map<String, String> serverEnv,
+            TaskListener listener)
+            throws IOException, InterruptedException {
+        Server server =
+                SERVERS.computeIfAbsent(
+                        serverKey(nodeName, executable, serverEnv), k -> new Server(nodeName));
+        long startedAt = System.nanoTime();
+        // Counted before the server is checked, so the reaper does not stop it meanwhile.
+        server.attach();
+        scheduleReaper();
+        boolean attached = false;
+        try {
+            boolean started;
+            synchronized (server.startup) {
+                started = !server.isHealthy(launcher.getChannel());
+                if (started) {
+                    server.restart(launcher, executable, serverEnv, listener);
+                }
+            }
+            String url;
+            String password;
+            synchronized (server) {
+                url = server.url;
+                password = server.password;
+            }
+            if (url == null) {
+                throw new IOException("OpenCode server was stopped while starting.");
+            }
+            long millis = (System.nanoTime() - startedAt) / 1_000_000;
+            attached = true;
+            return new Lease(server, url, password, started, millis);
+        } finally {
+            if (!attached) {
+                server.detach();
+            }
+        }
+    }
+
+    /**
+     * Identifies a server by node, binary and environment. The environment holds secrets, so only
+     * its digest is kept.
+     */
+    static String serverKey(String nodeName, String executable, Map<String, String> serverEnv) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(executable).append('\0');
+        for (Map.Entry<String, String> entry : new TreeMap<>(serverEnv).entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\0');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return Util.fixNull(nodeName) + '/' + Util.toHexString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Servers currently running, for tests and diagnostics. */
+    static int runningServers() {
+        int running = 0;
+        for (Server server : SERVERS.values()) {
+            synchronized (server) {
+                if (server.proc != null) {
+                    running++;
+                }
+            }
+        }
+        return running;
+    }
+
+    private static synchronized void scheduleReaper() {
+        if (reaper == null) {
+            reaper =
+                    Timer.get()
+                            .scheduleWithFixedDelay(
+                                    OpenCodeServerPool::stopIdleServers, 1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    static void stopIdleServers() {
+        stopIdleServers(
+                System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES));
+    }
+
+    /** Stops the servers no build has used since {@code idleBeforeMillis}. */
+    static void stopIdleServers(long idleBeforeMillis) {
+        for (Server server : SERVERS.values()) {
+            Proc idle;
+            synchronized (server) {
+                if (server.attachedBuilds > 0 || server.lastUsedMillis >= idleBeforeMillis) {
+                    continue;
+                }
+                LOGGER.log(Level.FINE, "Stopping idle OpenCode server {0}", server.url);
+                idle = server.detachProc();
+            }
+            kill(idle);
+        }
+    }
+
+    /** Stops every server when Jenkins shuts down, so none is left running on the nodes. */
+    @Terminator
+    public static void stopAll() {
+        for (Server server : SERVERS.values()) {
+            Proc proc;
+            synchronized (server) {
+                proc = server.detachProc();
+            }
+            kill(proc);
+        }
+    }
+
+    private static void kill(Proc proc) {
+        if (proc == null) {
+            return;
+        }
+        try {
+            proc.kill();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not stop OpenCode server", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A build's use of a server; closing it lets the server go idle. */
+    static final class Lease implements Closeable {
+        private final Server server;
+        final String url;
+        /** The server's password; the build passes it in {@link #PASSWORD_VARIABLE}. */
+        final String password;
+        /** Whether this build started the server rather than reusing a warm one. */
+        final boolean started;
+        /** Time spent checking or starting the server. */
+        final long millis;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(Server server, String url, String password, boolean started, long millis) {
+            this.server = server;
+            this.url = url;
+            this.password = password;
+            this.started = started;
+            this.millis = millis;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                server.detach();
+            }
+        }
+    }
+
+    /**
+     * One {@code opencode serve} process on a node. Its fields are guarded by its monitor, which
+     * is only held briefly; checking and starting the process is serialized by {@link #startup}.
+     */
+    private static final class Server {
+        private final String nodeName;
+        final Object startup = new Object();
+        private Proc proc;
+        private String url;
+        private String password;
+        private int attachedBuilds;
+        private long lastUsedMillis;
+
+        Server(String nodeName) {
+            this.nodeName = nodeName;
+        }
+
+        synchronized void attach() {
+            attachedBuilds++;
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        synchronized void detach() {
+            attachedBuilds--;
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        /** Clears the running process and returns it for the caller to kill. */
+        synchronized Proc detachProc() {
+            Proc detached = proc;
+            proc = null;
+            url = null;
+            password = null;
+            return detached;
+        }
+
+        boolean isHealthy(VirtualChannel channel) throws InterruptedException {
+            Proc running;
+            String runningUrl;
+            synchronized (this) {
+                running = proc;
+                runningUrl = url;
+            }
+            if (running == null) {
+                return false;
+            }
+            try {
+                return running.isAlive() && channel.call(new Probe(runningUrl));
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /** Stops the current process, if any, and starts a new one with a new password. */
+        void restart(
+                Launcher launcher,
+                String executable,
+                Map<String, String> serverEnv,
+                TaskListener listener)
+                throws IOException, InterruptedException {
+            Proc previous;
+            synchronized (this) {
+                previous = detachProc();
+            }
+            kill(previous);
+            byte[] secret = new byte[32];
+            RANDOM.nextBytes(secret);
+            String serverPassword = Util.toHexString(secret);
+            Map<String, String> env = new LinkedHashMap<>(serverEnv);
+            env.put(PASSWORD_VARIABLE, serverPassword);
+            int port = launcher.getChannel().call(new FreePort());
+            String serverUrl = "http://127.0.0.1:" + port;
+            listener.getLogger().println("[ai-agent] Starting OpenCode server at " + serverUrl);
+            // Launched without the build environment, so the process tree killer does not stop
+            // the server together with the build that started it.
+            Proc started =
+                    launcher.launch()
+                            .cmds(
+                                    executable,
+                                    "serve",
+                                    "--hostname",
+                                    "127.0.0.1",
+                                    "--port",
+                                    String.valueOf(port))
+                            .envs(env)
+                            .stdout(new ServerLog(nodeName))
+                            .quiet(true)
+                            .start();
+            long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+            boolean answering = false;
+            try {
+                while (!launcher.getChannel().call(new Probe(serverUrl))) {
+                    if (!started.isAlive() || System.currentTimeMillis() > deadline) {
+                        throw new IOException(
+                                "OpenCode server did not start answering at " + serverUrl + ".");
+                    }
+                    Thread.sleep(200);
+                }
+                answering = true;
+            } finally {
+                if (!answering) {
+                    kill(started);
+                }
+            }
+            synchronized (this) {
+                proc = started;
+                url = serverUrl;
+                password = serverPassword;
+            }
+        }
+    }
+
+    /** Whether an HTTP server answers at the URL; any status counts. Runs on the node. */
+    private static final class Probe extends MasterToSlaveCallable<Boolean, IOException> {
+        private static final long serialVersionUID = 1L;
+        private final String url;
+
+        Probe(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Boolean call() {
+            try {
+                HttpURLConnection connection =
+                        (HttpURLConnection) URI.create(url + "/").toURL().openConnection();
+                connection.setConnectTimeout(1000);
+                connection.setReadTimeout(2000);
+                connection.getResponseCode();
+                connection.disconnect();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /** A loopback port nothing is listening on. Runs on the node. */
+    private static final class FreePort extends MasterToSlaveCallable<Integer, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Integer call() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+
+    /** Sends server output to the Jenkins log at FINE level. */
+    private static final class ServerLog extends LineTransformationOutputStream {
+        private final String nodeName;
+
+        ServerLog(String nodeName) {
+            this.nodeName = nodeName;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                String line = new String(b, 0, len, StandardCharsets.UTF_8).trim();
+                LOGGER.log(Level.FINE, "opencode serve [{0}]: {1}", new Object[] {nodeName, line});
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pairs tool results with the calls they answer: by the agent's tool call ID, or, for results
+ * without one, with the oldest open call of the same tool. The conversation view uses it to fold
+ * results into call cards and {@link ToolCallStats.Recorder} to time calls. Not thread-safe.
+ *
+ * @param <T> what the caller keeps for an open call
+ */
+final class ToolCallCorrelator<T> {
+    private final int maxOpenCalls;
+    private final Map<String, OpenCall<T>> open = new LinkedHashMap<>();
+    private long anonymous;
+
+    /** Keeps at most {@code maxOpenCalls} open calls; beyond that the oldest is dropped. */
+    ToolCallCorrelator(int maxOpenCalls) {
+        this.maxOpenCalls = maxOpenCalls;
+    }
+
+    /**
+     * Opens a call of {@code toolName} with the agent's {@code id}, which may be empty. Returns the
+     * oldest open call if it was dropped to stay within the limit, otherwise {@code null}.
+     */
+    T called(String id, String toolName, T call) {
+        String key = isBlank(id) ? "\0" + anonymous++ : id.trim();
+        open.remove(key);
+        open.put(key, new OpenCall<>(toolName, call));
+        if (open.size() <= maxOpenCalls) {
+            return null;
+        }
+        Iterator<OpenCall<T>> oldest = open.values().iterator();
+        T dropped = oldest.next().call;
+        oldest.remove();
+        return dropped;
+    }
+
+    /**
+     * Closes and returns the call a result answers, or {@code null} if none is open. A result
+     * without an ID takes the oldest open call of {@code toolName}, or of any tool if it names
+     * none.
+     */
+    T returned(String id, String toolName) {
+        if (!isBlank(id)) {
+            OpenCall<T> call = open.remove(id.trim());
+            return call == null ? null : call.call;
+        }
+        Iterator<OpenCall<T>> calls = open.values().iterator();
+        while (calls.hasNext()) {
+            OpenCall<T> call = calls.next();
+            if (isBlank(toolName) || call.toolName.equals(toolName)) {
+                calls.remove();
+                return call.call;
+            }
+        }
+        return null;
+    }
+
+    /** Calls that are still waiting for their result. */
+    int openCalls() {
+        return open.size();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static final class OpenCall<T> {
+        final String toolName;
+        final T call;
+
+        OpenCall(String toolName, T call) {
+            this.toolName = toolName == null ? "" : toolName;
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package io.jenkins.plugins.aiagentjob;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-tool time and output of one build, or merged across builds of a job: how often each tool was
+ * called, how long its calls took from the call event to the matching result event, and how much
+ * output they returned. A {@link Recorder} pairs calls with results while the build runs; the
+ * snapshot taken at the end is stored on {@link AiAgentRunAction}.
+ */
+public final class ToolCallStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Map<String, Tool> byTool = new TreeMap<>();
+    private int unfinished;
+
+    public boolean hasData() {
+        return !byTool.isEmpty();
+    }
+
+    /** Tools ordered by total time spent in them, slowest first. */
+    public List<Tool> getTools() {
+        List<Tool> tools = new ArrayList<>(byTool.values());
+        tools.sort(
+                Comparator.comparingLong(Tool::getTotalMillis)
+                        .reversed()
+                        .thenComparing(Tool::getName));
+        return tools;
+    }
+
+    /** Calls whose result never arrived, e.g. because the build was aborted. */
+    public int getUnfinished() {
+        return unfinished;
+    }
+
+    public long getTotalMillis() {
+        long total = 0;
+        for (Tool tool : byTool.values()) {
+            total += tool.totalMillis;
+        }
+        return total;
+    }
+
+    /** Adds another build's totals, for job-level figures. */
+    void add(ToolCallStats other) {
+        for (Tool tool : other.byTool.values()) {
+            byTool.computeIfAbsent(tool.name, Tool::new).add(tool);
+        }
+        unfinished += other.unfinished;
+    }
+
+    JSONObject toJson() {
+        JSONArray tools = new JSONArray();
+        for (Tool tool : getTools()) {
+            tools.add(tool.toJson());
+        }
+        JSONObject json = new JSONObject();
+        json.put("tools", tools);
+        json.put("totalMillis", getTotalMillis());
+        json.put("unfinished", unfinished);
+        return json;
+    }
+
+    /** Totals of one tool name. */
+    public static final class Tool implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private int calls;
+        private int completed;
+        private long totalMillis;
+        private long maxMillis;
+        private long outputBytes;
+
+        Tool(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        /** Calls paired with a result, i.e. the ones that have a duration. */
+        public int getCompleted() {
+            return completed;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public long getAvgMillis() {
+            return completed == 0 ? 0 : totalMillis / completed;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+
+        public String getTotalDisplay() {
+            return Durations.format(totalMillis);
+        }
+
+        public String getAvgDisplay() {
+            return Durations.format(getAvgMillis());
+        }
+
+        public String getMaxDisplay() {
+            return Durations.format(maxMillis);
+        }
+
+        public String getOutputDisplay() {
+            if (outputBytes < 1024) return outputBytes + " B";
+            if (outputBytes < 1024 * 1024) {
+                return String.format(Locale.US, "%.1f KiB", outputBytes / 1024.0);
+            }
+            return String.format(Locale.US, "%.1f MiB", outputBytes / (1024.0 * 1024.0));
+        }
+
+        private void add(Tool other) {
+            calls += other.calls;
+            completed += other.completed;
+            totalMillis += other.totalMillis;
+            maxMillis = Math.max(maxMillis, other.maxMillis);
+            outputBytes += other.outputBytes;
+        }
+
+        private Tool copy() {
+            Tool copy = new Tool(name);
+            copy.add(this);
+            return copy;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("calls", calls);
+            json.put("completed", completed);
+            json.put("totalMillis", totalMillis);
+            json.put("avgMillis", getAvgMillis());
+            json.put("maxMillis", maxMillis);
+            json.put("outputBytes", outputBytes);
+            return json;
+        }
+    }
+
+    /**
+     * Pairs tool calls with their results by tool call ID as lines arrive. Results without an ID
+     * are matched to the oldest open call of the same tool, which is right for agents that run one
+     * tool at a time. Synchronized: the output handler records, viewers take snapshots.
+     */
+    static final class Recorder {
+        /** Open calls kept for pairing; beyond this the oldest is dropped as unfinished. */
+        static final int MAX_OPEN_CALLS = 10_000;
+
+        private final ToolCallCorrelator<OpenCall> open = new ToolCallCorrelator<>(MAX_OPEN_CALLS);
+        private final Map<String, Tool> byTool = new TreeMap<>();
+        private int dropped;
+
+        /** Records a parsed output line that arrived at {@code atMillis} if it is a tool event. */
+        void record(AiAgentLogParser.ParsedLine line, long atMillis) {
+            if (line.isToolCall()) {
+                toolCalled(line.getToolCallId(), line.getToolName(), atMillis);
+            } else if ("tool_result".equals(line.getCategory())) {
+                toolReturned(
+                        line.getToolCallId(),
+                        line.getToolName(),
+                        line.getToolOutput().getBytes(StandardCharsets.UTF_8).length,
+                        atMillis);
+            }
+        }
+
+        synchronized void toolCalled(String id, String toolName, long atMillis) {
+            String name = displayName(toolName);
+            tool(name).calls++;
+            if (open.called(id, name, new OpenCall(name, atMillis)) != null) {
+                dropped++;
+            }
+        }
+
+        synchronized void toolReturned(
+                String id, String toolName, long outputBytes, long atMillis) {
+            OpenCall call = open.returned(id, toolName);
+            if (call == null) {
+                // A result with no call event, e.g. an agent that reports a tool only when done.
+                Tool tool = tool(displayName(toolName));
+                tool.calls++;
+                tool.outputBytes += outputBytes;
+                return;
+            }
+            Tool tool = tool(call.toolName);
+            long elapsed = Math.max(0, atMillis - call.startedAt);
+            tool.completed++;
+            tool.totalMillis += elapsed;
+            tool.maxMillis = Math.max(tool.maxMillis, elapsed);
+            tool.outputBytes += outputBytes;
+        }
+
+        private Tool tool(String name) {
+            return byTool.computeIfAbsent(name, Tool::new);
+        }
+
+        private static String displayName(String toolName) {
+            return toolName == null || toolName.isEmpty() ? "Tool" : toolName;
+        }
+
+        synchronized ToolCallStats snapshot() {
+            ToolCallStats snapshot = new ToolCallStats();
+            for (Tool tool : byTool.values()) {
+                snapshot.byTool.put(tool.name, tool.copy());
+            }
+            snapshot.unfinished = open.openCalls() + dropped;
+            return snapshot;
+        }
+    }
+
+    private static final class OpenCall {
+        final String toolName;
+        final long startedAt;
+
+        OpenCall(String toolName, long startedAt) {
+            this.toolName = toolName;
+            this.startedAt = startedAt;
+        }
+    }
+}
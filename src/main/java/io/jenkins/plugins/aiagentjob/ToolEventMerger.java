@@ -0,0 +1,72 @@
+package io.jenkins.plugins.aiagentjob;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds each tool result into the tool call it answers, as paired by {@link ToolCallCorrelator}, so
+ * a call and its result render as one card showing input, output and duration. A list is merged in
+ * one pass. Durations come from the arrival times in the sidecar index.
+ *
+ * <p>Results whose call is not in the list (it was sent in an earlier progressive response) are
+ * kept; the conversation view merges those into the call card it already shows.
+ */
+final class ToolEventMerger implements Closeable {
+    private final File indexFile;
+    private AiAgentLogIndex.Reader index;
+    private boolean indexOpened;
+
+    ToolEventMerger(File rawLogFile) {
+        this.indexFile = rawLogFile == null ? null : AiAgentLogIndex.indexFileFor(rawLogFile);
+    }
+
+    /** Returns {@code events} with every result that has its call in the list merged into it. */
+    List<AiAgentLogParser.EventView> merge(List<AiAgentLogParser.EventView> events) {
+        List<AiAgentLogParser.EventView> merged = new ArrayList<>(events.size());
+        ToolCallCorrelator<Integer> openCalls = new ToolCallCorrelator<>(Integer.MAX_VALUE);
+        for (AiAgentLogParser.EventView ev : events) {
+            Integer position = null;
+            if ("tool_call".equals(ev.getCategory())) {
+                openCalls.called(ev.getToolCallId(), ev.getLabel(), merged.size());
+            } else if ("tool_result".equals(ev.getCategory())) {
+                position = openCalls.returned(ev.getToolCallId(), ev.getLabel());
+            }
+            if (position == null) {
+                merged.add(ev);
+            } else {
+                AiAgentLogParser.EventView call = merged.get(position);
+                merged.set(position, call.withResult(ev, durationBetween(call, ev)));
+            }
+        }
+        return merged;
+    }
+
+    private long durationBetween(AiAgentLogParser.EventView call, AiAgentLogParser.EventView res) {
+        long calledAt = arrivalOf(call.getId());
+        long returnedAt = calledAt < 0 ? -1 : arrivalOf(res.getId());
+        return returnedAt < 0 ? -1 : Math.max(0, returnedAt - calledAt);
+    }
+
+    /** Arrival time of the given log line, or -1 when the index does not record it. */
+    long arrivalOf(long lineNumber) {
+        if (!indexOpened) {
+            indexOpened = true;
+            try {
+                index = AiAgentLogIndex.Reader.open(indexFile);
+            } catch (IOException e) {
+                index = null;
+            }
+        }
+        return index == null ? -1 : index.arrivalOf(lineNumber);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+}
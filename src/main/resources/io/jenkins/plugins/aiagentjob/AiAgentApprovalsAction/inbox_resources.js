@@ -0,0 +1,212 @@
+(function () {
+  function esc(text) {
+    var div = document.createElement('div');
+    div.textContent = text == null ? '' : String(text);
+    return div.innerHTML;
+  }
+
+  function setCrumbHeader(xhr) {
+    var head = document.head;
+    var name = head && head.getAttribute('data-crumb-header');
+    var value = head && head.getAttribute('data-crumb-value');
+    if (name && value) {
+      xhr.setRequestHeader(name, value);
+    }
+  }
+
+  function idempotencyKey(id) {
+    return 'inbox-' + id + '-' + Date.now() + '-' + Math.floor(Math.random() * 1e9);
+  }
+
+  function initInbox(root) {
+    var pendingUrl = root.dataset.pendingUrl;
+    var decisionsUrl = root.dataset.decisionsUrl;
+    var rootUrl = root.dataset.rootUrl;
+    var rowsContainer = root.querySelector('#ai-inbox-rows');
+    var emptyMsg = root.querySelector('#ai-inbox-empty');
+    var status = root.querySelector('#ai-inbox-status');
+    var selectAll = root.querySelector('#ai-inbox-select-all');
+    var reasonInput = root.querySelector('#ai-inbox-reason');
+    var version = -1;
+    var retryDelay = 2000;
+
+    function renderRow(approval) {
+      var row = document.createElement('tr');
+      row.setAttribute('data-approval-id', approval.id);
+      var html = '<td><input type="checkbox" class="ai-inbox-select" /></td>';
+      html += '<td><a href="' + esc(rootUrl + approval.buildUrl) + '">' +
+        esc(approval.buildName || approval.build) + '</a></td>';
+      html += '<td class="ai-inbox-tool">' + esc(approval.toolName) + '</td>';
+      html += '<td class="ai-inbox-input">' + esc(approval.inputSummary) + '</td>';
+      html += '<td>' + esc(new Date(approval.createdAt).toLocaleTimeString()) + '</td>';
+      html += '<td class="ai-inbox-actions">';
+      html += '<button type="button" class="jenkins-button" data-decision="approve">Approve</button>';
+      html += '<button type="button" class="jenkins-button" data-decision="deny">Deny</button>';
+      html += '</td>';
+      row.innerHTML = html;
+      return row;
+    }
+
+    /**
+     * Applies the latest inbox to the table. Rows that are still pending are left untouched so
+     * their selection survives; new approvals are appended, which keeps creation order.
+     */
+    function render(approvals) {
+      var pending = {};
+      var i;
+      for (i = 0; i < approvals.length; i++) {
+        pending[approvals[i].id] = true;
+      }
+      var rows = rowsContainer.querySelectorAll('[data-approval-id]');
+      var present = {};
+      for (i = 0; i < rows.length; i++) {
+        var id = rows[i].getAttribute('data-approval-id');
+        if (pending[id]) {
+          present[id] = true;
+        } else {
+          rowsContainer.removeChild(rows[i]);
+        }
+      }
+      for (i = 0; i < approvals.length; i++) {
+        if (!present[approvals[i].id]) {
+          rowsContainer.appendChild(renderRow(approvals[i]));
+        }
+      }
+      emptyMsg.textContent = 'No approvals are pending.';
+      emptyMsg.hidden = approvals.length > 0;
+      if (approvals.length === 0) {
+        selectAll.checked = false;
+      }
+    }
+
+    function watch() {
+      var xhr = new XMLHttpRequest();
+      var url = pendingUrl + (version < 0 ? '' : '?since=' + version + '&wait=25s');
+      xhr.open('GET', url, true);
+      xhr.onreadystatechange = function () {
+        if (xhr.readyState !== 4) {
+          return;
+        }
+        var data = null;
+        if (xhr.status === 200) {
+          try {
+            data = JSON.parse(xhr.responseText);
+          } catch (ignored) {
+          }
+        }
+        if (!data) {
+          window.setTimeout(watch, retryDelay);
+          return;
+        }
+        version = data.version;
+        render(data.pendingApprovals || []);
+        watch();
+      };
+      xhr.send();
+    }
+
+    function decide(rows, decision) {
+      if (rows.length === 0) {
+        return;
+      }
+      var entries = [];
+      for (var i = 0; i < rows.length; i++) {
+        var id = rows[i].getAttribute('data-approval-id');
+        var buttons = rows[i].querySelectorAll('button');
+        for (var b = 0; b < buttons.length; b++) {
+          buttons[b].disabled = true;
+        }
+        entries.push({
+          id: id,
+          decision: decision,
+          reason: decision === 'deny' ? reasonInput.value : '',
+          idempotencyKey: idempotencyKey(id)
+        });
+      }
+      var xhr = new XMLHttpRequest();
+      xhr.open('POST', decisionsUrl, true);
+      xhr.setRequestHeader('Content-Type', 'application/json');
+      setCrumbHeader(xhr);
+      xhr.onreadystatechange = function () {
+        if (xhr.readyState !== 4) {
+          return;
+        }
+        var results = null;
+        if (xhr.status === 200) {
+          try {
+            results = JSON.parse(xhr.responseText).results;
+          } catch (ignored) {
+          }
+        }
+        if (!results) {
+          status.textContent = 'Request failed (HTTP ' + xhr.status + ')';
+          for (var r = 0; r < rows.length; r++) {
+            var rowButtons = rows[r].querySelectorAll('button');
+            for (var k = 0; k < rowButtons.length; k++) {
+              rowButtons[k].disabled = false;
+            }
+          }
+          return;
+        }
+        var failed = 0;
+        for (var j = 0; j < results.length; j++) {
+          var row = rowsContainer.querySelector('[data-approval-id="' + results[j].id + '"]');
+          if (results[j].status === 'forbidden' || results[j].status === 'invalid') {
+            failed++;
+          } else if (row) {
+            // Approved, denied or already resolved elsewhere: either way it is gone.
+            rowsContainer.removeChild(row);
+          }
+        }
+        status.textContent = failed > 0 ? failed + ' decision(s) were rejected' : '';
+        emptyMsg.hidden = rowsContainer.querySelector('[data-approval-id]') !== null;
+      };
+      xhr.send(JSON.stringify({ decisions: entries }));
+    }
+
+    function selectedRows() {
+      var rows = [];
+      var boxes = rowsContainer.querySelectorAll('.ai-inbox-select');
+      for (var i = 0; i < boxes.length; i++) {
+        if (boxes[i].checked) {
+          rows.push(boxes[i].closest('[data-approval-id]'));
+        }
+      }
+      return rows;
+    }
+
+    rowsContainer.addEventListener('click', function (e) {
+      var button = e.target.closest ? e.target.closest('button[data-decision]') : null;
+      if (button) {
+        decide([button.closest('[data-approval-id]')], button.getAttribute('data-decision'));
+      }
+    });
+    selectAll.addEventListener('change', function () {
+      var boxes = rowsContainer.querySelectorAll('.ai-inbox-select');
+      for (var i = 0; i < boxes.length; i++) {
+        boxes[i].checked = selectAll.checked;
+      }
+    });
+    root.querySelector('#ai-inbox-approve-selected').addEventListener('click', function () {
+      decide(selectedRows(), 'approve');
+    });
+    root.querySelector('#ai-inbox-deny-selected').addEventListener('click', function () {
+      decide(selectedRows(), 'deny');
+    });
+
+    watch();
+  }
+
+  function init() {
+    var root = document.getElementById('ai-agent-inbox');
+    if (root) {
+      initInbox(root);
+    }
+  }
+
+  if (document.readyState === 'loading') {
+    document.addEventListener('DOMContentLoaded', init);
+  } else {
+    init();
+  }
+})();
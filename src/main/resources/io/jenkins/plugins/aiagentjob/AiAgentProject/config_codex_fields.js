@@ -10,6 +10,12 @@
         for (var i = 0; i < codexOnly.length; i++) {
             codexOnly[i].hidden = !showCodexFields;
         }
+
+        var showOpenCodeFields = agentType.value === "OPENCODE";
+        var openCodeOnly = document.querySelectorAll("[data-ai-agent-opencode-only='true']");
+        for (var j = 0; j < openCodeOnly.length; j++) {
+            openCodeOnly[j].hidden = !showOpenCodeFields;
+        }
     }
 
     function bindCodexFieldToggle() {
@@ -84,13 +84,6 @@
     return out;
   }
 
-  function renderMarkdownNodes(root) {
-    var elems = root.querySelectorAll('.ai-md-src');
-    for (var i = 0; i < elems.length; i++) {
-      elems[i].innerHTML = mdToHtml(elems[i].getAttribute('data-md') || '');
-    }
-  }
-
   function excerpt(text, len) {
     if (!text) {
       return '';
@@ -101,9 +94,74 @@
     return esc(text.substring(0, len)) + '...';
   }
 
-  function renderEvent(ev) {
+  function formatBytes(n) {
+    if (n < 1024) {
+      return n + ' B';
+    }
+    if (n < 1024 * 1024) {
+      return (n / 1024).toFixed(1) + ' KB';
+    }
+    return (n / (1024 * 1024)).toFixed(1) + ' MB';
+  }
+
+  function formatDuration(ms) {
+    if (ms < 1000) {
+      return ms + 'ms';
+    }
+    var secs = Math.floor(ms / 1000);
+    if (secs < 60) {
+      return (ms / 1000).toFixed(1) + 's';
+    }
+    return Math.floor(secs / 60) + 'm ' + (secs % 60) + 's';
+  }
+
+  function isMerged(ev) {
+    return ev.resultId !== undefined && ev.resultId !== null;
+  }
+
+  /**
+   * Folds a tool result into the call it answers, so both render as one card. The duration is
+   * taken from the arrival times the server reported with each event, when it has them.
+   */
+  function mergeToolResult(call, result) {
+    call.resultId = result.id;
+    call.toolOutputPreview = result.toolOutputPreview;
+    call.toolOutputBytes = result.toolOutputBytes;
+    call.toolOutputTruncated = result.toolOutputTruncated;
+    if (call.arrivedAt >= 0 && result.arrivedAt >= 0) {
+      call.durationMillis = Math.max(0, result.arrivedAt - call.arrivedAt);
+    } else {
+      call.durationMillis = -1;
+    }
+  }
+
+  /**
+   * Renders the Input/Output section of a tool row. The event list only carries a preview of
+   * long bodies; the full text is fetched from the eventBody endpoint when the row is expanded.
+   */
+  function renderToolSection(ev, field, label) {
+    var preview = ev[field + 'Preview'];
+    if (!preview) {
+      return '';
+    }
+    var html = '<div class="ai-tool-section-label">' + label + '</div>';
+    if (ev[field + 'Truncated']) {
+      html += '<div class="ai-tool-section-content">' + esc(preview) + '...</div>';
+      html += '<div class="ai-tool-section-pending">Loading full ' + label.toLowerCase() +
+        ' (' + formatBytes(ev[field + 'Bytes']) + ')...</div>';
+    } else {
+      html += '<div class="ai-tool-section-content">' + esc(preview) + '</div>';
+    }
+    return html;
+  }
+
+  function isTruncated(ev) {
+    return !!(ev.toolInputTruncated || ev.toolOutputTruncated);
+  }
+
+  function renderEventBody(ev) {
     var cat = ev.category;
-    var html = '<div class="ai-ev">';
+    var html = '';
 
     if (cat === 'assistant' || cat === 'user' || cat === 'result' || cat === 'error') {
       html += '<span class="ai-badge ai-badge-' + cat + '">' + esc(ev.label) + '</span>';
@@ -113,14 +171,17 @@
       html += '<summary class="ai-tool-header ai-details-summary">';
       html += '<span class="ai-badge ai-badge-tool_call">TOOL</span>';
       html += '<span class="ai-tool-label">' + esc(ev.label) + '</span>';
-      if (ev.toolInput) {
-        html += '<span class="ai-tool-input-preview">' + excerpt(ev.toolInput, 120) + '</span>';
+      if (ev.toolInputPreview) {
+        html += '<span class="ai-tool-input-preview">' + excerpt(ev.toolInputPreview, 120) + '</span>';
+      }
+      if (isMerged(ev) && ev.durationMillis >= 0) {
+        html += '<span class="ai-tool-duration">' + esc(formatDuration(ev.durationMillis)) + '</span>';
       }
       html += '</summary>';
       html += '<div class="ai-tool-body">';
-      if (ev.toolInput) {
-        html += '<div class="ai-tool-section-label">Input</div>';
-        html += '<div class="ai-tool-section-content">' + esc(ev.toolInput) + '</div>';
+      html += renderToolSection(ev, 'toolInput', 'Input');
+      if (isMerged(ev)) {
+        html += renderToolSection(ev, 'toolOutput', 'Output');
       }
       html += '</div></details>';
     } else if (cat === 'tool_result') {
@@ -128,15 +189,12 @@
       html += '<summary class="ai-tool-header ai-details-summary">';
       html += '<span class="ai-badge ai-badge-tool_result">OUTPUT</span>';
       html += '<span class="ai-tool-label">' + esc(ev.label) + '</span>';
-      if (ev.toolOutput) {
-        html += '<span class="ai-tool-input-preview ai-tool-output-preview">' + excerpt(ev.toolOutput, 80) + '</span>';
+      if (ev.toolOutputPreview) {
+        html += '<span class="ai-tool-input-preview ai-tool-output-preview">' + excerpt(ev.toolOutputPreview, 80) + '</span>';
       }
       html += '</summary>';
       html += '<div class="ai-tool-body">';
-      if (ev.toolOutput) {
-        html += '<div class="ai-tool-section-label">Output</div>';
-        html += '<div class="ai-tool-section-content">' + esc(ev.toolOutput) + '</div>';
-      }
+      html += renderToolSection(ev, 'toolOutput', 'Output');
       html += '</div></details>';
     } else if (cat === 'thinking') {
       html += '<details>';
@@ -154,39 +212,357 @@
       html += '<div class="ai-system-text ai-system-detail">' + esc(ev.content) + '</div>';
       html += '</details>';
     }
+    return html;
+  }
+
+  /**
+   * Windowed list for the conversation stream. Only the rows intersecting the scroll viewport
+   * (plus an overscan margin) are attached to the DOM; everything else is represented by two
+   * spacer elements sized from measured (or estimated) row heights. Row elements are pooled and
+   * reused, and markdown is only rendered when a row is materialized.
+   */
+  function VirtualList(container, onOpen) {
+    this.container = container;
+    this.onOpen = onOpen;
+    this.items = [];
+    this.offsets = [0];
+    this.dirtyFrom = 0;
+    this.measuredTotal = 0;
+    this.measuredCount = 0;
+    this.rendered = {};
+    this.pool = [];
+    this.start = 0;
+    this.end = 0;
+    this.overscanPx = 800;
+    this.frameRequested = false;
+
+    this.topSpacer = document.createElement('div');
+    this.list = document.createElement('div');
+    this.bottomSpacer = document.createElement('div');
+    container.appendChild(this.topSpacer);
+    container.appendChild(this.list);
+    container.appendChild(this.bottomSpacer);
+
+    var self = this;
+    container.addEventListener('scroll', function () {
+      self.scheduleRender();
+    });
+    // "toggle" does not bubble, so listen in the capture phase.
+    container.addEventListener('toggle', function (e) {
+      var row = e.target.closest ? e.target.closest('[data-idx]') : null;
+      if (!row) {
+        return;
+      }
+      var idx = Number(row.getAttribute('data-idx'));
+      var item = self.items[idx];
+      if (item) {
+        item.open = e.target.open;
+        self.measureRow(row, idx);
+        self.scheduleRender();
+        if (item.open && self.onOpen) {
+          self.onOpen(item, idx);
+        }
+      }
+    }, true);
+    window.addEventListener('resize', function () {
+      for (var i = 0; i < self.items.length; i++) {
+        self.items[i].h = 0;
+      }
+      self.measuredTotal = 0;
+      self.measuredCount = 0;
+      self.dirtyFrom = 0;
+      self.scheduleRender();
+    });
+  }
+
+  VirtualList.prototype.size = function () {
+    return this.items.length;
+  };
+
+  VirtualList.prototype.isAtBottom = function () {
+    var c = this.container;
+    return c.scrollHeight - c.scrollTop - c.clientHeight < 50;
+  };
+
+  VirtualList.prototype.append = function (events) {
+    var stick = this.isAtBottom();
+    for (var i = 0; i < events.length; i++) {
+      this.items.push({ ev: events[i], h: 0, open: false });
+    }
+    this.render();
+    if (stick) {
+      this.scrollToBottom();
+    }
+  };
+
+  VirtualList.prototype.scrollToBottom = function () {
+    this.container.scrollTop = this.container.scrollHeight;
+    this.render();
+    this.container.scrollTop = this.container.scrollHeight;
+  };
+
+  VirtualList.prototype.estimate = function () {
+    return this.measuredCount > 0 ? this.measuredTotal / this.measuredCount : 40;
+  };
+
+  VirtualList.prototype.heightOf = function (i) {
+    var h = this.items[i].h;
+    return h > 0 ? h : this.estimate();
+  };
+
+  VirtualList.prototype.updateOffsets = function () {
+    var n = this.items.length;
+    if (this.dirtyFrom > n) {
+      this.dirtyFrom = n;
+    }
+    this.offsets.length = n + 1;
+    for (var i = this.dirtyFrom; i < n; i++) {
+      this.offsets[i + 1] = this.offsets[i] + this.heightOf(i);
+    }
+    this.dirtyFrom = n;
+  };
+
+  /** Returns the index of the row containing vertical position y (binary search on offsets). */
+  VirtualList.prototype.indexAt = function (y) {
+    var lo = 0;
+    var hi = this.items.length;
+    while (lo < hi) {
+      var mid = (lo + hi) >>> 1;
+      if (this.offsets[mid + 1] <= y) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  };
+
+  VirtualList.prototype.scheduleRender = function () {
+    if (this.frameRequested) {
+      return;
+    }
+    this.frameRequested = true;
+    var self = this;
+    window.requestAnimationFrame(function () {
+      self.frameRequested = false;
+      self.render();
+    });
+  };
+
+  VirtualList.prototype.acquireRow = function (i) {
+    var row = this.pool.pop() || document.createElement('div');
+    var item = this.items[i];
+    row.className = 'ai-ev';
+    row.setAttribute('data-idx', String(i));
+    row.innerHTML = renderEventBody(item.ev);
+    if (item.open) {
+      var details = row.querySelector('details');
+      if (details) {
+        details.open = true;
+      }
+    }
+    return row;
+  };
+
+  /** Re-renders row i in place after its event data changed. */
+  VirtualList.prototype.refreshRow = function (i) {
+    var row = this.rendered[i];
+    if (!row) {
+      return;
+    }
+    var item = this.items[i];
+    row.innerHTML = renderEventBody(item.ev);
+    if (item.open) {
+      var details = row.querySelector('details');
+      if (details) {
+        details.open = true;
+      }
+    }
+    this.measureRow(row, i);
+    this.scheduleRender();
+  };
+
+  VirtualList.prototype.releaseRow = function (row) {
+    if (row.parentNode) {
+      row.parentNode.removeChild(row);
+    }
+    row.innerHTML = '';
+    this.pool.push(row);
+  };
+
+  VirtualList.prototype.measureRow = function (row, i) {
+    var item = this.items[i];
+    var h = row.offsetHeight;
+    if (h <= 0 || h === item.h) {
+      return false;
+    }
+    if (item.h > 0) {
+      this.measuredTotal -= item.h;
+    } else {
+      this.measuredCount++;
+    }
+    this.measuredTotal += h;
+    item.h = h;
+    if (i < this.dirtyFrom) {
+      this.dirtyFrom = i;
+    }
+    return true;
+  };
+
+  VirtualList.prototype.render = function () {
+    var n = this.items.length;
+    this.updateOffsets();
+    var top = this.container.scrollTop;
+    var bottom = top + this.container.clientHeight;
+    var start = n === 0 ? 0 : this.indexAt(Math.max(0, top - this.overscanPx));
+    var end = n === 0 ? 0 : Math.min(n, this.indexAt(bottom + this.overscanPx) + 1);
+
+    for (var key in this.rendered) {
+      if (Object.prototype.hasOwnProperty.call(this.rendered, key)) {
+        var idx = Number(key);
+        if (idx < start || idx >= end) {
+          this.releaseRow(this.rendered[key]);
+          delete this.rendered[key];
+        }
+      }
+    }
+
+    var prev = null;
+    for (var i = start; i < end; i++) {
+      var row = this.rendered[i];
+      if (!row) {
+        row = this.acquireRow(i);
+        this.rendered[i] = row;
+      }
+      var expected = prev ? prev.nextSibling : this.list.firstChild;
+      if (row !== expected) {
+        this.list.insertBefore(row, expected);
+      }
+      prev = row;
+    }
+    this.start = start;
+    this.end = end;
+
+    var changed = false;
+    for (var j = start; j < end; j++) {
+      if (this.measureRow(this.rendered[j], j)) {
+        changed = true;
+      }
+    }
+    if (changed) {
+      this.updateOffsets();
+      this.scheduleRender();
+    }
+    this.topSpacer.style.height = this.offsets[start] + 'px';
+    this.bottomSpacer.style.height = (this.offsets[n] - this.offsets[end]) + 'px';
+  };
 
+  function renderApprovalCard(approval, memoization) {
+    var card = document.createElement('div');
+    card.className = 'ai-approval-card';
+    card.setAttribute('data-approval-id', approval.id);
+    var html = '<strong>Approval required:</strong> ' + esc(approval.toolName);
+    html += ' <span class="ai-approval-summary">- ' + esc(approval.inputSummary) + '</span>';
+    html += '<div class="actions">';
+    html += '<button type="button" data-decision="approve">Approve</button>';
+    if (memoization) {
+      html += '<button type="button" data-decision="approve" data-scope="call">' +
+        'Approve this call for the build</button>';
+      html += '<button type="button" data-decision="approve" data-scope="tool">' +
+        'Approve tool for the build</button>';
+    }
+    html += '<input type="text" name="reason" placeholder="reason (optional)" class="ai-approval-reason" />';
+    html += '<button type="button" data-decision="deny">Deny</button>';
+    html += '<span class="ai-approval-error"></span>';
     html += '</div>';
-    return html;
+    card.innerHTML = html;
+    return card;
   }
 
-  function renderApprovals(container, approveUrl, denyUrl, approvals) {
+  /**
+   * Brings the approval cards in line with the pending list. Cards that are still pending are
+   * kept as they are so a reason being typed is not lost; new requests are appended in order.
+   */
+  function renderApprovals(container, approvals, memoization) {
     if (!container) {
       return;
     }
-    if (!approvals || approvals.length === 0) {
-      container.innerHTML = '';
-      return;
+    var pending = {};
+    var i;
+    for (i = 0; i < (approvals || []).length; i++) {
+      pending[approvals[i].id] = approvals[i];
     }
-    var html = '';
-    for (var i = 0; i < approvals.length; i++) {
-      var approval = approvals[i];
-      html += '<div class="ai-approval-card">';
-      html += '<strong>Approval required:</strong> ' + esc(approval.toolName);
-      html += ' <span class="ai-approval-summary">- ' + esc(approval.inputSummary) + '</span>';
-      html += '<div class="actions">';
-      html += '<form method="post" action="' + esc(approveUrl) + '" class="ai-inline-form">';
-      html += '<input type="hidden" name="id" value="' + esc(approval.id) + '" />';
-      html += '<button type="submit">Approve</button></form>';
-      html += '<form method="post" action="' + esc(denyUrl) + '" class="ai-inline-form">';
-      html += '<input type="hidden" name="id" value="' + esc(approval.id) + '" />';
-      html += '<input type="text" name="reason" placeholder="reason (optional)" class="ai-approval-reason" />';
-      html += '<button type="submit">Deny</button></form>';
-      html += '</div></div>';
+    var cards = container.querySelectorAll('[data-approval-id]');
+    for (i = 0; i < cards.length; i++) {
+      var id = cards[i].getAttribute('data-approval-id');
+      if (Object.prototype.hasOwnProperty.call(pending, id)) {
+        delete pending[id];
+      } else {
+        container.removeChild(cards[i]);
+      }
+    }
+    for (i = 0; i < (approvals || []).length; i++) {
+      if (Object.prototype.hasOwnProperty.call(pending, approvals[i].id)) {
+        container.appendChild(renderApprovalCard(approvals[i], memoization));
+      }
     }
-    container.innerHTML = html;
   }
 
-  function renderStats(container, stats) {
+  function setCrumbHeader(xhr) {
+    var head = document.head;
+    var name = head && head.getAttribute('data-crumb-header');
+    var value = head && head.getAttribute('data-crumb-value');
+    if (name && value) {
+      xhr.setRequestHeader(name, value);
+    }
+  }
+
+  /** Sends approve/deny clicks to the decide endpoint and removes the card once it succeeds. */
+  function bindApprovalActions(container, decideUrl) {
+    container.addEventListener('click', function (e) {
+      var button = e.target.closest ? e.target.closest('button[data-decision]') : null;
+      var card = button ? button.closest('[data-approval-id]') : null;
+      if (!card) {
+        return;
+      }
+      var buttons = card.querySelectorAll('button');
+      var i;
+      for (i = 0; i < buttons.length; i++) {
+        buttons[i].disabled = true;
+      }
+      var reasonInput = card.querySelector('.ai-approval-reason');
+      var body = 'id=' + encodeURIComponent(card.getAttribute('data-approval-id')) +
+        '&decision=' + encodeURIComponent(button.getAttribute('data-decision')) +
+        '&scope=' + encodeURIComponent(button.getAttribute('data-scope') || 'once') +
+        '&reason=' + encodeURIComponent(reasonInput ? reasonInput.value : '');
+      var xhr = new XMLHttpRequest();
+      xhr.open('POST', decideUrl, true);
+      xhr.setRequestHeader('Content-Type', 'application/x-www-form-urlencoded');
+      setCrumbHeader(xhr);
+      xhr.onreadystatechange = function () {
+        if (xhr.readyState !== 4) {
+          return;
+        }
+        if (xhr.status === 200 || xhr.status === 404) {
+          // 404 means someone else already resolved it; either way it is no longer pending.
+          if (card.parentNode) {
+            card.parentNode.removeChild(card);
+          }
+          return;
+        }
+        for (i = 0; i < buttons.length; i++) {
+          buttons[i].disabled = false;
+        }
+        var error = card.querySelector('.ai-approval-error');
+        if (error) {
+          error.textContent = 'Request failed (HTTP ' + xhr.status + ')';
+        }
+      };
+      xhr.send(body);
+    });
+  }
+
+  function renderStats(container, stats, timing) {
     if (!container || !stats) {
       return;
     }
@@ -218,6 +594,23 @@
     if (stats.toolCalls > 0) {
       html += '<div class="ai-stats-item"><span class="ai-stats-label">Tool Calls:</span><span class="ai-stats-value">' + stats.toolCalls + '</span></div>';
     }
+    if (timing) {
+      if (timing.cliSetupDisplay) {
+        html += '<div class="ai-stats-item"><span class="ai-stats-label">CLI Setup:</span><span class="ai-stats-value">' + esc(timing.cliSetupDisplay) + '</span></div>';
+      }
+      if (timing.startupDisplay) {
+        html += '<div class="ai-stats-item"><span class="ai-stats-label">First Event:</span><span class="ai-stats-value">' + esc(timing.startupDisplay) + '</span></div>';
+      }
+      if (timing.firstTextDisplay) {
+        html += '<div class="ai-stats-item"><span class="ai-stats-label">First Text:</span><span class="ai-stats-value">' + esc(timing.firstTextDisplay) + '</span></div>';
+      }
+      if (timing.turnLatencyDisplay) {
+        html += '<div class="ai-stats-item"><span class="ai-stats-label">Turn Latency p50 / p95:</span><span class="ai-stats-value">' + esc(timing.turnLatencyDisplay) + '</span></div>';
+      }
+      if (timing.outputTokensPerSecondDisplay) {
+        html += '<div class="ai-stats-item"><span class="ai-stats-label">Throughput:</span><span class="ai-stats-value">' + esc(timing.outputTokensPerSecondDisplay) + '</span></div>';
+      }
+    }
     html += '</div>';
     container.innerHTML = html;
   }
@@ -236,23 +629,121 @@
     container.appendChild(badge);
   }
 
-  function initLiveView(root) {
+  function initConversationView(root) {
     var progressiveEventsUrl = root.dataset.progressiveEventsUrl;
-    var approveUrl = root.dataset.approveUrl;
-    var denyUrl = root.dataset.denyUrl;
-    var container = root.querySelector('#ai-agent-events-container');
-    var emptyMsg = root.querySelector('#ai-agent-empty');
-    var liveBanner = root.querySelector('#ai-agent-live-banner');
-    var approvalsContainer = root.querySelector('#ai-agent-approvals-container');
-    var exitBadge = root.querySelector('#ai-agent-exit-badge');
-    var statsContainer = root.querySelector('#ai-agent-stats-container');
+    var approvalEventsUrl = root.dataset.approvalEventsUrl;
+    var decideUrl = root.dataset.decideUrl;
+    var container = root.querySelector('.ai-agent-events-container');
+    var emptyMsg = root.querySelector('.ai-agent-empty');
+    var liveBanner = root.querySelector('.ai-agent-live-banner');
+    var approvalsContainer = root.querySelector('.ai-agent-approvals-container');
+    var exitBadge = root.querySelector('.ai-agent-exit-badge');
+    var statsContainer = root.querySelector('.ai-agent-stats-container');
+    var eventBodyUrl = root.dataset.eventBodyUrl;
+    var stream = new VirtualList(container, loadEventBody);
+    container.hidden = true;
     var nextStart = 0;
     var isLive = true;
-    var eventCount = 0;
+    // Completed builds are served in pages; the next one is fetched right away.
+    var hasMore = false;
     var pollInterval = 2000;
+    // Tool calls still waiting for their result, by tool call id -> row index.
+    var openCalls = {};
+
+    /**
+     * Results whose call arrived in an earlier poll update that call's row in place; everything
+     * else is returned for appending. Calls and results in the same response are already merged
+     * by the server.
+     */
+    function mergeIntoOpenCalls(events) {
+      var fresh = [];
+      for (var i = 0; i < events.length; i++) {
+        var ev = events[i];
+        var key = ev.toolCallId;
+        if (ev.category === 'tool_result' && key &&
+            Object.prototype.hasOwnProperty.call(openCalls, key)) {
+          var idx = openCalls[key];
+          delete openCalls[key];
+          mergeToolResult(stream.items[idx].ev, ev);
+          stream.refreshRow(idx);
+          continue;
+        }
+        if (ev.category === 'tool_call' && key && !isMerged(ev)) {
+          openCalls[key] = stream.size() + fresh.length;
+        }
+        fresh.push(ev);
+      }
+      return fresh;
+    }
+
+    function loadEventBody(item, idx) {
+      var ev = item.ev;
+      if (item.loading || !isTruncated(ev)) {
+        return;
+      }
+      item.loading = true;
+      var xhr = new XMLHttpRequest();
+      var url = eventBodyUrl + '?id=' + encodeURIComponent(ev.id);
+      if (isMerged(ev)) {
+        url += '&resultId=' + encodeURIComponent(ev.resultId);
+      }
+      xhr.open('GET', url, true);
+      xhr.onreadystatechange = function () {
+        if (xhr.readyState !== 4) {
+          return;
+        }
+        item.loading = false;
+        if (xhr.status !== 200) {
+          return;
+        }
+        try {
+          var body = JSON.parse(xhr.responseText);
+          ev.toolInputPreview = body.toolInput;
+          ev.toolInputTruncated = false;
+          ev.toolOutputPreview = body.toolOutput;
+          ev.toolOutputTruncated = false;
+          stream.refreshRow(idx);
+        } catch (ignored) {
+        }
+      };
+      xhr.send();
+    }
+
+    // Pending approvals arrive over a long-poll that the server answers as soon as an approval
+    // is created or resolved, independently of the slower conversation poll.
+    var approvalsVersion = -1;
+
+    function watchApprovals() {
+      var xhr = new XMLHttpRequest();
+      xhr.open('GET', approvalEventsUrl + '?since=' + approvalsVersion, true);
+      xhr.onreadystatechange = function () {
+        if (xhr.readyState !== 4) {
+          return;
+        }
+        if (xhr.status !== 200) {
+          window.setTimeout(watchApprovals, pollInterval);
+          return;
+        }
+        var data;
+        try {
+          data = JSON.parse(xhr.responseText);
+        } catch (ignored) {
+          window.setTimeout(watchApprovals, pollInterval);
+          return;
+        }
+        approvalsVersion = data.version;
+        renderApprovals(approvalsContainer, data.pendingApprovals, data.memoization);
+        if (data.live) {
+          watchApprovals();
+        }
+      };
+      xhr.send();
+    }
 
     function schedulePoll() {
-      if (isLive) {
+      if (hasMore) {
+        poll();
+      } else if (isLive) {
         window.setTimeout(poll, pollInterval);
       } else if (liveBanner) {
         liveBanner.hidden = true;
@@ -267,39 +758,35 @@
           return;
         }
         if (xhr.status !== 200) {
-          schedulePoll();
+          if (hasMore) {
+            window.setTimeout(poll, pollInterval);
+          } else {
+            schedulePoll();
+          }
           return;
         }
         try {
           var data = JSON.parse(xhr.responseText);
-          var events = data.events || [];
-          var shouldScroll = container.scrollHeight - container.scrollTop - container.clientHeight < 50;
+          var events = mergeIntoOpenCalls(data.events || []);
           if (events.length > 0) {
-            var html = '';
-            for (var i = 0; i < events.length; i++) {
-              html += renderEvent(events[i]);
-              eventCount++;
-            }
-            container.insertAdjacentHTML('beforeend', html);
-            if (shouldScroll) {
-              container.scrollTop = container.scrollHeight;
-            }
+            container.hidden = false;
+            stream.append(events);
           }
           nextStart = data.nextStart || nextStart;
           isLive = data.live;
+          hasMore = data.more === true;
           if (emptyMsg) {
-            emptyMsg.hidden = eventCount > 0;
-            if (!isLive && eventCount === 0) {
+            emptyMsg.hidden = stream.size() > 0;
+            if (!isLive && !hasMore && stream.size() === 0) {
               emptyMsg.textContent = 'No conversation events captured.';
             }
           }
           if (liveBanner) {
             liveBanner.hidden = !isLive;
           }
-          renderApprovals(approvalsContainer, approveUrl, denyUrl, data.pendingApprovals);
           updateExitBadge(exitBadge, data.exitCode);
-          if (data.usageStats) {
-            renderStats(statsContainer, data.usageStats);
+          if (data.usageStats || data.timingStats) {
+            renderStats(statsContainer, data.usageStats || {}, data.timingStats);
           }
         } catch (ignored) {
         }
@@ -308,17 +795,18 @@
       xhr.send();
     }
 
+    if (approvalsContainer && root.dataset.live === 'true') {
+      bindApprovalActions(approvalsContainer, decideUrl);
+      watchApprovals();
+    }
     poll();
   }
 
   function init() {
-    var root = document.getElementById('ai-agent-root');
-    if (!root) {
-      return;
-    }
-    renderMarkdownNodes(root);
-    if (root.dataset.live === 'true') {
-      initLiveView(root);
+    // A multi-agent build shows one conversation per agent.
+    var roots = document.querySelectorAll('.ai-agent-root');
+    for (var i = 0; i < roots.length; i++) {
+      initConversationView(roots[i]);
     }
   }
 
@@ -0,0 +1,38 @@
+(function () {
+  // Tabs of a multi-agent build: each shows one agent's conversation panel, 'All' shows every one.
+  function select(group, variant) {
+    var tabs = group.querySelectorAll('.ai-group-tab');
+    for (var i = 0; i < tabs.length; i++) {
+      tabs[i].classList.toggle('ai-group-tab-active', tabs[i].dataset.variant === variant);
+    }
+    var panels = document.querySelectorAll('.ai-agent-root[data-variant]');
+    for (var j = 0; j < panels.length; j++) {
+      var panelVariant = panels[j].dataset.variant;
+      if (panelVariant) {
+        panels[j].hidden = variant !== '' && panelVariant !== variant;
+      }
+    }
+  }
+
+  function initGroup(group) {
+    group.addEventListener('click', function (e) {
+      var tab = e.target.closest('.ai-group-tab');
+      if (tab) {
+        select(group, tab.dataset.variant);
+      }
+    });
+  }
+
+  function init() {
+    var groups = document.querySelectorAll('.ai-agent-group');
+    for (var i = 0; i < groups.length; i++) {
+      initGroup(groups[i]);
+    }
+  }
+
+  if (document.readyState === 'loading') {
+    document.addEventListener('DOMContentLoaded', init);
+  } else {
+    init();
+  }
+})();
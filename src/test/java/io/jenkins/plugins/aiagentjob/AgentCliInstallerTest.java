@@ -0,0 +1,102 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.util.StreamTaskListener;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class AgentCliInstallerTest {
+
+    private static FilePath tempRoot() throws Exception {
+        File dir = Files.createTempDirectory("cli-cache-").toFile();
+        dir.deleteOnExit();
+        return new FilePath(dir);
+    }
+
+    @Test
+    public void isValidVersion_acceptsVersionsAndRejectsPaths() {
+        assertTrue(AgentCliInstaller.isValidVersion("1.0.35"));
+        assertTrue(AgentCliInstaller.isValidVersion("0.2.0-beta.1"));
+        assertTrue(AgentCliInstaller.isValidVersion("latest"));
+        assertFalse(AgentCliInstaller.isValidVersion(null));
+        assertFalse(AgentCliInstaller.isValidVersion(""));
+        assertFalse(AgentCliInstaller.isValidVersion("../1.0.0"));
+        assertFalse(AgentCliInstaller.isValidVersion("1.0.0 && rm -rf /"));
+        assertFalse(AgentCliInstaller.isValidVersion(".hidden"));
+    }
+
+    @Test
+    public void installDir_isPerAgentAndVersionUnderNodeTools() throws Exception {
+        FilePath root = tempRoot();
+
+        FilePath dir = AgentCliInstaller.installDir(root, AgentType.CLAUDE_CODE, "1.0.35");
+
+        assertEquals(
+                root.child("tools/ai-agent-cli").child("claude_code").child("1.0.35").getRemote(),
+                dir.getRemote());
+        assertTrue(
+                AgentCliInstaller.executable(dir, AgentType.CLAUDE_CODE, true)
+                        .getRemote()
+                        .endsWith("claude"));
+        assertTrue(
+                AgentCliInstaller.executable(dir, AgentType.GEMINI_CLI, false)
+                        .getRemote()
+                        .endsWith("gemini.cmd"));
+    }
+
+    @Test
+    public void install_reusesCompletedInstallWithoutRunningNpm() throws Exception {
+        FilePath root = tempRoot();
+        FilePath dir = AgentCliInstaller.installDir(root, AgentType.CODEX, "0.20.0");
+        dir.mkdirs();
+        dir.child(AgentCliInstaller.MARKER_FILE).write("@openai/codex@0.20.0\n", "UTF-8");
+        StreamTaskListener listener = StreamTaskListener.fromStdout();
+
+        AgentCliInstaller.Installation cli =
+                AgentCliInstaller.install(
+                        root,
+                        AgentType.CODEX,
+                        "0.20.0",
+                        new Launcher.LocalLauncher(listener),
+                        new EnvVars(),
+                        listener);
+
+        assertTrue(cli.cached);
+        assertEquals(
+                AgentCliInstaller.executable(dir, AgentType.CODEX, true).getRemote(),
+                cli.executable);
+    }
+
+    @Test
+    public void install_rejectsAgentsNotOnNpmAndInvalidVersions() throws Exception {
+        FilePath root = tempRoot();
+        StreamTaskListener listener = StreamTaskListener.fromStdout();
+        Launcher launcher = new Launcher.LocalLauncher(listener);
+        try {
+            AgentCliInstaller.install(
+                    root, AgentType.CURSOR_AGENT, "1.0.0", launcher, new EnvVars(), listener);
+            fail("Cursor Agent is not on npm");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("not distributed through npm"));
+        }
+        try {
+            AgentCliInstaller.install(
+                    root, AgentType.CLAUDE_CODE, "../x", launcher, new EnvVars(), listener);
+            fail("Version must not be a path");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Invalid CLI version"));
+        }
+        assertFalse(root.child("tools").exists());
+    }
+}
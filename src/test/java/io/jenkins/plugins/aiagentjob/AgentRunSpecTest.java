@@ -0,0 +1,262 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.Proc;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public class AgentRunSpecTest {
+
+    /** A process that only records whether it was killed. */
+    private static final class FakeProc extends Proc {
+        boolean killed;
+
+        @Override
+        public boolean isAlive() {
+            return !killed;
+        }
+
+        @Override
+        public void kill() {
+            killed = true;
+        }
+
+        @Override
+        public int join() {
+            return killed ? 143 : 0;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return null;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return null;
+        }
+    }
+
+    private static AiAgentProject createProject() {
+        AiAgentProject project =
+                new AiAgentProject(null, "test-job") {
+                    @Override
+                    public void save() {
+                        // no-op for testing
+                    }
+                };
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setModel("sonnet");
+        project.setPrompt("Fix the build.");
+        project.setApiCredentialsId("anthropic-key");
+        project.setCliVersion("1.0.0");
+        return project;
+    }
+
+    @Test
+    public void of_takesEverythingFromTheJob() {
+        AgentRunSpec spec = AgentRunSpec.of(createProject());
+
+        assertFalse(spec.isVariant());
+        assertNull(spec.variant);
+        assertEquals(AgentType.CLAUDE_CODE, spec.agentType);
+        assertEquals("sonnet", spec.model);
+        assertEquals("Fix the build.", spec.prompt);
+        assertEquals("anthropic-key", spec.credentialsId);
+    }
+
+    @Test
+    public void parseAgents_jobTypeInheritsJobSettings() {
+        List<AgentRunSpec> specs = AgentRunSpec.parseAgents(createProject(), "claude-code");
+
+        assertEquals(1, specs.size());
+        AgentRunSpec spec = specs.get(0);
+        assertTrue(spec.isVariant());
+        assertEquals("1", spec.variant);
+        assertEquals("sonnet", spec.model);
+        assertEquals("anthropic-key", spec.credentialsId);
+        assertEquals("1.0.0", spec.cliVersion);
+        assertEquals("Fix the build.", spec.prompt);
+        assertEquals("Claude Code (sonnet)", spec.label);
+    }
+
+    @Test
+    public void parseAgents_otherTypeOnlyGetsWhatItsLineSets() {
+        List<AgentRunSpec> specs =
+                AgentRunSpec.parseAgents(
+                        createProject(),
+                        "# compare two agents\n"
+                                + "\n"
+                                + "claude-code model=opus\n"
+                                + "CODEX model=gpt-5-codex credentials=openai-key\n"
+                                + "gemini_cli\n");
+
+        assertEquals(3, specs.size());
+        assertEquals("opus", specs.get(0).model);
+        assertEquals("anthropic-key", specs.get(0).credentialsId);
+
+        AgentRunSpec codex = specs.get(1);
+        assertEquals("2", codex.variant);
+        assertEquals(AgentType.CODEX, codex.agentType);
+        assertEquals("gpt-5-codex", codex.model);
+        assertEquals("openai-key", codex.credentialsId);
+        assertEquals(AgentType.CODEX.getDefaultApiKeyEnvVar(), codex.apiKeyEnvVar);
+        assertEquals("", codex.cliVersion);
+        assertEquals("Fix the build.", codex.prompt);
+
+        AgentRunSpec gemini = specs.get(2);
+        assertEquals("3", gemini.variant);
+        assertEquals("", gemini.model);
+        assertEquals("", gemini.credentialsId);
+        assertEquals(AgentType.GEMINI_CLI.getDisplayName(), gemini.label);
+    }
+
+    @Test
+    public void parseAgents_rejectsUnknownAgentsAndTokens() {
+        try {
+            AgentRunSpec.parseAgents(createProject(), "claude-code\nnot-an-agent");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2:"));
+        }
+        try {
+            AgentRunSpec.parseAgents(createProject(), "codex temperature=1");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("temperature=1"));
+        }
+    }
+
+    @Test
+    public void parseAgents_emptyTextHasNoAgents() {
+        assertTrue(AgentRunSpec.parseAgents(createProject(), "").isEmpty());
+        assertTrue(AgentRunSpec.parseAgents(createProject(), null).isEmpty());
+    }
+
+    @Test
+    public void parseBatch_usesPromptAsTemplate() {
+        AiAgentProject project = createProject();
+        project.setPrompt("Fix lint rule ${AI_AGENT_BATCH_ITEM} in this repository.");
+
+        List<AgentRunSpec> specs =
+                AgentRunSpec.parseBatch(project, "# rules\nno-unused-vars\n\n  eqeqeq  \n");
+
+        assertEquals(2, specs.size());
+        assertEquals("1", specs.get(0).variant);
+        assertEquals("no-unused-vars", specs.get(0).variables.get(AgentRunSpec.BATCH_ITEM_VAR));
+        assertEquals("#1: no-unused-vars", specs.get(0).label);
+        assertEquals(project.getPrompt(), specs.get(0).prompt);
+        assertEquals("eqeqeq", specs.get(1).variables.get(AgentRunSpec.BATCH_ITEM_VAR));
+        assertEquals(AgentType.CLAUDE_CODE, specs.get(1).agentType);
+        assertEquals("anthropic-key", specs.get(1).credentialsId);
+    }
+
+    @Test
+    public void parseBatch_appendsItemToPromptThatDoesNotMentionIt() {
+        AiAgentProject project = createProject();
+
+        AgentRunSpec spec = AgentRunSpec.parseBatch(project, "module-a").get(0);
+        assertEquals("Fix the build.\n\n${AI_AGENT_BATCH_ITEM}", spec.prompt);
+
+        project.setPrompt("");
+        spec = AgentRunSpec.parseBatch(project, "module-a").get(0);
+        assertEquals("${AI_AGENT_BATCH_ITEM}", spec.prompt);
+    }
+
+    @Test
+    public void parseBatch_shortensLongLabels() {
+        String item = "Rewrite the module so that every public method has a doc comment and a test";
+
+        AgentRunSpec spec = AgentRunSpec.parseBatch(createProject(), item).get(0);
+
+        assertEquals(item, spec.variables.get(AgentRunSpec.BATCH_ITEM_VAR));
+        assertTrue(spec.label, spec.label.endsWith("..."));
+        assertEquals("#1: ".length() + 60, spec.label.length());
+    }
+
+    @Test
+    public void forShards_runsPromptInEachShard() {
+        AiAgentProject project = createProject();
+
+        List<AgentRunSpec> specs =
+                AgentRunSpec.forShards(project, List.of("modules/a", "modules/b"));
+
+        assertEquals(2, specs.size());
+        assertEquals("2", specs.get(1).variant);
+        assertEquals("modules/b", specs.get(1).label);
+        assertEquals("modules/b", specs.get(1).workingDirectory);
+        assertEquals("modules/b", specs.get(1).variables.get(AgentRunSpec.SHARD_VAR));
+        assertEquals("Fix the build.", specs.get(1).prompt);
+    }
+
+    @Test
+    public void forReduce_appendsSummariesToPrompt() {
+        AiAgentProject project = createProject();
+
+        AgentRunSpec spec = AgentRunSpec.forReduce(project, "## Shard a (exit code 0)\nDone.");
+        assertEquals(AgentRunSpec.REDUCE_VARIANT, spec.variant);
+        assertTrue(spec.prompt, spec.prompt.contains("Fix the build."));
+        assertTrue(spec.prompt, spec.prompt.endsWith("${AI_AGENT_SHARD_SUMMARIES}"));
+        assertEquals(
+                "## Shard a (exit code 0)\nDone.",
+                spec.variables.get(AgentRunSpec.SHARD_SUMMARIES_VAR));
+
+        project.setReducePrompt("Merge these:\n$AI_AGENT_SHARD_SUMMARIES\nThen run the tests.");
+        spec = AgentRunSpec.forReduce(project, "");
+        assertEquals(project.getReducePrompt(), spec.prompt);
+
+        project.setReducePrompt("Update the changelog.");
+        spec = AgentRunSpec.forReduce(project, "");
+        assertEquals("Update the changelog.\n\n${AI_AGENT_SHARD_SUMMARIES}", spec.prompt);
+    }
+
+    @Test
+    public void cancel_killsRunningProcess() throws Exception {
+        AgentRunSpec spec = AgentRunSpec.of(createProject());
+        FakeProc proc = new FakeProc();
+        spec.attach(proc);
+
+        spec.cancel();
+
+        assertTrue(proc.killed);
+        assertTrue(spec.isCancelled());
+    }
+
+    @Test
+    public void cancel_beforeStartKillsProcessOnceAttached() throws Exception {
+        AgentRunSpec spec = AgentRunSpec.of(createProject());
+        spec.cancel();
+        FakeProc proc = new FakeProc();
+
+        spec.attach(proc);
+
+        assertTrue(proc.killed);
+    }
+
+    @Test
+    public void cancel_afterExitDoesNothing() throws Exception {
+        AgentRunSpec spec = AgentRunSpec.of(createProject());
+        FakeProc proc = new FakeProc();
+        spec.attach(proc);
+        spec.detach();
+
+        spec.cancel();
+
+        assertFalse(proc.killed);
+        assertFalse(spec.isCancelled());
+    }
+}
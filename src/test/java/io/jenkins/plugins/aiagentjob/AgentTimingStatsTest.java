@@ -0,0 +1,77 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class AgentTimingStatsTest {
+
+    @Test
+    public void snapshot_derivesLatenciesFromArrivalTimes() {
+        AgentTimingStats.Recorder recorder = new AgentTimingStats.Recorder();
+        recorder.processStarted(1_000);
+        recorder.eventArrived("raw", 1_200);
+        recorder.eventArrived("system", 1_500);
+        recorder.eventArrived("thinking", 3_000);
+        recorder.eventArrived("assistant", 3_500);
+        recorder.eventArrived("tool_call", 4_000);
+        recorder.eventArrived("tool_result", 9_000);
+        recorder.eventArrived("assistant", 10_000);
+        recorder.eventArrived("result", 10_100);
+
+        AgentTimingStats stats = recorder.snapshot(400);
+
+        assertTrue(stats.hasData());
+        assertEquals(1_000, stats.getProcessStartedAtMillis());
+        assertEquals(500, stats.getStartupMillis());
+        assertEquals(2_500, stats.getFirstTextMillis());
+        assertEquals(2, stats.getTurns());
+        assertEquals(1_000, stats.getTurnLatencyPercentile(0.5));
+        assertEquals(2_000, stats.getTurnLatencyPercentile(0.95));
+        // Both turns minus the five seconds the tool ran.
+        assertEquals(4_000, stats.getGenerationMillis());
+        assertEquals(100.0, stats.getOutputTokensPerSecond(), 0.001);
+        assertEquals("500ms", stats.getStartupDisplay());
+        assertEquals("1.0s / 2.0s", stats.getTurnLatencyDisplay());
+        assertEquals("100.0 tok/s", stats.getOutputTokensPerSecondDisplay());
+
+        JSONObject json = stats.toJson();
+        assertEquals(2_000, json.getLong("turnLatencyMaxMillis"));
+    }
+
+    @Test
+    public void snapshot_recordsPinnedCliSetup() {
+        AgentTimingStats.Recorder recorder = new AgentTimingStats.Recorder();
+        AgentTimingStats unpinned = recorder.snapshot(0);
+        assertEquals(-1, unpinned.getCliSetupMillis());
+        assertEquals("", unpinned.getCliSetupDisplay());
+
+        recorder.cliReady(850, true);
+        AgentTimingStats cached = recorder.snapshot(0);
+        assertEquals(850, cached.getCliSetupMillis());
+        assertTrue(cached.isCliCached());
+        assertEquals("850ms (cached)", cached.getCliSetupDisplay());
+
+        recorder.cliReady(34_500, false);
+        assertEquals("34.5s (installed)", recorder.snapshot(0).getCliSetupDisplay());
+    }
+
+    @Test
+    public void snapshot_withoutEventsHasNoData() {
+        AgentTimingStats.Recorder recorder = new AgentTimingStats.Recorder();
+        recorder.processStarted(1_000);
+        recorder.eventArrived("raw", 1_100);
+
+        AgentTimingStats stats = recorder.snapshot(0);
+
+        assertFalse(stats.hasData());
+        assertEquals(-1, stats.getFirstTextMillis());
+        assertEquals("", stats.getFirstTextDisplay());
+        assertEquals("", stats.getOutputTokensPerSecondDisplay());
+        assertEquals(0, stats.getTurnLatencyPercentile(0.5));
+    }
+}
@@ -1,6 +1,7 @@
 package io.jenkins.plugins.aiagentjob;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Test;
 
@@ -60,6 +61,15 @@ public class AgentTypeTest {
         assertEquals("GEMINI_API_KEY", AgentType.GEMINI_CLI.getDefaultApiKeyEnvVar());
     }
 
+    @Test
+    public void npmPackages_onlyForAgentsPublishedToNpm() {
+        assertEquals("@anthropic-ai/claude-code", AgentType.CLAUDE_CODE.getNpmPackage());
+        assertEquals("@openai/codex", AgentType.CODEX.getNpmPackage());
+        assertNull(AgentType.CURSOR_AGENT.getNpmPackage());
+        assertEquals("claude", AgentType.CLAUDE_CODE.getExecutable());
+        assertEquals("agent", AgentType.CURSOR_AGENT.getExecutable());
+    }
+
     @Test
     public void allValues_haveNonEmptyApiKeyEnvVar() {
         for (AgentType type : AgentType.values()) {
@@ -275,4 +275,17 @@ public class AgentUsageStatsTest {
         AgentUsageStats stats = AgentUsageStats.fromLogFile(fixtureFile("stats-codex.jsonl"));
         assertEquals("", stats.getDetectedModel());
     }
+
+    @Test
+    public void add_sumsSessions() throws IOException {
+        AgentUsageStats total = new AgentUsageStats();
+        total.add(AgentUsageStats.fromLogFile(fixtureFile("stats-claude-code.jsonl")));
+        total.add(AgentUsageStats.fromLogFile(fixtureFile("stats-gemini.jsonl")));
+
+        assertEquals(12500 + 4824, total.getInputTokens());
+        assertEquals(30 + 2, total.getOutputTokens());
+        assertEquals((12500 + 30 + 11000 + 1000) + 4925, total.getTotalTokens());
+        assertEquals("$0.30", total.getCostDisplay());
+        assertEquals(2745 + 3289, total.getDurationMs());
+    }
 }
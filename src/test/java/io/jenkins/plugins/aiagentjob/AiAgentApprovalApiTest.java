@@ -0,0 +1,157 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class AiAgentApprovalApiTest {
+
+    private static JSONObject decision(String id, String decision, String key) {
+        JSONObject entry = new JSONObject();
+        entry.put("id", id);
+        entry.put("decision", decision);
+        if (key != null) {
+            entry.put("idempotencyKey", key);
+        }
+        return entry;
+    }
+
+    private static JSONArray apply(ExecutionRegistry.LiveExecution live, JSONObject... entries) {
+        return apply("alice", live, entries);
+    }
+
+    private static JSONArray apply(
+            String user, ExecutionRegistry.LiveExecution live, JSONObject... entries) {
+        JSONArray decisions = new JSONArray();
+        for (JSONObject entry : entries) {
+            decisions.add(entry);
+        }
+        return AiAgentApprovalApi.applyDecisions(
+                decisions, user, id -> live.hasPendingApproval(id) ? live : null, l -> true);
+    }
+
+    @Test
+    public void parseWaitMillis_acceptsUnits() {
+        assertEquals(30_000, AiAgentApprovalApi.parseWaitMillis("30s"));
+        assertEquals(250, AiAgentApprovalApi.parseWaitMillis("250ms"));
+        assertEquals(60_000, AiAgentApprovalApi.parseWaitMillis("1m"));
+        assertEquals(5_000, AiAgentApprovalApi.parseWaitMillis("5"));
+    }
+
+    @Test
+    public void parseWaitMillis_capsAndRejectsInvalidValues() {
+        assertEquals(AiAgentApprovalApi.MAX_WAIT_MILLIS, AiAgentApprovalApi.parseWaitMillis("10m"));
+        assertEquals(0, AiAgentApprovalApi.parseWaitMillis(null));
+        assertEquals(0, AiAgentApprovalApi.parseWaitMillis("soon"));
+        assertEquals(0, AiAgentApprovalApi.parseWaitMillis("-3s"));
+    }
+
+    @Test
+    public void applyDecisions_approvesAndDeniesInOrder() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String first = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        String second = live.createPendingApproval("tc-2", "bash", "rm -rf /").getId();
+
+        JSONArray results =
+                apply(
+                        live,
+                        decision(first, "approve", null),
+                        decision(second, "deny", null),
+                        decision("unknown", "approve", null),
+                        decision(first, "maybe", null));
+
+        assertEquals("approved", results.getJSONObject(0).getString("status"));
+        assertEquals("denied", results.getJSONObject(1).getString("status"));
+        assertEquals("not_found", results.getJSONObject(2).getString("status"));
+        assertEquals("invalid", results.getJSONObject(3).getString("status"));
+        assertTrue(live.getPendingApprovals().isEmpty());
+    }
+
+    @Test
+    public void applyDecisions_replaysResultForRepeatedIdempotencyKey() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String id = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        String key = UUID.randomUUID().toString();
+
+        JSONObject firstResult = apply(live, decision(id, "deny", key)).getJSONObject(0);
+        assertEquals("denied", firstResult.getString("status"));
+        assertFalse(firstResult.getBoolean("replayed"));
+
+        JSONObject retry = apply(live, decision(id, "deny", key)).getJSONObject(0);
+        assertEquals("denied", retry.getString("status"));
+        assertTrue(retry.getBoolean("replayed"));
+    }
+
+    @Test
+    public void applyDecisions_reportsForbiddenBuilds() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String id = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        JSONArray decisions = new JSONArray();
+        decisions.add(decision(id, "approve", null));
+
+        JSONArray results =
+                AiAgentApprovalApi.applyDecisions(decisions, "alice", x -> live, l -> false);
+
+        assertEquals("forbidden", results.getJSONObject(0).getString("status"));
+        assertTrue(live.hasPendingApproval(id));
+    }
+
+    @Test
+    public void applyDecisions_rejectsKeyReusedForDifferentDecision() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String id = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        String key = UUID.randomUUID().toString();
+
+        assertEquals(
+                "approved",
+                apply(live, decision(id, "approve", key)).getJSONObject(0).getString("status"));
+
+        JSONObject retry = apply(live, decision(id, "deny", key)).getJSONObject(0);
+        assertEquals("conflict", retry.getString("status"));
+        assertFalse(retry.getBoolean("replayed"));
+    }
+
+    @Test
+    public void applyDecisions_scopesKeysToUserAndApproval() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String first = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        String second = live.createPendingApproval("tc-2", "bash", "pwd").getId();
+        String key = UUID.randomUUID().toString();
+
+        apply("alice", live, decision(first, "deny", key));
+
+        JSONObject otherUser = apply("bob", live, decision(first, "deny", key)).getJSONObject(0);
+        assertEquals(
+                "Bob's retry must not replay Alice's decision",
+                "not_found",
+                otherUser.getString("status"));
+        JSONObject otherApproval =
+                apply("alice", live, decision(second, "approve", key)).getJSONObject(0);
+        assertEquals("approved", otherApproval.getString("status"));
+        assertFalse(otherApproval.getBoolean("replayed"));
+    }
+
+    @Test
+    public void applyDecisions_checksPermissionBeforeReplaying() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        String id = live.createPendingApproval("tc-1", "bash", "ls").getId();
+        String key = UUID.randomUUID().toString();
+        JSONArray decisions = new JSONArray();
+        decisions.add(decision(id, "deny", key));
+
+        JSONArray first =
+                AiAgentApprovalApi.applyDecisions(decisions, "alice", x -> live, l -> true);
+        assertEquals("denied", first.getJSONObject(0).getString("status"));
+
+        JSONArray retry =
+                AiAgentApprovalApi.applyDecisions(decisions, "alice", x -> live, l -> false);
+        assertEquals("forbidden", retry.getJSONObject(0).getString("status"));
+    }
+}
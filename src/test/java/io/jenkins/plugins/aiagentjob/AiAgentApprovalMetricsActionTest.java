@@ -0,0 +1,91 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.model.FreeStyleBuild;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+/** Tests for the job-level {@link AiAgentApprovalMetricsAction}. */
+public class AiAgentApprovalMetricsActionTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void metrics_aggregateApprovalStatsOfRecentBuilds() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-metrics");
+        project.setCommandOverride("echo '{\"type\":\"system\"}'");
+        project.save();
+
+        FreeStyleBuild first = jenkins.buildAndAssertSuccess(project);
+        FreeStyleBuild second = jenkins.buildAndAssertSuccess(project);
+        jenkins.buildAndAssertSuccess(project);
+        recordDecision(first, true);
+        recordDecision(second, true);
+        recordDecision(second, false);
+
+        JSONObject metrics =
+                JSONObject.fromObject(
+                        jenkins.createWebClient()
+                                .goTo(
+                                        project.getUrl() + "ai-agent-approval-metrics/",
+                                        "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+
+        assertEquals(3, metrics.getInt("builds"));
+        assertEquals(2, metrics.getInt("gatedBuilds"));
+        assertEquals(3, metrics.getInt("requested"));
+        assertEquals(2, metrics.getInt("approved"));
+        assertEquals(1, metrics.getInt("denied"));
+        assertEquals(0.0, metrics.getDouble("timeoutRate"), 0.0001);
+        assertEquals(1, AiAgentApprovalMetricsAction.parseBuilds("1"));
+        assertEquals(
+                AiAgentApprovalMetricsAction.MAX_BUILDS,
+                AiAgentApprovalMetricsAction.parseBuilds("100000"));
+    }
+
+    @Test
+    public void metrics_includeEveryRunOfMultiAgentBuilds() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-variants");
+        project.setCommandOverride("echo '{\"type\":\"system\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        recordDecision(AiAgentRunAction.getOrCreateVariant(build, "a", "A"), true);
+        recordDecision(AiAgentRunAction.getOrCreateVariant(build, "b", "B"), false);
+
+        JSONObject metrics = new AiAgentApprovalMetricsAction(project).metrics(10);
+
+        assertEquals(1, metrics.getInt("gatedBuilds"));
+        assertEquals(2, metrics.getInt("requested"));
+        assertEquals(1, metrics.getInt("approved"));
+        assertEquals(1, metrics.getInt("denied"));
+    }
+
+    private static void recordDecision(FreeStyleBuild build, boolean approve) {
+        recordDecision(build.getAction(AiAgentRunAction.class), approve);
+    }
+
+    private static void recordDecision(AiAgentRunAction action, boolean approve) {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc", "bash", "ls");
+        if (approve) {
+            live.approve(pending.getId());
+        } else {
+            live.deny(pending.getId(), "no");
+        }
+        action.recordApproval(pending, pending.getDecision());
+    }
+}
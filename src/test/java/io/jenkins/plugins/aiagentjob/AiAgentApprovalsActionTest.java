@@ -0,0 +1,57 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Tests for the Jenkins-wide {@link AiAgentApprovalsAction} inbox. */
+public class AiAgentApprovalsActionTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void pendingApprovals_returnsJsonWithVersion() throws Exception {
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        JSONObject result =
+                JSONObject.fromObject(
+                        wc.goTo("ai-agent-approvals/pendingApprovals", "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+        assertTrue(result.has("version"));
+        assertEquals(0, result.getJSONArray("pendingApprovals").size());
+    }
+
+    @Test
+    public void inboxPage_renders() throws Exception {
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        // The page keeps a long-poll open; only the server-rendered markup matters here.
+        wc.getOptions().setJavaScriptEnabled(false);
+        String html = wc.goTo("ai-agent-approvals/").getWebResponse().getContentAsString();
+        assertTrue(html.contains("ai-agent-inbox"));
+    }
+
+    @Test
+    public void indexJelly_usesExternalResourcesForCspCompliance() throws Exception {
+        String jelly;
+        try (InputStream is =
+                getClass()
+                        .getResourceAsStream(
+                                "/io/jenkins/plugins/aiagentjob/AiAgentApprovalsAction/index.jelly")) {
+            assertNotNull(is);
+            jelly = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(jelly.contains("AiAgentApprovalsAction.inbox_resources"));
+        assertFalse(jelly.contains("<script"));
+        assertFalse(jelly.contains("<style"));
+        assertFalse(jelly.contains(" style="));
+    }
+}
@@ -1,5 +1,7 @@
 package io.jenkins.plugins.aiagentjob;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -13,6 +15,11 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class AiAgentBuildExecutionTest {
     @Rule public JenkinsRule jenkins = new JenkinsRule();
@@ -193,4 +200,231 @@ public class AiAgentBuildExecutionTest {
         assertNotNull(action);
         assertTrue(action.getEvents().stream().anyMatch(e -> "tool_call".equals(e.getCategory())));
     }
+
+    @Test
+    public void abortWhileApprovalPendingDoesNotWaitForTimeout() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project =
+                jenkins.createProject(AiAgentProject.class, "ai-build-approval-abort");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setPrompt("needs approval");
+        project.setRequireApprovals(true);
+        project.setApprovalTimeoutSeconds(300);
+        project.setCommandOverride(
+                "echo '{\"type\":\"tool_call\",\"tool_name\":\"bash\",\"tool_call_id\":\"call-1\",\"text\":\"ls\"}'; "
+                        + "sleep 120");
+        project.save();
+
+        FreeStyleBuild build = project.scheduleBuild2(0).waitForStart();
+        long deadline = System.currentTimeMillis() + 30_000;
+        ExecutionRegistry.LiveExecution live = ExecutionRegistry.get(build);
+        while (live == null || live.getPendingApprovals().isEmpty()) {
+            assertTrue("No approval was requested", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+            live = ExecutionRegistry.get(build);
+        }
+
+        long abortedAt = System.currentTimeMillis();
+        build.getExecutor().interrupt();
+        jenkins.waitForCompletion(build);
+
+        jenkins.assertBuildStatus(Result.ABORTED, build);
+        assertTrue(
+                "The build should end without waiting for the approval timeout",
+                System.currentTimeMillis() - abortedAt < 60_000);
+        assertTrue(live.getPendingApprovals().isEmpty());
+    }
+
+    @Test
+    public void race_fastAgentWinsAndOthersAreStopped() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        Assume.assumeTrue("Race mode needs git", git(new File("."), "--version"));
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "ai-build-race");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setPrompt("race");
+        project.setExecutionMode(ExecutionMode.RACE);
+        project.setFanOutAgents(
+                "claude-code model=slow\nclaude-code model=fast\nclaude-code model=queued");
+        project.setMaxParallelAgents(2);
+        // Agent 1 reports usage, then works until it is stopped; agent 2 changes a file and wins
+        // while agent 1 is still running; agent 3 waits for a free slot until the race is over.
+        project.setCommandOverride(
+                "if [ \"$AI_AGENT_VARIANT\" = 2 ]; then sleep 3; echo won > winner.txt; "
+                        + "echo '{\"type\":\"result\",\"usage\":{\"input_tokens\":20}}'; "
+                        + "else echo '{\"type\":\"assistant\",\"message\":{\"content\":\"working\","
+                        + "\"usage\":{\"input_tokens\":10,\"output_tokens\":1}}}'; sleep 120; fi");
+        project.save();
+        File workspace = initRepository(project);
+
+        long startedAt = System.currentTimeMillis();
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        assertTrue(
+                "The losing agent should be stopped, not waited for",
+                System.currentTimeMillis() - startedAt < 60_000);
+        assertEquals("2", build.getAction(AiAgentRunGroupAction.class).getWinner());
+        assertEquals(
+                "won\n",
+                new String(Files.readAllBytes(new File(workspace, "winner.txt").toPath()), UTF_8));
+        AiAgentRunAction slow = variant(build, "1");
+        assertTrue(slow.isCancelled());
+        assertEquals("Usage up to the stop is kept", 10, slow.getUsageStats().getInputTokens());
+        assertFalse(variant(build, "2").isCancelled());
+        assertEquals(20, variant(build, "2").getUsageStats().getInputTokens());
+        assertTrue(variant(build, "3").isCancelled());
+        jenkins.assertLogContains("Claude Code (queued) exited with code -1 (stopped)", build);
+        File[] worktrees =
+                new File(workspace.getParentFile(), workspace.getName() + "@ai-agent").listFiles();
+        assertTrue("Worktrees are removed", worktrees == null || worktrees.length == 0);
+    }
+
+    @Test
+    public void fanOut_archivesEachAgentsChangesAndRemovesWorktrees() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        Assume.assumeTrue("Fan-out needs git", git(new File("."), "--version"));
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "ai-build-fan-out");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setPrompt("fan out");
+        project.setExecutionMode(ExecutionMode.FAN_OUT);
+        project.setFanOutAgents("claude-code model=a\nclaude-code model=b");
+        project.setCommandOverride(
+                "echo \"$AI_AGENT_VARIANT\" > \"agent-$AI_AGENT_VARIANT.txt\"; "
+                        + "echo '{\"type\":\"result\",\"result\":\"done\"}'");
+        project.save();
+        File workspace = initRepository(project);
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        for (String variant : new String[] {"1", "2"}) {
+            File patch = new File(build.getArtifactsDir(), "ai-agent/" + variant + ".patch");
+            String diff = new String(Files.readAllBytes(patch.toPath()), UTF_8);
+            assertTrue(diff, diff.contains("agent-" + variant + ".txt"));
+        }
+        assertFalse(new File(workspace, "agent-1.txt").exists());
+        File[] worktrees =
+                new File(workspace.getParentFile(), workspace.getName() + "@ai-agent").listFiles();
+        assertTrue(worktrees == null || worktrees.length == 0);
+    }
+
+    @Test
+    public void batch_parallelItemsWorkInWorktreesAndLandInWorkspace() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        Assume.assumeTrue("Parallel batches need git", git(new File("."), "--version"));
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "ai-build-batch");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setExecutionMode(ExecutionMode.BATCH);
+        project.setBatchPrompts("one\ntwo\nthree");
+        project.setMaxParallelAgents(2);
+        // Worktrees start at the commit, so no item sees what another one wrote.
+        project.setCommandOverride(
+                "test ! -e item-one.txt || test \"$AI_AGENT_VARIANT\" = 1 || exit 3; "
+                        + "echo \"$AI_AGENT_BATCH_ITEM\" > \"item-$AI_AGENT_BATCH_ITEM.txt\"; "
+                        + "echo '{\"type\":\"result\",\"result\":\"done\"}'");
+        project.save();
+        File workspace = initRepository(project);
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        for (String item : new String[] {"one", "two", "three"}) {
+            File written = new File(workspace, "item-" + item + ".txt");
+            assertEquals(item + "\n", new String(Files.readAllBytes(written.toPath()), UTF_8));
+        }
+        File[] worktrees =
+                new File(workspace.getParentFile(), workspace.getName() + "@ai-agent").listFiles();
+        assertTrue(worktrees == null || worktrees.length == 0);
+        jenkins.assertLogContains("each in its own worktree", build);
+        jenkins.assertLogContains("3 of 3 items succeeded", build);
+    }
+
+    @Test
+    public void batch_oneAtATimeRunsItemsInWorkspaceInOrder() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "ai-build-serial");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setExecutionMode(ExecutionMode.BATCH);
+        project.setBatchPrompts("one\ntwo");
+        project.setMaxParallelAgents(1);
+        // No git checkout needed; each item sees what the items before it wrote.
+        project.setCommandOverride(
+                "echo \"$AI_AGENT_BATCH_ITEM\" >> items.txt; "
+                        + "echo '{\"type\":\"result\",\"result\":\"done\"}'");
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        File items = new File(build.getWorkspace().getRemote(), "items.txt");
+        assertEquals("one\ntwo\n", new String(Files.readAllBytes(items.toPath()), UTF_8));
+        jenkins.assertLogContains("batch items one at a time in the workspace", build);
+    }
+
+    @Test
+    public void resultCache_replayedRunReportsNoUsage() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "ai-build-cached");
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setResultCacheEnabled(true);
+        project.setCommandOverride(
+                "echo '{\"type\":\"result\",\"result\":\"done\",\"total_cost_usd\":0.25}'");
+        initRepository(project);
+
+        FreeStyleBuild first = jenkins.buildAndAssertSuccess(project);
+        FreeStyleBuild replayed = jenkins.buildAndAssertSuccess(project);
+
+        AiAgentRunAction action = replayed.getAction(AiAgentRunAction.class);
+        assertTrue(action.isCached());
+        assertEquals(first.getExternalizableId(), action.getCachedFrom());
+        assertEquals(0, action.getUsageStats().getCostUsd(), 0.0001);
+        assertEquals(0, action.getUsageStats().getTotalTokens());
+        assertEquals(0.25, AiAgentSpendLedger.costOf(first), 0.0001);
+        assertEquals(0, AiAgentSpendLedger.costOf(replayed), 0.0001);
+    }
+
+    /** Makes the workspace of {@code project} a git repository with one commit. */
+    private File initRepository(AiAgentProject project) throws Exception {
+        File workspace = new File(jenkins.jenkins.getWorkspaceFor(project).getRemote());
+        assertTrue(workspace.mkdirs());
+        assertTrue(git(workspace, "init", "-q"));
+        Files.write(new File(workspace, "README").toPath(), "test\n".getBytes(UTF_8));
+        assertTrue(git(workspace, "add", "README"));
+        assertTrue(
+                git(
+                        workspace,
+                        "-c",
+                        "user.name=test",
+                        "-c",
+                        "user.email=test@example.com",
+                        "commit",
+                        "-q",
+                        "-m",
+                        "init"));
+        return workspace;
+    }
+
+    private static AiAgentRunAction variant(FreeStyleBuild build, String variant) {
+        for (AiAgentRunAction action : build.getActions(AiAgentRunAction.class)) {
+            if (variant.equals(action.getVariant())) {
+                return action;
+            }
+        }
+        throw new AssertionError("No run " + variant);
+    }
+
+    private static boolean git(File dir, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        try {
+            Process process =
+                    new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 }
@@ -219,6 +219,23 @@ public class AiAgentCommandFactoryTest {
         assertEquals("anthropic/claude-sonnet-4", cmd.get(modelIdx + 1));
     }
 
+    @Test
+    public void openCode_attachesToWarmServer() {
+        AiAgentProject project = createProject(AgentType.OPENCODE);
+
+        List<String> cmd =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        project,
+                        "test",
+                        new AiAgentCommandFactory.Options().attachUrl("http://127.0.0.1:4096"));
+
+        assertEquals("opencode", cmd.get(0));
+        assertEquals("run", cmd.get(1));
+        assertEquals("--attach", cmd.get(2));
+        assertEquals("http://127.0.0.1:4096", cmd.get(3));
+        assertEquals("test", cmd.get(cmd.size() - 1));
+    }
+
     // ======================== Gemini CLI Command Tests ========================
 
     @Test
@@ -293,6 +310,103 @@ public class AiAgentCommandFactoryTest {
                 "Last regular arg should be the last element or close", verboseIdx, cmd.size() - 1);
     }
 
+    // ======================== Cached CLI Tests ========================
+
+    @Test
+    public void cachedCli_replacesNpxForClaudeCode() {
+        AiAgentProject project = createProject(AgentType.CLAUDE_CODE);
+
+        List<String> cmd =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        project,
+                        "test",
+                        new AiAgentCommandFactory.Options()
+                                .executable(
+                                        "/agent/tools/ai-agent-cli/claude_code/1.0.0/bin/claude"));
+
+        assertEquals("/agent/tools/ai-agent-cli/claude_code/1.0.0/bin/claude", cmd.get(0));
+        assertFalse("Should not use npx", cmd.contains("npx"));
+        assertEquals("-p", cmd.get(1));
+    }
+
+    @Test
+    public void cachedCli_replacesBinaryForOtherAgents() {
+        AiAgentProject project = createProject(AgentType.CODEX);
+
+        List<String> cmd =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        project,
+                        "test",
+                        new AiAgentCommandFactory.Options().executable("/c/codex"));
+
+        assertEquals("/c/codex", cmd.get(0));
+        assertEquals("exec", cmd.get(1));
+    }
+
+    // ======================== Session Resume Tests ========================
+
+    @Test
+    public void resume_usesEachAgentsResumeFlag() {
+        AiAgentCommandFactory.Options resume =
+                new AiAgentCommandFactory.Options().resumeSession("sess-1");
+
+        List<String> claude =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        createProject(AgentType.CLAUDE_CODE), "go", resume);
+        assertEquals("sess-1", claude.get(claude.indexOf("--resume") + 1));
+
+        List<String> codex =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        createProject(AgentType.CODEX), "go", resume);
+        int resumeIdx = codex.indexOf("resume");
+        assertEquals("sess-1", codex.get(resumeIdx + 1));
+        assertEquals("Prompt follows the resume subcommand", "go", codex.get(resumeIdx + 2));
+
+        List<String> cursor =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        createProject(AgentType.CURSOR_AGENT), "go", resume);
+        assertEquals("sess-1", cursor.get(cursor.indexOf("--resume") + 1));
+
+        List<String> openCode =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        createProject(AgentType.OPENCODE), "go", resume);
+        assertEquals("sess-1", openCode.get(openCode.indexOf("--session") + 1));
+
+        List<String> gemini =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        createProject(AgentType.GEMINI_CLI), "go", resume);
+        assertEquals("sess-1", gemini.get(gemini.indexOf("--resume") + 1));
+    }
+
+    @Test
+    public void resume_notAddedWithoutSession() {
+        AiAgentProject project = createProject(AgentType.CLAUDE_CODE);
+
+        List<String> cmd = AiAgentCommandFactory.buildDefaultCommand(project, "go");
+
+        assertFalse(cmd.contains("--resume"));
+    }
+
+    // ======================== Multi-agent Overrides ========================
+
+    @Test
+    public void options_overrideAgentTypeAndModel() {
+        AiAgentProject project = createProject(AgentType.CLAUDE_CODE);
+        project.setModel("sonnet");
+
+        List<String> cmd =
+                AiAgentCommandFactory.buildDefaultCommand(
+                        project,
+                        "go",
+                        new AiAgentCommandFactory.Options()
+                                .agentType(AgentType.CODEX)
+                                .model("gpt-5-codex"));
+
+        assertEquals("codex", cmd.get(0));
+        assertEquals("gpt-5-codex", cmd.get(cmd.indexOf("--model") + 1));
+        assertFalse(cmd.contains("sonnet"));
+    }
+
     // ======================== Environment Variable Parsing
     // ========================
 
@@ -0,0 +1,55 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class AiAgentFlightRecorderTest {
+
+    @Test
+    public void events_areDisabledByDefault() {
+        assertFalse(
+                EventType.getEventType(AiAgentFlightRecorder.LineIngested.class).isEnabled());
+        assertFalse(EventType.getEventType(AiAgentFlightRecorder.LogParsed.class).isEnabled());
+    }
+
+    @Test
+    public void logParsed_recordsLinesAndEventsWhenEnabled() throws Exception {
+        File log = File.createTempFile("jfr-", ".jsonl");
+        log.deleteOnExit();
+        Files.write(
+                log.toPath(),
+                List.of(
+                        "{\"type\":\"assistant\",\"message\":{\"content\":\"hi\"}}",
+                        "",
+                        "{\"type\":\"result\",\"result\":\"done\"}"),
+                StandardCharsets.UTF_8);
+        Path dump = Files.createTempFile("jfr-", ".jfr");
+        dump.toFile().deleteOnExit();
+
+        try (Recording recording = new Recording()) {
+            recording.enable("io.jenkins.plugins.aiagentjob.LogParsed").withoutThreshold();
+            recording.start();
+            AiAgentLogParser.parse(log);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertEquals(1, events.size());
+        assertEquals(log.getPath(), events.get(0).getString("file"));
+        assertEquals(3, events.get(0).getLong("lines"));
+    }
+}
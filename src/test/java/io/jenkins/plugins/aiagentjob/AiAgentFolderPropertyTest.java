@@ -0,0 +1,48 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.Map;
+
+public class AiAgentFolderPropertyTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void budgets_comeFromTheJobItsFoldersAndTheGlobalConfiguration() throws Exception {
+        Folder org = jenkins.createProject(Folder.class, "org");
+        Folder team = org.createProject(Folder.class, "team");
+        org.addProperty(new AiAgentFolderProperty(20));
+        team.addProperty(new AiAgentFolderProperty(5));
+        AiAgentProject project = team.createProject(AiAgentProject.class, "a");
+        assertFalse(AiAgentSpendLedger.hasBudget(jenkins.createProject(AiAgentProject.class, "b")));
+        project.setDailyBudgetUsd(2);
+        AiAgentGlobalConfiguration.get().setDailyBudgetUsd(50);
+
+        jenkins.configRoundtrip(team);
+        AiAgentSpendLedger.Budgets budgets = AiAgentSpendLedger.Budgets.of(project);
+
+        assertEquals("org/team/a", budgets.job);
+        assertEquals(2.0, budgets.jobBudget, 0.0001);
+        assertEquals(Map.of("org/team", 5.0, "org", 20.0), budgets.folderBudgets);
+        assertEquals(
+                "Innermost folder first",
+                List.of("org/team", "org"),
+                List.copyOf(budgets.folderBudgets.keySet()));
+        assertEquals(50.0, budgets.globalBudget, 0.0001);
+        assertTrue(budgets.any());
+    }
+
+    @Test
+    public void negativeBudgetMeansNoLimit() {
+        assertEquals(0.0, new AiAgentFolderProperty(-1).getDailyBudgetUsd(), 0.0001);
+    }
+}
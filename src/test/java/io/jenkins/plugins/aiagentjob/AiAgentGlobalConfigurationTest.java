@@ -0,0 +1,66 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Set;
+
+public class AiAgentGlobalConfigurationTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void rateLimitsOffByDefault() {
+        AiAgentGlobalConfiguration config = AiAgentGlobalConfiguration.get();
+
+        assertEquals(0, config.getMaxConcurrentRuns());
+        assertEquals(0, config.getTokensPerMinute());
+        assertTrue(config.isPerModelQuotas());
+        assertFalse(AiAgentRateLimiter.get().isEnabled());
+    }
+
+    @Test
+    public void rateLimits_surviveRoundTripAndApplyToTheSharedLimiter() throws Exception {
+        AiAgentGlobalConfiguration config = AiAgentGlobalConfiguration.get();
+        AiAgentRateLimiter limiter = AiAgentRateLimiter.get();
+        config.setMaxConcurrentRuns(1);
+        config.setTokensPerMinute(20_000);
+        config.setPerModelQuotas(false);
+
+        jenkins.configRoundtrip();
+
+        assertEquals(1, config.getMaxConcurrentRuns());
+        assertEquals(20_000, config.getTokensPerMinute());
+        assertFalse(config.isPerModelQuotas());
+        assertSame("Queued builds keep their slots", limiter, AiAgentRateLimiter.get());
+        assertTrue(limiter.isEnabled());
+        limiter.reserve(1, Set.of("credential a"));
+        assertNotNull(limiter.blockedReason(Set.of("credential a"), System.currentTimeMillis()));
+    }
+
+    @Test
+    public void dailyBudget_survivesRoundTrip() throws Exception {
+        AiAgentGlobalConfiguration.get().setDailyBudgetUsd(25.5);
+
+        jenkins.configRoundtrip();
+
+        assertEquals(25.5, AiAgentGlobalConfiguration.get().getDailyBudgetUsd(), 0.0001);
+    }
+
+    @Test
+    public void rateLimits_negativeValuesMeanNoLimit() {
+        AiAgentGlobalConfiguration config = AiAgentGlobalConfiguration.get();
+        config.setMaxConcurrentRuns(-3);
+        config.setTokensPerMinute(-1);
+
+        assertEquals(0, config.getMaxConcurrentRuns());
+        assertEquals(0, config.getTokensPerMinute());
+        assertFalse(AiAgentRateLimiter.get().isEnabled());
+    }
+}
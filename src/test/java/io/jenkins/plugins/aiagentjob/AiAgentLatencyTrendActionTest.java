@@ -0,0 +1,46 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+/** Tests for the job-level {@link AiAgentLatencyTrendAction}. */
+public class AiAgentLatencyTrendActionTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void trend_listsTimingOfRecentBuilds() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-latency");
+        project.setCommandOverride(
+                "echo '{\"type\":\"system\"}'; "
+                        + "echo '{\"type\":\"assistant\",\"message\":{\"content\":"
+                        + "[{\"type\":\"text\",\"text\":\"done\"}]}}'");
+        project.save();
+
+        jenkins.buildAndAssertSuccess(project);
+        jenkins.buildAndAssertSuccess(project);
+
+        JSONObject trend =
+                JSONObject.fromObject(
+                        jenkins.createWebClient()
+                                .goTo(project.getUrl() + "ai-agent-latency/", "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+
+        assertEquals(2, trend.getInt("builds"));
+        assertEquals(2, trend.getInt("timedBuilds"));
+        assertEquals(2, trend.getJSONObject("startupMillis").getInt("count"));
+        assertEquals(2, trend.getJSONObject("firstTextMillis").getInt("count"));
+        assertEquals(2, trend.getJSONArray("trend").getJSONObject(0).getInt("number"));
+        assertEquals(1, trend.getJSONArray("trend").getJSONObject(0).getInt("turns"));
+    }
+}
@@ -0,0 +1,118 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class AiAgentLogIndexTest {
+
+    private static File tempDir() throws Exception {
+        File dir = Files.createTempDirectory("log-index-").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /** Writes {@code lines} the way the executor does, recording one index entry per line. */
+    private static File writeIndexedLog(File dir, String... lines) throws Exception {
+        File raw = new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        StringBuilder content = new StringBuilder();
+        try (AiAgentLogIndex.Writer index =
+                new AiAgentLogIndex.Writer(AiAgentLogIndex.indexFileFor(raw))) {
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i];
+                index.lineStarted(
+                        content.toString().getBytes(StandardCharsets.UTF_8).length, 1000L + i);
+                content.append(line).append('\n');
+            }
+        }
+        Files.write(raw.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        return raw;
+    }
+
+    @Test
+    public void readLine_seeksUsingIndex() throws Exception {
+        File raw = writeIndexedLog(tempDir(), "{\"a\":1}", "{\"b\":\"éè\"}", "{\"c\":3}");
+
+        assertEquals(0, AiAgentLogIndex.offsetOf(AiAgentLogIndex.indexFileFor(raw), 1));
+        assertEquals(8, AiAgentLogIndex.offsetOf(AiAgentLogIndex.indexFileFor(raw), 2));
+        assertEquals("{\"a\":1}", AiAgentLogIndex.readLine(raw, 1));
+        assertEquals("{\"b\":\"éè\"}", AiAgentLogIndex.readLine(raw, 2));
+        assertEquals("{\"c\":3}", AiAgentLogIndex.readLine(raw, 3));
+    }
+
+    @Test
+    public void readLine_returnsNullPastEnd() throws Exception {
+        File raw = writeIndexedLog(tempDir(), "{\"a\":1}");
+
+        assertEquals(-1, AiAgentLogIndex.offsetOf(AiAgentLogIndex.indexFileFor(raw), 2));
+        assertNull(AiAgentLogIndex.readLine(raw, 2));
+        assertNull(AiAgentLogIndex.readLine(raw, 0));
+    }
+
+    @Test
+    public void readLine_fallsBackToScanWithoutIndex() throws Exception {
+        File dir = tempDir();
+        File raw = new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        Files.write(raw.toPath(), "first\r\nsecond\r\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(-1, AiAgentLogIndex.offsetOf(AiAgentLogIndex.indexFileFor(raw), 1));
+        assertEquals("second", AiAgentLogIndex.readLine(raw, 2));
+    }
+
+    @Test
+    public void indexFileFor_isNamedAfterRawLog() throws Exception {
+        File dir = tempDir();
+        File single = AiAgentRunAction.rawLogFile(dir, null);
+        File variant = AiAgentRunAction.rawLogFile(dir, "claude-code");
+
+        assertEquals(
+                new File(dir, AiAgentLogIndex.INDEX_FILE), AiAgentLogIndex.indexFileFor(single));
+        assertEquals(
+                new File(dir, "ai-agent-stream-claude-code.idx"),
+                AiAgentLogIndex.indexFileFor(variant));
+    }
+
+    @Test
+    public void offsetOf_ignoresForeignFile() throws Exception {
+        File dir = tempDir();
+        File index = new File(dir, AiAgentLogIndex.INDEX_FILE);
+        Files.write(index.toPath(), "not an index file".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(-1, AiAgentLogIndex.offsetOf(index, 1));
+    }
+
+    @Test
+    public void arrivalOf_returnsRecordedArrivalTimes() throws Exception {
+        File raw = writeIndexedLog(tempDir(), "{\"a\":1}", "{\"b\":2}");
+        File index = AiAgentLogIndex.indexFileFor(raw);
+
+        assertEquals(1000L, AiAgentLogIndex.arrivalOf(index, 1));
+        assertEquals(1001L, AiAgentLogIndex.arrivalOf(index, 2));
+        assertEquals(-1, AiAgentLogIndex.arrivalOf(index, 3));
+    }
+
+    @Test
+    public void offsetOf_rejectsIndexWithOtherRecordSize() throws Exception {
+        File dir = tempDir();
+        File raw = new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        Files.write(raw.toPath(), "one\ntwo\n".getBytes(StandardCharsets.UTF_8));
+        File index = AiAgentLogIndex.indexFileFor(raw);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(index.toPath()))) {
+            out.writeInt(0x41494458);
+            out.writeInt(8);
+            out.writeLong(0);
+            out.writeLong(4);
+        }
+
+        assertEquals(-1, AiAgentLogIndex.offsetOf(index, 2));
+        assertEquals(-1, AiAgentLogIndex.arrivalOf(index, 2));
+        // Without a usable index the line is found by scanning the log.
+        assertEquals("two", AiAgentLogIndex.readLine(raw, 2));
+    }
+}
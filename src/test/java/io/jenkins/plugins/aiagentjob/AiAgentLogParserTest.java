@@ -3,8 +3,11 @@ package io.jenkins.plugins.aiagentjob;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import net.sf.json.JSONObject;
+
 import org.junit.Test;
 
 import java.io.File;
@@ -729,4 +732,70 @@ public class AiAgentLogParserTest {
         assertNotNull("Should have result event", result);
         assertEquals("Completely different result.", result.getContent());
     }
+
+    @Test
+    public void extractSessionId_readsEachAgentsSessionField() {
+        assertEquals(
+                "c0ffee-1",
+                AiAgentLogParser.extractSessionId(
+                        "{\"type\":\"system\",\"subtype\":\"init\",\"session_id\":\"c0ffee-1\"}"));
+        assertEquals(
+                "ses_abc",
+                AiAgentLogParser.extractSessionId(
+                        "{\"type\":\"step_start\",\"sessionID\":\"ses_abc\"}"));
+        assertEquals(
+                "thread-9",
+                AiAgentLogParser.extractSessionId(
+                        "{\"type\":\"thread.started\",\"thread_id\":\"thread-9\"}"));
+    }
+
+    @Test
+    public void extractSessionId_ignoresLinesWithoutSession() {
+        assertNull(AiAgentLogParser.extractSessionId("plain text with session_id in it"));
+        assertNull(
+                AiAgentLogParser.extractSessionId(
+                        "{\"type\":\"assistant\",\"message\":{\"content\":\"hi\"}}"));
+        assertNull(
+                AiAgentLogParser.extractSessionId(
+                        "{\"type\":\"item.completed\",\"thread_id\":\"thread-9\"}"));
+    }
+
+    @Test
+    public void parseLine_reusesParsedJsonAndPrintsRawDetailsOnDemand() {
+        String line =
+                "{\"type\":\"system\",\"subtype\":\"init\",\"session_id\":\"s-1\"}";
+        JSONObject json = AiAgentLogParser.parseJson(line);
+        assertEquals("s-1", AiAgentLogParser.extractSessionId(json));
+
+        AiAgentLogParser.EventView event = AiAgentLogParser.parseLine(1, line, json).toEventView();
+        assertEquals(json.toString(2), event.getRawDetails());
+        assertEquals(
+                AiAgentLogParser.parseLine(1, line).toEventView().getContent(),
+                event.getContent());
+        assertNull(AiAgentLogParser.parseJson("plain text"));
+        assertEquals(
+                "plain text",
+                AiAgentLogParser.parseLine(2, " plain text ", null).toEventView().getRawDetails());
+    }
+
+    @Test
+    public void finalMessage_isLastAssistantOrResultText() throws IOException {
+        File log = File.createTempFile("final-message-", ".jsonl");
+        log.deleteOnExit();
+        Files.write(
+                log.toPath(),
+                List.of(
+                        "{\"type\":\"assistant\",\"message\":{\"content\":[{\"type\":\"text\","
+                                + "\"text\":\"Looking at the module.\"}]}}",
+                        "{\"type\":\"result\",\"subtype\":\"success\","
+                                + "\"result\":\"Renamed 3 classes in module-a.\"}",
+                        "not json"));
+
+        assertEquals("Renamed 3 classes in module-a.", AiAgentLogParser.finalMessage(log));
+    }
+
+    @Test
+    public void finalMessage_emptyWithoutLog() throws IOException {
+        assertEquals("", AiAgentLogParser.finalMessage(new File("does-not-exist.jsonl")));
+    }
 }
@@ -0,0 +1,61 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AiAgentMetricsTest {
+
+    @Test
+    public void histogram_rendersCumulativeBuckets() {
+        AiAgentMetrics.Histogram histogram = new AiAgentMetrics.Histogram(0.5, 1, 5);
+        histogram.observe(0.2);
+        histogram.observe(0.7);
+        histogram.observe(3);
+        histogram.observe(10);
+
+        StringBuilder out = new StringBuilder();
+        histogram.render(out, "test_seconds", "Test histogram");
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.5\"} 1\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"1\"} 2\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"5\"} 3\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("test_seconds_sum 13.900000\n"));
+        assertTrue(text.contains("test_seconds_count 4\n"));
+    }
+
+    @Test
+    public void render_includesUsageCountersPerAgentTypeAndModel() {
+        AgentUsageStats stats = new AgentUsageStats();
+        AiAgentMetrics.buildCompleted("Test Agent", "model \"x\"", stats);
+        AiAgentMetrics.lineIngested(42);
+
+        String text = AiAgentMetrics.render();
+
+        assertTrue(
+                text.contains(
+                        "jenkins_ai_agent_builds_total{agent_type=\"Test Agent\","
+                                + "model=\"model \\\"x\\\"\"} "));
+        assertTrue(text.contains("# TYPE jenkins_ai_agent_output_bytes_total counter\n"));
+        assertTrue(text.contains("# TYPE jenkins_ai_agent_parse_seconds histogram\n"));
+        assertTrue(text.contains("jenkins_ai_agent_pending_approvals "));
+    }
+
+    @Test
+    public void parseHistogram_ignoresLinesParsedForViewers() {
+        long before = AiAgentMetrics.PARSE_SECONDS.getCount();
+
+        AiAgentLogParser.parseLine(1, "{\"type\":\"assistant\",\"message\":\"hi\"}");
+
+        assertEquals(before, AiAgentMetrics.PARSE_SECONDS.getCount());
+    }
+
+    @Test
+    public void escapeLabel_escapesQuotesBackslashesAndNewlines() {
+        assertEquals("a\\\\b\\\"c\\nd", AiAgentMetrics.escapeLabel("a\\b\"c\nd"));
+    }
+}
@@ -25,16 +25,31 @@ public class AiAgentProjectConfigRoundTripTest {
         project.setAgentType(AgentType.GEMINI_CLI);
         project.setPrompt("Summarize this repository.");
         project.setModel("gemini-2.5-pro");
+        project.setCliVersion("0.1.18");
         project.setWorkingDirectory("src");
         project.setYoloMode(false);
         project.setRequireApprovals(true);
         project.setApprovalTimeoutSeconds(42);
+        project.setMemoizeApprovals(true);
         project.setCommandOverride("echo '{\"type\":\"assistant\",\"message\":\"hi\"}'");
         project.setExtraArgs("--foo bar");
         project.setEnvironmentVariables("FOO=bar\nHELLO=world");
         project.setSetupScript("export PATH=$HOME/.local/bin:$PATH\nnpm install");
         project.setCodexCustomConfigEnabled(true);
         project.setCodexCustomConfigToml("[mcp_servers.demo]\ncommand = \"npx\"");
+        project.setOpenCodeServerEnabled(true);
+        project.setResumeSession(true);
+        project.setResultCacheEnabled(true);
+        project.setDailyBudgetUsd(12.5);
+        project.setCheckProjectedCost(true);
+        project.setExecutionMode(ExecutionMode.RACE);
+        project.setFanOutAgents("gemini-cli\ncodex model=gpt-5-codex");
+        project.setMaxParallelAgents(2);
+        project.setRaceVerifyCommand("mvn -q test");
+        project.setBatchPrompts("no-unused-vars\neqeqeq");
+        project.setBatchPromptsFile("prompts.txt");
+        project.setShardGlobs("modules/*\nservices/api");
+        project.setReducePrompt("Update the changelog.");
         project.setFailOnAgentError(false);
         project.save();
 
@@ -43,10 +58,12 @@ public class AiAgentProjectConfigRoundTripTest {
         assertEquals(AgentType.GEMINI_CLI, project.getAgentType());
         assertEquals("Summarize this repository.", project.getPrompt());
         assertEquals("gemini-2.5-pro", project.getModel());
+        assertEquals("0.1.18", project.getCliVersion());
         assertEquals("src", project.getWorkingDirectory());
         assertFalse(project.isYoloMode());
         assertTrue(project.isRequireApprovals());
         assertEquals(42, project.getApprovalTimeoutSeconds());
+        assertTrue(project.isMemoizeApprovals());
         assertEquals(
                 "echo '{\"type\":\"assistant\",\"message\":\"hi\"}'", project.getCommandOverride());
         assertEquals("--foo bar", project.getExtraArgs());
@@ -54,6 +71,19 @@ public class AiAgentProjectConfigRoundTripTest {
         assertEquals("export PATH=$HOME/.local/bin:$PATH\nnpm install", project.getSetupScript());
         assertTrue(project.isCodexCustomConfigEnabled());
         assertEquals("[mcp_servers.demo]\ncommand = \"npx\"", project.getCodexCustomConfigToml());
+        assertTrue(project.isOpenCodeServerEnabled());
+        assertTrue(project.isResumeSession());
+        assertTrue(project.isResultCacheEnabled());
+        assertEquals(12.5, project.getDailyBudgetUsd(), 0.0001);
+        assertTrue(project.isCheckProjectedCost());
+        assertEquals(ExecutionMode.RACE, project.getExecutionMode());
+        assertEquals("gemini-cli\ncodex model=gpt-5-codex", project.getFanOutAgents());
+        assertEquals(2, project.getMaxParallelAgents());
+        assertEquals("mvn -q test", project.getRaceVerifyCommand());
+        assertEquals("no-unused-vars\neqeqeq", project.getBatchPrompts());
+        assertEquals("prompts.txt", project.getBatchPromptsFile());
+        assertEquals("modules/*\nservices/api", project.getShardGlobs());
+        assertEquals("Update the changelog.", project.getReducePrompt());
         assertFalse(project.isFailOnAgentError());
     }
 
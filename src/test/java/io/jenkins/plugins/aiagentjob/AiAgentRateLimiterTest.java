@@ -0,0 +1,163 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.util.StreamTaskListener;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+public class AiAgentRateLimiterTest {
+
+    private static final String USAGE_LINE =
+            "{\"type\":\"assistant\",\"message\":{\"usage\":"
+                    + "{\"input_tokens\":800,\"output_tokens\":200,"
+                    + "\"cache_read_input_tokens\":5000}}}";
+
+    private static AiAgentProject createProject() {
+        AiAgentProject project =
+                new AiAgentProject(null, "test-job") {
+                    @Override
+                    public void save() {
+                        // no-op for testing
+                    }
+                };
+        project.setAgentType(AgentType.CLAUDE_CODE);
+        project.setModel("sonnet");
+        project.setApiCredentialsId("anthropic-key");
+        return project;
+    }
+
+    @Test
+    public void key_usesCredentialAndModel() {
+        AiAgentProject project = createProject();
+        AgentRunSpec spec = AgentRunSpec.of(project);
+
+        assertEquals(
+                "credential anthropic-key / sonnet",
+                new AiAgentRateLimiter(1, 0, true).key(spec));
+        assertEquals("credential anthropic-key", new AiAgentRateLimiter(1, 0, false).key(spec));
+
+        project.setApiCredentialsId("");
+        project.setModel("");
+        assertEquals(
+                "agent CLAUDE_CODE",
+                new AiAgentRateLimiter(1, 0, true).key(AgentRunSpec.of(project)));
+    }
+
+    @Test
+    public void keys_coverEveryAgentOfAFanOut() {
+        AiAgentProject project = createProject();
+        project.setExecutionMode(ExecutionMode.FAN_OUT);
+        project.setFanOutAgents("claude-code\nclaude-code model=opus\ncodex credentials=openai");
+
+        assertEquals(
+                Set.of(
+                        "credential anthropic-key / sonnet",
+                        "credential anthropic-key / opus",
+                        "credential openai"),
+                new AiAgentRateLimiter(1, 0, true).keys(project));
+    }
+
+    @Test
+    public void maxConcurrentRuns_blocksUntilARunFinishes() throws Exception {
+        AiAgentRateLimiter limiter = new AiAgentRateLimiter(2, 0, true);
+        Set<String> keys = Set.of("credential a");
+        StreamTaskListener listener = StreamTaskListener.fromStdout();
+
+        AiAgentRateLimiter.Permit first = limiter.acquire("credential a", listener);
+        assertNull(limiter.blockedReason(keys, System.currentTimeMillis()));
+        AiAgentRateLimiter.Permit second = limiter.acquire("credential a", listener);
+        String reason = limiter.blockedReason(keys, System.currentTimeMillis());
+        assertNotNull(reason);
+        assertTrue(reason, reason.contains("credential a"));
+        assertNull(limiter.blockedReason(Set.of("credential b"), System.currentTimeMillis()));
+
+        first.close();
+        first.close();
+        assertEquals(1, limiter.running("credential a"));
+        assertNull(limiter.blockedReason(keys, System.currentTimeMillis()));
+        second.close();
+        assertEquals(0, limiter.running("credential a"));
+    }
+
+    @Test
+    public void blockedReason_countsBuildsLetStartUntilTheirRunsStart() throws Exception {
+        AiAgentRateLimiter limiter = new AiAgentRateLimiter(1, 0, true);
+        Set<String> keys = Set.of("credential a");
+        long now = System.currentTimeMillis();
+
+        assertNull(limiter.blockedReason(keys, now, 1));
+        assertNull("Checking reserves nothing", limiter.blockedReason(keys, now, 2));
+
+        Map<Long, Set<String>> dispatched = Map.of(1L, keys);
+        assertNotNull(
+                "A build waiting for its executor holds its slot",
+                limiter.blockedReason(keys, now, 2, dispatched));
+        // The queue checks an item again before it starts; its own slot does not block it.
+        assertNull(limiter.blockedReason(keys, now, 1, dispatched));
+
+        limiter.reserve(1, keys);
+        assertNotNull(
+                "A build that left the queue holds its slot",
+                limiter.blockedReason(keys, now, 2));
+        AiAgentRateLimiter.Permit permit =
+                limiter.acquire("credential a", 1, StreamTaskListener.fromStdout());
+        assertEquals(1, limiter.running("credential a"));
+        assertNotNull(limiter.blockedReason(keys, now, 2));
+        permit.close();
+        assertNull(limiter.blockedReason(keys, now, 2));
+
+        limiter.reserve(2, keys);
+        limiter.release(2);
+        assertNull(limiter.blockedReason(keys, now, 3));
+    }
+
+    @Test
+    public void setLimits_changesTheLimitsOfTheSharedLimiter() {
+        AiAgentRateLimiter limiter = new AiAgentRateLimiter(0, 0, true);
+        AgentRunSpec spec = AgentRunSpec.of(createProject());
+        assertFalse(limiter.isEnabled());
+        assertEquals("credential anthropic-key / sonnet", limiter.key(spec));
+
+        limiter.setLimits(1, 0, false);
+
+        assertTrue(limiter.isEnabled());
+        Set<String> keys = Set.of(limiter.key(spec));
+        assertEquals(Set.of("credential anthropic-key"), keys);
+        limiter.reserve(1, keys);
+        assertNotNull(limiter.blockedReason(keys, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void tokensPerMinute_blocksUntilTheBucketRefills() throws Exception {
+        AiAgentRateLimiter limiter = new AiAgentRateLimiter(0, 600, true);
+        Set<String> keys = Set.of("credential a");
+        long now = System.currentTimeMillis();
+
+        try (AiAgentRateLimiter.Permit permit =
+                limiter.acquire("credential a", StreamTaskListener.fromStdout())) {
+            permit.record(AiAgentLogParser.parseJson("not json"));
+            permit.record(AiAgentLogParser.parseJson(USAGE_LINE));
+            // The same cumulative usage again is not charged twice.
+            permit.record(AiAgentLogParser.parseJson(USAGE_LINE));
+        }
+
+        assertNotNull(limiter.blockedReason(keys, now));
+        // 1,000 tokens charged against 600, refilled at 10 tokens a second.
+        assertNotNull(limiter.blockedReason(keys, now + 30_000));
+        assertNull(limiter.blockedReason(keys, now + 50_000));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertFalse(new AiAgentRateLimiter(0, 0, true).isEnabled());
+        assertTrue(new AiAgentRateLimiter(0, 1000, true).isEnabled());
+    }
+}
@@ -106,9 +106,17 @@ public class AiAgentRecordedConversationTest {
                         .collect(Collectors.toList());
         assertTrue("Should have thinking", cats.contains("thinking"));
         assertTrue("Should have tool_call", cats.contains("tool_call"));
-        assertTrue("Should have tool_result", cats.contains("tool_result"));
+        assertFalse("Tool result should be merged into its call", cats.contains("tool_result"));
         assertTrue("Should have assistant", cats.contains("assistant"));
-        assertEquals("Current Codex fixture should render 6 visible events", 6, events.size());
+        assertEquals("Current Codex fixture should render 5 visible events", 5, events.size());
+
+        AiAgentLogParser.EventView toolCall =
+                events.stream()
+                        .filter(e -> "tool_call".equals(e.getCategory()))
+                        .findFirst()
+                        .get();
+        assertTrue("Tool call should carry its result", toolCall.isMerged());
+        assertFalse(toolCall.getToolOutput().isEmpty());
     }
 
     @Test
@@ -0,0 +1,119 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class AiAgentResultCacheTest {
+
+    private static final String LINE = "{\"type\":\"assistant\",\"message\":\"done\"}";
+
+    private static String key(String prompt, String commit) {
+        return AiAgentResultCache.key("job", commit, "CLAUDE_CODE", "sonnet", prompt);
+    }
+
+    private static File rawLog() throws Exception {
+        File dir = Files.createTempDirectory("result-cache-run-").toFile();
+        dir.deleteOnExit();
+        File raw = new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        Files.write(raw.toPath(), List.of(LINE));
+        return raw;
+    }
+
+    private static AiAgentResultCache cache(long ttlMillis, long maxBytes) throws Exception {
+        File dir = Files.createTempDirectory("result-cache-").toFile();
+        dir.deleteOnExit();
+        return new AiAgentResultCache(dir, ttlMillis, maxBytes);
+    }
+
+    @Test
+    public void key_changesWithPromptAndCommitButNotWithCalls() {
+        String key = key("Fix the build.", "abc123");
+
+        assertEquals(key, key("Fix the build.", "abc123"));
+        assertNotEquals(key, key("Fix the tests.", "abc123"));
+        assertNotEquals(key, key("Fix the build.", "def456"));
+        assertNotEquals(
+                key, AiAgentResultCache.key("job", "abc123", "CODEX", "sonnet", "Fix the build."));
+        assertEquals(64, key.length());
+    }
+
+    @Test
+    public void key_separatesJobsWithSamePromptAndCommit() throws Exception {
+        String a = AiAgentResultCache.key("team-a/fix", "abc123", "CLAUDE_CODE", "", "Fix it.");
+        String b = AiAgentResultCache.key("team-b/fix", "abc123", "CLAUDE_CODE", "", "Fix it.");
+        assertNotEquals(a, b);
+
+        AiAgentResultCache cache = cache(60_000, 1024 * 1024);
+        cache.store(a, rawLog(), new byte[0], "team-a/fix#1");
+        assertNotNull(cache.lookup(a));
+        assertNull("Another job must not replay this run", cache.lookup(b));
+    }
+
+    @Test
+    public void key_changesWithEveryLaunchInput() {
+        String key = AiAgentResultCache.key("job", "abc123", "setup", "FOO=1", "cred", "false");
+
+        assertNotEquals(
+                key, AiAgentResultCache.key("job", "abc123", "setup2", "FOO=1", "cred", "false"));
+        assertNotEquals(
+                key, AiAgentResultCache.key("job", "abc123", "setup", "FOO=2", "cred", "false"));
+        assertNotEquals(
+                key, AiAgentResultCache.key("job", "abc123", "setup", "FOO=1", "other", "false"));
+        assertNotEquals(
+                key, AiAgentResultCache.key("job", "abc123", "setup", "FOO=1", "cred", "true"));
+        assertNotEquals(
+                "Inputs do not run into each other",
+                key,
+                AiAgentResultCache.key("job", "abc123", "setupFOO=1", "", "cred", "false"));
+    }
+
+    @Test
+    public void store_thenLookupReturnsConversationAndPatch() throws Exception {
+        AiAgentResultCache cache = cache(60_000, 1024 * 1024);
+        byte[] patch = "diff --git a/x b/x\n".getBytes(StandardCharsets.UTF_8);
+
+        cache.store(key("p", "c"), rawLog(), patch, "job#7");
+
+        AiAgentResultCache.Entry hit = cache.lookup(key("p", "c"));
+        assertNotNull(hit);
+        assertEquals("job#7", hit.source);
+        assertArrayEquals(patch, hit.readPatch());
+        assertEquals(List.of(LINE), Files.readAllLines(hit.getRawLogFile().toPath()));
+        assertNull(cache.lookup(key("other", "c")));
+    }
+
+    @Test
+    public void lookup_dropsExpiredEntries() throws Exception {
+        AiAgentResultCache cache = cache(-1, 1024 * 1024);
+
+        cache.store(key("p", "c"), rawLog(), new byte[0], "job#1");
+
+        assertNull(cache.lookup(key("p", "c")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void store_evictsOldestEntriesBeyondSizeBound() throws Exception {
+        byte[] patch = new byte[600];
+        AiAgentResultCache cache = cache(60_000, 1000);
+
+        cache.store(key("first", "c"), rawLog(), patch, "job#1");
+        Thread.sleep(5);
+        cache.store(key("second", "c"), rawLog(), patch, "job#2");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.lookup(key("first", "c")));
+        assertTrue(cache.lookup(key("second", "c")) != null);
+    }
+}
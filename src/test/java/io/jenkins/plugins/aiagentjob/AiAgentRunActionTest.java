@@ -73,6 +73,23 @@ public class AiAgentRunActionTest {
         assertNull("No sidebar icon", action.getIconFileName());
     }
 
+    @Test
+    public void usageStats_storedWhenRunCompletes() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-usage");
+        project.setCommandOverride(
+                "echo '{\"type\":\"result\",\"result\":\"done\",\"total_cost_usd\":0.25}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        AiAgentRunAction action = build.getAction(AiAgentRunAction.class);
+        assertTrue(action.getRawLogFile().delete());
+
+        assertEquals(0.25, action.getUsageStats().getCostUsd(), 0.0001);
+        assertEquals(0.25, AiAgentSpendLedger.costOf(build), 0.0001);
+    }
+
     @Test
     public void pendingApprovals_emptyAfterCompletion() throws Exception {
         Assume.assumeTrue(File.pathSeparatorChar == ':');
@@ -147,6 +164,284 @@ public class AiAgentRunActionTest {
         assertEquals("nextStart should be unchanged", nextStart, result2.getLong("nextStart"));
     }
 
+    @Test
+    public void progressiveEvents_collapsesResultRepeatingAssistantText() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-dedup");
+        project.setCommandOverride(
+                "echo '{\"type\":\"assistant\",\"message\":{\"role\":\"assistant\","
+                        + "\"content\":[{\"type\":\"text\",\"text\":\"All done.\"}]}}'"
+                        + " && echo '{\"type\":\"result\",\"result\":\"All done.\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        String url = build.getUrl() + "ai-agent/progressiveEvents?start=0";
+        JSONObject result =
+                JSONObject.fromObject(
+                        wc.goTo(url, "application/json").getWebResponse().getContentAsString());
+        JSONArray events = result.getJSONArray("events");
+        assertEquals(2, events.size());
+        assertEquals("result", events.getJSONObject(1).getString("category"));
+        assertEquals(
+                "Result text repeating the assistant message should be collapsed",
+                "",
+                events.getJSONObject(1).getString("content"));
+    }
+
+    @Test
+    public void progressiveEvents_readsCompletedBuildInPages() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        int lines = AiAgentRunAction.EVENT_PAGE_LINES;
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-pages");
+        // The result repeating the last assistant message is the first line of the second page.
+        project.setCommandOverride(
+                "for i in $(seq 1 "
+                        + lines
+                        + "); do echo '{\"type\":\"assistant\",\"message\":{\"role\":"
+                        + "\"assistant\",\"content\":[{\"type\":\"text\",\"text\":"
+                        + "\"step '$i'\"}]}}'; done"
+                        + " && echo '{\"type\":\"result\",\"result\":\"step "
+                        + lines
+                        + "\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        String url = build.getUrl() + "ai-agent/progressiveEvents?start=";
+        JSONObject first =
+                JSONObject.fromObject(
+                        wc.goTo(url + 0, "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+        assertEquals(lines, first.getJSONArray("events").size());
+        assertEquals(lines, first.getLong("nextStart"));
+        assertTrue("More lines follow the first page", first.getBoolean("more"));
+
+        JSONObject second =
+                JSONObject.fromObject(
+                        wc.goTo(url + lines, "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+        JSONArray events = second.getJSONArray("events");
+        assertEquals(1, events.size());
+        assertEquals("result", events.getJSONObject(0).getString("category"));
+        assertEquals(
+                "Result repeating the previous page's assistant message should be collapsed",
+                "",
+                events.getJSONObject(0).getString("content"));
+        assertEquals(lines + 1, second.getLong("nextStart"));
+        assertFalse(second.getBoolean("more"));
+    }
+
+    @Test
+    public void progressiveEvents_sendsPreviewAndEventBodyServesFullOutput() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            output.append("line-").append(i).append(',');
+        }
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-lazy-body");
+        project.setCommandOverride(
+                "echo '{\"type\":\"system\",\"subtype\":\"init\"}'"
+                        + " && echo '{\"type\":\"user\",\"message\":{\"role\":\"user\",\"content\":"
+                        + "[{\"type\":\"tool_result\",\"tool_use_id\":\"t1\",\"content\":\""
+                        + output
+                        + "\"}]}}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        assertTrue(
+                "Index should be written next to the raw log",
+                new File(build.getRootDir(), AiAgentLogIndex.INDEX_FILE).isFile());
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        String url = build.getUrl() + "ai-agent/progressiveEvents?start=0";
+        JSONArray events =
+                JSONObject.fromObject(
+                                wc.goTo(url, "application/json")
+                                        .getWebResponse()
+                                        .getContentAsString())
+                        .getJSONArray("events");
+        JSONObject toolResult = events.getJSONObject(events.size() - 1);
+        assertEquals("tool_result", toolResult.getString("category"));
+        assertFalse("Full body should not be in the list", toolResult.has("toolOutput"));
+        assertTrue(toolResult.getBoolean("toolOutputTruncated"));
+        assertEquals(
+                AiAgentRunAction.TOOL_BODY_PREVIEW_CHARS,
+                toolResult.getString("toolOutputPreview").length());
+        assertEquals(output.length(), toolResult.getLong("toolOutputBytes"));
+
+        String bodyUrl = build.getUrl() + "ai-agent/eventBody?id=" + toolResult.getLong("id");
+        JSONObject body =
+                JSONObject.fromObject(
+                        wc.goTo(bodyUrl, "application/json").getWebResponse().getContentAsString());
+        assertEquals(output.toString(), body.getString("toolOutput"));
+    }
+
+    @Test
+    public void eventBody_unknownIdReturnsNotFound() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-body-404");
+        project.setCommandOverride("echo '{\"type\":\"system\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        wc.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        org.htmlunit.Page page = wc.goTo(build.getUrl() + "ai-agent/eventBody?id=42", null);
+        assertEquals(404, page.getWebResponse().getStatusCode());
+    }
+
+    @Test
+    public void eventBody_missingIdReturnsBadRequest() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-body-400");
+        project.setCommandOverride("echo '{\"type\":\"system\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        wc.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        assertEquals(
+                400,
+                wc.goTo(build.getUrl() + "ai-agent/eventBody", null)
+                        .getWebResponse()
+                        .getStatusCode());
+        assertEquals(
+                400,
+                wc.goTo(build.getUrl() + "ai-agent/eventBody?id=1&resultId=x", null)
+                        .getWebResponse()
+                        .getStatusCode());
+    }
+
+    @Test
+    public void diagnostics_storedOnCompletionAndServedAsJson() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-diagnostics");
+        project.setCommandOverride(
+                "echo '{\"type\":\"system\",\"subtype\":\"init\"}'"
+                        + " && echo '{\"type\":\"result\",\"result\":\"done\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        IngestionDiagnostics diagnostics = build.getAction(AiAgentRunAction.class).getDiagnostics();
+        assertNotNull(diagnostics);
+        assertEquals(2, diagnostics.getLines());
+        assertTrue(diagnostics.getLongestLine() > 0);
+        assertEquals(2, diagnostics.getLinesByCategory().values().stream().mapToLong(l -> l).sum());
+
+        JSONObject json =
+                JSONObject.fromObject(
+                        jenkins.createWebClient()
+                                .goTo(build.getUrl() + "ai-agent/diagnostics", "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+        assertEquals(2, json.getLong("lines"));
+        assertFalse(json.getBoolean("live"));
+    }
+
+    @Test
+    public void toolStats_pairCallsWithResultsAndServeJson() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-tool-stats");
+        project.setCommandOverride(
+                "echo '{\"type\":\"assistant\",\"message\":{\"content\":[{\"type\":\"tool_use\","
+                        + "\"id\":\"t1\",\"name\":\"Bash\",\"input\":{\"command\":\"ls\"}}]}}'"
+                        + " && echo '{\"type\":\"user\",\"message\":{\"content\":[{\"type\":"
+                        + "\"tool_result\",\"tool_use_id\":\"t1\",\"content\":\"a.txt\"}]}}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        ToolCallStats stats = build.getAction(AiAgentRunAction.class).getToolCallStats();
+        assertNotNull(stats);
+        assertEquals(1, stats.getTools().size());
+        ToolCallStats.Tool bash = stats.getTools().get(0);
+        assertEquals("Bash", bash.getName());
+        assertEquals(1, bash.getCompleted());
+        assertEquals(5, bash.getOutputBytes());
+        assertEquals(0, stats.getUnfinished());
+
+        JSONObject json =
+                JSONObject.fromObject(
+                        jenkins.createWebClient()
+                                .goTo(build.getUrl() + "ai-agent/toolStats", "application/json")
+                                .getWebResponse()
+                                .getContentAsString());
+        assertEquals("Bash", json.getJSONArray("tools").getJSONObject(0).getString("name"));
+        assertFalse(json.getBoolean("live"));
+    }
+
+    @Test
+    public void progressiveEvents_mergesToolResultIntoItsCall() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-tool-merge");
+        project.setCommandOverride(
+                "echo '{\"type\":\"assistant\",\"message\":{\"content\":[{\"type\":\"tool_use\","
+                        + "\"id\":\"t1\",\"name\":\"Bash\",\"input\":{\"command\":\"ls\"}}]}}'"
+                        + " && echo '{\"type\":\"user\",\"message\":{\"content\":[{\"type\":"
+                        + "\"tool_result\",\"tool_use_id\":\"t1\",\"content\":\"a.txt\"}]}}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        JenkinsRule.WebClient wc = jenkins.createWebClient();
+        String url = build.getUrl() + "ai-agent/progressiveEvents?start=0";
+        JSONArray events =
+                JSONObject.fromObject(
+                                wc.goTo(url, "application/json")
+                                        .getWebResponse()
+                                        .getContentAsString())
+                        .getJSONArray("events");
+        assertEquals(1, events.size());
+        JSONObject call = events.getJSONObject(0);
+        assertEquals("tool_call", call.getString("category"));
+        assertEquals("t1", call.getString("toolCallId"));
+        assertEquals("a.txt", call.getString("toolOutputPreview"));
+        assertTrue(call.getLong("durationMillis") >= 0);
+
+        String bodyUrl =
+                build.getUrl()
+                        + "ai-agent/eventBody?id="
+                        + call.getLong("id")
+                        + "&resultId="
+                        + call.getLong("resultId");
+        JSONObject body =
+                JSONObject.fromObject(
+                        wc.goTo(bodyUrl, "application/json").getWebResponse().getContentAsString());
+        assertTrue(body.getString("toolInput").contains("ls"));
+        assertEquals("a.txt", body.getString("toolOutput"));
+    }
+
+    @Test
+    public void sessionId_recordedFromAgentOutput() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+
+        AiAgentProject project = jenkins.createProject(AiAgentProject.class, "test-session-id");
+        project.setCommandOverride(
+                "echo '{\"type\":\"system\",\"subtype\":\"init\",\"session_id\":\"s-1\"}'"
+                        + " && echo '{\"type\":\"result\",\"session_id\":\"s-1\"}'");
+        project.save();
+
+        FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+        AiAgentRunAction action = build.getAction(AiAgentRunAction.class);
+        assertEquals("s-1", action.getSessionId());
+        assertEquals(0, action.getResumedFromBuild());
+    }
+
     @Test
     public void rawEndpoint_returnsContent() throws Exception {
         Assume.assumeTrue(File.pathSeparatorChar == ':');
@@ -203,6 +498,16 @@ public class AiAgentRunActionTest {
                         || jelly.contains("style='"));
     }
 
+    @Test
+    public void conversationPages_useExternalResourcesForCspCompliance() throws Exception {
+        for (String page : new String[] {"conversation.jelly", "index.jelly"}) {
+            String jelly = readResource("/io/jenkins/plugins/aiagentjob/AiAgentRunAction/" + page);
+            assertFalse(page, jelly.contains("<style"));
+            assertFalse(page, jelly.contains("<script"));
+            assertFalse(page, jelly.contains(" style="));
+        }
+    }
+
     @Test
     public void summaryResources_exist() throws Exception {
         assertNotNull(
@@ -0,0 +1,136 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+public class AiAgentSpendLedgerTest {
+
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+
+    private static AiAgentSpendLedger ledger() {
+        return new AiAgentSpendLedger(ZONE);
+    }
+
+    private static AiAgentSpendLedger.Budgets budgets(String job, double jobBudget) {
+        return new AiAgentSpendLedger.Budgets(job, jobBudget, Map.of(), 0);
+    }
+
+    private static long today(int hour) {
+        return LocalDate.now(ZONE).atTime(hour, 0).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void record_sumsRunsOnceEach() {
+        AiAgentSpendLedger ledger = ledger();
+        long now = System.currentTimeMillis();
+
+        ledger.record("team/a", "team/a#1/", 1.5, now);
+        ledger.record("team/a", "team/a#1/", 1.5, now);
+        ledger.record("team/a", "team/a#2/1", 0.5, now);
+        ledger.record("team/b", "team/b#1/", 2.0, now);
+        ledger.record("other", "other#1/", 4.0, now);
+
+        assertEquals(2.0, ledger.spent("team/a", now), 0.0001);
+        assertEquals(4.0, ledger.spent("team", now), 0.0001);
+        assertEquals(8.0, ledger.spent("", now), 0.0001);
+    }
+
+    @Test
+    public void record_ignoresRunsOfEarlierDays() {
+        AiAgentSpendLedger ledger = ledger();
+        long yesterday = today(12) - 86_400_000L;
+
+        ledger.record("a", "a#1/", 3.0, yesterday);
+
+        assertEquals(0.0, ledger.spent("a", today(12)), 0.0001);
+    }
+
+    @Test
+    public void blockedReason_checksJobFolderAndGlobalBudgets() {
+        AiAgentSpendLedger ledger = ledger();
+        Map<String, Double> team = Map.of("team", 5.0);
+        long now = today(12);
+        ledger.record("team/a", "team/a#1/", 3.0, now);
+
+        AiAgentSpendLedger.Budgets teamA = new AiAgentSpendLedger.Budgets("team/a", 0, team, 10);
+        assertNull(ledger.blockedReason(teamA, 0, now));
+        String reason =
+                ledger.blockedReason(
+                        new AiAgentSpendLedger.Budgets("team/a", 3.0, team, 10), 0, now);
+        assertNotNull(reason);
+        assertTrue(reason, reason.contains("job team/a"));
+
+        ledger.record("team/b", "team/b#1/", 2.0, now);
+        reason = ledger.blockedReason(teamA, 0, now);
+        assertTrue(reason, reason.contains("folder team"));
+
+        ledger.record("other", "other#1/", 5.0, now);
+        reason =
+                ledger.blockedReason(
+                        new AiAgentSpendLedger.Budgets("other", 0, Map.of(), 10), 0, now);
+        assertTrue(reason, reason.contains("all jobs"));
+    }
+
+    @Test
+    public void blockedReason_holdsBuildsWhoseProjectedCostExceedsBudget() {
+        AiAgentSpendLedger ledger = ledger();
+        long now = today(12);
+        ledger.record("a", "a#1/", 7.0, now);
+
+        assertNull(ledger.blockedReason(budgets("a", 10), 2.5, now));
+        String reason = ledger.blockedReason(budgets("a", 10), 3.5, now);
+        assertNotNull(reason);
+        assertTrue(reason, reason.contains("$3.50 on average"));
+    }
+
+    @Test
+    public void blockedReason_countsBuildsLetStartUntilTheirRunsRecordCost() {
+        AiAgentSpendLedger ledger = ledger();
+        AiAgentSpendLedger.Budgets budgets = budgets("a", 10);
+        long now = today(12);
+
+        assertNull(ledger.blockedReason(budgets, 4.0, now, 1, Map.of()));
+        assertNull("Checking reserves nothing", ledger.blockedReason(budgets, 8.0, now));
+
+        Map<Long, AiAgentSpendLedger.Reservation> dispatched =
+                Map.of(1L, new AiAgentSpendLedger.Reservation("a", 4.0));
+        // The queue checks an item again before it starts; its own cost does not count twice.
+        assertNull(ledger.blockedReason(budgets, 4.0, now, 1, dispatched));
+        String reason = ledger.blockedReason(budgets, 8.0, now, 2, dispatched);
+        assertNotNull("A build waiting for its executor counts", reason);
+        assertTrue(reason, reason.contains("$4.00 expected from running builds"));
+
+        ledger.reserve(1, "a", 4.0);
+        ledger.reserve(2, "a", 4.0);
+        reason = ledger.blockedReason(budgets, 4.0, now);
+        assertNotNull("A burst cannot overrun the budget together", reason);
+        assertTrue(reason, reason.contains("$8.00 expected from running builds"));
+
+        // Build 1 spent 3 of its 4 so far; build 2 ended without spending more.
+        ledger.record("a", "a#1/", 3.0, now);
+        ledger.settle(1, 3.0);
+        assertNotNull(ledger.blockedReason(budgets, 4.0, now));
+        ledger.release(2);
+        assertNull(ledger.blockedReason(budgets, 4.0, now, 3, Map.of()));
+        ledger.reserve(3, "a", 4.0);
+        assertNotNull(ledger.blockedReason(budgets, 4.0, now));
+    }
+
+    @Test
+    public void spent_resetsAtMidnight() {
+        AiAgentSpendLedger ledger = ledger();
+        long now = System.currentTimeMillis();
+        ledger.record("a", "a#1/", 7.0, now);
+
+        assertEquals(0.0, ledger.spent("a", now + 86_400_000L), 0.0001);
+    }
+}
@@ -0,0 +1,105 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class ApprovalStatsTest {
+
+    private static void record(
+            ApprovalStats stats, ExecutionRegistry.ApprovalDecision decision, long waitMillis) {
+        stats.record(decision, decision.getDecidedAt().toEpochMilli() - waitMillis);
+    }
+
+    @Test
+    public void record_countsOutcomesBySource() {
+        ApprovalStats stats = new ApprovalStats();
+        assertFalse(stats.hasData());
+
+        record(stats, ExecutionRegistry.ApprovalDecision.approved(), 1_000);
+        record(
+                stats,
+                ExecutionRegistry.ApprovalDecision.approved(ExecutionRegistry.DecisionSource.RULE),
+                200);
+        record(stats, ExecutionRegistry.ApprovalDecision.denied("no"), 3_000);
+        record(
+                stats,
+                ExecutionRegistry.ApprovalDecision.denied(
+                        "approval timed out after 60s", ExecutionRegistry.DecisionSource.TIMEOUT),
+                60_000);
+        stats.recordReused();
+
+        assertTrue(stats.hasData());
+        assertEquals(4, stats.getRequested());
+        assertEquals(2, stats.getApproved());
+        assertEquals(1, stats.getDenied());
+        assertEquals(1, stats.getTimedOut());
+        assertEquals(1, stats.getByRule());
+        assertEquals(1, stats.getReused());
+        assertEquals(64_200, stats.getTotalWaitMillis());
+        assertEquals(0.25, stats.getTimeoutRate(), 0.0001);
+    }
+
+    @Test
+    public void waitPercentile_usesNearestRank() {
+        ApprovalStats stats = new ApprovalStats();
+        for (int i = 1; i <= 20; i++) {
+            record(stats, ExecutionRegistry.ApprovalDecision.approved(), i * 1_000L);
+        }
+
+        assertEquals(10_000, stats.getWaitPercentile(0.5));
+        assertEquals(19_000, stats.getWaitPercentile(0.95));
+        assertEquals(20_000, stats.getMaxWaitMillis());
+        assertEquals("10.0s", stats.getWaitP50Display());
+        assertEquals(0, new ApprovalStats().getWaitPercentile(0.5));
+    }
+
+    @Test
+    public void add_mergesTotalsAndSamples() {
+        ApprovalStats first = new ApprovalStats();
+        record(first, ExecutionRegistry.ApprovalDecision.approved(), 1_000);
+        ApprovalStats second = new ApprovalStats();
+        record(second, ExecutionRegistry.ApprovalDecision.denied("no"), 5_000);
+
+        ApprovalStats total = new ApprovalStats();
+        total.add(first);
+        total.add(second);
+
+        assertEquals(2, total.getRequested());
+        assertEquals(1, total.getApproved());
+        assertEquals(1, total.getDenied());
+        assertEquals(5_000, total.getMaxWaitMillis());
+        assertEquals(6_000, total.getTotalWaitMillis());
+    }
+
+    @Test
+    public void serialization_keepsRecordedWaitsOnly() throws Exception {
+        ApprovalStats stats = new ApprovalStats();
+        for (int i = 1; i <= 5; i++) {
+            record(stats, ExecutionRegistry.ApprovalDecision.approved(), i * 1_000L);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(stats);
+        }
+        ApprovalStats restored;
+        try (ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored = (ApprovalStats) in.readObject();
+        }
+
+        assertEquals(3_000, restored.getWaitPercentile(0.5));
+        assertEquals(1_000, restored.getWaitPercentile(0.01));
+        record(restored, ExecutionRegistry.ApprovalDecision.approved(), 6_000);
+        assertEquals(6_000, restored.getMaxWaitMillis());
+        assertEquals(3_000, restored.getWaitPercentile(0.5));
+    }
+}
@@ -0,0 +1,14 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DurationsTest {
+    @Test
+    public void format_picksUnitBySize() {
+        assertEquals("850ms", Durations.format(850));
+        assertEquals("4.5s", Durations.format(4_500));
+        assertEquals("2m 15s", Durations.format(135_000));
+    }
+}
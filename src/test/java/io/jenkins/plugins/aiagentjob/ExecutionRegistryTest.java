@@ -3,12 +3,19 @@ package io.jenkins.plugins.aiagentjob;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import java.lang.reflect.Field;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ExecutionRegistryTest {
 
@@ -118,4 +125,228 @@ public class ExecutionRegistryTest {
         ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
         assertFalse(live.deny("nonexistent-id", "reason"));
     }
+
+    @Test
+    public void approvalsChange_completesWaitingFuture() throws Exception {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        long version = live.getApprovalsVersion();
+        CompletableFuture<Long> changed = live.onApprovalsChangedSince(version);
+        assertFalse(changed.isDone());
+
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "bash", "ls");
+        assertEquals(Long.valueOf(version + 1), changed.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> resolved = live.onApprovalsChangedSince(version + 1);
+        assertFalse(resolved.isDone());
+        assertTrue(live.approve(pending.getId()));
+        assertEquals(Long.valueOf(version + 2), resolved.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void approvalsChange_staleVersionAnswersImmediately() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        live.createPendingApproval("tc-1", "bash", "ls");
+
+        CompletableFuture<Long> changed = live.onApprovalsChangedSince(0);
+        assertTrue(changed.isDone());
+        assertEquals(Long.valueOf(live.getApprovalsVersion()), changed.join());
+    }
+
+    @Test
+    public void pendingApprovals_keepCreationOrderAndReuseSnapshot() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval first = live.createPendingApproval("tc-1", "bash", "a");
+        ExecutionRegistry.PendingApproval second = live.createPendingApproval("tc-2", "bash", "b");
+        ExecutionRegistry.PendingApproval third = live.createPendingApproval("tc-3", "bash", "c");
+
+        List<ExecutionRegistry.PendingApproval> approvals = live.getPendingApprovals();
+        assertEquals(List.of(first, second, third), approvals);
+        assertSame(
+                "Unchanged approvals should not be copied again",
+                approvals,
+                live.getPendingApprovals());
+
+        assertTrue(live.deny(second.getId(), "no"));
+        assertEquals(List.of(first, third), live.getPendingApprovals());
+    }
+
+    @Test
+    public void inbox_tracksApprovalsAcrossExecutions() {
+        ExecutionRegistry.LiveExecution a = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.LiveExecution b = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval fromA = a.createPendingApproval("tc-1", "bash", "ls");
+        ExecutionRegistry.PendingApproval fromB = b.createPendingApproval("tc-2", "read", "x");
+
+        List<ExecutionRegistry.PendingApproval> inbox = inboxApprovals();
+        assertTrue(inbox.indexOf(fromA) >= 0);
+        assertTrue("Inbox is in creation order", inbox.indexOf(fromA) < inbox.indexOf(fromB));
+        assertSame(b, ExecutionRegistry.findByApprovalId(fromB.getId()));
+
+        long version = ExecutionRegistry.getGlobalApprovalsVersion();
+        assertTrue(a.approve(fromA.getId()));
+        assertTrue(ExecutionRegistry.getGlobalApprovalsVersion() > version);
+        assertFalse(inboxApprovals().contains(fromA));
+        assertNull(ExecutionRegistry.findByApprovalId(fromA.getId()));
+
+        b.discardPendingApprovals();
+        assertFalse(inboxApprovals().contains(fromB));
+        assertTrue(b.getPendingApprovals().isEmpty());
+    }
+
+    @Test
+    public void inbox_dropsTimedOutApprovals() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "bash", "ls");
+
+        ExecutionRegistry.ApprovalDecision decision =
+                live.awaitDecision(pending, Duration.ofMillis(10));
+
+        assertFalse(decision.isApproved());
+        assertFalse(inboxApprovals().contains(pending));
+        assertTrue(live.getPendingApprovals().isEmpty());
+    }
+
+    @Test
+    public void decisionFor_completesWithoutBlockingTheCaller() throws Exception {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval approved =
+                live.createPendingApproval("tc-1", "bash", "ls");
+        ExecutionRegistry.PendingApproval expiring =
+                live.createPendingApproval("tc-2", "bash", "rm");
+
+        CompletableFuture<ExecutionRegistry.ApprovalDecision> first =
+                live.decisionFor(approved, Duration.ofMinutes(1));
+        CompletableFuture<ExecutionRegistry.ApprovalDecision> second =
+                live.decisionFor(expiring, Duration.ofMillis(10));
+        assertFalse(first.isDone());
+
+        live.approve(approved.getId());
+        assertTrue(first.getNow(null).isApproved());
+        ExecutionRegistry.ApprovalDecision timedOut = second.get(5, TimeUnit.SECONDS);
+        assertFalse(timedOut.isApproved());
+        assertTrue(timedOut.getReason().contains("timed out"));
+        assertFalse(live.hasPendingApproval(expiring.getId()));
+    }
+
+    @Test
+    public void decide_resumesTheAgentOutsideTheLockAllBuildsShare() throws Exception {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "bash", "ls");
+        Field field = ExecutionRegistry.class.getDeclaredField("DECISIONS_BY_KEY");
+        field.setAccessible(true);
+        Object sharedLock = field.get(null);
+        AtomicBoolean resumedUnderLock = new AtomicBoolean(true);
+        live.decisionFor(pending, Duration.ofMinutes(1))
+                .thenRun(() -> resumedUnderLock.set(Thread.holdsLock(sharedLock)));
+
+        live.decide(
+                "alice",
+                pending.getId(),
+                true,
+                ExecutionRegistry.ApprovalScope.ONCE,
+                null,
+                "key-1");
+
+        assertFalse(resumedUnderLock.get());
+        assertFalse(live.hasPendingApproval(pending.getId()));
+    }
+
+    @Test
+    public void decisions_recordSourceAndDecisionTime() throws Exception {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        live.setMemoizeApprovals(true);
+        ExecutionRegistry.PendingApproval byUser =
+                live.createPendingApproval("tc-1", "bash", "ls", "ls");
+        ExecutionRegistry.PendingApproval byRule =
+                live.createPendingApproval("tc-2", "bash", "ls", "ls");
+        ExecutionRegistry.PendingApproval expiring =
+                live.createPendingApproval("tc-3", "bash", "rm", "rm");
+        assertNull(byUser.getDecision());
+
+        live.approve(byUser.getId(), ExecutionRegistry.ApprovalScope.CALL);
+        live.decisionFor(expiring, Duration.ofMillis(10)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ExecutionRegistry.DecisionSource.USER, byUser.getDecision().getSource());
+        assertEquals(ExecutionRegistry.DecisionSource.RULE, byRule.getDecision().getSource());
+        assertEquals(ExecutionRegistry.DecisionSource.TIMEOUT, expiring.getDecision().getSource());
+        assertFalse(expiring.getDecision().getDecidedAt().isBefore(expiring.getCreatedAt()));
+        assertTrue(expiring.getWaitMillis() >= 10);
+        // A decision arriving after the timeout does not overwrite it.
+        assertFalse(live.approve(expiring.getId()));
+    }
+
+    @Test
+    public void memoizedCallApproval_coversIdenticalCallsOnly() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        live.setMemoizeApprovals(true);
+        ExecutionRegistry.PendingApproval first =
+                live.createPendingApproval("tc-1", "Bash", "git  status", "git status");
+        ExecutionRegistry.PendingApproval waiting =
+                live.createPendingApproval("tc-2", "bash", "git status", "git status");
+        ExecutionRegistry.PendingApproval other =
+                live.createPendingApproval("tc-3", "bash", "git push", "git push");
+
+        assertTrue(live.approve(first.getId(), ExecutionRegistry.ApprovalScope.CALL));
+
+        assertFalse(live.hasPendingApproval(first.getId()));
+        assertFalse(live.hasPendingApproval(waiting.getId()));
+        assertTrue(live.hasPendingApproval(other.getId()));
+        assertTrue(live.isPreApproved("bash", " git status "));
+        assertFalse(live.isPreApproved("bash", "git push"));
+    }
+
+    @Test
+    public void memoizedToolApproval_coversAnyInput() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        live.setMemoizeApprovals(true);
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "read", "a.txt", "a.txt");
+
+        assertTrue(live.approve(pending.getId(), ExecutionRegistry.ApprovalScope.TOOL));
+
+        assertTrue(live.isPreApproved("read", "b.txt"));
+        assertFalse(live.isPreApproved("bash", "a.txt"));
+    }
+
+    @Test
+    public void memoizedApproval_notRememberedWhenItLosesTheRace() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        live.setMemoizeApprovals(true);
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "bash", "rm -rf build", "rm -rf build");
+        // The timeout decided first but has not removed the approval yet.
+        assertTrue(
+                pending.recordDecision(
+                        ExecutionRegistry.ApprovalDecision.denied(
+                                "timed out", ExecutionRegistry.DecisionSource.TIMEOUT)));
+
+        assertFalse(live.approve(pending.getId(), ExecutionRegistry.ApprovalScope.TOOL));
+
+        assertFalse(live.isPreApproved("bash", "rm -rf build"));
+    }
+
+    @Test
+    public void approvalScope_ignoredWithoutMemoization() {
+        ExecutionRegistry.LiveExecution live = new ExecutionRegistry.LiveExecution();
+        ExecutionRegistry.PendingApproval pending =
+                live.createPendingApproval("tc-1", "bash", "ls", "ls");
+
+        assertTrue(live.approve(pending.getId(), ExecutionRegistry.ApprovalScope.TOOL));
+
+        assertFalse(live.isPreApproved("bash", "ls"));
+        assertEquals(
+                ExecutionRegistry.ApprovalScope.ONCE,
+                ExecutionRegistry.ApprovalScope.fromString("bogus"));
+    }
+
+    private static List<ExecutionRegistry.PendingApproval> inboxApprovals() {
+        List<ExecutionRegistry.PendingApproval> approvals = new ArrayList<>();
+        for (ExecutionRegistry.InboxEntry entry : ExecutionRegistry.inbox()) {
+            approvals.add(entry.getApproval());
+        }
+        return approvals;
+    }
 }
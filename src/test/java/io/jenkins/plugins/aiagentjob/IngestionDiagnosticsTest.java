@@ -0,0 +1,41 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class IngestionDiagnosticsTest {
+
+    @Test
+    public void snapshot_aggregatesRecordedCounters() {
+        IngestionDiagnostics.Recorder recorder = new IngestionDiagnostics.Recorder();
+        recorder.lineIngested(10, "assistant", 2_000_000, 1_000_000);
+        recorder.lineIngested(300, "tool_call", 3_000_000, 4_000_000);
+        recorder.lineIngested(20, "assistant", 0, 0);
+        recorder.queueDepth(4);
+        recorder.queueDepth(2);
+        recorder.approvalWaited(1_500);
+        recorder.eventPolled();
+        recorder.eventPolled();
+        recorder.approvalsPolled();
+
+        IngestionDiagnostics snapshot = recorder.snapshot();
+
+        assertEquals(3, snapshot.getLines());
+        assertEquals(330, snapshot.getBytes());
+        assertEquals(300, snapshot.getLongestLine());
+        assertEquals(5, snapshot.getParseMillis());
+        assertEquals(5, snapshot.getFlushMillis());
+        assertEquals(4, snapshot.getMaxQueuedLines());
+        assertEquals(1_500, snapshot.getApprovalWaitMillis());
+        assertEquals(2, snapshot.getEventPolls());
+        assertEquals(1, snapshot.getApprovalPolls());
+        assertEquals(Long.valueOf(2), snapshot.getLinesByCategory().get("assistant"));
+        assertEquals("330 B", snapshot.getBytesDisplay());
+
+        JSONObject json = snapshot.toJson();
+        assertEquals(1, json.getJSONObject("linesByCategory").getLong("tool_call"));
+    }
+}
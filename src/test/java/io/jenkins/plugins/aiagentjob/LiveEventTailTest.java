@@ -0,0 +1,114 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LiveEventTailTest {
+
+    private static final String ASSISTANT =
+            "{\"type\":\"assistant\",\"message\":{\"role\":\"assistant\",\"content\":"
+                    + "[{\"type\":\"text\",\"text\":\"%s\"}]}}\n";
+
+    private static void append(File file, String text) throws Exception {
+        Files.write(
+                file.toPath(),
+                text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static File tempLog() throws Exception {
+        File file = File.createTempFile("tail-", ".jsonl");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void refresh_parsesOnlyNewLines() throws Exception {
+        File log = tempLog();
+        LiveEventTail tail = new LiveEventTail(log);
+        append(log, String.format(ASSISTANT, "one"));
+
+        LiveEventTail.Snapshot first = tail.refresh();
+        assertEquals(1, first.getLineCount());
+        assertEquals(1, first.eventsAfter(0).size());
+
+        append(log, String.format(ASSISTANT, "two") + String.format(ASSISTANT, "three"));
+        LiveEventTail.Snapshot second = tail.refresh();
+        assertEquals(3, second.getLineCount());
+        assertEquals(3, second.eventsAfter(0).size());
+        List<AiAgentLogParser.EventView> newer = second.eventsAfter(first.getLineCount());
+        assertEquals(2, newer.size());
+        assertEquals("two", newer.get(0).getContent());
+        assertEquals(2, newer.get(0).getId());
+
+        assertEquals("Older snapshots stay unchanged", 1, first.eventsAfter(0).size());
+    }
+
+    @Test
+    public void refresh_waitsForPartialLineToComplete() throws Exception {
+        File log = tempLog();
+        LiveEventTail tail = new LiveEventTail(log);
+        String line = String.format(ASSISTANT, "partial");
+        append(log, line.substring(0, 20));
+
+        assertEquals(0, tail.refresh().getLineCount());
+
+        append(log, line.substring(20));
+        LiveEventTail.Snapshot snapshot = tail.refresh();
+        assertEquals(1, snapshot.getLineCount());
+        assertEquals("partial", snapshot.eventsAfter(0).get(0).getContent());
+    }
+
+    @Test
+    public void refresh_returnsSameSnapshotWhenNothingChanged() throws Exception {
+        File log = tempLog();
+        LiveEventTail tail = new LiveEventTail(log);
+        append(log, String.format(ASSISTANT, "only"));
+
+        LiveEventTail.Snapshot first = tail.refresh();
+        assertSame(first, tail.refresh());
+        assertSame(first, tail.current());
+    }
+
+    @Test
+    public void refresh_concurrentViewersSeeConsistentEvents() throws Exception {
+        File log = tempLog();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append(String.format(ASSISTANT, "line " + i));
+        }
+        append(log, content.toString());
+        LiveEventTail tail = new LiveEventTail(log);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<LiveEventTail.Snapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(pool.submit((Callable<LiveEventTail.Snapshot>) tail::refresh));
+            }
+            for (Future<LiveEventTail.Snapshot> result : results) {
+                LiveEventTail.Snapshot snapshot = result.get();
+                assertTrue(snapshot.getLineCount() <= 500);
+                assertEquals(snapshot.getLineCount(), snapshot.eventsAfter(0).size());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(500, tail.refresh().eventsAfter(0).size());
+    }
+}
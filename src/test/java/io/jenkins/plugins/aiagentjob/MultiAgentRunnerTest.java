@@ -0,0 +1,65 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+public class MultiAgentRunnerTest {
+
+    private static File workspace(String... dirs) throws Exception {
+        File base = Files.createTempDirectory("shards-").toFile();
+        base.deleteOnExit();
+        for (String dir : dirs) {
+            Files.createDirectories(new File(base, dir).toPath());
+        }
+        return base;
+    }
+
+    @Test
+    public void expandShards_matchesDirectoriesInOrder() throws Exception {
+        File base = workspace("modules/b", "modules/a", "modules/.cache", "services/api");
+        Files.write(new File(base, "modules/README.md").toPath(), List.of("not a shard"));
+
+        List<String> shards =
+                MultiAgentRunner.expandShards(
+                        base, "# modules\nmodules/*\n\n./services/api/\nmodules/a\nmissing/*\n");
+
+        assertEquals(List.of("modules/a", "modules/b", "services/api"), shards);
+    }
+
+    @Test
+    public void expandShards_matchesHiddenDirectoriesOnlyExplicitly() throws Exception {
+        File base = workspace("modules/.cache", "modules/a");
+
+        assertEquals(
+                List.of("modules/.cache"), MultiAgentRunner.expandShards(base, "modules/.c*"));
+    }
+
+    @Test
+    public void expandShards_rejectsGlobsOutsideOneLevel() throws Exception {
+        File base = workspace("modules/a");
+        for (String glob : new String[] {"/etc", "../other", "modules/**"}) {
+            try {
+                MultiAgentRunner.expandShards(base, "modules/a\n" + glob);
+                fail("Expected " + glob + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2:"));
+            }
+        }
+    }
+
+    @Test
+    public void truncate_endsInEllipsisOnlyWhenThereIsRoom() {
+        assertEquals("short", MultiAgentRunner.truncate("short", 5));
+        assertEquals("ab...", MultiAgentRunner.truncate("abcdefgh", 5));
+        assertEquals("a...", MultiAgentRunner.truncate("abcdefgh", 4));
+        assertEquals("abc", MultiAgentRunner.truncate("abcdefgh", 3));
+        assertEquals("", MultiAgentRunner.truncate("abcdefgh", 0));
+    }
+}
@@ -0,0 +1,207 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hudson.Launcher;
+import hudson.model.TaskListener;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class OpenCodeServerPoolTest {
+    @Rule public JenkinsRule jenkins = new JenkinsRule();
+
+    @After
+    public void stopServers() {
+        OpenCodeServerPool.stopAll();
+    }
+
+    private static Map<String, String> env(String... keysAndValues) {
+        Map<String, String> env = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            env.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return env;
+    }
+
+    @Test
+    public void serverKey_ignoresVariableOrder() {
+        assertEquals(
+                OpenCodeServerPool.serverKey(
+                        "agent-1", "opencode", env("OPENAI_API_KEY", "k1", "FOO", "bar")),
+                OpenCodeServerPool.serverKey(
+                        "agent-1", "opencode", env("FOO", "bar", "OPENAI_API_KEY", "k1")));
+    }
+
+    @Test
+    public void serverKey_separatesNodesBinariesAndCredentials() {
+        String key =
+                OpenCodeServerPool.serverKey("agent-1", "opencode", env("OPENAI_API_KEY", "k1"));
+
+        assertTrue(key.startsWith("agent-1/"));
+        assertNotEquals(
+                key,
+                OpenCodeServerPool.serverKey("agent-2", "opencode", env("OPENAI_API_KEY", "k1")));
+        assertNotEquals(
+                key,
+                OpenCodeServerPool.serverKey(
+                        "agent-1", "/tools/opencode", env("OPENAI_API_KEY", "k1")));
+        assertNotEquals(
+                key,
+                OpenCodeServerPool.serverKey("agent-1", "opencode", env("OPENAI_API_KEY", "k2")));
+    }
+
+    @Test
+    public void serverKey_doesNotContainSecrets() {
+        String key =
+                OpenCodeServerPool.serverKey(
+                        "", "opencode", env("OPENAI_API_KEY", "sk-very-secret-value"));
+
+        assertFalse(key.contains("sk-very-secret-value"));
+        assertTrue("Built-in node has an empty name", key.startsWith("/"));
+    }
+
+    @Test
+    public void stopIdleServers_withoutServersIsNoOp() {
+        OpenCodeServerPool.stopIdleServers();
+
+        assertEquals(0, OpenCodeServerPool.runningServers());
+    }
+
+    /**
+     * A stand-in for {@code opencode serve}: an HTTP server on the given port that records the
+     * password it was started with.
+     */
+    private static String fakeOpenCode() throws IOException {
+        File dir = tempDir();
+        File server = new File(dir, "FakeServer.java");
+        Files.write(
+                server.toPath(),
+                ("import com.sun.net.httpserver.HttpServer;\n"
+                                + "import java.net.InetSocketAddress;\n"
+                                + "public class FakeServer {\n"
+                                + "  public static void main(String[] args) throws Exception {\n"
+                                + "    HttpServer server = HttpServer.create(new InetSocketAddress("
+                                + "\"127.0.0.1\", Integer.parseInt(args[0])), 0);\n"
+                                + "    server.createContext(\"/\", exchange -> {\n"
+                                + "      exchange.sendResponseHeaders(401, -1);\n"
+                                + "      exchange.close();\n"
+                                + "    });\n"
+                                + "    server.start();\n"
+                                + "  }\n"
+                                + "}\n")
+                        .getBytes(StandardCharsets.UTF_8));
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        // Called as: opencode serve --hostname 127.0.0.1 --port <port>
+        return script(
+                dir,
+                "printf %s \"$OPENCODE_SERVER_PASSWORD\" > '"
+                        + dir
+                        + "/password-$5'\n"
+                        + "exec '"
+                        + java
+                        + "' '"
+                        + server
+                        + "' \"$5\"\n");
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("opencode-server-").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static String script(File dir, String body) throws IOException {
+        File script = new File(dir, "opencode");
+        Files.write(script.toPath(), ("#!/bin/sh\n" + body).getBytes(StandardCharsets.UTF_8));
+        assertTrue(script.setExecutable(true));
+        return script.getPath();
+    }
+
+    private static String passwordSeenBy(String executable, String url) throws IOException {
+        String port = url.substring(url.lastIndexOf(':') + 1);
+        File file = new File(new File(executable).getParentFile(), "password-" + port);
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private OpenCodeServerPool.Lease acquire(String executable, Map<String, String> env)
+            throws Exception {
+        Launcher launcher = jenkins.createLocalLauncher();
+        return OpenCodeServerPool.acquire("", launcher, executable, env, TaskListener.NULL);
+    }
+
+    @Test
+    public void acquire_reusesWarmServerUntilItIsIdle() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        String opencode = fakeOpenCode();
+        Map<String, String> env = env("OPENAI_API_KEY", "k1");
+
+        OpenCodeServerPool.Lease first = acquire(opencode, env);
+        OpenCodeServerPool.Lease second = acquire(opencode, env);
+        assertTrue(first.started);
+        assertFalse(second.started);
+        assertEquals(first.url, second.url);
+        assertEquals(first.password, second.password);
+        assertEquals(1, OpenCodeServerPool.runningServers());
+
+        first.close();
+        first.close();
+        OpenCodeServerPool.stopIdleServers(Long.MAX_VALUE);
+        assertEquals("Still leased by the second build", 1, OpenCodeServerPool.runningServers());
+
+        second.close();
+        OpenCodeServerPool.stopIdleServers(0);
+        assertEquals("Used too recently to be idle", 1, OpenCodeServerPool.runningServers());
+        OpenCodeServerPool.stopIdleServers(Long.MAX_VALUE);
+        assertEquals(0, OpenCodeServerPool.runningServers());
+
+        try (OpenCodeServerPool.Lease third = acquire(opencode, env)) {
+            assertTrue("An idle server is started again", third.started);
+            assertNotEquals(first.password, third.password);
+        }
+    }
+
+    @Test
+    public void acquire_givesEachServerItsOwnPassword() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        String opencode = fakeOpenCode();
+
+        try (OpenCodeServerPool.Lease a = acquire(opencode, env("OPENAI_API_KEY", "k1"));
+                OpenCodeServerPool.Lease b = acquire(opencode, env("OPENAI_API_KEY", "k2"))) {
+            assertNotEquals(a.url, b.url);
+            assertEquals(64, a.password.length());
+            assertNotEquals(a.password, b.password);
+            assertEquals(a.password, passwordSeenBy(opencode, a.url));
+            assertEquals(b.password, passwordSeenBy(opencode, b.url));
+        }
+    }
+
+    @Test
+    public void acquire_failingServerLeavesNothingAttached() throws Exception {
+        Assume.assumeTrue(File.pathSeparatorChar == ':');
+        String opencode = script(tempDir(), "exit 1\n");
+
+        try {
+            acquire(opencode, env("OPENAI_API_KEY", "k1"));
+            fail("Server that exits should not be attached");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("did not start answering"));
+        }
+        OpenCodeServerPool.stopIdleServers(Long.MAX_VALUE);
+        assertEquals(0, OpenCodeServerPool.runningServers());
+    }
+}
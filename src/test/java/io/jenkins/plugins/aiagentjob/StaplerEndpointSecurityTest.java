@@ -26,21 +26,34 @@ public class StaplerEndpointSecurityTest {
                                 hudson.model.Item.class,
                                 String.class)
                         .isAnnotationPresent(POST.class));
+        assertTrue(
+                AiAgentProject.DescriptorImpl.class
+                        .getMethod(
+                                "doCheckCliVersion",
+                                hudson.model.Item.class,
+                                String.class,
+                                String.class)
+                        .isAnnotationPresent(POST.class));
     }
 
     @Test
     public void runActionEndpoints_useExpectedHttpVerbs() throws Exception {
         assertTrue(
                 AiAgentRunAction.class
-                        .getMethod(
-                                "doProgressiveEvents",
-                                StaplerRequest2.class,
-                                StaplerResponse2.class)
+                        .getMethod("doProgressiveEvents", String.class, StaplerResponse2.class)
                         .isAnnotationPresent(GET.class));
         assertTrue(
                 AiAgentRunAction.class
                         .getMethod("doRaw", StaplerRequest2.class, StaplerResponse2.class)
                         .isAnnotationPresent(GET.class));
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod(
+                                "doEventBody",
+                                String.class,
+                                String.class,
+                                StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
         assertTrue(
                 AiAgentRunAction.class
                         .getMethod("doApprove", String.class)
@@ -49,5 +62,91 @@ public class StaplerEndpointSecurityTest {
                 AiAgentRunAction.class
                         .getMethod("doDeny", String.class, String.class)
                         .isAnnotationPresent(RequirePOST.class));
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod(
+                                "doDecide", String.class, String.class, String.class, String.class)
+                        .isAnnotationPresent(RequirePOST.class));
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod(
+                                "doApprovalEvents",
+                                StaplerRequest2.class,
+                                StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod(
+                                "doPendingApprovals",
+                                StaplerRequest2.class,
+                                StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod("doDecisions", StaplerRequest2.class, StaplerResponse2.class)
+                        .isAnnotationPresent(RequirePOST.class));
+    }
+
+    @Test
+    public void approvalsActionEndpoints_useExpectedHttpVerbs() throws Exception {
+        assertTrue(
+                AiAgentApprovalsAction.class
+                        .getMethod(
+                                "doPendingApprovals",
+                                StaplerRequest2.class,
+                                StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+        assertTrue(
+                AiAgentApprovalsAction.class
+                        .getMethod("doDecisions", StaplerRequest2.class, StaplerResponse2.class)
+                        .isAnnotationPresent(RequirePOST.class));
+        assertTrue(
+                AiAgentApprovalsAction.class
+                        .getMethod("doVersion", StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+    }
+
+    @Test
+    public void diagnosticsEndpoint_usesGet() throws Exception {
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod("doDiagnostics", StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+    }
+
+    @Test
+    public void metricsEndpoint_usesGet() throws Exception {
+        assertTrue(
+                AiAgentMetricsAction.class
+                        .getMethod("doIndex", StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+    }
+
+    @Test
+    public void approvalMetricsEndpoint_usesGet() throws Exception {
+        assertTrue(
+                AiAgentApprovalMetricsAction.class
+                        .getMethod("doIndex", StaplerRequest2.class, StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+    }
+
+    @Test
+    public void latencyTrendEndpoint_usesGet() throws Exception {
+        assertTrue(
+                AiAgentLatencyTrendAction.class
+                        .getMethod("doIndex", StaplerRequest2.class, StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+    }
+
+    @Test
+    public void toolStatsEndpoints_useGet() throws Exception {
+        assertTrue(
+                AiAgentRunAction.class
+                        .getMethod("doToolStats", StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
+        assertTrue(
+                AiAgentToolMetricsAction.class
+                        .getMethod("doIndex", StaplerRequest2.class, StaplerResponse2.class)
+                        .isAnnotationPresent(GET.class));
     }
 }
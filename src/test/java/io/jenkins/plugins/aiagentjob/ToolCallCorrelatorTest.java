@@ -0,0 +1,55 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ToolCallCorrelatorTest {
+
+    @Test
+    public void returned_pairsById() {
+        ToolCallCorrelator<String> correlator = new ToolCallCorrelator<>(10);
+        correlator.called("a", "Bash", "call a");
+        correlator.called("b", "Bash", "call b");
+
+        assertEquals("call b", correlator.returned(" b ", "Bash"));
+        assertNull("Each call is answered once", correlator.returned("b", "Bash"));
+        assertNull(correlator.returned("unknown", "Bash"));
+        assertEquals(1, correlator.openCalls());
+    }
+
+    @Test
+    public void returned_withoutIdTakesOldestCallOfSameTool() {
+        ToolCallCorrelator<String> correlator = new ToolCallCorrelator<>(10);
+        correlator.called("", "Read", "read 1");
+        correlator.called(null, "Bash", "bash 1");
+        correlator.called("", "Bash", "bash 2");
+
+        assertEquals("bash 1", correlator.returned("", "Bash"));
+        assertEquals("read 1", correlator.returned(null, ""));
+        assertEquals("bash 2", correlator.returned(null, null));
+        assertNull(correlator.returned("", "Bash"));
+    }
+
+    @Test
+    public void called_dropsOldestBeyondLimit() {
+        ToolCallCorrelator<String> correlator = new ToolCallCorrelator<>(2);
+        assertNull(correlator.called("a", "Bash", "a"));
+        assertNull(correlator.called("b", "Bash", "b"));
+        assertEquals("a", correlator.called("c", "Bash", "c"));
+
+        assertEquals(2, correlator.openCalls());
+        assertNull(correlator.returned("a", "Bash"));
+    }
+
+    @Test
+    public void called_withSameIdReplacesOpenCall() {
+        ToolCallCorrelator<String> correlator = new ToolCallCorrelator<>(10);
+        correlator.called("a", "Bash", "first");
+        correlator.called("a", "Bash", "second");
+
+        assertEquals(1, correlator.openCalls());
+        assertEquals("second", correlator.returned("a", "Bash"));
+    }
+}
@@ -0,0 +1,76 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class ToolCallStatsTest {
+
+    @Test
+    public void recorder_pairsCallsWithResultsById() {
+        ToolCallStats.Recorder recorder = new ToolCallStats.Recorder();
+        recorder.toolCalled("a", "Bash", 1_000);
+        recorder.toolCalled("b", "Read", 1_100);
+        recorder.toolReturned("b", "", 2_000, 1_300);
+        recorder.toolReturned("a", "", 500, 241_000);
+        recorder.toolCalled("c", "Bash", 250_000);
+        recorder.toolReturned("c", "Bash", 100, 252_000);
+
+        ToolCallStats stats = recorder.snapshot();
+        List<ToolCallStats.Tool> tools = stats.getTools();
+
+        assertEquals(2, tools.size());
+        ToolCallStats.Tool bash = tools.get(0);
+        assertEquals("Bash", bash.getName());
+        assertEquals(2, bash.getCalls());
+        assertEquals(242_000, bash.getTotalMillis());
+        assertEquals(121_000, bash.getAvgMillis());
+        assertEquals(240_000, bash.getMaxMillis());
+        assertEquals(600, bash.getOutputBytes());
+        assertEquals("4m 0s", bash.getMaxDisplay());
+        assertEquals(200, tools.get(1).getTotalMillis());
+        assertEquals("2.0 KiB", tools.get(1).getOutputDisplay());
+        assertEquals(0, stats.getUnfinished());
+    }
+
+    @Test
+    public void recorder_matchesResultsWithoutIdToOldestCallOfTool() {
+        ToolCallStats.Recorder recorder = new ToolCallStats.Recorder();
+        recorder.toolCalled(null, "bash", 1_000);
+        recorder.toolCalled(null, "edit", 1_500);
+        recorder.toolReturned(null, "bash", 10, 4_000);
+        recorder.toolReturned("unknown", "grep", 20, 5_000);
+
+        ToolCallStats stats = recorder.snapshot();
+
+        assertEquals(3_000, stats.getTools().get(0).getTotalMillis());
+        assertEquals(1, stats.getUnfinished());
+        JSONObject json = stats.toJson();
+        assertEquals(3_000, json.getLong("totalMillis"));
+    }
+
+    @Test
+    public void add_mergesBuilds() {
+        ToolCallStats.Recorder first = new ToolCallStats.Recorder();
+        first.toolCalled("a", "Bash", 0);
+        first.toolReturned("a", "Bash", 1, 1_000);
+        ToolCallStats.Recorder second = new ToolCallStats.Recorder();
+        second.toolCalled("a", "Bash", 0);
+        second.toolReturned("a", "Bash", 1, 3_000);
+
+        ToolCallStats total = new ToolCallStats();
+        assertFalse(total.hasData());
+        total.add(first.snapshot());
+        total.add(second.snapshot());
+
+        ToolCallStats.Tool bash = total.getTools().get(0);
+        assertEquals(2, bash.getCompleted());
+        assertEquals(4_000, bash.getTotalMillis());
+        assertEquals(3_000, bash.getMaxMillis());
+    }
+}
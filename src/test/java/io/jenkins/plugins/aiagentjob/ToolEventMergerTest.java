@@ -0,0 +1,112 @@
+package io.jenkins.plugins.aiagentjob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ToolEventMergerTest {
+
+    private static AiAgentLogParser.EventView event(
+            long id, String category, String toolCallId, String output) {
+        return new AiAgentLogParser.EventView(
+                id, category, category, "", "{}", output, "", null, toolCallId, -1, -1);
+    }
+
+    private static AiAgentLogParser.EventView tool(
+            long id, String category, String toolName, String output) {
+        return new AiAgentLogParser.EventView(
+                id, category, toolName, "", "{}", output, "", null, "", -1, -1);
+    }
+
+    @Test
+    public void merge_foldsResultIntoCallWithSameId() throws Exception {
+        List<AiAgentLogParser.EventView> merged;
+        try (ToolEventMerger merger = new ToolEventMerger(null)) {
+            merged =
+                    merger.merge(
+                            Arrays.asList(
+                                    event(0, "assistant", null, ""),
+                                    event(1, "tool_call", "a", ""),
+                                    event(2, "tool_call", "b", ""),
+                                    event(3, "tool_result", "b", "out-b"),
+                                    event(4, "tool_result", "a", "out-a")));
+        }
+
+        assertEquals(3, merged.size());
+        AiAgentLogParser.EventView a = merged.get(1);
+        assertEquals(1, a.getId());
+        assertTrue(a.isMerged());
+        assertEquals(4, a.getResultId());
+        assertEquals("out-a", a.getToolOutput());
+        assertEquals("Duration is unknown without an index", -1, a.getDurationMillis());
+        assertEquals("out-b", merged.get(2).getToolOutput());
+    }
+
+    @Test
+    public void merge_keepsResultsWithoutMatchingCall() throws Exception {
+        List<AiAgentLogParser.EventView> merged;
+        try (ToolEventMerger merger = new ToolEventMerger(null)) {
+            merged =
+                    merger.merge(
+                            Arrays.asList(
+                                    event(0, "tool_result", "earlier", "x"),
+                                    event(1, "tool_call", "c", ""),
+                                    event(2, "tool_result", "", "no id")));
+        }
+
+        assertEquals(3, merged.size());
+        assertEquals("tool_result", merged.get(0).getCategory());
+        assertFalse(merged.get(1).isMerged());
+        assertEquals("tool_result", merged.get(2).getCategory());
+    }
+
+    @Test
+    public void merge_foldsResultWithoutIdIntoOldestCallOfSameTool() throws Exception {
+        List<AiAgentLogParser.EventView> merged;
+        try (ToolEventMerger merger = new ToolEventMerger(null)) {
+            merged =
+                    merger.merge(
+                            Arrays.asList(
+                                    tool(1, "tool_call", "Read", ""),
+                                    tool(2, "tool_call", "Bash", ""),
+                                    tool(3, "tool_result", "Bash", "bash out"),
+                                    tool(4, "tool_result", "Read", "read out")));
+        }
+
+        assertEquals(2, merged.size());
+        assertEquals("read out", merged.get(0).getToolOutput());
+        assertEquals("bash out", merged.get(1).getToolOutput());
+    }
+
+    @Test
+    public void merge_takesDurationFromIndexArrivalTimes() throws Exception {
+        File dir = Files.createTempDirectory("tool-merge-").toFile();
+        dir.deleteOnExit();
+        File raw = new File(dir, AiAgentRunAction.RAW_LOG_FILE);
+        try (AiAgentLogIndex.Writer index =
+                new AiAgentLogIndex.Writer(AiAgentLogIndex.indexFileFor(raw))) {
+            index.lineStarted(0, 10_000L);
+            index.lineStarted(10, 12_500L);
+        }
+
+        // Event IDs are 1-based raw log line numbers.
+        List<AiAgentLogParser.EventView> merged;
+        try (ToolEventMerger merger = new ToolEventMerger(raw)) {
+            merged =
+                    merger.merge(
+                            Arrays.asList(
+                                    event(1, "tool_call", "t1", ""),
+                                    event(2, "tool_result", "t1", "done")));
+        }
+
+        assertEquals(1, merged.size());
+        assertEquals(2_500, merged.get(0).getDurationMillis());
+    }
+}